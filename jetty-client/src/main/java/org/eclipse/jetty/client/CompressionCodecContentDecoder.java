@@ -0,0 +1,101 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.component.Destroyable;
+import org.eclipse.jetty.util.compression.CompressionCodec;
+
+/**
+ * <p>A {@link ContentDecoder} that decodes content with a {@link CompressionCodec}.</p>
+ * <p>{@link HttpClient} registers a {@link Factory} for each codec discovered with
+ * {@link CompressionCodec#load()}, unless a factory for the same encoding is already registered.</p>
+ */
+public class CompressionCodecContentDecoder implements ContentDecoder, Destroyable
+{
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    private final CompressionCodec.Decoder decoder;
+    private final ByteBufferPool byteBufferPool;
+    private final int bufferSize;
+
+    public CompressionCodecContentDecoder(CompressionCodec codec, ByteBufferPool byteBufferPool, int bufferSize)
+    {
+        this.decoder = codec.newDecoder();
+        this.byteBufferPool = byteBufferPool;
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public ByteBuffer decode(ByteBuffer buffer)
+    {
+        ByteBuffer decoded = byteBufferPool == null ? BufferUtil.allocate(bufferSize) : byteBufferPool.acquire(bufferSize, false);
+        decoder.decode(buffer, decoded);
+        if (decoded.hasRemaining())
+            return decoded;
+        release(decoded);
+        return BufferUtil.EMPTY_BUFFER;
+    }
+
+    @Override
+    public void release(ByteBuffer decoded)
+    {
+        // Skip the empty buffer returned when nothing was decoded.
+        if (byteBufferPool != null && decoded != BufferUtil.EMPTY_BUFFER)
+            byteBufferPool.release(decoded);
+    }
+
+    @Override
+    public void destroy()
+    {
+        decoder.close();
+    }
+
+    /**
+     * <p>A {@link ContentDecoder.Factory} for the encoding of a {@link CompressionCodec}.</p>
+     */
+    public static class Factory extends ContentDecoder.Factory
+    {
+        private final CompressionCodec codec;
+        private final ByteBufferPool byteBufferPool;
+        private final int bufferSize;
+
+        public Factory(CompressionCodec codec)
+        {
+            this(codec, null);
+        }
+
+        public Factory(CompressionCodec codec, ByteBufferPool byteBufferPool)
+        {
+            this(codec, byteBufferPool, DEFAULT_BUFFER_SIZE);
+        }
+
+        public Factory(CompressionCodec codec, ByteBufferPool byteBufferPool, int bufferSize)
+        {
+            super(codec.getEncoding());
+            this.codec = codec;
+            this.byteBufferPool = byteBufferPool;
+            this.bufferSize = bufferSize;
+        }
+
+        @Override
+        public ContentDecoder newContentDecoder()
+        {
+            return new CompressionCodecContentDecoder(codec, byteBufferPool, bufferSize);
+        }
+    }
+}
@@ -68,6 +68,7 @@ import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.eclipse.jetty.util.component.ContainerLifeCycle;
 import org.eclipse.jetty.util.component.DumpableCollection;
+import org.eclipse.jetty.util.compression.CompressionCodec;
 import org.eclipse.jetty.util.ssl.SslContextFactory;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.eclipse.jetty.util.thread.ScheduledExecutorScheduler;
@@ -213,6 +214,11 @@ public class HttpClient extends ContainerLifeCycle
         handlers.put(new UpgradeProtocolHandler());
 
         decoderFactories.add(new GZIPContentDecoder.Factory(byteBufferPool));
+        // Codecs for other encodings, or for gzip if already added above, do not replace existing factories.
+        for (CompressionCodec codec : CompressionCodec.load())
+        {
+            decoderFactories.add(new CompressionCodecContentDecoder.Factory(codec, byteBufferPool));
+        }
 
         cookieManager = newCookieManager();
         cookieStore = cookieManager.getCookieStore();
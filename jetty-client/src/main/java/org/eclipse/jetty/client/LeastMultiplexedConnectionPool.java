@@ -0,0 +1,35 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.Pool;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+/**
+ * <p>A {@link ConnectionPool} that provides the connection with the
+ * least number of active requests among the ones that are available.</p>
+ * <p>For multiplexed protocols such as HTTP/2, this is the connection with
+ * the least number of active streams, so that the load is spread evenly
+ * across connections rather than saturating the first connection before
+ * using the others, as {@link MultiplexConnectionPool} does.</p>
+ */
+@ManagedObject
+public class LeastMultiplexedConnectionPool extends MultiplexConnectionPool
+{
+    public LeastMultiplexedConnectionPool(HttpDestination destination, int maxConnections, Callback requester, int maxMultiplex)
+    {
+        super(destination, new Pool<>(Pool.StrategyType.LEAST_MULTIPLEXED, maxConnections, false), requester, maxMultiplex);
+    }
+}
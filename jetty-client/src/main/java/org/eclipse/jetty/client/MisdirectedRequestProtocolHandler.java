@@ -0,0 +1,143 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.client;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.eclipse.jetty.client.api.Request;
+import org.eclipse.jetty.client.api.Response;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+
+/**
+ * <p>A protocol handler that handles the 421 response code of requests
+ * that were sent over a connection of another origin, as transports that
+ * coalesce connections do.</p>
+ * <p>The request is sent again, over a connection of its own origin.</p>
+ */
+public class MisdirectedRequestProtocolHandler extends Response.Listener.Adapter implements ProtocolHandler
+{
+    public static final String NAME = "misdirected";
+    /**
+     * <p>The attribute of the conversation that is {@code true} when its last request
+     * was sent over a connection of another origin, and {@code false} when its requests
+     * must not be sent over connections of other origins anymore.</p>
+     */
+    public static final String COALESCED_ATTRIBUTE = MisdirectedRequestProtocolHandler.class.getName() + ".coalesced";
+
+    private final ResponseNotifier notifier = new ResponseNotifier();
+    private final HttpClient client;
+
+    public MisdirectedRequestProtocolHandler(HttpClient client)
+    {
+        this.client = client;
+    }
+
+    @Override
+    public String getName()
+    {
+        return NAME;
+    }
+
+    @Override
+    public boolean accept(Request request, Response response)
+    {
+        return response.getStatus() == HttpStatus.MISDIRECTED_REQUEST_421 &&
+            Boolean.TRUE.equals(((HttpRequest)request).getConversation().getAttribute(COALESCED_ATTRIBUTE));
+    }
+
+    @Override
+    public Response.Listener getResponseListener()
+    {
+        return this;
+    }
+
+    @Override
+    public boolean onHeader(Response response, HttpField field)
+    {
+        // Avoid that the content is decoded, which could generate
+        // errors, since we are discarding the content anyway.
+        return field.getHeader() != HttpHeader.CONTENT_ENCODING;
+    }
+
+    @Override
+    public void onComplete(Result result)
+    {
+        HttpRequest request = (HttpRequest)result.getRequest();
+        Response response = result.getResponse();
+        if (result.isFailed())
+        {
+            fail(request, result.getRequestFailure(), response, result.getFailure());
+            return;
+        }
+
+        try
+        {
+            request.getConversation().setAttribute(COALESCED_ATTRIBUTE, false);
+            Request retry = client.copyRequest(request, request.getURI());
+
+            // Same URI, so restore what the copy drops.
+            request.getCookies().forEach(retry::cookie);
+            retry.headers(headers ->
+            {
+                for (HttpField field : request.getHeaders())
+                {
+                    if (field.getHeader() == HttpHeader.AUTHORIZATION || field.getHeader() == HttpHeader.PROXY_AUTHORIZATION)
+                        headers.add(field);
+                }
+            });
+
+            // Adjust the timeout of the new request, taking into account the
+            // timeout of the previous request and the time already elapsed.
+            long timeoutAt = request.getTimeoutAt();
+            if (timeoutAt < Long.MAX_VALUE)
+            {
+                long newTimeout = timeoutAt - System.nanoTime();
+                if (newTimeout <= 0)
+                {
+                    TimeoutException failure = new TimeoutException("Total timeout " + request.getConversation().getTimeout() + " ms elapsed");
+                    fail(request, failure, response, failure);
+                    return;
+                }
+                retry.timeout(newTimeout, TimeUnit.NANOSECONDS);
+            }
+
+            retry.onRequestBegin(r ->
+            {
+                Throwable cause = request.getAbortCause();
+                if (cause != null)
+                    r.abort(cause);
+            });
+
+            retry.send(null);
+        }
+        catch (Throwable x)
+        {
+            fail(request, x, response, x);
+        }
+    }
+
+    private void fail(HttpRequest request, Throwable requestFailure, Response response, Throwable responseFailure)
+    {
+        HttpConversation conversation = request.getConversation();
+        conversation.updateResponseListeners(null);
+        List<Response.ResponseListener> listeners = conversation.getResponseListeners();
+        notifier.notifyFailure(listeners, response, responseFailure);
+        notifier.notifyComplete(listeners, new Result(request, requestFailure, response, responseFailure));
+    }
+}
@@ -82,6 +82,8 @@ public class GCloudSessionDataStoreFactory extends AbstractSessionDataStoreFacto
         ds.setGracePeriodSec(getGracePeriodSec());
         ds.setNamespace(getNamespace());
         ds.setSavePeriodSec(getSavePeriodSec());
+        if (getSerializer() != null)
+            ds.setSerializer(getSerializer());
         ds.setEntityDataModel(getEntityDataModel());
         return ds;
     }
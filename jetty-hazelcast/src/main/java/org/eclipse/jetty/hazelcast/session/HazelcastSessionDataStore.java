@@ -16,13 +16,21 @@ package org.eclipse.jetty.hazelcast.session;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 import com.hazelcast.config.IndexConfig;
 import com.hazelcast.config.IndexType;
+import com.hazelcast.core.EntryEvent;
 import com.hazelcast.map.IMap;
+import com.hazelcast.map.listener.EntryEvictedListener;
+import com.hazelcast.map.listener.EntryExpiredListener;
+import com.hazelcast.map.listener.EntryRemovedListener;
+import com.hazelcast.map.listener.EntryUpdatedListener;
 import com.hazelcast.query.Predicate;
 import com.hazelcast.query.PredicateBuilder;
 import com.hazelcast.query.PredicateBuilder.EntryObject;
@@ -32,6 +40,7 @@ import org.eclipse.jetty.server.session.SessionContext;
 import org.eclipse.jetty.server.session.SessionData;
 import org.eclipse.jetty.server.session.SessionDataStore;
 import org.eclipse.jetty.server.session.UnreadableSessionDataException;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,10 +59,74 @@ public class HazelcastSessionDataStore extends AbstractSessionDataStore
 
     private boolean _useQueries;
 
+    private boolean _invalidationEnabled;
+
+    private final List<InvalidationListener> _invalidationListeners = new CopyOnWriteArrayList<>();
+
+    private UUID _entryListenerId;
+
     public HazelcastSessionDataStore()
     {
     }
 
+    /**
+     * Control whether or not to listen to the changes made to
+     * the sessions by other nodes, to notify the
+     * {@link InvalidationListener}s, for example the near-cache
+     * of a {@link org.eclipse.jetty.server.session.CachingSessionDataStore}.
+     *
+     * Changes made by other members are notified. If this jetty
+     * instance is a hazelcast client, the changes it makes itself
+     * are notified too.
+     *
+     * @param invalidationEnabled true to notify the changes made by
+     * other nodes
+     */
+    public void setInvalidationEnabled(boolean invalidationEnabled)
+    {
+        if (isStarted())
+            throw new IllegalStateException("Already started");
+        _invalidationEnabled = invalidationEnabled;
+    }
+
+    @ManagedAttribute(value = "does store notify sessions changed by other nodes", readonly = true)
+    public boolean isInvalidationEnabled()
+    {
+        return _invalidationEnabled;
+    }
+
+    @Override
+    public boolean addInvalidationListener(InvalidationListener listener)
+    {
+        if (!isInvalidationEnabled())
+            return false;
+        _invalidationListeners.add(listener);
+        return true;
+    }
+
+    @Override
+    public void removeInvalidationListener(InvalidationListener listener)
+    {
+        _invalidationListeners.remove(listener);
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        super.doStart();
+        if (isInvalidationEnabled())
+            _entryListenerId = sessionDataMap.addEntryListener(new InvalidationEntryListener(), false);
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        if (_entryListenerId != null)
+            sessionDataMap.removeEntryListener(_entryListenerId);
+        _entryListenerId = null;
+        super.doStop();
+    }
+
     /**
      * Control whether or not to execute queries to find
      * expired sessions - ie sessions for this context 
@@ -277,4 +350,56 @@ public class HazelcastSessionDataStore extends AbstractSessionDataStore
     {
         return _context.getCanonicalContextPath() + "_" + _context.getVhost() + "_" + id;
     }
+
+    /**
+     * Notifies the {@link InvalidationListener}s of the sessions
+     * of this context changed or removed by other members.
+     */
+    private class InvalidationEntryListener implements EntryUpdatedListener<String, SessionData>,
+        EntryRemovedListener<String, SessionData>, EntryExpiredListener<String, SessionData>,
+        EntryEvictedListener<String, SessionData>
+    {
+        @Override
+        public void entryUpdated(EntryEvent<String, SessionData> event)
+        {
+            invalidate(event);
+        }
+
+        @Override
+        public void entryRemoved(EntryEvent<String, SessionData> event)
+        {
+            invalidate(event);
+        }
+
+        @Override
+        public void entryExpired(EntryEvent<String, SessionData> event)
+        {
+            invalidate(event);
+        }
+
+        @Override
+        public void entryEvicted(EntryEvent<String, SessionData> event)
+        {
+            invalidate(event);
+        }
+
+        private void invalidate(EntryEvent<String, SessionData> event)
+        {
+            if (event.getMember() != null && event.getMember().localMember())
+                return; //changed by this node
+
+            String prefix = getCacheKey("");
+            String key = event.getKey();
+            if (key == null || !key.startsWith(prefix))
+                return; //not a session of this context
+
+            String id = key.substring(prefix.length());
+            if (LOG.isDebugEnabled())
+                LOG.debug("Session {} changed by {}", id, event.getMember());
+            for (InvalidationListener listener : _invalidationListeners)
+            {
+                listener.onInvalidation(id);
+            }
+        }
+    }
 }
@@ -60,6 +60,18 @@ public class HazelcastSessionDataStoreFactory
 
     private String addresses;
 
+    private boolean invalidationEnabled = false;
+
+    public boolean isInvalidationEnabled()
+    {
+        return invalidationEnabled;
+    }
+
+    public void setInvalidationEnabled(boolean invalidationEnabled)
+    {
+        this.invalidationEnabled = invalidationEnabled;
+    }
+
     public boolean isUseQueries()
     {
         return useQueries;
@@ -151,6 +163,7 @@ public class HazelcastSessionDataStoreFactory
         hazelcastSessionDataStore.setGracePeriodSec(getGracePeriodSec());
         hazelcastSessionDataStore.setSavePeriodSec(getSavePeriodSec());
         hazelcastSessionDataStore.setUseQueries(isUseQueries());
+        hazelcastSessionDataStore.setInvalidationEnabled(isInvalidationEnabled());
         return hazelcastSessionDataStore;
     }
 
@@ -0,0 +1,174 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.client;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.AdaptiveFlowControlStrategy;
+import org.eclipse.jetty.http2.FlowControlStrategy;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.api.server.ServerSessionListener;
+import org.eclipse.jetty.http2.frames.DataFrame;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.frames.PingFrame;
+import org.eclipse.jetty.http2.frames.SettingsFrame;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.FuturePromise;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdaptiveFlowControlStrategyTest extends AbstractTest
+{
+    private final AtomicInteger serverInitialStreamWindow = new AtomicInteger();
+
+    private void startServer(int contentLength) throws Exception
+    {
+        byte[] data = new byte[contentLength];
+        start(new ServerSessionListener.Adapter()
+        {
+            @Override
+            public void onSettings(Session session, SettingsFrame frame)
+            {
+                Integer initialWindow = frame.getSettings().get(SettingsFrame.INITIAL_WINDOW_SIZE);
+                if (initialWindow != null)
+                    serverInitialStreamWindow.set(initialWindow);
+            }
+
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame requestFrame)
+            {
+                MetaData.Response metaData = new MetaData.Response(HttpVersion.HTTP_2, 200, HttpFields.EMPTY);
+                HeadersFrame responseFrame = new HeadersFrame(stream.getId(), metaData, null, false);
+                Callback.Completable completable = new Callback.Completable();
+                stream.headers(responseFrame, completable);
+                completable.thenRun(() -> stream.data(new DataFrame(stream.getId(), ByteBuffer.wrap(data), true), Callback.NOOP));
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testWindowsGrowAndAreCapped() throws Exception
+    {
+        int contentLength = 8 * 1024 * 1024;
+        startServer(contentLength);
+
+        int maxWindow = 1024 * 1024;
+        AtomicReference<AdaptiveFlowControlStrategy> strategyRef = new AtomicReference<>();
+        client.setFlowControlStrategyFactory(() ->
+        {
+            AdaptiveFlowControlStrategy strategy = new AdaptiveFlowControlStrategy();
+            strategy.setProbeInterval(0);
+            strategy.setMaxStreamRecvWindow(maxWindow);
+            strategy.setMaxSessionRecvWindow(maxWindow);
+            strategyRef.set(strategy);
+            return strategy;
+        });
+
+        AtomicInteger pings = new AtomicInteger();
+        Session session = newClient(new Session.Listener.Adapter()
+        {
+            @Override
+            public void onPing(Session session, PingFrame frame)
+            {
+                pings.incrementAndGet();
+            }
+        });
+
+        AtomicInteger received = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(1);
+        MetaData.Request metaData = newRequest("GET", HttpFields.EMPTY);
+        session.newStream(new HeadersFrame(metaData, null, true), new FuturePromise<>(), new Stream.Listener.Adapter()
+        {
+            @Override
+            public void onData(Stream stream, DataFrame frame, Callback callback)
+            {
+                received.addAndGet(frame.remaining());
+                callback.succeeded();
+                if (frame.isEndStream())
+                    latch.countDown();
+            }
+        });
+
+        assertTrue(latch.await(15, TimeUnit.SECONDS));
+        assertEquals(contentLength, received.get());
+
+        AdaptiveFlowControlStrategy strategy = strategyRef.get();
+        assertThat(strategy.getProbes(), greaterThan(0L));
+        assertThat(strategy.getRoundTripTime(), greaterThan(0L));
+        assertEquals(0, pings.get());
+
+        // The windows must have grown, but not beyond the max.
+        int streamWindow = strategy.getStreamRecvWindow();
+        assertThat(streamWindow, greaterThan(FlowControlStrategy.DEFAULT_WINDOW_SIZE));
+        assertThat(streamWindow, lessThanOrEqualTo(maxWindow));
+        int sessionWindow = strategy.getSessionRecvWindow();
+        assertThat(sessionWindow, greaterThan(FlowControlStrategy.DEFAULT_WINDOW_SIZE));
+        assertThat(sessionWindow, lessThanOrEqualTo(maxWindow));
+
+        // The server must have been told of the new stream window with a SETTINGS frame.
+        assertEquals(streamWindow, serverInitialStreamWindow.get());
+    }
+
+    @Test
+    public void testWindowsDoNotGrowWhenApplicationDoesNotConsume() throws Exception
+    {
+        startServer(4 * 1024 * 1024);
+
+        AtomicReference<AdaptiveFlowControlStrategy> strategyRef = new AtomicReference<>();
+        client.setFlowControlStrategyFactory(() ->
+        {
+            AdaptiveFlowControlStrategy strategy = new AdaptiveFlowControlStrategy();
+            strategy.setProbeInterval(0);
+            strategyRef.set(strategy);
+            return strategy;
+        });
+
+        Session session = newClient(new Session.Listener.Adapter());
+
+        CountDownLatch latch = new CountDownLatch(1);
+        MetaData.Request metaData = newRequest("GET", HttpFields.EMPTY);
+        session.newStream(new HeadersFrame(metaData, null, true), new FuturePromise<>(), new Stream.Listener.Adapter()
+        {
+            @Override
+            public void onData(Stream stream, DataFrame frame, Callback callback)
+            {
+                // Do not consume the data.
+                latch.countDown();
+            }
+        });
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        // Wait for the probe to complete.
+        Thread.sleep(1000);
+
+        AdaptiveFlowControlStrategy strategy = strategyRef.get();
+        assertThat(strategy.getProbes(), greaterThan(0L));
+        assertEquals(FlowControlStrategy.DEFAULT_WINDOW_SIZE, strategy.getStreamRecvWindow());
+        assertEquals(FlowControlStrategy.DEFAULT_WINDOW_SIZE, strategy.getSessionRecvWindow());
+    }
+}
@@ -0,0 +1,124 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.client;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.frames.DataFrame;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.frames.PushPromiseFrame;
+import org.eclipse.jetty.http2.server.CacheDigest;
+import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.Promise;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PushDigestTest extends AbstractTest
+{
+    private static final String PRIMARY = "/primary.html";
+    private static final String SECONDARY = "/secondary.css";
+
+    private void startWithPushDigest() throws Exception
+    {
+        HTTP2CServerConnectionFactory connectionFactory = new HTTP2CServerConnectionFactory(new HttpConfiguration());
+        connectionFactory.setPushDigestEnabled(true);
+        prepareServer(connectionFactory);
+        ServletContextHandler context = new ServletContextHandler(server, "/", true, false);
+        context.addServlet(new ServletHolder(new HttpServlet()
+        {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException
+            {
+                if (request.getRequestURI().endsWith(PRIMARY))
+                    request.newPushBuilder().path(servletPath + SECONDARY).push();
+                response.getOutputStream().print(request.getRequestURI());
+            }
+        }), servletPath + "/*");
+        server.start();
+
+        prepareClient();
+        client.start();
+    }
+
+    private int requestPrimary(Session session, HttpFields fields) throws Exception
+    {
+        AtomicInteger pushes = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(1);
+        MetaData.Request request = newRequest("GET", PRIMARY, fields);
+        session.newStream(new HeadersFrame(request, null, true), new Promise.Adapter<>(), new Stream.Listener.Adapter()
+        {
+            @Override
+            public void onData(Stream stream, DataFrame frame, Callback callback)
+            {
+                callback.succeeded();
+                if (frame.isEndStream())
+                    latch.countDown();
+            }
+
+            @Override
+            public Stream.Listener onPush(Stream stream, PushPromiseFrame frame)
+            {
+                pushes.incrementAndGet();
+                return null;
+            }
+        });
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        return pushes.get();
+    }
+
+    @Test
+    public void testResourceIsPushedOncePerSession() throws Exception
+    {
+        startWithPushDigest();
+
+        Session session = newClient(new Session.Listener.Adapter());
+        assertEquals(1, requestPrimary(session, HttpFields.EMPTY));
+        // The secondary resource has already been pushed on this session.
+        assertEquals(0, requestPrimary(session, HttpFields.EMPTY));
+
+        // A different session gets the push.
+        Session session2 = newClient(new Session.Listener.Adapter());
+        assertEquals(1, requestPrimary(session2, HttpFields.EMPTY));
+    }
+
+    @Test
+    public void testResourceInCacheDigestIsNotPushed() throws Exception
+    {
+        startWithPushDigest();
+
+        String secondaryURI = "http://localhost:" + connector.getLocalPort() + servletPath + SECONDARY;
+        HttpFields fields = HttpFields.build()
+            .put(CacheDigest.HEADER, CacheDigest.encode(List.of(secondaryURI), 7) + "; complete");
+
+        Session session = newClient(new Session.Listener.Adapter());
+        assertEquals(0, requestPrimary(session, fields));
+    }
+}
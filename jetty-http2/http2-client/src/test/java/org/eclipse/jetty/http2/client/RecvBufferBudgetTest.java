@@ -0,0 +1,124 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.client;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.HTTP2Session;
+import org.eclipse.jetty.http2.RecvBufferBudget;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.api.server.ServerSessionListener;
+import org.eclipse.jetty.http2.frames.DataFrame;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.FuturePromise;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RecvBufferBudgetTest extends AbstractTest
+{
+    @Test
+    public void testExhaustedBudgetStallsOtherSessionsUntilDataIsConsumed() throws Exception
+    {
+        int budgetBytes = 32 * 1024;
+        int heldBytes = 48 * 1024;
+        int consumedBytes = 128 * 1024;
+        RecvBufferBudget budget = new RecvBufferBudget(budgetBytes);
+        List<Callback> heldCallbacks = new CopyOnWriteArrayList<>();
+        AtomicReference<HTTP2Session> heldSessionRef = new AtomicReference<>();
+        AtomicInteger held = new AtomicInteger();
+        CountDownLatch heldLatch = new CountDownLatch(1);
+        CountDownLatch consumedLatch = new CountDownLatch(1);
+        start(new ServerSessionListener.Adapter()
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+            {
+                MetaData.Request request = (MetaData.Request)frame.getMetaData();
+                if (request.getURIString().endsWith("/hold"))
+                {
+                    heldSessionRef.set((HTTP2Session)stream.getSession());
+                    return new Stream.Listener.Adapter()
+                    {
+                        @Override
+                        public void onData(Stream stream, DataFrame frame, Callback callback)
+                        {
+                            // Do not consume the data.
+                            heldCallbacks.add(callback);
+                            if (held.addAndGet(frame.remaining()) == heldBytes)
+                                heldLatch.countDown();
+                        }
+                    };
+                }
+                return new Stream.Listener.Adapter()
+                {
+                    @Override
+                    public void onData(Stream stream, DataFrame frame, Callback callback)
+                    {
+                        callback.succeeded();
+                        if (frame.isEndStream())
+                            consumedLatch.countDown();
+                    }
+                };
+            }
+        }, connectionFactory -> connectionFactory.setRecvBufferBudget(budget));
+
+        Session session1 = newClient(new Session.Listener.Adapter());
+        MetaData.Request request1 = newRequest("POST", "/hold", HttpFields.EMPTY);
+        FuturePromise<Stream> promise1 = new FuturePromise<>();
+        session1.newStream(new HeadersFrame(request1, null, false), promise1, new Stream.Listener.Adapter());
+        Stream stream1 = promise1.get(5, TimeUnit.SECONDS);
+        stream1.data(new DataFrame(stream1.getId(), ByteBuffer.allocate(heldBytes), false), Callback.NOOP);
+
+        assertTrue(heldLatch.await(5, TimeUnit.SECONDS));
+        assertEquals(heldBytes, budget.getBufferedBytes());
+        assertEquals(heldBytes, heldSessionRef.get().getBufferedDataBytes());
+        assertTrue(budget.isExhausted());
+
+        // The second session consumes the data, but the budget
+        // is exhausted so its session window is not replenished.
+        Session session2 = newClient(new Session.Listener.Adapter());
+        MetaData.Request request2 = newRequest("POST", "/consume", HttpFields.EMPTY);
+        FuturePromise<Stream> promise2 = new FuturePromise<>();
+        session2.newStream(new HeadersFrame(request2, null, false), promise2, new Stream.Listener.Adapter());
+        Stream stream2 = promise2.get(5, TimeUnit.SECONDS);
+        stream2.data(new DataFrame(stream2.getId(), ByteBuffer.allocate(consumedBytes), true), Callback.NOOP);
+
+        assertFalse(consumedLatch.await(1, TimeUnit.SECONDS));
+        assertThat(budget.getThrottles(), greaterThan(0L));
+        assertEquals(1, budget.getThrottledSessions());
+
+        // Consume the held data, the second session must be resumed.
+        heldCallbacks.forEach(Callback::succeeded);
+
+        assertTrue(consumedLatch.await(5, TimeUnit.SECONDS));
+        assertEquals(0, budget.getThrottledSessions());
+        assertEquals(0, budget.getBufferedBytes());
+        assertEquals(0, heldSessionRef.get().getBufferedDataBytes());
+    }
+}
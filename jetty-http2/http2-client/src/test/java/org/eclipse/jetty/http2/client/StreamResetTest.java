@@ -59,12 +59,14 @@ import org.eclipse.jetty.http2.api.Stream;
 import org.eclipse.jetty.http2.api.server.ServerSessionListener;
 import org.eclipse.jetty.http2.frames.DataFrame;
 import org.eclipse.jetty.http2.frames.Frame;
+import org.eclipse.jetty.http2.frames.GoAwayFrame;
 import org.eclipse.jetty.http2.frames.HeadersFrame;
 import org.eclipse.jetty.http2.frames.PrefaceFrame;
 import org.eclipse.jetty.http2.frames.ResetFrame;
 import org.eclipse.jetty.http2.frames.SettingsFrame;
 import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
 import org.eclipse.jetty.http2.generator.Generator;
+import org.eclipse.jetty.http2.parser.TokenBucketRateControl;
 import org.eclipse.jetty.http2.server.AbstractHTTP2ServerConnectionFactory;
 import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
 import org.eclipse.jetty.io.AbstractEndPoint;
@@ -84,6 +86,7 @@ import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.FutureCallback;
 import org.eclipse.jetty.util.FuturePromise;
 import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.Promise;
 import org.eclipse.jetty.util.thread.QueuedThreadPool;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.Test;
@@ -96,6 +99,88 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class StreamResetTest extends AbstractTest
 {
+    @Test
+    public void testResetsOfOpenStreamsAreRateControlled() throws Exception
+    {
+        start(new ServerSessionListener.Adapter(), factory -> factory.setRateControlFactory(new TokenBucketRateControl.Factory(1, 4)));
+
+        CountDownLatch closeLatch = new CountDownLatch(1);
+        Session client = newClient(new Session.Listener.Adapter()
+        {
+            @Override
+            public void onClose(Session session, GoAwayFrame frame)
+            {
+                if (frame.getError() == ErrorCode.ENHANCE_YOUR_CALM_ERROR.code)
+                    closeLatch.countDown();
+            }
+        });
+
+        List<Stream> streams = new ArrayList<>();
+        for (int i = 0; i < 8; ++i)
+        {
+            FuturePromise<Stream> promise = new FuturePromise<>();
+            client.newStream(new HeadersFrame(newRequest("GET", HttpFields.EMPTY), null, false), promise, new Stream.Listener.Adapter());
+            streams.add(promise.get(5, TimeUnit.SECONDS));
+        }
+        // Reset the streams while they are still open on the server.
+        for (Stream stream : streams)
+        {
+            stream.reset(new ResetFrame(stream.getId(), ErrorCode.CANCEL_STREAM_ERROR.code), Callback.NOOP);
+        }
+
+        assertTrue(closeLatch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testResetsOfClosedStreamsAreNotRateControlled() throws Exception
+    {
+        start(new ServerSessionListener.Adapter()
+        {
+            @Override
+            public Stream.Listener onNewStream(Stream stream, HeadersFrame frame)
+            {
+                MetaData.Response response = new MetaData.Response(HttpVersion.HTTP_2, HttpStatus.OK_200, HttpFields.EMPTY);
+                stream.headers(new HeadersFrame(stream.getId(), response, null, true), Callback.NOOP);
+                return null;
+            }
+        }, factory -> factory.setRateControlFactory(new TokenBucketRateControl.Factory(1, 4)));
+
+        Session client = newClient(new Session.Listener.Adapter());
+        for (int i = 0; i < 8; ++i)
+        {
+            CountDownLatch responseLatch = new CountDownLatch(1);
+            FuturePromise<Stream> promise = new FuturePromise<>();
+            client.newStream(new HeadersFrame(newRequest("GET", HttpFields.EMPTY), null, true), promise, new Stream.Listener.Adapter()
+            {
+                @Override
+                public void onHeaders(Stream stream, HeadersFrame frame)
+                {
+                    if (frame.isEndStream())
+                        responseLatch.countDown();
+                }
+            });
+            Stream stream = promise.get(5, TimeUnit.SECONDS);
+            assertTrue(responseLatch.await(5, TimeUnit.SECONDS));
+            // Cancel the stream after it completed, as browsers do when they drop prefetches.
+            FutureCallback resetCallback = new FutureCallback();
+            stream.reset(new ResetFrame(stream.getId(), ErrorCode.CANCEL_STREAM_ERROR.code), resetCallback);
+            resetCallback.get(5, TimeUnit.SECONDS);
+        }
+
+        // The connection is still usable.
+        CountDownLatch responseLatch = new CountDownLatch(1);
+        client.newStream(new HeadersFrame(newRequest("GET", HttpFields.EMPTY), null, true), new Promise.Adapter<>(), new Stream.Listener.Adapter()
+        {
+            @Override
+            public void onHeaders(Stream stream, HeadersFrame frame)
+            {
+                responseLatch.countDown();
+            }
+        });
+        assertTrue(responseLatch.await(5, TimeUnit.SECONDS));
+        assertFalse(client.isClosed());
+    }
+
     @Test
     public void testStreamSendingResetIsRemoved() throws Exception
     {
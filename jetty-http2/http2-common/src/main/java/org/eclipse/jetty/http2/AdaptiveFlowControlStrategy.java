@@ -0,0 +1,262 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.http2.frames.PingFrame;
+import org.eclipse.jetty.http2.frames.SettingsFrame;
+import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+/**
+ * <p>A flow control strategy that grows the receive windows based on an
+ * estimation of the bandwidth-delay product (BDP) of the connection.</p>
+ * <p>While DATA frames are being received, this strategy periodically sends
+ * a PING frame and counts the bytes received and consumed until the PING
+ * reply arrives. The time elapsed is a sample of the round-trip time (RTT)
+ * and the bytes received are a sample of the BDP.</p>
+ * <p>When the bytes received during a round-trip are close to the current
+ * stream receive window, the window is the bottleneck, so it is grown to
+ * twice the BDP sample, up to {@link #getMaxStreamRecvWindow()}; the
+ * stream windows are grown by sending a SETTINGS frame with a new
+ * {@code INITIAL_WINDOW_SIZE}, while the session window is grown by sending
+ * a WINDOW_UPDATE frame, up to {@link #getMaxSessionRecvWindow()}.</p>
+ * <p>Windows are only grown if the application consumes the data at least
+ * as fast as half the rate it is received, so that slow applications do not
+ * cause large amounts of data to be buffered.</p>
+ * <p>The replenishing of the windows as data is consumed is performed as in
+ * {@link BufferingFlowControlStrategy}.</p>
+ */
+@ManagedObject
+public class AdaptiveFlowControlStrategy extends BufferingFlowControlStrategy
+{
+    // The high bits of the PING payload identify the PINGs sent by this strategy.
+    private static final long PING_MARKER = 0x4244505F00000000L;
+    private static final long PING_MARKER_MASK = 0xFFFFFFFF00000000L;
+    private static final long PROBE_TIMEOUT = TimeUnit.SECONDS.toNanos(30);
+
+    private final AtomicBoolean probing = new AtomicBoolean();
+    private final AtomicLong probeBytesReceived = new AtomicLong();
+    private final AtomicLong probeBytesConsumed = new AtomicLong();
+    private final AtomicLong probes = new AtomicLong();
+    private volatile long probeSequence;
+    private volatile long probeStartNanos;
+    private volatile long lastProbeNanos = System.nanoTime();
+    private volatile long roundTripTime;
+    private volatile long bdp;
+    private volatile long maxBandwidth;
+    private int maxStreamRecvWindow = 16 * 1024 * 1024;
+    private int maxSessionRecvWindow = 64 * 1024 * 1024;
+    private long probeInterval = 200;
+
+    public AdaptiveFlowControlStrategy()
+    {
+        this(DEFAULT_WINDOW_SIZE);
+    }
+
+    public AdaptiveFlowControlStrategy(int initialStreamSendWindow)
+    {
+        super(initialStreamSendWindow, 0.5F);
+    }
+
+    @ManagedAttribute("The max size of stream's flow control receive window")
+    public int getMaxStreamRecvWindow()
+    {
+        return maxStreamRecvWindow;
+    }
+
+    public void setMaxStreamRecvWindow(int maxStreamRecvWindow)
+    {
+        this.maxStreamRecvWindow = maxStreamRecvWindow;
+    }
+
+    @ManagedAttribute("The max size of session's flow control receive window")
+    public int getMaxSessionRecvWindow()
+    {
+        return maxSessionRecvWindow;
+    }
+
+    public void setMaxSessionRecvWindow(int maxSessionRecvWindow)
+    {
+        this.maxSessionRecvWindow = maxSessionRecvWindow;
+    }
+
+    @ManagedAttribute("The min interval in milliseconds between bandwidth-delay product probes")
+    public long getProbeInterval()
+    {
+        return probeInterval;
+    }
+
+    public void setProbeInterval(long probeInterval)
+    {
+        this.probeInterval = probeInterval;
+    }
+
+    @Override
+    @ManagedAttribute(value = "The current size of session's flow control receive window", readonly = true)
+    public int getSessionRecvWindow()
+    {
+        return super.getSessionRecvWindow();
+    }
+
+    @ManagedAttribute(value = "The current size of stream's flow control receive window", readonly = true)
+    public int getStreamRecvWindow()
+    {
+        return getInitialStreamRecvWindow();
+    }
+
+    @ManagedAttribute(value = "The smoothed round-trip time in microseconds", readonly = true)
+    public long getRoundTripTime()
+    {
+        return TimeUnit.NANOSECONDS.toMicros(roundTripTime);
+    }
+
+    @ManagedAttribute(value = "The last bandwidth-delay product sample in bytes", readonly = true)
+    public long getBandwidthDelayProduct()
+    {
+        return bdp;
+    }
+
+    @ManagedAttribute(value = "The number of bandwidth-delay product probes", readonly = true)
+    public long getProbes()
+    {
+        return probes.get();
+    }
+
+    @Override
+    public void onDataReceived(ISession session, IStream stream, int length)
+    {
+        super.onDataReceived(session, stream, length);
+
+        long now = System.nanoTime();
+        if (probing.get())
+        {
+            if (now - probeStartNanos < PROBE_TIMEOUT)
+            {
+                probeBytesReceived.addAndGet(length);
+                return;
+            }
+            // The PING reply was lost, start a new probe.
+            probing.set(false);
+        }
+
+        if (now - lastProbeNanos < TimeUnit.MILLISECONDS.toNanos(getProbeInterval()))
+            return;
+
+        if (probing.compareAndSet(false, true))
+        {
+            probeBytesReceived.set(length);
+            probeBytesConsumed.set(0);
+            long sequence = ++probeSequence;
+            probeStartNanos = now;
+            lastProbeNanos = now;
+            probes.incrementAndGet();
+            PingFrame ping = new PingFrame(PING_MARKER | (sequence & ~PING_MARKER_MASK), false);
+            if (LOG.isDebugEnabled())
+                LOG.debug("Probing bandwidth-delay product with {} for {}", ping, session);
+            session.ping(ping, Callback.from(() -> {}, x -> probing.set(false)));
+        }
+    }
+
+    @Override
+    public void onDataConsumed(ISession session, IStream stream, int length)
+    {
+        if (length > 0 && probing.get())
+            probeBytesConsumed.addAndGet(length);
+        super.onDataConsumed(session, stream, length);
+    }
+
+    @Override
+    public boolean onPingReply(ISession session, PingFrame frame)
+    {
+        long payload = frame.getPayloadAsLong();
+        if ((payload & PING_MARKER_MASK) != PING_MARKER)
+            return false;
+        if ((payload & ~PING_MARKER_MASK) != (probeSequence & ~PING_MARKER_MASK))
+            return true;
+        if (!probing.get())
+            return true;
+
+        long rttSample = Math.max(1, System.nanoTime() - probeStartNanos);
+        long bdpSample = probeBytesReceived.get();
+        long consumed = probeBytesConsumed.get();
+        lastProbeNanos = System.nanoTime();
+        probing.set(false);
+
+        long rtt = roundTripTime;
+        roundTripTime = rtt == 0 ? rttSample : (7 * rtt + rttSample) / 8;
+        bdp = bdpSample;
+
+        // Bytes per second.
+        long bandwidth = bdpSample * TimeUnit.SECONDS.toNanos(1) / rttSample;
+        if (LOG.isDebugEnabled())
+            LOG.debug("Probed bandwidth-delay product, rtt={}us bdp={} consumed={} bandwidth={}B/s for {}",
+                TimeUnit.NANOSECONDS.toMicros(rttSample), bdpSample, consumed, bandwidth, session);
+
+        // Do not grow the windows if the application is slow to consume the data.
+        if (consumed < bdpSample / 2)
+            return true;
+
+        int streamWindow = getInitialStreamRecvWindow();
+        if (bdpSample * 3 >= streamWindow * 2L && bandwidth > maxBandwidth)
+        {
+            maxBandwidth = bandwidth;
+            growWindows(session, (int)Math.min(Integer.MAX_VALUE, 2 * bdpSample));
+        }
+        return true;
+    }
+
+    private void growWindows(ISession session, int window)
+    {
+        int streamWindow = getInitialStreamRecvWindow();
+        int newStreamWindow = Math.min(window, getMaxStreamRecvWindow());
+        if (newStreamWindow > streamWindow)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Growing stream recv window {} -> {} for {}", streamWindow, newStreamWindow, session);
+            session.settings(new SettingsFrame(Map.of(SettingsFrame.INITIAL_WINDOW_SIZE, newStreamWindow), false), Callback.NOOP);
+        }
+
+        int sessionWindow = getSessionRecvWindow();
+        int newSessionWindow = Math.min(Math.max(window, newStreamWindow), getMaxSessionRecvWindow());
+        if (newSessionWindow > sessionWindow)
+        {
+            int delta = newSessionWindow - sessionWindow;
+            session.updateRecvWindow(delta);
+            if (LOG.isDebugEnabled())
+                LOG.debug("Growing session recv window {} -> {} for {}", sessionWindow, newSessionWindow, session);
+            sendWindowUpdate(null, session, new WindowUpdateFrame(0, delta));
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[streamWindow=%d,sessionWindow=%d,rtt=%dus,bdp=%d,sessionStallTime=%dms,streamsStallTime=%dms]",
+            getClass().getSimpleName(),
+            hashCode(),
+            getInitialStreamRecvWindow(),
+            getSessionRecvWindow(),
+            getRoundTripTime(),
+            getBandwidthDelayProduct(),
+            getSessionStallTime(),
+            getStreamsStallTime());
+    }
+}
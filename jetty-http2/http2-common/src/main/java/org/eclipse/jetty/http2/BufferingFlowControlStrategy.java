@@ -16,6 +16,7 @@ package org.eclipse.jetty.http2;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
@@ -56,6 +57,11 @@ import org.eclipse.jetty.util.annotation.ManagedObject;
  * number of window control frames emitted, but may cause the sender to stall,
  * waiting for the window control frame.</p>
  * <p>The default value is {@code bufferRatio=0.5}.</p>
+ * <p>If the session has a {@link RecvBufferBudget} and the budget is exhausted,
+ * the window control frames for the session are withheld until the budget
+ * resumes the session, so that the session window shrinks as data arrives
+ * and the remote peer is eventually stalled. Stream windows are still
+ * replenished, but they are bounded by the session window.</p>
  */
 @ManagedObject
 public class BufferingFlowControlStrategy extends AbstractFlowControlStrategy
@@ -63,6 +69,7 @@ public class BufferingFlowControlStrategy extends AbstractFlowControlStrategy
     private final AtomicInteger maxSessionRecvWindow = new AtomicInteger(DEFAULT_WINDOW_SIZE);
     private final AtomicInteger sessionLevel = new AtomicInteger();
     private final Map<IStream, AtomicInteger> streamLevels = new ConcurrentHashMap<>();
+    private final AtomicBoolean throttled = new AtomicBoolean();
     private float bufferRatio;
 
     public BufferingFlowControlStrategy(float bufferRatio)
@@ -87,6 +94,11 @@ public class BufferingFlowControlStrategy extends AbstractFlowControlStrategy
         this.bufferRatio = bufferRatio;
     }
 
+    protected int getSessionRecvWindow()
+    {
+        return maxSessionRecvWindow.get();
+    }
+
     @Override
     public void onStreamCreated(IStream stream)
     {
@@ -113,7 +125,15 @@ public class BufferingFlowControlStrategy extends AbstractFlowControlStrategy
         int maxLevel = (int)(maxSessionRecvWindow.get() * ratio);
         if (level > maxLevel)
         {
-            if (sessionLevel.compareAndSet(level, 0))
+            RecvBufferBudget budget = session.getRecvBufferBudget();
+            if (budget != null && budget.isExhausted())
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Data consumed, {} bytes, withholding session recv window update {}/{} for {}", length, level, maxLevel, session);
+                if (throttled.compareAndSet(false, true))
+                    budget.throttle(new Resumer(session));
+            }
+            else if (sessionLevel.compareAndSet(level, 0))
             {
                 session.updateRecvWindow(level);
                 if (LOG.isDebugEnabled())
@@ -164,6 +184,15 @@ public class BufferingFlowControlStrategy extends AbstractFlowControlStrategy
         }
     }
 
+    /**
+     * @return whether the session window updates are withheld because the {@link RecvBufferBudget} is exhausted
+     */
+    @ManagedAttribute(value = "Whether the session window updates are withheld", readonly = true)
+    public boolean isThrottled()
+    {
+        return throttled.get();
+    }
+
     protected void sendWindowUpdate(IStream stream, ISession session, WindowUpdateFrame frame)
     {
         session.frames(stream, List.of(frame), Callback.NOOP);
@@ -211,12 +240,43 @@ public class BufferingFlowControlStrategy extends AbstractFlowControlStrategy
     @Override
     public String toString()
     {
-        return String.format("%s@%x[ratio=%.2f,sessionLevel=%s,sessionStallTime=%dms,streamsStallTime=%dms]",
+        return String.format("%s@%x[ratio=%.2f,sessionLevel=%s,throttled=%b,sessionStallTime=%dms,streamsStallTime=%dms]",
             getClass().getSimpleName(),
             hashCode(),
             bufferRatio,
             sessionLevel,
+            isThrottled(),
             getSessionStallTime(),
             getStreamsStallTime());
     }
+
+    private class Resumer implements Runnable
+    {
+        private final ISession session;
+
+        private Resumer(ISession session)
+        {
+            this.session = session;
+        }
+
+        @Override
+        public void run()
+        {
+            throttled.set(false);
+            int level = sessionLevel.getAndSet(0);
+            if (level > 0)
+            {
+                session.updateRecvWindow(level);
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Resumed, updated session recv window by {} for {}", level, session);
+                sendWindowUpdate(null, session, new WindowUpdateFrame(0, level));
+            }
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s@%x[%s]", getClass().getSimpleName(), hashCode(), session);
+        }
+    }
 }
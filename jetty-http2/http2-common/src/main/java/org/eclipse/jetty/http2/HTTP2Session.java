@@ -56,6 +56,7 @@ import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
 import org.eclipse.jetty.http2.generator.Generator;
 import org.eclipse.jetty.http2.hpack.HpackException;
 import org.eclipse.jetty.http2.parser.Parser;
+import org.eclipse.jetty.http2.parser.RateControl;
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.CyclicTimeouts;
 import org.eclipse.jetty.io.EndPoint;
@@ -91,6 +92,7 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
     private final AtomicInteger sendWindow = new AtomicInteger();
     private final AtomicInteger recvWindow = new AtomicInteger();
     private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong bufferedDataBytes = new AtomicLong();
     private final EndPoint endPoint;
     private final Generator generator;
     private final Session.Listener listener;
@@ -104,6 +106,8 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
     private int writeThreshold;
     private boolean pushEnabled;
     private boolean connectProtocolEnabled;
+    private RecvBufferBudget recvBufferBudget;
+    private RateControl rateControl = RateControl.NO_RATE_CONTROL;
 
     public HTTP2Session(Scheduler scheduler, EndPoint endPoint, Generator generator, Session.Listener listener, FlowControlStrategy flowControl, int initialStreamId)
     {
@@ -194,6 +198,40 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
         this.initialSessionRecvWindow = initialSessionRecvWindow;
     }
 
+    @Override
+    public RecvBufferBudget getRecvBufferBudget()
+    {
+        return recvBufferBudget;
+    }
+
+    public void setRecvBufferBudget(RecvBufferBudget recvBufferBudget)
+    {
+        this.recvBufferBudget = recvBufferBudget;
+    }
+
+    public RateControl getRateControl()
+    {
+        return rateControl;
+    }
+
+    /**
+     * <p>Sets the rate control of the RST_STREAM frames that reset streams still open.</p>
+     * <p>Resets of streams that are already closed, such as cancellations that
+     * crossed the end of the response, are not rate controlled.</p>
+     *
+     * @param rateControl the rate control, usually the one of the parser of this session
+     */
+    public void setRateControl(RateControl rateControl)
+    {
+        this.rateControl = rateControl == null ? RateControl.NO_RATE_CONTROL : rateControl;
+    }
+
+    @ManagedAttribute(value = "The number of DATA bytes received but not yet consumed", readonly = true)
+    public long getBufferedDataBytes()
+    {
+        return bufferedDataBytes.get();
+    }
+
     @ManagedAttribute("The number of bytes that trigger a TCP write")
     public int getWriteThreshold()
     {
@@ -257,6 +295,7 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
                 }
                 else
                 {
+                    onDataBuffered(flowControlLength);
                     stream.process(frame, new DataCallback(callback, stream, flowControlLength));
                 }
             }
@@ -275,6 +314,22 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
         }
     }
 
+    private void onDataBuffered(int length)
+    {
+        bufferedDataBytes.addAndGet(length);
+        RecvBufferBudget budget = getRecvBufferBudget();
+        if (budget != null)
+            budget.acquire(length);
+    }
+
+    private void onDataUnbuffered(int length)
+    {
+        bufferedDataBytes.addAndGet(-length);
+        RecvBufferBudget budget = getRecvBufferBudget();
+        if (budget != null)
+            budget.release(length);
+    }
+
     private boolean isStreamClosed(int streamId)
     {
         return isLocalStream(streamId) ? isLocalStreamClosed(streamId) : isRemoteStreamClosed(streamId);
@@ -315,6 +370,11 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
         IStream stream = getStream(streamId);
         if (stream != null)
         {
+            if (!rateControl.onEvent(frame))
+            {
+                onConnectionFailure(ErrorCode.ENHANCE_YOUR_CALM_ERROR.code, "invalid_rst_stream_frame_rate");
+                return;
+            }
             stream.process(frame, new OnResetCallback());
         }
         else
@@ -429,7 +489,8 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
 
         if (frame.isReply())
         {
-            notifyPing(this, frame);
+            if (!flowControl.onPingReply(this, frame))
+                notifyPing(this, frame);
         }
         else
         {
@@ -1441,6 +1502,7 @@ public abstract class HTTP2Session extends ContainerLifeCycle implements ISessio
         {
             notIdle();
             stream.notIdle();
+            onDataUnbuffered(flowControlLength);
             flowControl.onDataConsumed(HTTP2Session.this, stream, flowControlLength);
         }
     }
@@ -149,6 +149,11 @@ public interface ISession extends Session
      */
     public long getBytesWritten();
 
+    /**
+     * @return the budget for the received DATA bytes not yet consumed, shared with other sessions, or null if there is no budget
+     */
+    public RecvBufferBudget getRecvBufferBudget();
+
     /**
      * <p>Callback method invoked when a DATA frame is received.</p>
      *
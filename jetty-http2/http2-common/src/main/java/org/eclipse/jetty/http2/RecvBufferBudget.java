@@ -0,0 +1,172 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A memory budget for the DATA bytes that have been received but not yet
+ * consumed by the application, shared by multiple {@link ISession sessions}.</p>
+ * <p>Sessions {@link #acquire(int) acquire} bytes from the budget when a DATA
+ * frame is queued for the application, and {@link #release(int) release} them
+ * when the DATA frame is consumed.</p>
+ * <p>When the budget is {@link #isExhausted() exhausted}, flow control
+ * strategies such as {@link BufferingFlowControlStrategy} stop replenishing
+ * the session receive window of their sessions, so that the windows advertised
+ * to the remote peers shrink as more data arrives, and {@link #throttle(Runnable)
+ * register} to be resumed when the buffered bytes fall below the
+ * {@link #getResumeBytes() resume threshold}.</p>
+ */
+@ManagedObject
+public class RecvBufferBudget
+{
+    private static final Logger LOG = LoggerFactory.getLogger(RecvBufferBudget.class);
+
+    private final AtomicLong bufferedBytes = new AtomicLong();
+    private final AtomicLong throttles = new AtomicLong();
+    private final Queue<Runnable> throttled = new ConcurrentLinkedQueue<>();
+    private final long maxBytes;
+    private final long resumeBytes;
+
+    /**
+     * @param maxBytes the max number of buffered bytes
+     */
+    public RecvBufferBudget(long maxBytes)
+    {
+        this(maxBytes, maxBytes * 3 / 4);
+    }
+
+    /**
+     * @param maxBytes the max number of buffered bytes
+     * @param resumeBytes the number of buffered bytes below which throttled sessions are resumed
+     */
+    public RecvBufferBudget(long maxBytes, long resumeBytes)
+    {
+        if (maxBytes <= 0)
+            throw new IllegalArgumentException("Invalid max bytes " + maxBytes);
+        if (resumeBytes < 0 || resumeBytes > maxBytes)
+            throw new IllegalArgumentException("Invalid resume bytes " + resumeBytes);
+        this.maxBytes = maxBytes;
+        this.resumeBytes = resumeBytes;
+    }
+
+    @ManagedAttribute(value = "The max number of buffered bytes", readonly = true)
+    public long getMaxBytes()
+    {
+        return maxBytes;
+    }
+
+    @ManagedAttribute(value = "The number of buffered bytes below which throttled sessions are resumed", readonly = true)
+    public long getResumeBytes()
+    {
+        return resumeBytes;
+    }
+
+    @ManagedAttribute(value = "The number of bytes received but not yet consumed", readonly = true)
+    public long getBufferedBytes()
+    {
+        return bufferedBytes.get();
+    }
+
+    @ManagedAttribute(value = "The number of sessions currently throttled", readonly = true)
+    public int getThrottledSessions()
+    {
+        return throttled.size();
+    }
+
+    @ManagedAttribute(value = "The total number of times sessions have been throttled", readonly = true)
+    public long getThrottles()
+    {
+        return throttles.get();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void reset()
+    {
+        throttles.set(0);
+    }
+
+    /**
+     * @return whether the buffered bytes exceed the max bytes
+     */
+    public boolean isExhausted()
+    {
+        return bufferedBytes.get() > maxBytes;
+    }
+
+    /**
+     * <p>Accounts the given number of bytes as buffered.</p>
+     *
+     * @param length the number of bytes received
+     */
+    public void acquire(int length)
+    {
+        bufferedBytes.addAndGet(length);
+    }
+
+    /**
+     * <p>Accounts the given number of bytes as consumed, possibly
+     * resuming the throttled sessions.</p>
+     *
+     * @param length the number of bytes consumed
+     */
+    public void release(int length)
+    {
+        long buffered = bufferedBytes.addAndGet(-length);
+        if (buffered <= resumeBytes)
+        {
+            Runnable resumer;
+            while ((resumer = throttled.poll()) != null)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Resuming {}, buffered {}/{} bytes", resumer, buffered, maxBytes);
+                resumer.run();
+            }
+        }
+    }
+
+    /**
+     * <p>Registers the given {@code resumer} to be run when the buffered
+     * bytes fall below the resume threshold.</p>
+     * <p>Callers must ensure that they register at most one resumer
+     * at a time.</p>
+     *
+     * @param resumer the task that resumes a throttled session
+     */
+    public void throttle(Runnable resumer)
+    {
+        throttles.incrementAndGet();
+        throttled.offer(resumer);
+        if (LOG.isDebugEnabled())
+            LOG.debug("Throttling {}, buffered {}/{} bytes", resumer, bufferedBytes.get(), maxBytes);
+        // The bytes may have been released concurrently
+        // before the resumer was queued, so check again.
+        if (bufferedBytes.get() <= resumeBytes)
+            release(0);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[buffered=%d/%d,throttled=%d]", getClass().getSimpleName(), hashCode(), getBufferedBytes(), getMaxBytes(), getThrottledSessions());
+    }
+}
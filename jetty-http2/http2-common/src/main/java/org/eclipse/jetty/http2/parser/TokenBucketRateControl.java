@@ -0,0 +1,230 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.parser;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.http2.frames.Frame;
+import org.eclipse.jetty.http2.frames.FrameType;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>An implementation of {@link RateControl} that limits the rate of
+ * events using a token bucket.</p>
+ * <p>The bucket holds at most {@code maxBurst} tokens and is refilled at
+ * the rate of {@code maxEventsPerSecond} tokens per second; every event
+ * takes a token from the bucket, and if the bucket is empty the event
+ * exceeds the rate and {@link #onEvent(Object)} returns {@code false}.</p>
+ * <p>The bucket is represented by the theoretical time at which the next
+ * event would find the bucket full, stored in a single {@code long}, so
+ * that events are accounted without allocating, which is important when
+ * the connection is flooded with frames such as RST_STREAM (rapid reset),
+ * SETTINGS, PING, PRIORITY, empty DATA or CONTINUATION.</p>
+ */
+public class TokenBucketRateControl implements RateControl
+{
+    private static final Logger LOG = LoggerFactory.getLogger(TokenBucketRateControl.class);
+
+    private final AtomicLong nextTime;
+    private final long interval;
+    private final long burst;
+    private final Factory factory;
+
+    public TokenBucketRateControl(int maxEventsPerSecond, int maxBurst)
+    {
+        this(maxEventsPerSecond, maxBurst, null);
+    }
+
+    private TokenBucketRateControl(int maxEventsPerSecond, int maxBurst, Factory factory)
+    {
+        if (maxEventsPerSecond <= 0)
+            throw new IllegalArgumentException("Invalid max events per second " + maxEventsPerSecond);
+        if (maxBurst <= 0)
+            throw new IllegalArgumentException("Invalid max burst " + maxBurst);
+        this.interval = TimeUnit.SECONDS.toNanos(1) / maxEventsPerSecond;
+        this.burst = interval * maxBurst;
+        this.nextTime = new AtomicLong(System.nanoTime());
+        this.factory = factory;
+    }
+
+    public int getEventsPerSecond()
+    {
+        return (int)(TimeUnit.SECONDS.toNanos(1) / interval);
+    }
+
+    @Override
+    public boolean onEvent(Object event)
+    {
+        long now = System.nanoTime();
+        while (true)
+        {
+            long next = nextTime.get();
+            // If the bucket is full, start from now.
+            long newNext = (next - now < 0 ? now : next) + interval;
+            if (newNext - now > burst)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Rate exceeded by {} on {}", event, this);
+                if (factory != null)
+                    factory.onViolation(event);
+                return false;
+            }
+            if (nextTime.compareAndSet(next, newNext))
+                return true;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[rate=%d/s,burst=%d]", getClass().getSimpleName(), hashCode(), getEventsPerSecond(), burst / interval);
+    }
+
+    /**
+     * <p>A factory of {@link TokenBucketRateControl} instances that
+     * also counts the rate violations of all the instances it created,
+     * by frame type.</p>
+     */
+    @ManagedObject("A factory of token bucket rate controls")
+    public static class Factory implements RateControl.Factory
+    {
+        private final LongAdder[] violations = new LongAdder[FrameType.values().length + 1];
+        private final int maxEventsPerSecond;
+        private final int maxBurst;
+
+        public Factory(int maxEventsPerSecond)
+        {
+            this(maxEventsPerSecond, maxEventsPerSecond);
+        }
+
+        public Factory(int maxEventsPerSecond, int maxBurst)
+        {
+            this.maxEventsPerSecond = maxEventsPerSecond;
+            this.maxBurst = maxBurst;
+            for (int i = 0; i < violations.length; ++i)
+            {
+                violations[i] = new LongAdder();
+            }
+        }
+
+        @ManagedAttribute(value = "The max number of events per second", readonly = true)
+        public int getMaxEventsPerSecond()
+        {
+            return maxEventsPerSecond;
+        }
+
+        @ManagedAttribute(value = "The max number of events in a burst", readonly = true)
+        public int getMaxBurst()
+        {
+            return maxBurst;
+        }
+
+        @ManagedAttribute(value = "The total number of rate violations", readonly = true)
+        public long getViolations()
+        {
+            long result = 0;
+            for (LongAdder adder : violations)
+            {
+                result += adder.sum();
+            }
+            return result;
+        }
+
+        @ManagedAttribute(value = "The number of rate violations by empty DATA frames", readonly = true)
+        public long getDataViolations()
+        {
+            return getViolations(FrameType.DATA);
+        }
+
+        @ManagedAttribute(value = "The number of rate violations by HEADERS frames", readonly = true)
+        public long getHeadersViolations()
+        {
+            return getViolations(FrameType.HEADERS);
+        }
+
+        @ManagedAttribute(value = "The number of rate violations by PRIORITY frames", readonly = true)
+        public long getPriorityViolations()
+        {
+            return getViolations(FrameType.PRIORITY);
+        }
+
+        @ManagedAttribute(value = "The number of rate violations by RST_STREAM frames", readonly = true)
+        public long getResetViolations()
+        {
+            return getViolations(FrameType.RST_STREAM);
+        }
+
+        @ManagedAttribute(value = "The number of rate violations by SETTINGS frames", readonly = true)
+        public long getSettingsViolations()
+        {
+            return getViolations(FrameType.SETTINGS);
+        }
+
+        @ManagedAttribute(value = "The number of rate violations by PING frames", readonly = true)
+        public long getPingViolations()
+        {
+            return getViolations(FrameType.PING);
+        }
+
+        @ManagedAttribute(value = "The number of rate violations by CONTINUATION frames", readonly = true)
+        public long getContinuationViolations()
+        {
+            return getViolations(FrameType.CONTINUATION);
+        }
+
+        @ManagedAttribute(value = "The number of rate violations by unknown frames", readonly = true)
+        public long getUnknownViolations()
+        {
+            return violations[violations.length - 1].sum();
+        }
+
+        /**
+         * @param frameType the frame type
+         * @return the number of rate violations by frames of the given type
+         */
+        public long getViolations(FrameType frameType)
+        {
+            return violations[frameType.ordinal()].sum();
+        }
+
+        @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+        public void reset()
+        {
+            for (LongAdder adder : violations)
+            {
+                adder.reset();
+            }
+        }
+
+        private void onViolation(Object event)
+        {
+            FrameType frameType = event instanceof Frame ? ((Frame)event).getType() : null;
+            int index = frameType == null ? violations.length - 1 : frameType.ordinal();
+            violations[index].increment();
+        }
+
+        @Override
+        public RateControl newRateControl(EndPoint endPoint)
+        {
+            return new TokenBucketRateControl(getMaxEventsPerSecond(), getMaxBurst(), this);
+        }
+    }
+}
@@ -15,7 +15,9 @@ package org.eclipse.jetty.http2.frames;
 
 import java.nio.ByteBuffer;
 import java.time.Duration;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 import java.util.function.UnaryOperator;
 
 import org.eclipse.jetty.http.HttpVersion;
@@ -23,6 +25,8 @@ import org.eclipse.jetty.http.MetaData;
 import org.eclipse.jetty.http2.Flags;
 import org.eclipse.jetty.http2.hpack.HpackEncoder;
 import org.eclipse.jetty.http2.parser.Parser;
+import org.eclipse.jetty.http2.parser.RateControl;
+import org.eclipse.jetty.http2.parser.TokenBucketRateControl;
 import org.eclipse.jetty.http2.parser.WindowRateControl;
 import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.MappedByteBufferPool;
@@ -121,6 +125,18 @@ public class FrameFloodTest
     }
 
     private void testFrameFlood(byte[] preamble, byte[] bytes)
+    {
+        List<Supplier<RateControl>> rateControls = List.of(
+            () -> new WindowRateControl(8, Duration.ofSeconds(1)),
+            () -> new TokenBucketRateControl(8, 8)
+        );
+        for (Supplier<RateControl> rateControl : rateControls)
+        {
+            testFrameFlood(preamble, bytes, rateControl.get());
+        }
+    }
+
+    private void testFrameFlood(byte[] preamble, byte[] bytes, RateControl rateControl)
     {
         AtomicBoolean failed = new AtomicBoolean();
         Parser parser = new Parser(byteBufferPool, new Parser.Listener.Adapter()
@@ -130,7 +146,7 @@ public class FrameFloodTest
             {
                 failed.set(true);
             }
-        }, 4096, 8192, new WindowRateControl(8, Duration.ofSeconds(1)));
+        }, 4096, 8192, rateControl);
         parser.init(UnaryOperator.identity());
 
         if (preamble != null)
@@ -0,0 +1,74 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.parser;
+
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.http2.ErrorCode;
+import org.eclipse.jetty.http2.frames.FrameType;
+import org.eclipse.jetty.http2.frames.PingFrame;
+import org.eclipse.jetty.http2.frames.ResetFrame;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TokenBucketRateControlTest
+{
+    @Test
+    public void testBurstThenRefill() throws Exception
+    {
+        int rate = 10;
+        int burst = 5;
+        RateControl rateControl = new TokenBucketRateControl(rate, burst);
+
+        for (int i = 0; i < burst; ++i)
+        {
+            assertTrue(rateControl.onEvent(new Object()));
+        }
+        assertFalse(rateControl.onEvent(new Object()));
+
+        // Wait for a couple of tokens to be refilled.
+        Thread.sleep(2 * TimeUnit.SECONDS.toMillis(1) / rate + 50);
+
+        assertTrue(rateControl.onEvent(new Object()));
+    }
+
+    @Test
+    public void testFactoryCountsViolationsByFrameType()
+    {
+        TokenBucketRateControl.Factory factory = new TokenBucketRateControl.Factory(1, 1);
+        RateControl rateControl1 = factory.newRateControl(null);
+        RateControl rateControl2 = factory.newRateControl(null);
+
+        ResetFrame reset = new ResetFrame(1, ErrorCode.CANCEL_STREAM_ERROR.code);
+        assertTrue(rateControl1.onEvent(reset));
+        assertFalse(rateControl1.onEvent(reset));
+        assertFalse(rateControl1.onEvent(reset));
+
+        PingFrame ping = new PingFrame(false);
+        assertTrue(rateControl2.onEvent(ping));
+        assertFalse(rateControl2.onEvent(ping));
+
+        assertEquals(2, factory.getResetViolations());
+        assertEquals(2, factory.getViolations(FrameType.RST_STREAM));
+        assertEquals(1, factory.getPingViolations());
+        assertEquals(0, factory.getSettingsViolations());
+        assertEquals(3, factory.getViolations());
+
+        factory.reset();
+        assertEquals(0, factory.getViolations());
+    }
+}
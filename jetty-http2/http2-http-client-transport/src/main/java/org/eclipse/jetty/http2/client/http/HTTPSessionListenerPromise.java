@@ -81,7 +81,14 @@ class HTTPSessionListenerPromise extends Session.Listener.Adapter implements Pro
     {
         HttpConnectionOverHTTP2 connection = newHttpConnection(destination(), session);
         if (this.connection.compareAndSet(null, connection, false, true))
+        {
             httpConnectionPromise().succeeded(connection);
+            onOpen(connection);
+        }
+    }
+
+    void onOpen(HttpConnectionOverHTTP2 connection)
+    {
     }
 
     protected HttpConnectionOverHTTP2 newHttpConnection(HttpDestination destination, Session session)
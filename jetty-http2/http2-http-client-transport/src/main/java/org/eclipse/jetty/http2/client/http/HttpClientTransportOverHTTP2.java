@@ -14,36 +14,57 @@
 package org.eclipse.jetty.http2.client.http;
 
 import java.io.IOException;
+import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.net.ssl.SSLPeerUnverifiedException;
 
 import org.eclipse.jetty.alpn.client.ALPNClientConnectionFactory;
 import org.eclipse.jetty.client.AbstractHttpClientTransport;
 import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.HttpConversation;
 import org.eclipse.jetty.client.HttpDestination;
 import org.eclipse.jetty.client.HttpRequest;
+import org.eclipse.jetty.client.MisdirectedRequestProtocolHandler;
 import org.eclipse.jetty.client.MultiplexConnectionPool;
 import org.eclipse.jetty.client.MultiplexHttpDestination;
 import org.eclipse.jetty.client.Origin;
 import org.eclipse.jetty.client.ProxyConfiguration;
 import org.eclipse.jetty.http.HttpScheme;
+import org.eclipse.jetty.http2.HTTP2Session;
 import org.eclipse.jetty.http2.api.Session;
 import org.eclipse.jetty.http2.client.HTTP2Client;
 import org.eclipse.jetty.http2.client.HTTP2ClientConnectionFactory;
 import org.eclipse.jetty.http2.frames.GoAwayFrame;
 import org.eclipse.jetty.io.ClientConnectionFactory;
 import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.io.ssl.SslConnection;
+import org.eclipse.jetty.util.FuturePromise;
 import org.eclipse.jetty.util.Promise;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.ssl.X509;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 @ManagedObject("The HTTP/2 client transport")
 public class HttpClientTransportOverHTTP2 extends AbstractHttpClientTransport
 {
+    private static final Logger LOG = LoggerFactory.getLogger(HttpClientTransportOverHTTP2.class);
+
     private final ClientConnectionFactory connectionFactory = new HTTP2ClientConnectionFactory();
+    private final Map<HttpConnectionOverHTTP2, X509> coalescables = new ConcurrentHashMap<>();
     private final HTTP2Client client;
     private boolean useALPN = true;
+    private boolean connectionCoalescing;
 
     public HttpClientTransportOverHTTP2(HTTP2Client client)
     {
@@ -78,6 +99,34 @@ public class HttpClientTransportOverHTTP2 extends AbstractHttpClientTransport
         this.useALPN = useALPN;
     }
 
+    @ManagedAttribute(value = "Whether connections are reused for other origins covered by the server certificate")
+    public boolean isConnectionCoalescing()
+    {
+        return connectionCoalescing;
+    }
+
+    /**
+     * <p>Sets whether secure connections are coalesced, as described in
+     * <a href="https://tools.ietf.org/html/rfc7540#section-9.1.1">RFC 7540, section 9.1.1</a>.</p>
+     * <p>When enabled, a request for an origin that does not have a destination with opened
+     * connections is sent over the connections of another origin, provided that the other
+     * origin has the same scheme and port, its server certificate is valid for the host
+     * of the request, and the host of the request resolves to the address the connection
+     * is connected to.
+     * The request retains its own {@code :authority}, so the server can route it correctly.</p>
+     * <p>The host of the request is resolved with the {@link HttpClient#getSocketAddressResolver()
+     * resolver of HttpClient}, waiting at most for the address resolution timeout, only when
+     * a connection of another origin has a certificate that is valid for the host.</p>
+     * <p>A coalesced request that the server replies to with {@code 421 Misdirected Request}
+     * is sent again over a connection of its own origin, see {@link MisdirectedRequestProtocolHandler}.</p>
+     *
+     * @param connectionCoalescing whether connections are coalesced
+     */
+    public void setConnectionCoalescing(boolean connectionCoalescing)
+    {
+        this.connectionCoalescing = connectionCoalescing;
+    }
+
     @Override
     protected void doStart() throws Exception
     {
@@ -95,6 +144,7 @@ public class HttpClientTransportOverHTTP2 extends AbstractHttpClientTransport
         }
         addBean(client);
         super.doStart();
+        getHttpClient().getProtocolHandlers().put(new MisdirectedRequestProtocolHandler(getHttpClient()));
     }
 
     @Override
@@ -108,7 +158,118 @@ public class HttpClientTransportOverHTTP2 extends AbstractHttpClientTransport
     public Origin newOrigin(HttpRequest request)
     {
         String protocol = HttpScheme.HTTPS.is(request.getScheme()) ? "h2" : "h2c";
-        return getHttpClient().createOrigin(request, new Origin.Protocol(List.of(protocol), false));
+        Origin origin = getHttpClient().createOrigin(request, new Origin.Protocol(List.of(protocol), false));
+        if (isConnectionCoalescing())
+        {
+            // A conversation that was misdirected is not coalesced anymore.
+            HttpConversation conversation = request.getConversation();
+            if (Boolean.FALSE.equals(conversation.getAttribute(MisdirectedRequestProtocolHandler.COALESCED_ATTRIBUTE)))
+                return origin;
+            Origin coalesced = coalesce(origin);
+            if (coalesced != null)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Coalescing {} into {}", origin, coalesced);
+                conversation.setAttribute(MisdirectedRequestProtocolHandler.COALESCED_ATTRIBUTE, true);
+                return coalesced;
+            }
+            conversation.removeAttribute(MisdirectedRequestProtocolHandler.COALESCED_ATTRIBUTE);
+        }
+        return origin;
+    }
+
+    private Origin coalesce(Origin origin)
+    {
+        if (!HttpScheme.HTTPS.is(origin.getScheme()))
+            return null;
+        if (getHttpClient().getProxyConfiguration().match(origin) != null)
+            return null;
+
+        String host = origin.getAddress().getHost();
+        List<HttpConnectionOverHTTP2> candidates = new ArrayList<>();
+        for (Iterator<Map.Entry<HttpConnectionOverHTTP2, X509>> iterator = coalescables.entrySet().iterator(); iterator.hasNext();)
+        {
+            Map.Entry<HttpConnectionOverHTTP2, X509> entry = iterator.next();
+            HttpConnectionOverHTTP2 connection = entry.getKey();
+            if (connection.isClosed())
+            {
+                iterator.remove();
+                continue;
+            }
+            Origin candidate = connection.getHttpDestination().getOrigin();
+            // Prefer the connections of the origin itself.
+            if (candidate.equals(origin))
+                return null;
+            if (candidate.getAddress().getPort() == origin.getAddress().getPort() &&
+                Objects.equals(candidate.getTag(), origin.getTag()) &&
+                Objects.equals(candidate.getProtocol(), origin.getProtocol()) &&
+                entry.getValue().matches(host))
+                candidates.add(connection);
+        }
+        if (candidates.isEmpty())
+            return null;
+
+        // The host must resolve to the address the connection is connected to.
+        List<InetAddress> addresses = resolve(host, origin.getAddress().getPort());
+        for (HttpConnectionOverHTTP2 connection : candidates)
+        {
+            InetSocketAddress remote = ((HTTP2Session)connection.getSession()).getEndPoint().getRemoteAddress();
+            if (remote != null && addresses.contains(remote.getAddress()))
+                return connection.getHttpDestination().getOrigin();
+        }
+        return null;
+    }
+
+    private List<InetAddress> resolve(String host, int port)
+    {
+        HttpClient httpClient = getHttpClient();
+        FuturePromise<List<InetSocketAddress>> promise = new FuturePromise<>();
+        httpClient.getSocketAddressResolver().resolve(host, port, promise);
+        List<InetAddress> result = new ArrayList<>();
+        try
+        {
+            for (InetSocketAddress address : promise.get(httpClient.getAddressResolutionTimeout(), TimeUnit.MILLISECONDS))
+            {
+                result.add(address.getAddress());
+            }
+        }
+        catch (Throwable x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Could not resolve {}", host, x);
+        }
+        return result;
+    }
+
+    private void onOpen(HttpConnectionOverHTTP2 connection)
+    {
+        if (!isConnectionCoalescing())
+            return;
+        X509 x509 = peerCertificate(connection.getSession());
+        if (x509 != null)
+            coalescables.put(connection, x509);
+    }
+
+    private static X509 peerCertificate(Session session)
+    {
+        if (!(session instanceof HTTP2Session))
+            return null;
+        EndPoint endPoint = ((HTTP2Session)session).getEndPoint();
+        if (!(endPoint instanceof SslConnection.DecryptedEndPoint))
+            return null;
+        try
+        {
+            SslConnection sslConnection = ((SslConnection.DecryptedEndPoint)endPoint).getSslConnection();
+            Certificate[] certificates = sslConnection.getSSLEngine().getSession().getPeerCertificates();
+            if (certificates.length > 0 && certificates[0] instanceof X509Certificate)
+                return new X509(null, (X509Certificate)certificates[0]);
+        }
+        catch (SSLPeerUnverifiedException | IllegalArgumentException x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Could not retrieve peer certificate for {}", session, x);
+        }
+        return null;
     }
 
     @Override
@@ -173,9 +334,16 @@ public class HttpClientTransportOverHTTP2 extends AbstractHttpClientTransport
             return HttpClientTransportOverHTTP2.this.newHttpConnection(destination, session);
         }
 
+        @Override
+        void onOpen(HttpConnectionOverHTTP2 connection)
+        {
+            HttpClientTransportOverHTTP2.this.onOpen(connection);
+        }
+
         @Override
         void onClose(HttpConnectionOverHTTP2 connection, GoAwayFrame frame)
         {
+            coalescables.remove(connection);
             HttpClientTransportOverHTTP2.this.onClose(connection, frame);
         }
     }
@@ -0,0 +1,206 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.client.http;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.ContentResponse;
+import org.eclipse.jetty.http.HttpScheme;
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http2.HTTP2Cipher;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
+import org.eclipse.jetty.io.ClientConnector;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.server.ConnectionFactory;
+import org.eclipse.jetty.server.HttpConfiguration;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.SecureRequestCustomizer;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ConnectionCoalescingTest
+{
+    private final List<String> serverNames = new CopyOnWriteArrayList<>();
+    private final Map<EndPoint, String> connectionNames = new ConcurrentHashMap<>();
+    private Server server;
+    private ServerConnector connector;
+    private HttpClient client;
+
+    private void start(boolean coalescing) throws Exception
+    {
+        QueuedThreadPool serverThreads = new QueuedThreadPool();
+        serverThreads.setName("server");
+        server = new Server(serverThreads);
+        HttpConfiguration httpsConfig = new HttpConfiguration();
+        // Disable the SNI host check to allow requests for hosts not covered by the certificate.
+        httpsConfig.addCustomizer(new SecureRequestCustomizer(false));
+        ConnectionFactory h2 = new HTTP2ServerConnectionFactory(httpsConfig);
+        SslContextFactory.Server serverTLS = new SslContextFactory.Server();
+        configureSslContextFactory(serverTLS);
+        ConnectionFactory ssl = new SslConnectionFactory(serverTLS, h2.getProtocol());
+        connector = new ServerConnector(server, 1, 1, ssl, h2);
+        connector.setHost("127.0.0.1");
+        server.addConnector(connector);
+        server.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+            {
+                baseRequest.setHandled(true);
+                String serverName = request.getServerName();
+                serverNames.add(serverName);
+                // Refuse the requests for this host over the connections of other hosts.
+                String connectionName = connectionNames.computeIfAbsent(baseRequest.getHttpChannel().getEndPoint(), k -> serverName);
+                if ("misdirected.coalesce.test".equals(serverName) && !serverName.equals(connectionName))
+                    response.setStatus(HttpStatus.MISDIRECTED_REQUEST_421);
+            }
+        });
+        server.start();
+
+        ClientConnector clientConnector = new ClientConnector();
+        QueuedThreadPool clientThreads = new QueuedThreadPool();
+        clientThreads.setName("client");
+        clientConnector.setExecutor(clientThreads);
+        SslContextFactory.Client clientTLS = new SslContextFactory.Client();
+        configureSslContextFactory(clientTLS);
+        clientTLS.setEndpointIdentificationAlgorithm(null);
+        clientConnector.setSslContextFactory(clientTLS);
+        HttpClientTransportOverHTTP2 transport = new HttpClientTransportOverHTTP2(new HTTP2Client(clientConnector));
+        transport.setUseALPN(false);
+        transport.setConnectionCoalescing(coalescing);
+        client = new HttpClient(transport);
+        // All the hosts are local, except other.coalesce.test that the server does not listen to.
+        client.setSocketAddressResolver((host, port, promise) ->
+        {
+            String address = "other.coalesce.test".equals(host) ? "127.0.0.2" : "127.0.0.1";
+            promise.succeeded(List.of(new InetSocketAddress(address, port)));
+        });
+        client.start();
+    }
+
+    private void configureSslContextFactory(SslContextFactory sslContextFactory)
+    {
+        // The certificate is valid for localhost and *.coalesce.test.
+        sslContextFactory.setKeyStorePath("src/test/resources/keystore_coalescing.p12");
+        sslContextFactory.setKeyStorePassword("storepwd");
+        sslContextFactory.setUseCipherSuitesOrder(true);
+        sslContextFactory.setCipherComparator(HTTP2Cipher.COMPARATOR);
+    }
+
+    @AfterEach
+    public void dispose() throws Exception
+    {
+        if (client != null)
+            client.stop();
+        if (server != null)
+            server.stop();
+    }
+
+    private ContentResponse send(String host) throws Exception
+    {
+        return client.newRequest(host, connector.getLocalPort())
+            .scheme(HttpScheme.HTTPS.asString())
+            .timeout(5, TimeUnit.SECONDS)
+            .send();
+    }
+
+    @Test
+    public void testRequestForHostCoveredByCertificateIsCoalesced() throws Exception
+    {
+        start(true);
+
+        assertEquals(HttpStatus.OK_200, send("localhost").getStatus());
+        assertEquals(HttpStatus.OK_200, send("www.coalesce.test").getStatus());
+
+        assertEquals(1, client.getDestinations().size());
+        assertEquals(1, connector.getConnectedEndPoints().size());
+        assertEquals(List.of("localhost", "www.coalesce.test"), serverNames);
+    }
+
+    @Test
+    public void testRequestForHostResolvingToOtherAddressIsNotCoalesced() throws Exception
+    {
+        start(true);
+
+        assertEquals(HttpStatus.OK_200, send("localhost").getStatus());
+        // The certificate covers the host, but the host resolves to an
+        // address the server does not listen to, so the request fails.
+        assertThrows(ExecutionException.class, () -> send("other.coalesce.test"));
+
+        assertEquals(1, connector.getConnectedEndPoints().size());
+        assertEquals(List.of("localhost"), serverNames);
+    }
+
+    @Test
+    public void testMisdirectedRequestIsSentAgainOverItsOwnConnection() throws Exception
+    {
+        start(true);
+
+        assertEquals(HttpStatus.OK_200, send("localhost").getStatus());
+        // The server replies 421 over the coalesced connection,
+        // and the request is sent again over a new connection.
+        assertEquals(HttpStatus.OK_200, send("misdirected.coalesce.test").getStatus());
+
+        assertEquals(2, connector.getConnectedEndPoints().size());
+        assertEquals(List.of("localhost", "misdirected.coalesce.test", "misdirected.coalesce.test"), serverNames);
+
+        // The next requests of the host are sent over its own connection.
+        assertEquals(HttpStatus.OK_200, send("misdirected.coalesce.test").getStatus());
+        assertEquals(2, connector.getConnectedEndPoints().size());
+    }
+
+    @Test
+    public void testRequestForHostNotCoveredByCertificateIsNotCoalesced() throws Exception
+    {
+        start(true);
+
+        assertEquals(HttpStatus.OK_200, send("localhost").getStatus());
+        // The certificate does not cover the IP address.
+        assertEquals(HttpStatus.OK_200, send("127.0.0.1").getStatus());
+
+        assertEquals(2, client.getDestinations().size());
+        assertEquals(2, connector.getConnectedEndPoints().size());
+    }
+
+    @Test
+    public void testConnectionsAreNotCoalescedByDefault() throws Exception
+    {
+        start(false);
+
+        assertEquals(HttpStatus.OK_200, send("localhost").getStatus());
+        assertEquals(HttpStatus.OK_200, send("www.coalesce.test").getStatus());
+
+        assertEquals(2, client.getDestinations().size());
+        assertEquals(2, connector.getConnectedEndPoints().size());
+    }
+}
@@ -29,7 +29,7 @@ etc/jetty-http2c.xml
 ## Specifies the maximum number of keys in all SETTINGS frames received by a session.
 # jetty.http2.maxSettingsKeys=64
 
-## Specifies the maximum number of bad frames and pings per second,
+## Specifies the maximum number of bad frames, pings and resets of open streams per second,
 ## after which a session is closed to avoid denial of service attacks.
 # jetty.http2.rateControl.maxEventsPerSecond=20
 # end::documentation[]
@@ -27,6 +27,7 @@ import org.eclipse.jetty.http2.BufferingFlowControlStrategy;
 import org.eclipse.jetty.http2.FlowControlStrategy;
 import org.eclipse.jetty.http2.HTTP2Connection;
 import org.eclipse.jetty.http2.ISession;
+import org.eclipse.jetty.http2.RecvBufferBudget;
 import org.eclipse.jetty.http2.api.Session;
 import org.eclipse.jetty.http2.api.server.ServerSessionListener;
 import org.eclipse.jetty.http2.frames.Frame;
@@ -34,7 +35,7 @@ import org.eclipse.jetty.http2.frames.SettingsFrame;
 import org.eclipse.jetty.http2.generator.Generator;
 import org.eclipse.jetty.http2.parser.RateControl;
 import org.eclipse.jetty.http2.parser.ServerParser;
-import org.eclipse.jetty.http2.parser.WindowRateControl;
+import org.eclipse.jetty.http2.parser.TokenBucketRateControl;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.server.AbstractConnectionFactory;
@@ -60,8 +61,10 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
     private int maxFrameLength = Frame.DEFAULT_MAX_LENGTH;
     private int maxSettingsKeys = SettingsFrame.DEFAULT_MAX_KEYS;
     private boolean connectProtocolEnabled = true;
-    private RateControl.Factory rateControlFactory = new WindowRateControl.Factory(20);
+    private RateControl.Factory rateControlFactory = new TokenBucketRateControl.Factory(20);
     private FlowControlStrategy.Factory flowControlStrategyFactory = () -> new BufferingFlowControlStrategy(0.5F);
+    private RecvBufferBudget recvBufferBudget;
+    private boolean pushDigestEnabled;
     private long streamIdleTimeout;
     private boolean useInputDirectByteBuffers;
     private boolean useOutputDirectByteBuffers;
@@ -82,6 +85,7 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         addBean(sessionContainer);
         this.httpConfiguration = Objects.requireNonNull(httpConfiguration);
         addBean(httpConfiguration);
+        addBean(rateControlFactory);
         setInputBufferSize(Frame.DEFAULT_MAX_LENGTH + Frame.HEADER_LENGTH);
         setUseInputDirectByteBuffers(httpConfiguration.isUseInputDirectByteBuffers());
         setUseOutputDirectByteBuffers(httpConfiguration.isUseOutputDirectByteBuffers());
@@ -152,6 +156,27 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         this.flowControlStrategyFactory = flowControlStrategyFactory;
     }
 
+    @ManagedAttribute(value = "The budget for the received bytes not yet consumed", readonly = true)
+    public RecvBufferBudget getRecvBufferBudget()
+    {
+        return recvBufferBudget;
+    }
+
+    /**
+     * <p>Sets the budget for the bytes received but not yet consumed by
+     * the application, across all the sessions of this factory.</p>
+     * <p>The same budget may be set on multiple factories, for example
+     * on the factories of all the connectors of a server.</p>
+     *
+     * @param recvBufferBudget the budget, or null for no budget
+     * @see RecvBufferBudget
+     */
+    public void setRecvBufferBudget(RecvBufferBudget recvBufferBudget)
+    {
+        updateBean(this.recvBufferBudget, recvBufferBudget);
+        this.recvBufferBudget = recvBufferBudget;
+    }
+
     @ManagedAttribute("The stream idle timeout in milliseconds")
     public long getStreamIdleTimeout()
     {
@@ -196,6 +221,26 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         this.connectProtocolEnabled = connectProtocolEnabled;
     }
 
+    @ManagedAttribute("Whether pushes are skipped for resources the client already has")
+    public boolean isPushDigestEnabled()
+    {
+        return pushDigestEnabled;
+    }
+
+    /**
+     * <p>Sets whether each session keeps a {@link PushDigest} of the resources
+     * that the client already has, either because it requested or was pushed
+     * them on the same session, or because they are listed in the
+     * {@code Cache-Digest} request header, so that pushes of those resources,
+     * or pushes exceeding the session flow control window, are skipped.</p>
+     *
+     * @param pushDigestEnabled whether pushes are filtered by a per-session digest
+     */
+    public void setPushDigestEnabled(boolean pushDigestEnabled)
+    {
+        this.pushDigestEnabled = pushDigestEnabled;
+    }
+
     /**
      * @return the factory that creates RateControl objects
      */
@@ -211,7 +256,8 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
      */
     public void setRateControlFactory(RateControl.Factory rateControlFactory)
     {
-        this.rateControlFactory = Objects.requireNonNull(rateControlFactory);
+        updateBean(this.rateControlFactory, Objects.requireNonNull(rateControlFactory));
+        this.rateControlFactory = rateControlFactory;
     }
 
     @ManagedAttribute("Whether to use direct ByteBuffers for reading")
@@ -274,16 +320,25 @@ public abstract class AbstractHTTP2ServerConnectionFactory extends AbstractConne
         session.setInitialSessionRecvWindow(getInitialSessionRecvWindow());
         session.setWriteThreshold(getHttpConfiguration().getOutputBufferSize());
         session.setConnectProtocolEnabled(isConnectProtocolEnabled());
+        session.setRecvBufferBudget(getRecvBufferBudget());
+        RateControl rateControl = getRateControlFactory().newRateControl(endPoint);
+        session.setRateControl(rateControl);
 
-        ServerParser parser = newServerParser(connector, session, getRateControlFactory().newRateControl(endPoint));
+        ServerParser parser = newServerParser(connector, session, rateControl);
         parser.setMaxFrameLength(getMaxFrameLength());
         parser.setMaxSettingsKeys(getMaxSettingsKeys());
 
-        HTTP2Connection connection = new HTTP2ServerConnection(connector.getByteBufferPool(), connector.getExecutor(),
+        HTTP2ServerConnection connection = new HTTP2ServerConnection(connector.getByteBufferPool(), connector.getExecutor(),
             endPoint, httpConfiguration, parser, session, getInputBufferSize(), listener);
         connection.setUseInputDirectByteBuffers(isUseInputDirectByteBuffers());
         connection.setUseOutputDirectByteBuffers(isUseOutputDirectByteBuffers());
         connection.addEventListener(sessionContainer);
+        if (isPushDigestEnabled())
+        {
+            PushDigest pushDigest = new PushDigest();
+            connection.setPushDigest(pushDigest);
+            session.addBean(pushDigest);
+        }
         return configure(connection, connector, endPoint);
     }
 
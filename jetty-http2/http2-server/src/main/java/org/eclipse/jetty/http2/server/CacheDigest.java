@@ -0,0 +1,290 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.server;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+
+import org.eclipse.jetty.util.StringUtil;
+
+/**
+ * <p>A cache digest, as defined by
+ * <a href="https://tools.ietf.org/html/draft-ietf-httpbis-cache-digest-05">draft-ietf-httpbis-cache-digest</a>,
+ * that is a compact representation of the URLs a client has in its cache,
+ * sent by the client in the {@code Cache-Digest} request header.</p>
+ * <p>The digest is a Golomb-coded set of the truncated SHA-256 hashes of
+ * the URLs, with a false positive probability of {@code 1/P}.</p>
+ * <p>This implementation only supports digests of fresh responses that
+ * do not carry validators.</p>
+ */
+public class CacheDigest
+{
+    /**
+     * The name of the request header that carries the cache digests.
+     */
+    public static final String HEADER = "Cache-Digest";
+
+    private final long[] hashes;
+    private final int log2N;
+    private final int log2P;
+    private final boolean reset;
+    private final boolean complete;
+
+    private CacheDigest(long[] hashes, int log2N, int log2P, boolean reset, boolean complete)
+    {
+        this.hashes = hashes;
+        this.log2N = log2N;
+        this.log2P = log2P;
+        this.reset = reset;
+        this.complete = complete;
+    }
+
+    /**
+     * @return whether the digest replaces the digests previously sent on the same connection
+     */
+    public boolean isReset()
+    {
+        return reset;
+    }
+
+    /**
+     * @return whether the digest represents all the fresh responses in the client cache for the origin
+     */
+    public boolean isComplete()
+    {
+        return complete;
+    }
+
+    /**
+     * @return the number of hashes in this digest
+     */
+    public int size()
+    {
+        return hashes.length;
+    }
+
+    /**
+     * @param url the absolute URL to test
+     * @return whether the given URL is (probably) in the client cache
+     */
+    public boolean contains(String url)
+    {
+        return Arrays.binarySearch(hashes, hash(url, log2N, log2P)) >= 0;
+    }
+
+    /**
+     * <p>Parses the value of a {@code Cache-Digest} header.</p>
+     * <p>Digests with the {@code validators} or {@code stale} flags
+     * are not supported and are ignored.</p>
+     *
+     * @param value the header value
+     * @return the list of cache digests in the header value
+     * @throws IllegalArgumentException if the value cannot be parsed
+     */
+    public static List<CacheDigest> parse(String value)
+    {
+        List<CacheDigest> result = new ArrayList<>();
+        for (String element : StringUtil.csvSplit(value))
+        {
+            String[] parts = element.split(";");
+            boolean reset = false;
+            boolean complete = false;
+            boolean supported = true;
+            for (int i = 1; i < parts.length; ++i)
+            {
+                String flag = parts[i].trim();
+                if ("reset".equalsIgnoreCase(flag))
+                    reset = true;
+                else if ("complete".equalsIgnoreCase(flag))
+                    complete = true;
+                else if ("validators".equalsIgnoreCase(flag) || "stale".equalsIgnoreCase(flag))
+                    supported = false;
+            }
+            if (supported)
+                result.add(decode(Base64.getUrlDecoder().decode(parts[0].trim()), reset, complete));
+        }
+        return result;
+    }
+
+    private static CacheDigest decode(byte[] bytes, boolean reset, boolean complete)
+    {
+        BitReader reader = new BitReader(bytes);
+        int log2N = (int)reader.read(5);
+        int log2P = (int)reader.read(5);
+        if (log2N < 0 || log2P < 0 || log2N + log2P > 62)
+            throw new IllegalArgumentException("Invalid cache digest");
+
+        long p = 1L << log2P;
+        long[] hashes = new long[Math.min(1 << Math.min(log2N, 16), 1024)];
+        int count = 0;
+        long c = -1;
+        while (true)
+        {
+            long q = reader.readUnary();
+            if (q < 0)
+                break;
+            long r = reader.read(log2P);
+            if (r < 0)
+                break;
+            c += q * p + r + 1;
+            if (count == hashes.length)
+                hashes = Arrays.copyOf(hashes, count * 2);
+            hashes[count++] = c;
+        }
+        return new CacheDigest(Arrays.copyOf(hashes, count), log2N, log2P, reset, complete);
+    }
+
+    /**
+     * <p>Encodes the given URLs into the value of a {@code Cache-Digest} header.</p>
+     *
+     * @param urls the absolute URLs in the digest
+     * @param log2P the base 2 logarithm of the inverse of the false positive probability
+     * @return the {@code Cache-Digest} header value
+     */
+    public static String encode(Collection<String> urls, int log2P)
+    {
+        int log2N = 0;
+        while ((1 << log2N) < urls.size())
+        {
+            ++log2N;
+        }
+        int n = log2N;
+        long[] hashes = urls.stream().mapToLong(url -> hash(url, n, log2P)).sorted().distinct().toArray();
+
+        BitWriter writer = new BitWriter();
+        writer.write(log2N, 5);
+        writer.write(log2P, 5);
+        long p = 1L << log2P;
+        long c = -1;
+        for (long v : hashes)
+        {
+            long d = v - c - 1;
+            for (long q = d / p; q > 0; --q)
+            {
+                writer.write(0, 1);
+            }
+            writer.write(1, 1);
+            writer.write(d % p, log2P);
+            c = v;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(writer.toByteArray());
+    }
+
+    private static long hash(String url, int log2N, int log2P)
+    {
+        int bits = log2N + log2P;
+        if (bits == 0)
+            return 0;
+        try
+        {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            byte[] digest = sha256.digest(url.getBytes(StandardCharsets.UTF_8));
+            long value = 0;
+            for (int i = 0; i < 8; ++i)
+            {
+                value = (value << 8) | (digest[i] & 0xFF);
+            }
+            // Truncate to the most significant log2(N * P) bits.
+            return value >>> (64 - bits);
+        }
+        catch (NoSuchAlgorithmException x)
+        {
+            throw new IllegalStateException(x);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[size=%d,N=%d,P=%d,reset=%b,complete=%b]", getClass().getSimpleName(), hashCode(), size(), 1 << log2N, 1 << log2P, reset, complete);
+    }
+
+    private static class BitReader
+    {
+        private final byte[] bytes;
+        private long position;
+
+        private BitReader(byte[] bytes)
+        {
+            this.bytes = bytes;
+        }
+
+        private int readBit()
+        {
+            int index = (int)(position >>> 3);
+            if (index >= bytes.length)
+                return -1;
+            int bit = (bytes[index] >>> (7 - (position & 7))) & 1;
+            ++position;
+            return bit;
+        }
+
+        private long read(int bits)
+        {
+            long result = 0;
+            for (int i = 0; i < bits; ++i)
+            {
+                int bit = readBit();
+                if (bit < 0)
+                    return -1;
+                result = (result << 1) | bit;
+            }
+            return result;
+        }
+
+        private long readUnary()
+        {
+            long result = 0;
+            while (true)
+            {
+                int bit = readBit();
+                if (bit < 0)
+                    return -1;
+                if (bit == 1)
+                    return result;
+                ++result;
+            }
+        }
+    }
+
+    private static class BitWriter
+    {
+        private byte[] bytes = new byte[16];
+        private long position;
+
+        private void write(long value, int bits)
+        {
+            for (int i = bits - 1; i >= 0; --i)
+            {
+                int index = (int)(position >>> 3);
+                if (index == bytes.length)
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                if (((value >>> i) & 1) == 1)
+                    bytes[index] |= (byte)(1 << (7 - (position & 7)));
+                ++position;
+            }
+        }
+
+        private byte[] toByteArray()
+        {
+            return Arrays.copyOf(bytes, (int)((position + 7) >>> 3));
+        }
+    }
+}
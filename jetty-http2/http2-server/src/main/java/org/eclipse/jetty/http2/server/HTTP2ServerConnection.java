@@ -86,6 +86,7 @@ public class HTTP2ServerConnection extends HTTP2Connection
     private final ServerSessionListener listener;
     private final HttpConfiguration httpConfig;
     private boolean recycleHttpChannels = true;
+    private PushDigest pushDigest;
 
     public HTTP2ServerConnection(ByteBufferPool byteBufferPool, Executor executor, EndPoint endPoint, HttpConfiguration httpConfig, ServerParser parser, ISession session, int inputBufferSize, ServerSessionListener listener)
     {
@@ -110,6 +111,19 @@ public class HTTP2ServerConnection extends HTTP2Connection
         this.recycleHttpChannels = recycleHttpChannels;
     }
 
+    /**
+     * @return the record of the resources the client already has, or null if pushes are not filtered
+     */
+    public PushDigest getPushDigest()
+    {
+        return pushDigest;
+    }
+
+    public void setPushDigest(PushDigest pushDigest)
+    {
+        this.pushDigest = pushDigest;
+    }
+
     @Override
     public void onOpen()
     {
@@ -139,6 +153,9 @@ public class HTTP2ServerConnection extends HTTP2Connection
     {
         if (LOG.isDebugEnabled())
             LOG.debug("Processing {} on {}", frame, stream);
+        PushDigest pushDigest = getPushDigest();
+        if (pushDigest != null && frame.getMetaData() instanceof MetaData.Request)
+            pushDigest.onRequest((MetaData.Request)frame.getMetaData());
         HttpChannelOverHTTP2 channel = provideHttpChannel(connector, stream);
         Runnable task = channel.onRequest(frame);
         if (task != null)
@@ -280,9 +280,24 @@ public class HttpTransportOverHTTP2 implements HttpTransport
             return;
         }
 
+        PushDigest pushDigest = connection.getPushDigest();
+        if (pushDigest != null && !pushDigest.tryPush(stream.getSession(), request))
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("HTTP/2 Push skipped for {}", request);
+            return;
+        }
+
         if (LOG.isDebugEnabled())
             LOG.debug("HTTP/2 Push {}", request);
 
+        // The push may both fail and be closed, but must be completed only once.
+        AtomicBoolean pushComplete = new AtomicBoolean();
+        Runnable onPushComplete = () ->
+        {
+            if (pushDigest != null && pushComplete.compareAndSet(false, true))
+                pushDigest.onPushComplete();
+        };
         stream.push(new PushPromiseFrame(stream.getId(), request), new Promise<>()
         {
             @Override
@@ -296,8 +311,16 @@ public class HttpTransportOverHTTP2 implements HttpTransport
             {
                 if (LOG.isDebugEnabled())
                     LOG.debug("Could not push {}", request, x);
+                onPushComplete.run();
             }
-        }, new Stream.Listener.Adapter()); // TODO: handle reset from the client ?
+        }, new Stream.Listener.Adapter() // TODO: handle reset from the client ?
+        {
+            @Override
+            public void onClosed(Stream stream)
+            {
+                onPushComplete.run();
+            }
+        });
     }
 
     private void sendDataFrame(ByteBuffer content, boolean lastContent, boolean endStream, Callback callback)
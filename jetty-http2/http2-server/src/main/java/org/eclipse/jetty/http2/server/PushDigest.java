@@ -0,0 +1,259 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.server;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.ISession;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>Per-session record of the resources that the client already has,
+ * used to avoid pushing resources that the client would not use.</p>
+ * <p>The resources requested by the client and the resources pushed to the
+ * client are recorded in a Bloom filter of fixed size, so that the memory
+ * used is bounded irrespective of the number of resources.
+ * The Bloom filter is aged in two generations: when the current generation
+ * has recorded as many resources as it can hold with a low false positive
+ * rate, it becomes the previous generation and the oldest one is cleared,
+ * so that long-lived sessions do not end up skipping every push.
+ * The {@code Cache-Digest} request header, if sent by the client, is parsed
+ * into {@link CacheDigest}s that represent the resources in the client cache;
+ * only the 8 most recent digests are kept.</p>
+ * <p>A push is skipped if the resource is in the Bloom filter or in a cache
+ * digest, or if the number of pushes in progress would exceed the number of
+ * pushes that the session send flow control window can accommodate, assuming
+ * that each push uses up to {@link #getPushWindow()} bytes of the window.</p>
+ */
+@ManagedObject
+public class PushDigest
+{
+    private static final Logger LOG = LoggerFactory.getLogger(PushDigest.class);
+    private static final int HASHES = 3;
+    private static final int MAX_CACHE_DIGESTS = 8;
+
+    private final AutoLock lock = new AutoLock();
+    private final AtomicInteger activePushes = new AtomicInteger();
+    private final AtomicLong pushes = new AtomicLong();
+    private final AtomicLong skippedPushes = new AtomicLong();
+    private final List<CacheDigest> cacheDigests = new ArrayList<>();
+    private final int maxBloomEntries;
+    private final int pushWindow;
+    private long[] bloom;
+    private long[] previousBloom;
+    private int bloomEntries;
+
+    public PushDigest()
+    {
+        this(8192, 16 * 1024);
+    }
+
+    /**
+     * @param bloomBits the number of bits of the Bloom filter, rounded up to a power of 2
+     * @param pushWindow the number of bytes of the session send window assumed to be used by each push
+     */
+    public PushDigest(int bloomBits, int pushWindow)
+    {
+        int bits = Integer.highestOneBit(Math.max(64, bloomBits - 1) << 1);
+        this.bloom = new long[bits / 64];
+        this.previousBloom = new long[bits / 64];
+        // With 3 hashes, 1 entry every 8 bits gives a false positive rate of about 3%.
+        this.maxBloomEntries = bits / 8;
+        this.pushWindow = pushWindow;
+    }
+
+    @ManagedAttribute(value = "The number of bytes of the session send window assumed to be used by each push", readonly = true)
+    public int getPushWindow()
+    {
+        return pushWindow;
+    }
+
+    @ManagedAttribute(value = "The number of pushes in progress", readonly = true)
+    public int getActivePushes()
+    {
+        return activePushes.get();
+    }
+
+    @ManagedAttribute(value = "The number of pushes performed", readonly = true)
+    public long getPushes()
+    {
+        return pushes.get();
+    }
+
+    @ManagedAttribute(value = "The number of pushes skipped", readonly = true)
+    public long getSkippedPushes()
+    {
+        return skippedPushes.get();
+    }
+
+    /**
+     * <p>Records the given request as a resource that the client has,
+     * and parses the {@code Cache-Digest} header, if present.</p>
+     *
+     * @param request the request sent by the client
+     */
+    public void onRequest(MetaData.Request request)
+    {
+        String cacheDigest = request.getFields().get(CacheDigest.HEADER);
+        List<CacheDigest> digests = null;
+        if (cacheDigest != null)
+        {
+            try
+            {
+                digests = CacheDigest.parse(cacheDigest);
+            }
+            catch (IllegalArgumentException x)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Invalid cache digest {}", cacheDigest, x);
+            }
+        }
+
+        try (AutoLock l = lock.lock())
+        {
+            add(request.getURIString());
+            if (digests != null)
+            {
+                for (CacheDigest digest : digests)
+                {
+                    if (digest.isReset())
+                        cacheDigests.clear();
+                    else if (cacheDigests.size() == MAX_CACHE_DIGESTS)
+                        cacheDigests.remove(0);
+                    cacheDigests.add(digest);
+                }
+            }
+        }
+    }
+
+    /**
+     * <p>Tests whether the given push request should be performed,
+     * and if so records it as in progress.</p>
+     * <p>When this method returns {@code true}, {@link #onPushComplete()}
+     * must be eventually called.</p>
+     *
+     * @param session the session the push belongs to
+     * @param request the push request
+     * @return whether the push should be performed
+     */
+    public boolean tryPush(ISession session, MetaData.Request request)
+    {
+        String uri = request.getURIString();
+        try (AutoLock l = lock.lock())
+        {
+            if (mightContain(uri) || cacheDigests.stream().anyMatch(digest -> digest.contains(uri)))
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Skipping push of {}, already at the client", uri);
+                skippedPushes.incrementAndGet();
+                return false;
+            }
+        }
+
+        int sessionWindow = session.updateSendWindow(0);
+        int maxPushes = Math.max(0, sessionWindow / Math.max(1, getPushWindow()));
+        while (true)
+        {
+            int active = activePushes.get();
+            if (active >= maxPushes)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Skipping push of {}, {} pushes in progress, session send window {}", uri, active, sessionWindow);
+                skippedPushes.incrementAndGet();
+                return false;
+            }
+            if (activePushes.compareAndSet(active, active + 1))
+                break;
+        }
+
+        try (AutoLock l = lock.lock())
+        {
+            add(uri);
+        }
+        pushes.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * <p>Callback method invoked when a push allowed by
+     * {@link #tryPush(ISession, MetaData.Request)} is complete.</p>
+     */
+    public void onPushComplete()
+    {
+        activePushes.decrementAndGet();
+    }
+
+    private void add(String uri)
+    {
+        assert lock.isHeldByCurrentThread();
+        if (mightContain(bloom, uri))
+            return;
+
+        if (++bloomEntries > maxBloomEntries)
+        {
+            // The current generation is full, it becomes the previous one.
+            long[] oldest = previousBloom;
+            Arrays.fill(oldest, 0L);
+            previousBloom = bloom;
+            bloom = oldest;
+            bloomEntries = 1;
+            if (LOG.isDebugEnabled())
+                LOG.debug("Aged bloom filter of {}", this);
+        }
+
+        int hash = uri.hashCode();
+        int delta = Integer.rotateLeft(hash * 0x9E3779B9, 16) | 1;
+        int mask = bloom.length * 64 - 1;
+        for (int i = 0; i < HASHES; ++i)
+        {
+            int bit = (hash + i * delta) & mask;
+            bloom[bit >>> 6] |= 1L << bit;
+        }
+    }
+
+    private boolean mightContain(String uri)
+    {
+        assert lock.isHeldByCurrentThread();
+        return mightContain(bloom, uri) || mightContain(previousBloom, uri);
+    }
+
+    private static boolean mightContain(long[] bloom, String uri)
+    {
+        int hash = uri.hashCode();
+        int delta = Integer.rotateLeft(hash * 0x9E3779B9, 16) | 1;
+        int mask = bloom.length * 64 - 1;
+        for (int i = 0; i < HASHES; ++i)
+        {
+            int bit = (hash + i * delta) & mask;
+            if ((bloom[bit >>> 6] & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[active=%d,pushes=%d,skipped=%d]", getClass().getSimpleName(), hashCode(), getActivePushes(), getPushes(), getSkippedPushes());
+    }
+}
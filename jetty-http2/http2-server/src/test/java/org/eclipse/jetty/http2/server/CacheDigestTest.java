@@ -0,0 +1,94 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.http2.server;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CacheDigestTest
+{
+    @Test
+    public void testEncodeDecode()
+    {
+        List<String> urls = IntStream.range(0, 100)
+            .mapToObj(i -> "https://example.com/resource" + i + ".js")
+            .collect(Collectors.toList());
+        String value = CacheDigest.encode(urls, 8);
+
+        List<CacheDigest> digests = CacheDigest.parse(value + "; complete");
+        assertEquals(1, digests.size());
+        CacheDigest digest = digests.get(0);
+        assertTrue(digest.isComplete());
+        assertFalse(digest.isReset());
+        urls.forEach(url -> assertTrue(digest.contains(url), url));
+
+        // With P=256 the false positive probability is low.
+        long falsePositives = IntStream.range(0, 100)
+            .mapToObj(i -> "https://example.com/other" + i + ".css")
+            .filter(digest::contains)
+            .count();
+        assertTrue(falsePositives < 5);
+    }
+
+    @Test
+    public void testDigestVector()
+    {
+        // Digest of N=4 and P=128 with the hashes 34, 347 and 373, built
+        // independently from this class as specified by the draft and by h2o:
+        // the hashes are the most significant bits of the SHA-256 of the URLs.
+        String value = "EeiLiZA";
+        List<String> urls = List.of("https://example.com/style.css", "https://example.com/script.js", "https://example.com/logo.png");
+
+        CacheDigest digest = CacheDigest.parse(value).get(0);
+        assertEquals(3, digest.size());
+        urls.forEach(url -> assertTrue(digest.contains(url), url));
+        assertEquals(value, CacheDigest.encode(urls, 7));
+    }
+
+    @Test
+    public void testMultipleDigestsAndUnsupportedFlags()
+    {
+        String fresh = CacheDigest.encode(List.of("https://example.com/a.css"), 7);
+        String stale = CacheDigest.encode(List.of("https://example.com/b.css"), 7);
+        String validators = CacheDigest.encode(List.of("https://example.com/c.css"), 7);
+
+        List<CacheDigest> digests = CacheDigest.parse(fresh + ";reset, " + stale + ";stale, " + validators + ";validators");
+        assertEquals(1, digests.size());
+        CacheDigest digest = digests.get(0);
+        assertTrue(digest.isReset());
+        assertTrue(digest.contains("https://example.com/a.css"));
+    }
+
+    @Test
+    public void testEmptyDigest()
+    {
+        CacheDigest digest = CacheDigest.parse(CacheDigest.encode(List.of(), 7)).get(0);
+        assertEquals(0, digest.size());
+        assertFalse(digest.contains("https://example.com/a.css"));
+    }
+
+    @Test
+    public void testInvalidDigest()
+    {
+        assertThrows(IllegalArgumentException.class, () -> CacheDigest.parse("not*base64"));
+    }
+}
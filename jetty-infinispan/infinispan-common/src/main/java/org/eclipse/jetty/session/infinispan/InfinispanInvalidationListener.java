@@ -0,0 +1,55 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package org.eclipse.jetty.session.infinispan;
+
+import org.infinispan.notifications.Listener;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryExpired;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryModified;
+import org.infinispan.notifications.cachelistener.annotation.CacheEntryRemoved;
+import org.infinispan.notifications.cachelistener.event.CacheEntryEvent;
+
+/**
+ * InfinispanInvalidationListener
+ *
+ * A clustered listener of an embedded infinispan cache, that notifies an
+ * {@link InfinispanSessionDataStore} of the sessions of its context
+ * modified or removed by other nodes.
+ */
+@Listener(clustered = true)
+public class InfinispanInvalidationListener
+{
+    private final InfinispanSessionDataStore _store;
+
+    public InfinispanInvalidationListener(InfinispanSessionDataStore store)
+    {
+        _store = store;
+    }
+
+    @CacheEntryModified
+    @CacheEntryRemoved
+    @CacheEntryExpired
+    public void onCacheEntryEvent(CacheEntryEvent<String, InfinispanSessionData> event)
+    {
+        if (event.isPre() || event.isOriginLocal())
+            return; //changed by this node
+
+        String prefix = _store.getCacheKey("");
+        String key = event.getKey();
+        if (key == null || !key.startsWith(prefix))
+            return; //not a session of this context
+
+        _store.notifyInvalidation(key.substring(prefix.length()));
+    }
+}
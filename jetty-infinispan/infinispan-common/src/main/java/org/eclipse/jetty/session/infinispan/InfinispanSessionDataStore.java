@@ -14,8 +14,12 @@
 package org.eclipse.jetty.session.infinispan;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
@@ -25,6 +29,7 @@ import org.eclipse.jetty.server.session.SessionData;
 import org.eclipse.jetty.server.session.UnreadableSessionDataException;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.infinispan.Cache;
 import org.infinispan.commons.api.BasicCache;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -46,6 +51,9 @@ public class InfinispanSessionDataStore extends AbstractSessionDataStore
     private int _infinispanIdleTimeoutSec;
     private QueryManager _queryManager;
     private boolean _passivating;
+    private boolean _invalidationEnabled;
+    private final List<InvalidationListener> _invalidationListeners = new CopyOnWriteArrayList<>();
+    private InfinispanInvalidationListener _cacheListener;
     
     /**
      * Get the clustered cache instance.
@@ -86,6 +94,73 @@ public class InfinispanSessionDataStore extends AbstractSessionDataStore
             //expected if not running with remote cache
             LOG.info("Hotrod classes not found, assuming infinispan in embedded mode");
         }
+
+        if (isInvalidationEnabled())
+        {
+            _cacheListener = new InfinispanInvalidationListener(this);
+            ((Cache<String, InfinispanSessionData>)_cache).addListener(_cacheListener);
+        }
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        if (_cacheListener != null)
+            ((Cache<String, InfinispanSessionData>)_cache).removeListener(_cacheListener);
+        _cacheListener = null;
+        super.doStop();
+    }
+
+    /**
+     * Control whether or not to listen to the changes made to the sessions
+     * by other nodes, to notify the {@link InvalidationListener}s, for example
+     * the near-cache of a {@link org.eclipse.jetty.server.session.CachingSessionDataStore}.
+     * Only supported with an embedded cache.
+     *
+     * @param invalidationEnabled true to notify the changes made by other nodes
+     */
+    public void setInvalidationEnabled(boolean invalidationEnabled)
+    {
+        if (isStarted())
+            throw new IllegalStateException("Already started");
+        _invalidationEnabled = invalidationEnabled;
+    }
+
+    /**
+     * @return true if the changes made to the sessions by other nodes are notified
+     */
+    @ManagedAttribute(value = "does store notify sessions changed by other nodes", readonly = true)
+    public boolean isInvalidationEnabled()
+    {
+        return _invalidationEnabled && _cache instanceof Cache;
+    }
+
+    @Override
+    public boolean addInvalidationListener(InvalidationListener listener)
+    {
+        if (!isInvalidationEnabled())
+            return false;
+        _invalidationListeners.add(listener);
+        return true;
+    }
+
+    @Override
+    public void removeInvalidationListener(InvalidationListener listener)
+    {
+        _invalidationListeners.remove(listener);
+    }
+
+    /**
+     * @param id the id of a session changed by another node
+     */
+    protected void notifyInvalidation(String id)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Session {} changed by another node", id);
+        for (InvalidationListener listener : _invalidationListeners)
+        {
+            listener.onInvalidation(id);
+        }
     }
 
     public QueryManager getQueryManager()
@@ -220,6 +295,40 @@ public class InfinispanSessionDataStore extends AbstractSessionDataStore
             LOG.debug("Session {} saved to infinispan, expires {} ", id, data.getExpiry());
     }
     
+    /**
+     * Puts all the sessions with at most two calls to putAll, one for
+     * the sessions that are given an idle timeout and one for the others.
+     */
+    @Override
+    public void doStoreAll(Map<String, SessionData> sessions, Map<String, Long> lastSaveTimes) throws Exception
+    {
+        Map<String, InfinispanSessionData> idle = new HashMap<>();
+        Map<String, InfinispanSessionData> immortal = new HashMap<>();
+        for (Map.Entry<String, SessionData> entry : sessions.entrySet())
+        {
+            SessionData data = entry.getValue();
+            if (data.getMaxInactiveMs() > 0 && getInfinispanIdleTimeoutSec() > 0)
+                idle.put(getCacheKey(entry.getKey()), (InfinispanSessionData)data);
+            else
+                immortal.put(getCacheKey(entry.getKey()), (InfinispanSessionData)data);
+        }
+
+        if (!idle.isEmpty())
+            _cache.putAll(idle, -1, TimeUnit.MILLISECONDS, getInfinispanIdleTimeoutSec(), TimeUnit.SECONDS);
+        if (!immortal.isEmpty())
+            _cache.putAll(immortal);
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("{} sessions saved to infinispan", sessions.size());
+    }
+
+    @Override
+    @ManagedAttribute(value = "does store write sessions in batches", readonly = true)
+    public boolean isBatchWriteSupported()
+    {
+        return true;
+    }
+
     public String getCacheKey(String id)
     {
         return InfinispanKeyBuilder.build(_context.getCanonicalContextPath(), _context.getVhost(), id);
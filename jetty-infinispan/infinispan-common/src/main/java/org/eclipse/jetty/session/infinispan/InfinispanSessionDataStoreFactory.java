@@ -27,6 +27,24 @@ public class InfinispanSessionDataStoreFactory extends AbstractSessionDataStoreF
     int _infinispanIdleTimeoutSec;
     BasicCache<String, InfinispanSessionData> _cache;
     protected QueryManager _queryManager;
+    boolean _invalidationEnabled;
+
+    /**
+     * @return true if the changes made to the sessions by other nodes are notified
+     */
+    public boolean isInvalidationEnabled()
+    {
+        return _invalidationEnabled;
+    }
+
+    /**
+     * @param invalidationEnabled true to notify the changes made to the sessions by other nodes
+     * @see InfinispanSessionDataStore#setInvalidationEnabled(boolean)
+     */
+    public void setInvalidationEnabled(boolean invalidationEnabled)
+    {
+        _invalidationEnabled = invalidationEnabled;
+    }
 
     /**
      * @return the infinispanIdleTimeoutSec
@@ -53,6 +71,7 @@ public class InfinispanSessionDataStoreFactory extends AbstractSessionDataStoreF
         store.setCache(getCache());
         store.setSavePeriodSec(getSavePeriodSec());
         store.setQueryManager(getQueryManager());
+        store.setInvalidationEnabled(isInvalidationEnabled());
         return store;
     }
 
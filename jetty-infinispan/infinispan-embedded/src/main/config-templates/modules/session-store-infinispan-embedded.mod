@@ -20,5 +20,6 @@ infinispan.version?=9.4.8.Final
 
 [ini-template]
 #jetty.session.infinispan.idleTimeout.seconds=0
+#jetty.session.infinispan.invalidationEnabled=false
 #jetty.session.gracePeriod.seconds=3600
 #jetty.session.savePeriod.seconds=0
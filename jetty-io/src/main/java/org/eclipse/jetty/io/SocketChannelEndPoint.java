@@ -19,11 +19,13 @@ import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.nio.ByteBuffer;
 import java.nio.channels.CancelledKeyException;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.thread.AutoLock;
 import org.eclipse.jetty.util.thread.Invocable;
 import org.eclipse.jetty.util.thread.Scheduler;
@@ -47,6 +49,8 @@ public class SocketChannelEndPoint extends AbstractEndPoint implements ManagedSe
     private int _currentInterestOps;
     // The desired value for interestOps.
     private int _desiredInterestOps;
+    // The pending file transfer, only accessed by the WriteFlusher writing thread.
+    private FileTransfer _transfer;
 
     private abstract class RunnableTask implements Runnable, Invocable
     {
@@ -279,7 +283,92 @@ public class SocketChannelEndPoint extends AbstractEndPoint implements ManagedSe
                 return false;
         }
 
-        return true;
+        FileTransfer transfer = _transfer;
+        return transfer == null || transfer.transfer();
+    }
+
+    /**
+     * <p>Writes the given buffers followed by a region of a file, without copying
+     * the file bytes in user space, by using {@link FileChannel#transferTo(long, long, java.nio.channels.WritableByteChannel)}.</p>
+     * <p>The write is non-blocking: if the socket is TCP congested, the transfer
+     * resumes when the socket becomes writable again, as for {@link #write(Callback, ByteBuffer...)}.</p>
+     *
+     * @param callback the callback to notify when the buffers and the file region have been written
+     * @param file the file to transfer from, whose position is not changed
+     * @param position the position in the file of the first byte to transfer
+     * @param count the number of bytes to transfer
+     * @param buffers the buffers to write before the file region
+     */
+    public void transferTo(Callback callback, FileChannel file, long position, long count, ByteBuffer... buffers)
+    {
+        _transfer = new FileTransfer(file, position, count);
+        write(new Callback.Nested(callback)
+        {
+            @Override
+            public void succeeded()
+            {
+                _transfer = null;
+                super.succeeded();
+            }
+
+            @Override
+            public void failed(Throwable x)
+            {
+                _transfer = null;
+                super.failed(x);
+            }
+        }, buffers);
+    }
+
+    private class FileTransfer
+    {
+        private final FileChannel _file;
+        private long _position;
+        private long _remaining;
+
+        private FileTransfer(FileChannel file, long position, long count)
+        {
+            _file = file;
+            _position = position;
+            _remaining = count;
+        }
+
+        /**
+         * @return true if the whole file region has been transferred
+         */
+        private boolean transfer() throws IOException
+        {
+            while (_remaining > 0)
+            {
+                long transferred;
+                try
+                {
+                    transferred = _file.transferTo(_position, _remaining, _channel);
+                }
+                catch (IOException e)
+                {
+                    throw new EofException(e);
+                }
+                if (LOG.isDebugEnabled())
+                    LOG.debug("transferred {}/{} {}", transferred, _remaining, SocketChannelEndPoint.this);
+
+                if (transferred == 0)
+                {
+                    // Either the socket is congested, or the file has been truncated.
+                    if (_position >= _file.size())
+                        throw new EofException("File truncated at " + _position);
+                    return false;
+                }
+
+                _position += transferred;
+                _remaining -= transferred;
+                notIdle();
+                Connection connection = getConnection();
+                if (connection instanceof WriteFlusher.Listener)
+                    ((WriteFlusher.Listener)connection).onFlushed(transferred);
+            }
+            return true;
+        }
     }
 
     public SocketChannel getChannel()
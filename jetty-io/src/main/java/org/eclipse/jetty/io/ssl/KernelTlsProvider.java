@@ -0,0 +1,62 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.io.ssl;
+
+import java.io.IOException;
+import javax.net.ssl.SSLEngine;
+
+import org.eclipse.jetty.io.EndPoint;
+
+/**
+ * <p>A provider of kernel TLS (kTLS) offload of the encryption of outbound TLS records.</p>
+ * <p>Once the TLS handshake is complete, {@link SslConnection} calls
+ * {@link #offload(SSLEngine, EndPoint)} before it encrypts the first application record.
+ * The provider may then install the symmetric transmit key, IV and record sequence
+ * number of the TLS session in the kernel for the socket of the given endpoint,
+ * for example with the {@code TCP_ULP} and {@code TLS_TX} socket options on Linux.
+ * The standard JSSE API does not expose these secrets, so providers typically
+ * require a security provider that does.</p>
+ * <p>If the offload succeeds, {@link SslConnection} writes cleartext bytes to the endpoint,
+ * and the kernel encrypts them; this also allows file content to be sent without
+ * copying it in user space. Inbound records are still decrypted by the {@link SSLEngine}.
+ * If the offload fails, {@link SslConnection} keeps encrypting with the {@link SSLEngine}.</p>
+ *
+ * @see SslConnection#setKernelTlsProvider(KernelTlsProvider)
+ */
+public interface KernelTlsProvider
+{
+    /**
+     * <p>Offloads the encryption of outbound records to the kernel.</p>
+     * <p>This method is called at most once per connection, when all the records produced
+     * by the {@link SSLEngine} have been written to the endpoint.</p>
+     *
+     * @param sslEngine the SSLEngine whose session is offloaded
+     * @param endPoint the endpoint with the encrypted bytes, typically a socket endpoint
+     * @return true if the kernel now encrypts bytes written to the endpoint, false otherwise
+     * @throws IOException if the offload failed, in which case encryption is not offloaded
+     */
+    boolean offload(SSLEngine sslEngine, EndPoint endPoint) throws IOException;
+
+    /**
+     * <p>Sends the TLS {@code close_notify} alert through the kernel,
+     * after the outbound side of an offloaded connection has been closed.</p>
+     *
+     * @param sslEngine the SSLEngine whose session is offloaded
+     * @param endPoint the endpoint with the encrypted bytes
+     * @throws IOException if the alert could not be sent
+     */
+    default void closeOutbound(SSLEngine sslEngine, EndPoint endPoint) throws IOException
+    {
+    }
+}
@@ -118,6 +118,10 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
     private int _renegotiationLimit = -1;
     private boolean _closedOutbound;
     private boolean _requireCloseMessage;
+    private KernelTlsProvider _kernelTlsProvider;
+    private boolean _kernelTlsAttempted;
+    private volatile boolean _kernelTls;
+    private boolean _kernelTlsClosed;
     private FlushState _flushState = FlushState.IDLE;
     private FillState _fillState = FillState.IDLE;
     private boolean _underflown;
@@ -286,6 +290,89 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
         _requireCloseMessage = requireCloseMessage;
     }
 
+    /**
+     * @return the provider of kernel TLS offload, or null if encryption is never offloaded
+     */
+    public KernelTlsProvider getKernelTlsProvider()
+    {
+        return _kernelTlsProvider;
+    }
+
+    /**
+     * <p>Sets the provider of kernel TLS offload, which is offered to encrypt the outbound
+     * records of this connection once the TLS handshake is complete.</p>
+     * <p>If the provider is null, or if it cannot offload the encryption, the
+     * {@link SSLEngine} keeps encrypting the outbound records.</p>
+     *
+     * @param kernelTlsProvider the provider of kernel TLS offload, or null
+     */
+    public void setKernelTlsProvider(KernelTlsProvider kernelTlsProvider)
+    {
+        _kernelTlsProvider = kernelTlsProvider;
+    }
+
+    /**
+     * @return whether the encryption of outbound records has been offloaded to the kernel,
+     * in which case bytes written to {@link #getEndPoint()} are cleartext
+     */
+    public boolean isKernelTlsOffloaded()
+    {
+        return _kernelTls;
+    }
+
+    private void offloadKernelTls()
+    {
+        KernelTlsProvider provider = _kernelTlsProvider;
+        if (provider == null || _kernelTlsAttempted || !isHandshakeSucceeded())
+            return;
+        // All the records produced by the SSLEngine must have been written,
+        // so that the kernel continues with the right record sequence number.
+        if (_sslEngine.getHandshakeStatus() != HandshakeStatus.NOT_HANDSHAKING || BufferUtil.hasContent(_encryptedOutput))
+            return;
+
+        _kernelTlsAttempted = true;
+        try
+        {
+            _kernelTls = provider.offload(_sslEngine, getEndPoint());
+        }
+        catch (Throwable x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("kernel TLS offload failed {}", this, x);
+        }
+        if (LOG.isDebugEnabled())
+            LOG.debug("kernel TLS offload={} {}", _kernelTls, this);
+    }
+
+    private SSLEngineResult kernelWrap(ByteBuffer[] input, ByteBuffer output) throws IOException
+    {
+        // Cleartext bytes are copied to the output, to be encrypted by the kernel.
+        // The close_notify reply to a close_notify from the peer is also sent by the kernel.
+        if (_closedOutbound || _sslEngine.isInboundDone())
+        {
+            if (!_kernelTlsClosed)
+            {
+                _kernelTlsClosed = true;
+                _kernelTlsProvider.closeOutbound(_sslEngine, getEndPoint());
+            }
+            return new SSLEngineResult(Status.CLOSED, HandshakeStatus.NOT_HANDSHAKING, 0, 0);
+        }
+
+        // The SSLEngine cannot produce records any more, e.g. for renegotiations or key updates.
+        HandshakeStatus status = _sslEngine.getHandshakeStatus();
+        if (status != HandshakeStatus.NOT_HANDSHAKING)
+            throw new SSLException("Unsupported " + status + " after kernel TLS offload");
+
+        int consumed = 0;
+        for (ByteBuffer buffer : input)
+        {
+            consumed += BufferUtil.put(buffer, output);
+            if (!output.hasRemaining())
+                break;
+        }
+        return new SSLEngineResult(Status.OK, HandshakeStatus.NOT_HANDSHAKING, consumed, consumed);
+    }
+
     private boolean isHandshakeInitial()
     {
         return _handshake.get() == HandshakeState.INITIAL;
@@ -417,12 +504,12 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
         int di = b == null ? -1 : b.remaining();
 
         Connection connection = _decryptedEndPoint.getConnection();
-        return String.format("%s@%x{%s,eio=%d/%d,di=%d,fill=%s,flush=%s}~>%s=>%s",
+        return String.format("%s@%x{%s,eio=%d/%d,di=%d,fill=%s,flush=%s,ktls=%b}~>%s=>%s",
             getClass().getSimpleName(),
             hashCode(),
             _sslEngine.getHandshakeStatus(),
             ei, eo, di,
-            _fillState, _flushState,
+            _fillState, _flushState, _kernelTls,
             _decryptedEndPoint.toEndPointString(),
             connection instanceof AbstractConnection ? ((AbstractConnection)connection).toConnectionString() : connection);
     }
@@ -1053,6 +1140,8 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
                                     throw new IllegalStateException("Unexpected HandshakeStatus " + status);
                             }
 
+                            offloadKernelTls();
+
                             int packetBufferSize = getPacketBufferSize();
                             acquireEncryptedOutput();
 
@@ -1069,7 +1158,10 @@ public class SslConnection extends AbstractConnection implements Connection.Upgr
                             SSLEngineResult wrapResult;
                             try
                             {
-                                wrapResult = wrap(_sslEngine, appOuts, _encryptedOutput);
+                                if (_kernelTls)
+                                    wrapResult = kernelWrap(appOuts, _encryptedOutput);
+                                else
+                                    wrapResult = wrap(_sslEngine, appOuts, _encryptedOutput);
                             }
                             finally
                             {
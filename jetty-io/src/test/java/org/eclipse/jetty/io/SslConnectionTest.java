@@ -33,6 +33,7 @@ import javax.net.ssl.SSLEngine;
 import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLSocket;
 
+import org.eclipse.jetty.io.ssl.KernelTlsProvider;
 import org.eclipse.jetty.io.ssl.SslConnection;
 import org.eclipse.jetty.toolchain.test.MavenTestingUtils;
 import org.eclipse.jetty.util.BufferUtil;
@@ -67,6 +68,7 @@ public class SslConnectionTest
     private volatile boolean _onXWriteThenShutdown = false;
 
     private volatile FutureCallback _writeCallback;
+    private volatile KernelTlsProvider _kernelTlsProvider;
     protected ServerSocketChannel _connector;
     final AtomicInteger _dispatches = new AtomicInteger();
     protected QueuedThreadPool _threadPool = new QueuedThreadPool()
@@ -89,6 +91,7 @@ public class SslConnectionTest
             SslConnection sslConnection = new SslConnection(__byteBufferPool, getExecutor(), endpoint, engine);
             sslConnection.setRenegotiationAllowed(_sslCtxFactory.isRenegotiationAllowed());
             sslConnection.setRenegotiationLimit(_sslCtxFactory.getRenegotiationLimit());
+            sslConnection.setKernelTlsProvider(_kernelTlsProvider);
             Connection appConnection = new TestConnection(sslConnection.getDecryptedEndPoint());
             sslConnection.getDecryptedEndPoint().setConnection(appConnection);
             return sslConnection;
@@ -110,6 +113,8 @@ public class SslConnectionTest
 
     private static class TestEP extends SocketChannelEndPoint
     {
+        private volatile SSLEngine _kernel;
+
         public TestEP(SelectableChannel channel, ManagedSelector selector, SelectionKey key, Scheduler scheduler)
         {
             super((SocketChannel)channel, selector, key, scheduler);
@@ -124,6 +129,10 @@ public class SslConnectionTest
         @Override
         public boolean flush(ByteBuffer... buffers) throws IOException
         {
+            SSLEngine kernel = _kernel;
+            if (kernel != null)
+                return kernelFlush(kernel, buffers);
+
             __onIncompleteFlush.set(false);
             if (__startBlocking.get() == 0 || __startBlocking.decrementAndGet() == 0)
             {
@@ -134,6 +143,23 @@ public class SslConnectionTest
             }
             return super.flush(buffers);
         }
+
+        private boolean kernelFlush(SSLEngine kernel, ByteBuffer... buffers) throws IOException
+        {
+            // Stand-in for kernel TLS: encrypt the cleartext bytes and write them all.
+            ByteBuffer encrypted = ByteBuffer.allocate(kernel.getSession().getPacketBufferSize());
+            while (BufferUtil.remaining(buffers) > 0)
+            {
+                encrypted.clear();
+                kernel.wrap(buffers, encrypted);
+                encrypted.flip();
+                while (encrypted.hasRemaining())
+                {
+                    super.flush(encrypted);
+                }
+            }
+            return true;
+        }
     }
 
     @BeforeEach
@@ -298,6 +324,71 @@ public class SslConnectionTest
         }
     }
 
+    @Test
+    public void testKernelTlsOffload() throws Exception
+    {
+        AtomicInteger offloads = new AtomicInteger();
+        _kernelTlsProvider = (sslEngine, endPoint) ->
+        {
+            offloads.incrementAndGet();
+            ((TestEP)endPoint)._kernel = sslEngine;
+            return true;
+        };
+        startSSL();
+        try (Socket client = newClient())
+        {
+            client.setSoTimeout(TIMEOUT);
+            try (SocketChannel server = _connector.accept())
+            {
+                server.configureBlocking(false);
+                _manager.accept(server);
+
+                for (String message : new String[]{"Hello", "World"})
+                {
+                    client.getOutputStream().write(message.getBytes(StandardCharsets.UTF_8));
+                    byte[] buffer = new byte[1024];
+                    int len = client.getInputStream().read(buffer);
+                    assertEquals(message, new String(buffer, 0, len, StandardCharsets.UTF_8));
+                }
+
+                assertEquals(1, offloads.get());
+                assertTrue(((SslConnection)_lastEndp.getConnection()).isKernelTlsOffloaded());
+            }
+        }
+    }
+
+    @Test
+    public void testKernelTlsFallback() throws Exception
+    {
+        AtomicInteger offloads = new AtomicInteger();
+        _kernelTlsProvider = (sslEngine, endPoint) ->
+        {
+            offloads.incrementAndGet();
+            return false;
+        };
+        startSSL();
+        try (Socket client = newClient())
+        {
+            client.setSoTimeout(TIMEOUT);
+            try (SocketChannel server = _connector.accept())
+            {
+                server.configureBlocking(false);
+                _manager.accept(server);
+
+                for (String message : new String[]{"Hello", "World"})
+                {
+                    client.getOutputStream().write(message.getBytes(StandardCharsets.UTF_8));
+                    byte[] buffer = new byte[1024];
+                    int len = client.getInputStream().read(buffer);
+                    assertEquals(message, new String(buffer, 0, len, StandardCharsets.UTF_8));
+                }
+
+                assertEquals(1, offloads.get());
+                assertThat(((SslConnection)_lastEndp.getConnection()).isKernelTlsOffloaded(), is(false));
+            }
+        }
+    }
+
     @Test
     public void testRenegotiate() throws Exception
     {
@@ -34,6 +34,7 @@ connection-type?=address
 #jetty.session.mongo.collectionName=jettySessions
 #jetty.session.gracePeriod.seconds=3600
 #jetty.session.savePeriod.seconds=0
+#jetty.session.mongo.attributeFields=false
 
 connection-type=address
 #jetty.session.mongo.host=localhost
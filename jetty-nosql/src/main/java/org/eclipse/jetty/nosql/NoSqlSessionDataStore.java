@@ -46,6 +46,13 @@ public abstract class NoSqlSessionDataStore extends AbstractSessionDataStore
             return _version;
         }
 
+        @Override
+        public void copyStoreState(SessionData data)
+        {
+            if (data instanceof NoSqlSessionData)
+                setVersion(((NoSqlSessionData)data).getVersion());
+        }
+
         @Override
         public void setDirty(String name)
         {
@@ -13,9 +13,6 @@
 
 package org.eclipse.jetty.nosql.mongodb;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.ObjectOutputStream;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -24,6 +21,9 @@ import java.util.Set;
 import com.mongodb.BasicDBList;
 import com.mongodb.BasicDBObject;
 import com.mongodb.BasicDBObjectBuilder;
+import com.mongodb.BulkWriteOperation;
+import com.mongodb.BulkWriteRequestBuilder;
+import com.mongodb.BulkWriteResult;
 import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
@@ -34,7 +34,6 @@ import org.eclipse.jetty.nosql.NoSqlSessionDataStore;
 import org.eclipse.jetty.server.session.SessionContext;
 import org.eclipse.jetty.server.session.SessionData;
 import org.eclipse.jetty.server.session.UnreadableSessionDataException;
-import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
@@ -87,6 +86,11 @@ import org.slf4j.LoggerFactory;
  * interact with session fields, the key is composed of:
  * <code>"context".unique_context_name.field_name</code>
  * Eg  <code>"context"."0_0_0_0:_testA"."lastSaved"</code>
+ * <p>
+ * By default the attributes of a context are serialized together into its "attributes" field.
+ * If {@link #setAttributeFields(boolean)} is true, each attribute is instead written as a field
+ * as shown above, so that only the attributes that changed are written.
+ * </p>
  */
 @ManagedObject
 public class MongoSessionDataStore extends NoSqlSessionDataStore
@@ -157,6 +161,11 @@ public class MongoSessionDataStore extends NoSqlSessionDataStore
      */
     private DBCollection _dbSessions;
 
+    /**
+     * Whether attributes are written as fields of the document rather than serialized together
+     */
+    private boolean _attributeFields;
+
     public void setDBCollection(DBCollection collection)
     {
         _dbSessions = collection;
@@ -239,11 +248,7 @@ public class MongoSessionDataStore extends NoSqlSessionDataStore
                 else
                 {
                     //attributes have special serialized format
-                    try (ByteArrayInputStream bais = new ByteArrayInputStream(attributes);
-                         ClassLoadingObjectInputStream ois = new ClassLoadingObjectInputStream(bais);)
-                    {
-                        SessionData.deserializeAttributes(data, ois);
-                    }
+                    _serializer.deserializeAttributes(data, attributes);
                 }
             }
             else
@@ -260,6 +265,36 @@ public class MongoSessionDataStore extends NoSqlSessionDataStore
         }
     }
 
+    /**
+     * Read only the last save time of the session for the context.
+     */
+    @Override
+    public long getLastSaved(String id) throws Exception
+    {
+        DBObject fields = new BasicDBObject();
+        fields.put(__VALID, 1);
+        fields.put(getContextSubfield(__LASTSAVED), 1);
+
+        DBObject sessionDocument = _dbSessions.findOne(new BasicDBObject(__ID, id), fields);
+        if (sessionDocument == null)
+            return -1;
+
+        Boolean valid = (Boolean)sessionDocument.get(__VALID);
+        if (valid == null || !valid)
+            return -1;
+
+        //does it exist for this context?
+        Long lastSaved = (Long)MongoUtils.getNestedValue(sessionDocument, getContextSubfield(__LASTSAVED));
+        return lastSaved == null ? -1 : lastSaved;
+    }
+
+    @Override
+    @ManagedAttribute(value = "does store read the last save time without loading the session", readonly = true)
+    public boolean isLastSavedSupported()
+    {
+        return true;
+    }
+
     @Override
     public boolean delete(String id) throws Exception
     {
@@ -458,37 +493,180 @@ public class MongoSessionDataStore extends NoSqlSessionDataStore
     @Override
     public void doStore(String id, SessionData data, long lastSaveTime) throws Exception
     {
+        doStore(id, data, null, lastSaveTime);
+    }
+
+    /**
+     * Does not write the serialized attributes if no attribute changed. If
+     * attributes are written as fields, only the changed ones are written.
+     */
+    @Override
+    public void doStoreDelta(String id, SessionData data, Set<String> dirtyAttributes, long lastSaveTime) throws Exception
+    {
+        doStore(id, data, dirtyAttributes, lastSaveTime);
+    }
+
+    private void doStore(String id, SessionData data, Set<String> dirtyAttributes, long lastSaveTime) throws Exception
+    {
+        Object version = ((NoSqlSessionData)data).getVersion();
+        boolean fieldDelta = isAttributeFieldDelta(data, dirtyAttributes);
+
         // Form query for upsert
-        final BasicDBObject key = new BasicDBObject(__ID, id);
+        final BasicDBObject key = newKey(id, fieldDelta);
+        final BasicDBObject update = newUpdate(id, data, dirtyAttributes, lastSaveTime);
+
+        // Do the upsert
+        WriteResult res = _dbSessions.update(key, update, lastSaveTime <= 0, false, WriteConcern.SAFE);
+        if (LOG.isDebugEnabled())
+            LOG.debug("Save:db.sessions.update( {}, {},{} )", key, update, res);
+
+        if (fieldDelta && res.getN() == 0)
+        {
+            //the attributes were last written serialized, so all of them must be written as fields
+            ((NoSqlSessionData)data).setVersion(version);
+            doStore(id, data, null, lastSaveTime);
+        }
+    }
+
+    /**
+     * Upserts all the sessions with a single unordered bulk write.
+     */
+    @Override
+    public void doStoreAll(Map<String, SessionData> sessions, Map<String, Long> lastSaveTimes) throws Exception
+    {
+        BulkWriteOperation bulk = _dbSessions.initializeUnorderedBulkOperation();
+        Map<String, Object> fieldDeltas = new HashMap<>();
+        for (Map.Entry<String, SessionData> entry : sessions.entrySet())
+        {
+            String id = entry.getKey();
+            SessionData data = entry.getValue();
+            long lastSaveTime = lastSaveTimes.get(id);
+            Set<String> dirtyAttributes = (lastSaveTime > 0 ? data.getDirtyAttributes() : null);
+            boolean fieldDelta = isAttributeFieldDelta(data, dirtyAttributes);
+            if (fieldDelta)
+                fieldDeltas.put(id, ((NoSqlSessionData)data).getVersion());
+            BasicDBObject update = newUpdate(id, data, dirtyAttributes, lastSaveTime);
+            BulkWriteRequestBuilder request = bulk.find(newKey(id, fieldDelta));
+            if (lastSaveTime <= 0)
+                request.upsert().updateOne(update);
+            else
+                request.updateOne(update);
+        }
+
+        BulkWriteResult res = bulk.execute(WriteConcern.SAFE);
+        if (LOG.isDebugEnabled())
+            LOG.debug("Save:db.sessions.bulkWrite( {} )", res);
+
+        if (!fieldDeltas.isEmpty() && res.getMatchedCount() + res.getUpserts().size() < sessions.size())
+        {
+            //some attributes were last written serialized, so all of them must be written as fields
+            for (Map.Entry<String, Object> entry : fieldDeltas.entrySet())
+            {
+                String id = entry.getKey();
+                SessionData data = sessions.get(id);
+                ((NoSqlSessionData)data).setVersion(entry.getValue());
+                doStore(id, data, null, lastSaveTimes.get(id));
+            }
+        }
+    }
+
+    @Override
+    @ManagedAttribute(value = "does store write sessions in bulk", readonly = true)
+    public boolean isBatchWriteSupported()
+    {
+        return true;
+    }
+
+    /**
+     * @param attributeFields true to write each attribute as a field of the session document, so
+     * that only the changed attributes need be written, false to write all the attributes serialized
+     * together whenever one of them changes
+     */
+    public void setAttributeFields(boolean attributeFields)
+    {
+        _attributeFields = attributeFields;
+    }
+
+    @ManagedAttribute(value = "does store write each attribute as a field", readonly = true)
+    public boolean isAttributeFields()
+    {
+        return _attributeFields;
+    }
+
+    /**
+     * Attributes can only be written as fields if their names do not clash
+     * with the special fields of the document for the context.
+     *
+     * @param data the session data
+     * @param attributes the names of the attributes to write
+     * @return true if the attributes can be written as fields
+     */
+    private boolean isAttributeFieldWrite(SessionData data, Set<String> attributes)
+    {
+        if (!_attributeFields)
+            return false;
 
+        for (String name : (attributes == null ? data.getKeys() : attributes))
+        {
+            String field = MongoUtils.encodeName(name);
+            if (__METADATA.equals(field) || __ATTRIBUTES.equals(field))
+                return false;
+        }
+        return true;
+    }
+
+    private boolean isAttributeFieldDelta(SessionData data, Set<String> dirtyAttributes)
+    {
+        return dirtyAttributes != null && !dirtyAttributes.isEmpty() && isAttributeFieldWrite(data, dirtyAttributes);
+    }
+
+    private BasicDBObject newKey(String id, boolean fieldDelta)
+    {
+        BasicDBObject key = new BasicDBObject(__ID, id);
+        //changed attributes can only be written as fields if the others are not serialized
+        if (fieldDelta)
+            key.put(getContextSubfield(__ATTRIBUTES), new BasicDBObject("$exists", false));
+        return key;
+    }
+
+    private BasicDBObject newUpdate(String id, SessionData data, Set<String> dirtyAttributes, long lastSaveTime) throws Exception
+    {
         // Form updates
         BasicDBObject update = new BasicDBObject();
-        boolean upsert = false;
         BasicDBObject sets = new BasicDBObject();
+        BasicDBObject unsets = new BasicDBObject();
 
         Object version = ((NoSqlSessionData)data).getVersion();
+        boolean attributeFields = isAttributeFieldWrite(data, dirtyAttributes);
+        //writing all the attributes as fields replaces the whole document for the context
+        boolean context = attributeFields && (dirtyAttributes == null || lastSaveTime <= 0);
 
         // New session
         if (lastSaveTime <= 0)
         {
-            upsert = true;
             version = 1L;
             sets.put(__CREATED, data.getCreated());
             sets.put(__VALID, true);
-            sets.put(getContextSubfield(__VERSION), version);
-            sets.put(getContextSubfield(__LASTSAVED), data.getLastSaved());
-            sets.put(getContextSubfield(__LASTNODE), data.getLastNode());
+            if (!context)
+            {
+                sets.put(getContextSubfield(__VERSION), version);
+                sets.put(getContextSubfield(__LASTSAVED), data.getLastSaved());
+                sets.put(getContextSubfield(__LASTNODE), data.getLastNode());
+            }
             sets.put(__MAX_IDLE, data.getMaxInactiveMs());
             sets.put(__EXPIRY, data.getExpiry());
             ((NoSqlSessionData)data).setVersion(version);
         }
         else
         {
-            sets.put(getContextSubfield(__LASTSAVED), data.getLastSaved());
-            sets.put(getContextSubfield(__LASTNODE), data.getLastNode());
             version = ((Number)version).longValue() + 1L;
             ((NoSqlSessionData)data).setVersion(version);
-            update.put("$inc", _version1);
+            if (!context)
+            {
+                sets.put(getContextSubfield(__LASTSAVED), data.getLastSaved());
+                sets.put(getContextSubfield(__LASTNODE), data.getLastNode());
+                update.put("$inc", _version1);
+            }
             //if max idle time and/or expiry is smaller for this context, then choose that for the whole session doc
             BasicDBObject fields = new BasicDBObject();
             fields.append(__MAX_IDLE, true);
@@ -514,20 +692,42 @@ public class MongoSessionDataStore extends NoSqlSessionDataStore
         sets.put(__ACCESSED, data.getAccessed());
         sets.put(__LAST_ACCESSED, data.getLastAccessed());
 
-        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             ObjectOutputStream oos = new ObjectOutputStream(baos);)
+        if (context)
         {
-            SessionData.serializeAttributes(data, oos);
-            sets.put(getContextSubfield(__ATTRIBUTES), baos.toByteArray());
+            BasicDBObject metadata = new BasicDBObject();
+            metadata.put(getMetadataField(__VERSION), version);
+            metadata.put(getMetadataField(__LASTSAVED), data.getLastSaved());
+            metadata.put(getMetadataField(__LASTNODE), data.getLastNode());
+            BasicDBObject attributes = new BasicDBObject(__METADATA, metadata);
+            for (String name : data.getKeys())
+            {
+                attributes.put(MongoUtils.encodeName(name), MongoUtils.encodeName(data.getAttribute(name)));
+            }
+            sets.put(getContextField(), attributes);
+        }
+        else if (attributeFields)
+        {
+            //only the changed attributes, the key ensures the others are fields too
+            for (String name : dirtyAttributes)
+            {
+                Object value = data.getAttribute(name);
+                if (value == null)
+                    unsets.put(getContextSubfield(MongoUtils.encodeName(name)), 1);
+                else
+                    sets.put(getContextSubfield(MongoUtils.encodeName(name)), MongoUtils.encodeName(value));
+            }
+        }
+        else if (dirtyAttributes == null || !dirtyAttributes.isEmpty())
+        {
+            sets.put(getContextSubfield(__ATTRIBUTES), _serializer.serializeAttributes(data));
         }
 
-        // Do the upsert
         if (!sets.isEmpty())
             update.put("$set", sets);
+        if (!unsets.isEmpty())
+            update.put("$unset", unsets);
 
-        WriteResult res = _dbSessions.update(key, update, upsert, false, WriteConcern.SAFE);
-        if (LOG.isDebugEnabled())
-            LOG.debug("Save:db.sessions.update( {}, {},{} )", key, update, res);
+        return update;
     }
 
     protected void ensureIndexes() throws MongoException
@@ -577,6 +777,11 @@ public class MongoSessionDataStore extends NoSqlSessionDataStore
         return getContextField() + "." + attr;
     }
 
+    private static String getMetadataField(String attr)
+    {
+        return attr.substring(__METADATA.length() + 1);
+    }
+
     @ManagedAttribute(value = "does store serialize sessions", readonly = true)
     @Override
     public boolean isPassivating()
@@ -584,6 +789,13 @@ public class MongoSessionDataStore extends NoSqlSessionDataStore
         return true;
     }
 
+    @ManagedAttribute(value = "does store write only changed session data", readonly = true)
+    @Override
+    public boolean isDeltaWriteSupported()
+    {
+        return true;
+    }
+
     @Override
     public String toString()
     {
@@ -32,6 +32,7 @@ public class MongoSessionDataStoreFactory extends AbstractSessionDataStoreFactor
     String _host;
     String _connectionString;
     int _port = -1;
+    boolean _attributeFields;
 
     /**
      * @return the host
@@ -113,6 +114,23 @@ public class MongoSessionDataStoreFactory extends AbstractSessionDataStoreFactor
         _collectionName = collectionName;
     }
 
+    /**
+     * @return true if attributes are written as fields of the session document
+     */
+    public boolean isAttributeFields()
+    {
+        return _attributeFields;
+    }
+
+    /**
+     * @param attributeFields true to write each attribute as a field of the session document
+     * @see MongoSessionDataStore#setAttributeFields(boolean)
+     */
+    public void setAttributeFields(boolean attributeFields)
+    {
+        _attributeFields = attributeFields;
+    }
+
     /**
      * @throws Exception {@link UnknownHostException} if any issue while resolving MongoDB Host
      * @see org.eclipse.jetty.server.session.SessionDataStoreFactory#getSessionDataStore(org.eclipse.jetty.server.session.SessionHandler)
@@ -123,6 +141,9 @@ public class MongoSessionDataStoreFactory extends AbstractSessionDataStoreFactor
         MongoSessionDataStore store = new MongoSessionDataStore();
         store.setGracePeriodSec(getGracePeriodSec());
         store.setSavePeriodSec(getSavePeriodSec());
+        store.setAttributeFields(isAttributeFields());
+        if (getSerializer() != null)
+            store.setSerializer(getSerializer());
         MongoClient mongo;
 
         if (!StringUtil.isBlank(getConnectionString()))
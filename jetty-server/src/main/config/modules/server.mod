@@ -78,6 +78,9 @@ etc/jetty.xml
 # jetty.httpConfig.useInputDirectByteBuffers=true
 # jetty.httpConfig.useOutputDirectByteBuffers=true
 
+## Whether to write file content with zero-copy transfers on cleartext HTTP/1.1
+# jetty.httpConfig.useSendFile=false
+
 ### Server configuration
 ## Whether ctrl+c on the console gracefully stops the Jetty server
 # jetty.server.stopAtShutdown=true
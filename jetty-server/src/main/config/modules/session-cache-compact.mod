@@ -0,0 +1,28 @@
+# DO NOT EDIT - See: https://www.eclipse.org/jetty/documentation/current/startup-modules.html
+
+[description]
+Enable a first level session cache that keeps sessions
+that are not used by any request serialized in memory,
+either on heap or off-heap.
+
+[tags]
+session
+
+[provides]
+session-cache
+
+[depends]
+sessions
+
+[xml]
+etc/sessions/session-cache-compact.xml
+
+[ini-template]
+#jetty.session.evictionPolicy=-1
+#jetty.session.saveOnInactiveEvict=false
+#jetty.session.saveOnCreate=false
+#jetty.session.removeUnloadableSessions=false
+#jetty.session.flushOnResponseCommit=false
+#jetty.session.invalidateOnShutdown=false
+#jetty.session.compact.offHeap=false
+#jetty.session.compact.maxCompactedBytes=-1
@@ -23,6 +23,7 @@ session-data-cache?=xmemcached
 
 ## Session Data Cache type: xmemcached
 session-data-cache=xmemcached
+#jetty.session.cache.nearCache=false
 #jetty.session.memcached.host=localhost
 #jetty.session.memcached.port=11211
 #jetty.session.memcached.expirySec=
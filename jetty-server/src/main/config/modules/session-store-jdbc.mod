@@ -32,6 +32,11 @@ db-connection-type?=datasource
 #jetty.session.jdbc.longType=
 #jetty.session.jdbc.stringType=
 
+## Max connections kept open by each context to reuse prepared statements (0 gets a connection per operation)
+#jetty.session.jdbc.maxPooledConnections=0
+## Write new sessions with a single insert-or-update statement on postgres and mysql
+#jetty.session.jdbc.upsert=false
+
 ## Connection type:Datasource
 db-connection-type=datasource
 #jetty.session.jdbc.datasourceName=/jdbc/sessions
@@ -20,5 +20,11 @@ etc/sessions/id-manager.xml
 ## The name to uniquely identify this server instance
 #jetty.sessionIdManager.workerName=node1
 
+## Number of random number generators for session ids (-1 derives it from the number of processors)
+#jetty.sessionIdManager.randomStripes=-1
+
+## Time in ms that a session id found to be in use is remembered (0 to always check every context)
+#jetty.sessionIdManager.idInUseCacheMs=0
+
 ## Period between runs of the session scavenger (in seconds)
 #jetty.sessionScavengeInterval.seconds=600
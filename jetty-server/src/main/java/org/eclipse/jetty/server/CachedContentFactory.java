@@ -14,19 +14,34 @@
 package org.eclipse.jetty.server;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.SortedSet;
-import java.util.TreeSet;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
 
 import org.eclipse.jetty.http.CompressedContentFormat;
 import org.eclipse.jetty.http.DateGenerator;
@@ -39,15 +54,76 @@ import org.eclipse.jetty.http.PreEncodedHttpField;
 import org.eclipse.jetty.http.PrecompressedHttpContent;
 import org.eclipse.jetty.http.ResourceHttpContent;
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.ByteArrayOutputStream2;
+import org.eclipse.jetty.util.FrequencySketch;
+import org.eclipse.jetty.util.PathWatcher;
+import org.eclipse.jetty.util.ProcessorUtils;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.compression.CompressionCodec;
+import org.eclipse.jetty.util.compression.DeflateCodec;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.resource.ResourceFactory;
+import org.eclipse.jetty.util.thread.AutoLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * <p>A {@link HttpContent.ContentFactory} that caches the content of resources.</p>
+ * <p>The cache is bounded by number of files and by total size of the cached buffers.
+ * Entries are kept in access order so that eviction of the least recently used entry
+ * is a constant time operation.</p>
+ * <p>If {@link #setFrequencyAdmission(boolean) frequency admission} is enabled,
+ * the cache uses the <a href="https://arxiv.org/abs/1512.00727">W-TinyLFU</a> policy:
+ * new entries are admitted into a small recency window, and entries leaving the
+ * window are only retained if they have been accessed more frequently, as estimated
+ * by a {@link FrequencySketch}, than the entries that would be evicted to make room
+ * for them. Entries in the main space are divided into a probation segment and a
+ * protected segment for entries that have been accessed again.
+ * Since entries of the window may need to evict several entries of the main space
+ * to fit within the maximum cache size, the policy is size aware.
+ * This policy protects the cache against scans of content that is accessed only once,
+ * such as that generated by crawlers.</p>
+ * <p>If {@link #setCompressVariants(boolean) compressed variants} are enabled,
+ * cached content of a {@link #setCompressibleMimeTypes(String...) compressible}
+ * mime type is gzip compressed once, at a high {@link #setCompressionLevel(int) level},
+ * or compressed with another {@link #setCompressionCodec(CompressionCodec) codec},
+ * and the compressed bytes are kept next to the identity bytes, so that the content
+ * is not compressed again for each request.
+ * Compressed variants are served like precompressed content, with their own ETag,
+ * and are accounted separately from the {@link #getMaxCacheSize() cache size}
+ * against {@link #getMaxCompressedVariantsSize()}.
+ * Precompressed files, if present, take precedence over compressed variants.</p>
+ * <p>If {@link #isUseFileMappedBuffer() file mapped buffers} are used, files larger than
+ * {@link #getMinMappedFileSize()} are memory mapped rather than copied into direct buffers,
+ * so that their bytes are served from the operating system page cache, while smaller files
+ * are kept in direct buffers accounted against the {@link #getMaxCacheSize() cache size}.
+ * Mapped files are accounted separately against {@link #getMaxMappedSize()}, a budget of
+ * virtual memory: when it is exceeded, the least recently used files are unmapped, preferring
+ * those whose pages are no longer resident in the page cache.
+ * When a cached file changes, only that entry is reloaded, in place, and its buffers are
+ * loaded or mapped again on the next use.</p>
+ * <p>By default, each cache hit checks whether the file has changed, which costs a
+ * {@code stat} system call. If a {@link #setPathWatcher(PathWatcher) PathWatcher} is set,
+ * cache hits do not access the file system; instead, entries are invalidated in the
+ * background when the watcher reports a change of their file, or of one of their
+ * precompressed files.</p>
+ * <p>If an {@link #setETagDigestAlgorithm(String) ETag digest algorithm} is set, cached
+ * content has a strong ETag computed from a digest of its bytes, rather than a weak ETag
+ * computed from the last modified time and length of its file, so that the same content
+ * has the same ETag on every server of a cluster. The digest is computed once per version
+ * of the file, in the background, and the weak ETag is used until it is available.</p>
+ */
+@ManagedObject("Cache of static content")
 public class CachedContentFactory implements HttpContent.ContentFactory
 {
     private static final Logger LOG = LoggerFactory.getLogger(CachedContentFactory.class);
     private static final Map<CompressedContentFormat, CachedPrecompressedHttpContent> NO_PRECOMPRESSED = Collections.unmodifiableMap(Collections.emptyMap());
+    private static final String[] DEFAULT_COMPRESSIBLE_MIME_TYPES =
+        {
+            "text/*", "application/javascript", "application/json", "application/xml", "application/xhtml+xml", "image/svg+xml"
+        };
 
     private final ConcurrentMap<String, CachedHttpContent> _cache;
     private final AtomicInteger _cachedSize;
@@ -58,10 +134,42 @@ public class CachedContentFactory implements HttpContent.ContentFactory
     private final boolean _etags;
     private final CompressedContentFormat[] _precompressedFormats;
     private final boolean _useFileMappedBuffer;
+    private final AutoLock _lock = new AutoLock();
+    private final Segment _window = new Segment("window");
+    private final Segment _probation = new Segment("probation");
+    private final Segment _protected = new Segment("protected");
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _admissionRejects = new LongAdder();
+    private final LongAdder _evictions = new LongAdder();
+    private final AtomicLong _compressedVariantsSize = new AtomicLong();
+    private final AtomicInteger _compressedVariants = new AtomicInteger();
+    private final AtomicLong _mappedSize = new AtomicLong();
+    private final AtomicInteger _mappedFiles = new AtomicInteger();
+    private final LongAdder _unmaps = new LongAdder();
+    // Mapped entries in access order, guarded by the cache lock.
+    private final Map<CachedHttpContent, Boolean> _mapped = new LinkedHashMap<>(16, 0.75F, true);
+    private final ConcurrentMap<Path, CachedHttpContent> _watched = new ConcurrentHashMap<>();
+    private final PathWatcher.Listener _pathWatchListener = this::onPathWatchEvent;
+    private final ReadBuffer _readBuffer = new ReadBuffer();
+    private volatile PathWatcher _pathWatcher;
+    // Written under the cache lock.
+    private volatile FrequencySketch _sketch;
+    private boolean _compressVariants;
+    private final DeflateCodec _deflateCodec = new DeflateCodec();
+    private CompressionCodec _compressionCodec = _deflateCodec;
+    private CompressedContentFormat _variantFormat = CompressedContentFormat.GZIP;
+    private int _minCompressSize = 256;
+    private long _maxCompressedVariantsSize = 64 * 1024 * 1024;
+    private Set<String> _compressibleMimeTypes = Set.of(DEFAULT_COMPRESSIBLE_MIME_TYPES);
+    private Executor _executor;
+    private volatile String _etagDigestAlgorithm;
 
     private int _maxCachedFileSize = 128 * 1024 * 1024;
     private int _maxCachedFiles = 2048;
     private int _maxCacheSize = 256 * 1024 * 1024;
+    private long _maxMappedSize = 16L * 1024 * 1024 * 1024;
+    private int _minMappedFileSize;
 
     /**
      * Constructor.
@@ -86,16 +194,19 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         _precompressedFormats = precompressedFormats;
     }
 
+    @ManagedAttribute(value = "The total size of the cached buffers", readonly = true)
     public int getCachedSize()
     {
         return _cachedSize.get();
     }
 
+    @ManagedAttribute(value = "The number of cached files", readonly = true)
     public int getCachedFiles()
     {
         return _cachedFiles.get();
     }
 
+    @ManagedAttribute("The maximum size of a cached file")
     public int getMaxCachedFileSize()
     {
         return _maxCachedFileSize;
@@ -107,6 +218,7 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         shrinkCache();
     }
 
+    @ManagedAttribute("The maximum total size of the cached buffers")
     public int getMaxCacheSize()
     {
         return _maxCacheSize;
@@ -121,6 +233,7 @@ public class CachedContentFactory implements HttpContent.ContentFactory
     /**
      * @return the max number of cached files.
      */
+    @ManagedAttribute("The maximum number of cached files")
     public int getMaxCachedFiles()
     {
         return _maxCachedFiles;
@@ -131,10 +244,311 @@ public class CachedContentFactory implements HttpContent.ContentFactory
      */
     public void setMaxCachedFiles(int maxCachedFiles)
     {
-        _maxCachedFiles = maxCachedFiles;
+        try (AutoLock l = _lock.lock())
+        {
+            _maxCachedFiles = maxCachedFiles;
+            if (_sketch != null)
+                _sketch = new FrequencySketch(maxCachedFiles);
+        }
         shrinkCache();
     }
 
+    @ManagedAttribute("The maximum total size of the mapped files")
+    public long getMaxMappedSize()
+    {
+        return _maxMappedSize;
+    }
+
+    /**
+     * <p>Sets the budget of virtual memory for mapped files.</p>
+     * <p>When the total size of the mapped files exceeds this budget,
+     * the least recently used files are unmapped.</p>
+     *
+     * @param maxMappedSize the maximum total size of the mapped files
+     */
+    public void setMaxMappedSize(long maxMappedSize)
+    {
+        _maxMappedSize = maxMappedSize;
+        shrinkMapped();
+    }
+
+    @ManagedAttribute("The minimum size of a file for it to be mapped")
+    public int getMinMappedFileSize()
+    {
+        return _minMappedFileSize;
+    }
+
+    /**
+     * <p>Sets the minimum size of a file for it to be mapped, when file mapped buffers are used.</p>
+     * <p>Smaller files are cached in direct buffers, if they fit the cache limits,
+     * which avoids the cost of a mapping and its page faults for small hot files.</p>
+     *
+     * @param minMappedFileSize the minimum size of a file for it to be mapped
+     */
+    public void setMinMappedFileSize(int minMappedFileSize)
+    {
+        _minMappedFileSize = minMappedFileSize;
+    }
+
+    @ManagedAttribute(value = "The total size of the mapped files", readonly = true)
+    public long getMappedSize()
+    {
+        return _mappedSize.get();
+    }
+
+    @ManagedAttribute(value = "The number of mapped files", readonly = true)
+    public int getMappedFiles()
+    {
+        return _mappedFiles.get();
+    }
+
+    @ManagedAttribute(value = "The number of files unmapped to stay within the maximum mapped size", readonly = true)
+    public long getUnmaps()
+    {
+        return _unmaps.sum();
+    }
+
+    public PathWatcher getPathWatcher()
+    {
+        return _pathWatcher;
+    }
+
+    /**
+     * <p>Sets the watcher that reports changes of the cached files.</p>
+     * <p>When set, cache hits do not check whether the file has changed,
+     * and entries are invalidated when the watcher reports a change of their file.
+     * The watcher must watch the directories of the cached files, recursively, and its
+     * lifecycle is managed by the caller. Entries cached before the watcher is set are
+     * flushed, and entries whose resource is not a file are still checked on each hit.</p>
+     *
+     * @param pathWatcher the watcher of the cached files, or null to check files on each hit
+     */
+    public void setPathWatcher(PathWatcher pathWatcher)
+    {
+        PathWatcher old = _pathWatcher;
+        if (old == pathWatcher)
+            return;
+        if (old != null)
+            old.removeListener(_pathWatchListener);
+        _pathWatcher = pathWatcher;
+        if (pathWatcher != null)
+            pathWatcher.addListener(_pathWatchListener);
+        flushCache();
+    }
+
+    @ManagedAttribute(value = "The number of cached files invalidated by file system events rather than checked on each hit", readonly = true)
+    public int getWatchedFiles()
+    {
+        return _watched.size();
+    }
+
+    /**
+     * @return whether the W-TinyLFU admission policy is used
+     */
+    @ManagedAttribute("Whether entries are admitted in the cache based on their access frequency")
+    public boolean isFrequencyAdmission()
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            return _sketch != null;
+        }
+    }
+
+    /**
+     * <p>Sets whether the W-TinyLFU admission policy is used.</p>
+     * <p>When disabled, which is the default, the least recently used
+     * entries are evicted when the cache exceeds its limits.</p>
+     *
+     * @param frequencyAdmission whether the W-TinyLFU admission policy is used
+     */
+    public void setFrequencyAdmission(boolean frequencyAdmission)
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            if (frequencyAdmission == (_sketch != null))
+                return;
+            _sketch = frequencyAdmission ? new FrequencySketch(_maxCachedFiles) : null;
+        }
+    }
+
+    /**
+     * @return whether compressed variants of the cached content are created
+     */
+    @ManagedAttribute("Whether compressed variants of the cached content are created")
+    public boolean isCompressVariants()
+    {
+        return _compressVariants;
+    }
+
+    /**
+     * @param compressVariants whether compressed variants of the cached content are created
+     */
+    public void setCompressVariants(boolean compressVariants)
+    {
+        _compressVariants = compressVariants;
+    }
+
+    @ManagedAttribute("The compression level used to create compressed variants")
+    public int getCompressionLevel()
+    {
+        return _deflateCodec.getLevel();
+    }
+
+    /**
+     * @param compressionLevel the {@link Deflater} compression level used to create gzip compressed variants
+     */
+    public void setCompressionLevel(int compressionLevel)
+    {
+        _deflateCodec.setLevel(compressionLevel);
+    }
+
+    public CompressionCodec getCompressionCodec()
+    {
+        return _compressionCodec;
+    }
+
+    /**
+     * <p>Sets the codec used to create compressed variants.</p>
+     * <p>By default, variants are gzip compressed at the {@link #setCompressionLevel(int) compression level}.
+     * Other codecs, such as those discovered with {@link CompressionCodec#load()}, create variants
+     * for their own encoding, which are served to clients that accept that encoding.</p>
+     *
+     * @param codec the codec used to create compressed variants, or null for gzip
+     */
+    public void setCompressionCodec(CompressionCodec codec)
+    {
+        _compressionCodec = codec == null ? _deflateCodec : codec;
+        _variantFormat = codec == null ? CompressedContentFormat.GZIP : new CompressedContentFormat(codec.getEncoding(), codec.getExtension());
+    }
+
+    @ManagedAttribute("The minimum content length for a compressed variant to be created")
+    public int getMinCompressSize()
+    {
+        return _minCompressSize;
+    }
+
+    public void setMinCompressSize(int minCompressSize)
+    {
+        _minCompressSize = minCompressSize;
+    }
+
+    @ManagedAttribute("The maximum total size of the compressed variants")
+    public long getMaxCompressedVariantsSize()
+    {
+        return _maxCompressedVariantsSize;
+    }
+
+    public void setMaxCompressedVariantsSize(long maxCompressedVariantsSize)
+    {
+        _maxCompressedVariantsSize = maxCompressedVariantsSize;
+    }
+
+    @ManagedAttribute(value = "The total size of the compressed variants", readonly = true)
+    public long getCompressedVariantsSize()
+    {
+        return _compressedVariantsSize.get();
+    }
+
+    @ManagedAttribute(value = "The number of compressed variants", readonly = true)
+    public int getCompressedVariants()
+    {
+        return _compressedVariants.get();
+    }
+
+    @ManagedAttribute("The mime types for which compressed variants are created")
+    public String[] getCompressibleMimeTypes()
+    {
+        return _compressibleMimeTypes.toArray(new String[0]);
+    }
+
+    /**
+     * @param mimeTypes the mime types for which compressed variants are created,
+     * where a mime type such as {@code text/*} matches all the subtypes
+     */
+    public void setCompressibleMimeTypes(String... mimeTypes)
+    {
+        _compressibleMimeTypes = Set.of(mimeTypes);
+    }
+
+    public Executor getExecutor()
+    {
+        return _executor;
+    }
+
+    /**
+     * @param executor the executor used to create compressed variants and ETag digests in the background,
+     * or null to create them in the thread of the first request for the content
+     */
+    public void setExecutor(Executor executor)
+    {
+        _executor = executor;
+    }
+
+    @ManagedAttribute("The digest algorithm of the strong ETags computed from the content, or null for weak ETags")
+    public String getETagDigestAlgorithm()
+    {
+        return _etagDigestAlgorithm;
+    }
+
+    /**
+     * <p>Sets the {@link MessageDigest} algorithm, such as {@code SHA-256}, used to compute
+     * strong ETags from the bytes of the cached content, when ETags are enabled.</p>
+     * <p>Content cached before this method is called is flushed.</p>
+     *
+     * @param algorithm the digest algorithm, or null for weak ETags
+     * @throws IllegalArgumentException if the algorithm is not available
+     */
+    public void setETagDigestAlgorithm(String algorithm)
+    {
+        if (algorithm != null)
+        {
+            try
+            {
+                MessageDigest.getInstance(algorithm);
+            }
+            catch (NoSuchAlgorithmException e)
+            {
+                throw new IllegalArgumentException(e);
+            }
+        }
+        _etagDigestAlgorithm = algorithm;
+        flushCache();
+    }
+
+    @ManagedAttribute(value = "The number of requests served from the cache", readonly = true)
+    public long getHits()
+    {
+        return _hits.sum();
+    }
+
+    @ManagedAttribute(value = "The number of requests not served from the cache", readonly = true)
+    public long getMisses()
+    {
+        return _misses.sum();
+    }
+
+    @ManagedAttribute(value = "The number of entries not admitted in the cache because accessed less frequently than the entries already cached", readonly = true)
+    public long getAdmissionRejects()
+    {
+        return _admissionRejects.sum();
+    }
+
+    @ManagedAttribute(value = "The number of entries evicted from the cache", readonly = true)
+    public long getEvictions()
+    {
+        return _evictions.sum();
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        _hits.reset();
+        _misses.reset();
+        _admissionRejects.reset();
+        _evictions.reset();
+        _unmaps.reset();
+    }
+
     public boolean isUseFileMappedBuffer()
     {
         return _useFileMappedBuffer;
@@ -170,8 +584,28 @@ public class CachedContentFactory implements HttpContent.ContentFactory
     {
         // Is the content in this cache?
         CachedHttpContent content = _cache.get(pathInContext);
-        if (content != null && (content).isValid())
-            return content;
+        if (content != null)
+        {
+            if (!content.isModified())
+            {
+                _hits.increment();
+                content.touch();
+                return content;
+            }
+
+            _misses.increment();
+            content = refresh(content);
+            if (content != null)
+            {
+                content.touch();
+                return content;
+            }
+        }
+        else
+        {
+            _misses.increment();
+        }
+        recordAccess(pathInContext);
 
         // try loading the content from our factory.
         Resource resource = _factory.getResource(pathInContext);
@@ -202,7 +636,12 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         long len = resource.length();
 
         // Will it fit in the cache?
-        return (len > 0 && (_useFileMappedBuffer || (len < _maxCachedFileSize && len < _maxCacheSize)));
+        return (len > 0 && (isMappable(len) || (len < _maxCachedFileSize && len < _maxCacheSize)));
+    }
+
+    private boolean isMappable(long length)
+    {
+        return _useFileMappedBuffer && length >= _minMappedFileSize && length <= _maxMappedSize;
     }
 
     private HttpContent load(String pathInContext, Resource resource, int maxBufferSize) throws IOException
@@ -216,39 +655,7 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         // Will it fit in the cache?
         if (isCacheable(resource))
         {
-            CachedHttpContent content;
-
-            // Look for precompressed resources
-            if (_precompressedFormats.length > 0)
-            {
-                Map<CompressedContentFormat, CachedHttpContent> precompresssedContents = new HashMap<>(_precompressedFormats.length);
-                for (CompressedContentFormat format : _precompressedFormats)
-                {
-                    String compressedPathInContext = pathInContext + format.getExtension();
-                    CachedHttpContent compressedContent = _cache.get(compressedPathInContext);
-                    if (compressedContent == null || compressedContent.isValid())
-                    {
-                        compressedContent = null;
-                        Resource compressedResource = _factory.getResource(compressedPathInContext);
-                        if (compressedResource.exists() && compressedResource.lastModified() >= resource.lastModified() &&
-                            compressedResource.length() < resource.length())
-                        {
-                            compressedContent = new CachedHttpContent(compressedPathInContext, compressedResource, null);
-                            CachedHttpContent added = _cache.putIfAbsent(compressedPathInContext, compressedContent);
-                            if (added != null)
-                            {
-                                compressedContent.invalidate();
-                                compressedContent = added;
-                            }
-                        }
-                    }
-                    if (compressedContent != null)
-                        precompresssedContents.put(format, compressedContent);
-                }
-                content = new CachedHttpContent(pathInContext, resource, precompresssedContents);
-            }
-            else
-                content = new CachedHttpContent(pathInContext, resource, null);
+            CachedHttpContent content = newCachedHttpContent(pathInContext, resource);
 
             // Add it to the cache.
             CachedHttpContent added = _cache.putIfAbsent(pathInContext, content);
@@ -257,6 +664,10 @@ public class CachedContentFactory implements HttpContent.ContentFactory
                 content.invalidate();
                 content = added;
             }
+            else
+            {
+                admit(content);
+            }
 
             return content;
         }
@@ -288,36 +699,440 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         return new ResourceHttpContent(resource, mt, maxBufferSize);
     }
 
-    private void shrinkCache()
+    private CachedHttpContent newCachedHttpContent(String pathInContext, Resource resource) throws IOException
     {
-        // While we need to shrink
-        while (_cache.size() > 0 && (_cachedFiles.get() > _maxCachedFiles || _cachedSize.get() > _maxCacheSize))
+        // Look for precompressed resources
+        if (_precompressedFormats.length == 0)
+            return new CachedHttpContent(pathInContext, resource, null);
+
+        Map<CompressedContentFormat, CachedHttpContent> precompresssedContents = new HashMap<>(_precompressedFormats.length);
+        for (CompressedContentFormat format : _precompressedFormats)
         {
-            // Scan the entire cache and generate an ordered list by last accessed time.
-            SortedSet<CachedHttpContent> sorted = new TreeSet<>((c1, c2) ->
+            String compressedPathInContext = pathInContext + format.getExtension();
+            CachedHttpContent compressedContent = _cache.get(compressedPathInContext);
+            if (compressedContent == null || compressedContent.isValid())
             {
-                if (c1._lastAccessed < c2._lastAccessed)
-                    return -1;
+                compressedContent = null;
+                Resource compressedResource = _factory.getResource(compressedPathInContext);
+                if (compressedResource.exists() && compressedResource.lastModified() >= resource.lastModified() &&
+                    compressedResource.length() < resource.length())
+                {
+                    compressedContent = new CachedHttpContent(compressedPathInContext, compressedResource, null);
+                    CachedHttpContent added = _cache.putIfAbsent(compressedPathInContext, compressedContent);
+                    if (added != null)
+                    {
+                        compressedContent.invalidate();
+                        compressedContent = added;
+                    }
+                    else
+                    {
+                        admit(compressedContent);
+                    }
+                }
+            }
+            if (compressedContent != null)
+                precompresssedContents.put(format, compressedContent);
+        }
+        return new CachedHttpContent(pathInContext, resource, precompresssedContents);
+    }
+
+    /**
+     * <p>Replaces a cached entry whose file has changed with a new entry for the
+     * current file, in the same position of the cache, so that a change to a file only
+     * reloads that file, and lazily: its buffers are loaded or mapped on the next use.</p>
+     *
+     * @param stale the entry whose file has changed
+     * @return the new entry, or null if the file is no longer cacheable
+     * @throws IOException if the resource cannot be retrieved
+     */
+    private CachedHttpContent refresh(CachedHttpContent stale) throws IOException
+    {
+        String pathInContext = stale.getKey();
+        Resource resource = _factory.getResource(pathInContext);
+        if (resource == null || !resource.exists() || resource.isDirectory() || !isCacheable(resource))
+        {
+            if (_cache.remove(pathInContext, stale))
+                stale.invalidate();
+            return null;
+        }
 
-                if (c1._lastAccessed > c2._lastAccessed)
-                    return 1;
+        CachedHttpContent content = newCachedHttpContent(pathInContext, resource);
+        if (!_cache.replace(pathInContext, stale, content))
+        {
+            // Concurrently refreshed or removed.
+            content.invalidate();
+            return _cache.get(pathInContext);
+        }
 
-                if (c1._contentLengthValue < c2._contentLengthValue)
-                    return -1;
+        if (LOG.isDebugEnabled())
+            LOG.debug("Refreshed {} with {}", stale, content);
+        watch(content);
 
-                return c1._key.compareTo(c2._key);
-            });
-            sorted.addAll(_cache.values());
+        boolean admitted;
+        try (AutoLock l = _lock.lock())
+        {
+            admitted = stale._segment != null;
+            if (admitted)
+                stale._segment.replace(stale, content);
+        }
+        stale.invalidate();
+        if (!admitted)
+            admit(content);
+        return content;
+    }
+
+    private boolean isOverLimits()
+    {
+        return _cachedFiles.get() > _maxCachedFiles || _cachedSize.get() > _maxCacheSize;
+    }
 
-            // Invalidate least recently used first
-            for (CachedHttpContent content : sorted)
+    private void recordAccess(String pathInContext)
+    {
+        if (_sketch == null)
+            return;
+        try (AutoLock l = _lock.lock())
+        {
+            FrequencySketch sketch = _sketch;
+            if (sketch != null)
+                sketch.increment(pathInContext);
+        }
+    }
+
+    /**
+     * <p>Records a hit of the given entry in the read buffer, which is drained
+     * if it is filling up and no other thread holds the cache lock, so that
+     * hits do not contend on the cache lock.</p>
+     *
+     * @param content the entry that was hit
+     */
+    private void recordHit(CachedHttpContent content)
+    {
+        if (_readBuffer.offer(content))
+        {
+            try (AutoLock l = _lock.tryLock())
+            {
+                if (l != null)
+                    _readBuffer.drain(this::onHit);
+            }
+        }
+    }
+
+    /**
+     * <p>Applies a hit of the given entry, moving it to the most recently
+     * used position of its segment, or promoting it from probation
+     * to the protected segment.</p>
+     *
+     * @param content the entry that was hit
+     */
+    private void onHit(CachedHttpContent content)
+    {
+        assert _lock.isHeldByCurrentThread();
+        if (_sketch != null)
+            _sketch.increment(content.getKey());
+        if (content._mappedBuffer.get() != null)
+            _mapped.get(content);
+        Segment segment = content._segment;
+        if (segment == null)
+            return;
+        if (segment == _probation)
+        {
+            _probation.remove(content);
+            _protected.addLast(content);
+            int maxProtected = (_maxCachedFiles - Math.max(1, _maxCachedFiles / 100)) * 4 / 5;
+            while (_protected.size() > Math.max(1, maxProtected))
+            {
+                CachedHttpContent demoted = _protected.first();
+                _protected.remove(demoted);
+                _probation.addLast(demoted);
+            }
+        }
+        else
+        {
+            segment.moveToLast(content);
+        }
+    }
+
+    private void admit(CachedHttpContent content)
+    {
+        watch(content);
+        try (AutoLock l = _lock.lock())
+        {
+            // The content may have been invalidated concurrently.
+            if (_cache.get(content.getKey()) != content || content._segment != null)
+                return;
+            _readBuffer.drain(this::onHit);
+            _window.addLast(content);
+        }
+        shrinkCache();
+    }
+
+    private void watch(CachedHttpContent content)
+    {
+        Path path = content._watchedPath;
+        if (path == null)
+            return;
+        _watched.put(path, content);
+        // The file may have changed before it was watched.
+        if (content._invalidated)
+            _watched.remove(path, content);
+        else if (content.isChanged() && _cache.remove(content.getKey(), content))
+            content.invalidate();
+    }
+
+    private void onPathWatchEvent(PathWatcher.PathWatchEvent event)
+    {
+        Path path = event.getPath();
+        if (LOG.isDebugEnabled())
+            LOG.debug("{} {}", event.getType(), path);
+
+        if (event.getType() == PathWatcher.PathWatchEventType.DELETED)
+        {
+            // The path may be a directory of cached files.
+            for (Path watched : _watched.keySet())
+            {
+                if (watched.startsWith(path))
+                    invalidate(watched);
+            }
+        }
+        else
+        {
+            invalidate(path);
+        }
+
+        // A change of a precompressed file invalidates the content it is the
+        // precompressed variant of, so that it is recreated with the new file.
+        Path fileName = path.getFileName();
+        if (fileName != null)
+        {
+            String name = fileName.toString();
+            for (CompressedContentFormat format : _precompressedFormats)
+            {
+                String extension = format.getExtension();
+                if (name.length() > extension.length() && name.endsWith(extension))
+                    invalidate(path.resolveSibling(name.substring(0, name.length() - extension.length())));
+            }
+        }
+    }
+
+    private void invalidate(Path path)
+    {
+        CachedHttpContent content = _watched.get(path);
+        if (content != null && _cache.remove(content.getKey(), content))
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Invalidated {}", content);
+            content.invalidate();
+        }
+    }
+
+    private Path toWatchedPath(Resource resource)
+    {
+        if (_pathWatcher == null)
+            return null;
+        try
+        {
+            File file = resource.getFile();
+            return file == null ? null : file.toPath().toAbsolutePath();
+        }
+        catch (IOException e)
+        {
+            LOG.trace("IGNORED", e);
+            return null;
+        }
+    }
+
+    /**
+     * <p>Unmaps the least recently used mapped files until the total size
+     * of the mapped files is within {@link #getMaxMappedSize()}.</p>
+     * <p>Among the least recently used files, those with pages that are not resident
+     * in the page cache are unmapped first, since serving them would cause page faults
+     * anyway, while the resident ones can still be served without I/O.
+     * Unmapped files remain cached and are mapped again on their next use.</p>
+     */
+    private void shrinkMapped()
+    {
+        while (_mappedSize.get() > _maxMappedSize)
+        {
+            try (AutoLock l = _lock.lock())
+            {
+                if (_mappedSize.get() <= _maxMappedSize)
+                    return;
+                _readBuffer.drain(this::onHit);
+
+                // Each iteration removes at least one entry from the mapped entries.
+                CachedHttpContent victim = null;
+                Iterator<CachedHttpContent> candidates = _mapped.keySet().iterator();
+                for (int i = 0; i < 8 && candidates.hasNext(); i++)
+                {
+                    CachedHttpContent candidate = candidates.next();
+                    ByteBuffer buffer = candidate._mappedBuffer.get();
+                    if (buffer == null)
+                    {
+                        // Not mapped anymore, should not happen since the
+                        // mapped entries are updated with the mapped buffer.
+                        candidates.remove();
+                        continue;
+                    }
+                    if (victim == null)
+                        victim = candidate;
+                    if (buffer instanceof MappedByteBuffer && !((MappedByteBuffer)buffer).isLoaded())
+                    {
+                        victim = candidate;
+                        break;
+                    }
+                }
+                if (victim == null)
+                {
+                    if (_mapped.isEmpty())
+                        return;
+                    continue;
+                }
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Unmapping {}", victim);
+                if (victim.unmap())
+                    _unmaps.increment();
+            }
+        }
+    }
+
+    private void shrinkCache()
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            // Apply the recent hits before choosing the entries to evict.
+            _readBuffer.drain(this::onHit);
+
+            // Entries overflowing the window move to the main space, and if
+            // the cache is full they must compete for admission.
+            CachedHttpContent candidate = null;
+            if (_sketch != null)
+            {
+                boolean full = isOverLimits();
+                int maxWindow = Math.max(1, _maxCachedFiles / 100);
+                while (_window.size() > maxWindow)
+                {
+                    CachedHttpContent content = _window.first();
+                    _window.remove(content);
+                    _probation.addLast(content);
+                    if (full && candidate == null)
+                        candidate = content;
+                }
+            }
+
+            while (isOverLimits())
             {
-                if (_cachedFiles.get() <= _maxCachedFiles && _cachedSize.get() <= _maxCacheSize)
+                if (_sketch != null && candidate == null && !_window.isEmpty() && (!_probation.isEmpty() || !_protected.isEmpty()))
+                {
+                    // Over the max size, the window must compete with the main space.
+                    candidate = _window.first();
+                    _window.remove(candidate);
+                    _probation.addLast(candidate);
+                }
+
+                CachedHttpContent victim = _probation.first();
+                if (victim == null)
+                    victim = _protected.first();
+                if (victim == null)
+                    victim = _window.first();
+                if (victim == null)
                     break;
-                if (content == _cache.remove(content.getKey()))
-                    content.invalidate();
+
+                if (candidate == null || candidate == victim)
+                {
+                    if (candidate != null)
+                        candidate = _probation.next(candidate);
+                    evict(victim);
+                }
+                else if (_sketch.frequency(candidate.getKey()) > _sketch.frequency(victim.getKey()))
+                {
+                    evict(victim);
+                }
+                else
+                {
+                    CachedHttpContent rejected = candidate;
+                    candidate = _probation.next(candidate);
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Admission rejected {} over {}", rejected, victim);
+                    _admissionRejects.increment();
+                    remove(rejected);
+                }
+            }
+        }
+    }
+
+    private void evict(CachedHttpContent content)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("Evicting {}", content);
+        _evictions.increment();
+        remove(content);
+    }
+
+    private void remove(CachedHttpContent content)
+    {
+        assert _lock.isHeldByCurrentThread();
+        content._segment.remove(content);
+        if (_cache.remove(content.getKey(), content))
+            content.invalidate();
+    }
+
+    /**
+     * @param content the cached content
+     * @return whether a compressed variant of the given content should be created
+     */
+    protected boolean isCompressible(HttpContent content)
+    {
+        if (!_compressVariants || content.getContentLengthValue() < _minCompressSize)
+            return false;
+        String contentType = content.getContentTypeValue();
+        if (contentType == null)
+            return false;
+        String mimeType = MimeTypes.getContentTypeWithoutCharset(contentType);
+        if (_compressibleMimeTypes.contains(mimeType))
+            return true;
+        int slash = mimeType.indexOf('/');
+        return slash > 0 && _compressibleMimeTypes.contains(mimeType.substring(0, slash + 1) + "*");
+    }
+
+    /**
+     * @param resource the resource to compress
+     * @return the bytes of the resource compressed with the {@link #getCompressionCodec() codec},
+     * or null if the resource cannot be read
+     */
+    protected ByteBuffer getCompressedBuffer(Resource resource)
+    {
+        long length = resource.length();
+        ByteArrayOutputStream2 bytes = new ByteArrayOutputStream2((int)Math.min(Integer.MAX_VALUE, length / 2 + 64));
+        byte[] chunk = new byte[4096];
+        ByteBuffer output = BufferUtil.allocate(4096);
+        try (InputStream in = resource.getInputStream();
+             CompressionCodec.Encoder encoder = _compressionCodec.newEncoder(length))
+        {
+            int read;
+            while ((read = in.read(chunk)) >= 0)
+            {
+                ByteBuffer input = ByteBuffer.wrap(chunk, 0, read);
+                while (input.hasRemaining())
+                {
+                    encoder.encode(input, output);
+                    BufferUtil.writeTo(output, bytes);
+                }
+            }
+            boolean finished;
+            do
+            {
+                finished = encoder.finish(output);
+                BufferUtil.writeTo(output, bytes);
             }
+            while (!finished);
         }
+        catch (IOException | RuntimeException e)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Unable to compress {}", resource, e);
+            return null;
+        }
+        return ByteBuffer.wrap(bytes.getBuf(), 0, bytes.getCount());
     }
 
     protected ByteBuffer getIndirectBuffer(Resource resource)
@@ -343,32 +1158,214 @@ public class CachedContentFactory implements HttpContent.ContentFactory
             if (_useFileMappedBuffer && resource.getFile() != null && resource.length() < Integer.MAX_VALUE)
                 return BufferUtil.toMappedBuffer(resource.getFile());
         }
-        catch (IOException | IllegalArgumentException e)
+        catch (IOException | IllegalArgumentException e)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Unable to get Mapped Buffer for {}", resource, e);
+        }
+        return null;
+    }
+
+    protected ByteBuffer getDirectBuffer(Resource resource)
+    {
+        try
+        {
+            return BufferUtil.toBuffer(resource, true);
+        }
+        catch (IOException | IllegalArgumentException e)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Unable to get Direct Buffer for {}", resource, e);
+        }
+        return null;
+    }
+
+    @Override
+    public String toString()
+    {
+        return "ResourceCache[" + _parent + "," + _factory + "]@" + hashCode();
+    }
+
+    /**
+     * <p>A lossy buffer of cache hits, striped by thread to reduce contention,
+     * that is drained under the cache lock to update the access order of the entries,
+     * as done by the read buffers of the <a href="https://github.com/ben-manes/caffeine">Caffeine</a>
+     * cache.</p>
+     * <p>A hit is dropped if its stripe is full, which only makes the access order
+     * and the frequency estimates less precise.</p>
+     */
+    private static class ReadBuffer
+    {
+        private static final int STRIPE_SIZE = 16;
+        private static final int STRIPE_MASK = STRIPE_SIZE - 1;
+
+        private final Stripe[] _stripes;
+
+        private ReadBuffer()
+        {
+            int stripes = Integer.highestOneBit(Math.max(1, ProcessorUtils.availableProcessors() * 2 - 1)) << 1;
+            _stripes = new Stripe[Math.min(64, stripes)];
+            for (int i = 0; i < _stripes.length; ++i)
+            {
+                _stripes[i] = new Stripe();
+            }
+        }
+
+        /**
+         * @param content the entry that was hit
+         * @return whether the buffer should be drained
+         */
+        private boolean offer(CachedHttpContent content)
+        {
+            long id = Thread.currentThread().getId();
+            Stripe stripe = _stripes[(int)(id ^ (id >>> 16)) & (_stripes.length - 1)];
+            long writes = stripe._writes.get();
+            long size = writes - stripe._reads;
+            if (size >= STRIPE_SIZE)
+                return true;
+            // Drop the hit if another thread is writing the same stripe.
+            if (stripe._writes.compareAndSet(writes, writes + 1))
+                stripe._buffer.lazySet((int)writes & STRIPE_MASK, content);
+            return size + 1 >= STRIPE_SIZE / 2;
+        }
+
+        /**
+         * <p>Drains the buffered hits, which must be done under the cache lock.</p>
+         *
+         * @param onHit the function applying a hit
+         */
+        private void drain(Consumer<CachedHttpContent> onHit)
+        {
+            for (Stripe stripe : _stripes)
+            {
+                long reads = stripe._reads;
+                long writes = stripe._writes.get();
+                while (reads < writes)
+                {
+                    int index = (int)reads & STRIPE_MASK;
+                    CachedHttpContent content = stripe._buffer.get(index);
+                    // The hit is not written yet, it will be drained next time.
+                    if (content == null)
+                        break;
+                    stripe._buffer.lazySet(index, null);
+                    ++reads;
+                    onHit.accept(content);
+                }
+                stripe._reads = reads;
+            }
+        }
+
+        private static class Stripe
+        {
+            private final AtomicReferenceArray<CachedHttpContent> _buffer = new AtomicReferenceArray<>(STRIPE_SIZE);
+            private final AtomicLong _writes = new AtomicLong();
+            // Only written by the thread draining the buffer.
+            private volatile long _reads;
+        }
+    }
+
+    /**
+     * <p>A doubly linked list of cache entries in access order,
+     * from the least recently used to the most recently used.</p>
+     * <p>Segments are guarded by the cache lock.</p>
+     */
+    private static class Segment
+    {
+        private final String _name;
+        private CachedHttpContent _head;
+        private CachedHttpContent _tail;
+        private int _size;
+
+        private Segment(String name)
+        {
+            _name = name;
+        }
+
+        private int size()
+        {
+            return _size;
+        }
+
+        private boolean isEmpty()
+        {
+            return _size == 0;
+        }
+
+        private CachedHttpContent first()
+        {
+            return _head;
+        }
+
+        private CachedHttpContent next(CachedHttpContent content)
+        {
+            return content._segment == this ? content._next : null;
+        }
+
+        private void addLast(CachedHttpContent content)
+        {
+            content._segment = this;
+            content._prev = _tail;
+            content._next = null;
+            if (_tail == null)
+                _head = content;
+            else
+                _tail._next = content;
+            _tail = content;
+            ++_size;
+        }
+
+        private void remove(CachedHttpContent content)
         {
-            if (LOG.isDebugEnabled())
-                LOG.debug("Unable to get Mapped Buffer for {}", resource, e);
+            if (content._segment != this)
+                return;
+            if (content._prev == null)
+                _head = content._next;
+            else
+                content._prev._next = content._next;
+            if (content._next == null)
+                _tail = content._prev;
+            else
+                content._next._prev = content._prev;
+            content._prev = null;
+            content._next = null;
+            content._segment = null;
+            --_size;
         }
-        return null;
-    }
 
-    protected ByteBuffer getDirectBuffer(Resource resource)
-    {
-        try
+        private void replace(CachedHttpContent content, CachedHttpContent replacement)
         {
-            return BufferUtil.toBuffer(resource, true);
+            if (content._segment != this)
+                return;
+            replacement._segment = this;
+            replacement._prev = content._prev;
+            replacement._next = content._next;
+            if (content._prev == null)
+                _head = replacement;
+            else
+                content._prev._next = replacement;
+            if (content._next == null)
+                _tail = replacement;
+            else
+                content._next._prev = replacement;
+            content._prev = null;
+            content._next = null;
+            content._segment = null;
         }
-        catch (IOException | IllegalArgumentException e)
+
+        private void moveToLast(CachedHttpContent content)
         {
-            if (LOG.isDebugEnabled())
-                LOG.debug("Unable to get Direct Buffer for {}", resource, e);
+            if (_tail != content)
+            {
+                remove(content);
+                addLast(content);
+            }
         }
-        return null;
-    }
 
-    @Override
-    public String toString()
-    {
-        return "ResourceCache[" + _parent + "," + _factory + "]@" + hashCode();
+        @Override
+        public String toString()
+        {
+            return String.format("%s[size=%d]", _name, _size);
+        }
     }
 
     /**
@@ -390,12 +1387,23 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         private final AtomicReference<ByteBuffer> _indirectBuffer = new AtomicReference<>();
         private final AtomicReference<ByteBuffer> _directBuffer = new AtomicReference<>();
         private final AtomicReference<ByteBuffer> _mappedBuffer = new AtomicReference<>();
-        private volatile long _lastAccessed;
+        private final Path _watchedPath;
+        // Guarded by the cache lock.
+        private Segment _segment;
+        private CachedHttpContent _prev;
+        private CachedHttpContent _next;
+        private final AtomicReference<CompressedVariantHttpContent> _compressedVariant = new AtomicReference<>();
+        private final AtomicBoolean _compressing = new AtomicBoolean();
+        private final AtomicBoolean _digesting = new AtomicBoolean();
+        private volatile HttpField _strongETag;
+        private volatile boolean _incompressible;
+        private volatile boolean _invalidated;
 
         CachedHttpContent(String pathInContext, Resource resource, Map<CompressedContentFormat, CachedHttpContent> precompressedResources)
         {
             _key = pathInContext;
             _resource = resource;
+            _watchedPath = toWatchedPath(resource);
 
             String contentType = _mimeTypes.getMimeByExtension(_resource.toString());
             _contentType = contentType == null ? null : new PreEncodedHttpField(HttpHeader.CONTENT_TYPE, contentType);
@@ -410,10 +1418,7 @@ public class CachedContentFactory implements HttpContent.ContentFactory
             _contentLengthValue = exists ? resource.length() : 0;
             _contentLength = new PreEncodedHttpField(HttpHeader.CONTENT_LENGTH, Long.toString(_contentLengthValue));
 
-            if (_cachedFiles.incrementAndGet() > _maxCachedFiles)
-                shrinkCache();
-
-            _lastAccessed = System.currentTimeMillis();
+            _cachedFiles.incrementAndGet();
 
             _etag = CachedContentFactory.this._etags ? new PreEncodedHttpField(HttpHeader.ETAG, resource.getWeakETag()) : null;
 
@@ -450,30 +1455,137 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         @Override
         public HttpField getETag()
         {
-            return _etag;
+            HttpField etag = getStrongETag();
+            return etag == null ? _etag : etag;
         }
 
         @Override
         public String getETagValue()
         {
-            return _etag.getValue();
+            HttpField etag = getETag();
+            return etag == null ? null : etag.getValue();
         }
 
-        boolean isValid()
+        /**
+         * <p>Returns the strong ETag of this content, starting to compute it if necessary.</p>
+         *
+         * @return the strong ETag of this content, or null if it is not available (yet)
+         */
+        HttpField getStrongETag()
         {
-            if (_lastModifiedValue == _resource.lastModified() && _contentLengthValue == _resource.length())
+            HttpField etag = _strongETag;
+            if (etag != null || _etag == null || _etagDigestAlgorithm == null || _invalidated)
+                return etag;
+
+            // Digest only once, even if it fails.
+            if (!_digesting.compareAndSet(false, true))
+                return null;
+
+            Executor executor = getExecutor();
+            if (executor == null)
             {
-                _lastAccessed = System.currentTimeMillis();
-                return true;
+                digest(_etagDigestAlgorithm);
+                return _strongETag;
+            }
+            String algorithm = _etagDigestAlgorithm;
+            executor.execute(() -> digest(algorithm));
+            return null;
+        }
+
+        private void digest(String algorithm)
+        {
+            try
+            {
+                MessageDigest digest = MessageDigest.getInstance(algorithm);
+                ByteBuffer buffer = _indirectBuffer.get();
+                if (buffer == null)
+                    buffer = _directBuffer.get();
+                if (buffer == null)
+                    buffer = _mappedBuffer.get();
+                if (buffer != null)
+                {
+                    digest.update(buffer.slice());
+                }
+                else
+                {
+                    try (InputStream in = _resource.getInputStream())
+                    {
+                        byte[] bytes = new byte[8192];
+                        int read;
+                        while ((read = in.read(bytes)) >= 0)
+                        {
+                            digest.update(bytes, 0, read);
+                        }
+                    }
+                }
+
+                // Do not tag the new bytes of a file that changed with this entry.
+                if (isChanged())
+                    return;
+
+                String etag = "\"" + Base64.getEncoder().withoutPadding().encodeToString(digest.digest()) + "\"";
+                _strongETag = new PreEncodedHttpField(HttpHeader.ETAG, etag);
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Digested {} as {}", this, etag);
+            }
+            catch (IOException | NoSuchAlgorithmException e)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Unable to digest {}", this, e);
             }
+        }
+
+        /**
+         * @return whether the file of this entry has changed since it was cached
+         */
+        boolean isModified()
+        {
+            return !isWatched() && isChanged();
+        }
+
+        /**
+         * @return whether this entry is invalidated by file system events rather than checked on each hit
+         */
+        boolean isWatched()
+        {
+            return _watchedPath != null && _pathWatcher != null;
+        }
 
-            if (this == _cache.remove(_key))
+        private boolean isChanged()
+        {
+            return _lastModifiedValue != _resource.lastModified() || _contentLengthValue != _resource.length();
+        }
+
+        boolean isValid()
+        {
+            if (isWatched())
+                return !_invalidated;
+
+            if (!isModified())
+                return true;
+
+            if (_cache.remove(_key, this))
                 invalidate();
             return false;
         }
 
+        /**
+         * <p>Records an access to this entry, which is applied to the
+         * access order of the cache when the read buffer is drained.</p>
+         */
+        void touch()
+        {
+            recordHit(this);
+        }
+
         protected void invalidate()
         {
+            try (AutoLock l = _lock.lock())
+            {
+                if (_segment != null)
+                    _segment.remove(this);
+            }
+
             ByteBuffer indirect = _indirectBuffer.getAndSet(null);
             if (indirect != null)
                 _cachedSize.addAndGet(-BufferUtil.length(indirect));
@@ -482,12 +1594,64 @@ public class CachedContentFactory implements HttpContent.ContentFactory
             if (direct != null)
                 _cachedSize.addAndGet(-BufferUtil.length(direct));
 
-            _mappedBuffer.getAndSet(null);
+            _invalidated = true;
+            unmap();
+
+            releaseCompressedVariant();
+
+            if (_watchedPath != null)
+                _watched.remove(_watchedPath, this);
 
             _cachedFiles.decrementAndGet();
             _resource.close();
         }
 
+        private ByteBuffer map()
+        {
+            ByteBuffer mapped = CachedContentFactory.this.getMappedBuffer(_resource);
+            if (mapped == null)
+                return null;
+
+            // The mapped buffer, the mapped size and the mapped entries
+            // are updated together, so that they are always consistent.
+            try (AutoLock l = _lock.lock())
+            {
+                ByteBuffer existing = _mappedBuffer.get();
+                if (existing != null)
+                    return existing;
+                // Do not keep the mapping of an entry invalidated concurrently.
+                if (_invalidated)
+                    return mapped;
+                _mappedBuffer.set(mapped);
+                _mappedSize.addAndGet(BufferUtil.length(mapped));
+                _mappedFiles.incrementAndGet();
+                _mapped.put(this, Boolean.TRUE);
+            }
+            shrinkMapped();
+            return mapped;
+        }
+
+        /**
+         * <p>Drops the mapped buffer of this entry, if any.</p>
+         * <p>The mapping is released by the JVM once the buffer is garbage collected,
+         * so that it remains valid for the requests that are still writing it.</p>
+         *
+         * @return whether this entry was mapped
+         */
+        private boolean unmap()
+        {
+            try (AutoLock l = _lock.lock())
+            {
+                ByteBuffer mapped = _mappedBuffer.getAndSet(null);
+                if (mapped == null)
+                    return false;
+                _mappedSize.addAndGet(-BufferUtil.length(mapped));
+                _mappedFiles.decrementAndGet();
+                _mapped.remove(this);
+                return true;
+            }
+        }
+
         @Override
         public HttpField getLastModified()
         {
@@ -544,7 +1708,7 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         @Override
         public ByteBuffer getIndirectBuffer()
         {
-            if (_resource.length() > _maxCachedFileSize)
+            if (_contentLengthValue > _maxCachedFileSize)
             {
                 return null;
             }
@@ -582,16 +1746,15 @@ public class CachedContentFactory implements HttpContent.ContentFactory
                 buffer = _directBuffer.get();
             if (buffer == null)
             {
-                ByteBuffer mapped = CachedContentFactory.this.getMappedBuffer(_resource);
-                if (mapped != null)
+                // Mapped buffers are accounted against the mapped size, not the cache size.
+                if (isMappable(_contentLengthValue))
+                    buffer = map();
+                if (buffer != null)
                 {
-                    if (_mappedBuffer.compareAndSet(null, mapped))
-                        buffer = mapped;
-                    else
-                        buffer = _mappedBuffer.get();
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Mapped {}", this);
                 }
-                // Since MappedBuffers don't use heap, we don't care about the resource.length
-                else if (_resource.length() < _maxCachedFileSize)
+                else if (_contentLengthValue < _maxCachedFileSize)
                 {
                     ByteBuffer direct = CachedContentFactory.this.getDirectBuffer(_resource);
                     if (direct != null)
@@ -653,6 +1816,102 @@ public class CachedContentFactory implements HttpContent.ContentFactory
 
         @Override
         public Map<CompressedContentFormat, ? extends HttpContent> getPrecompressedContents()
+        {
+            Map<CompressedContentFormat, CachedPrecompressedHttpContent> precompressed = getValidPrecompressedContents();
+            CompressedVariantHttpContent variant = getCompressedVariant();
+            if (variant == null)
+                return precompressed;
+            if (precompressed == null || precompressed.isEmpty())
+                return variant._variants;
+            Map<CompressedContentFormat, HttpContent> ret = new HashMap<>(precompressed);
+            ret.put(variant._format, variant);
+            return ret;
+        }
+
+        /**
+         * <p>Returns the compressed variant of this content, creating it if necessary.</p>
+         * <p>While the compressed variant is being created, {@code null} is returned.</p>
+         *
+         * @return the compressed variant of this content, or null
+         */
+        CompressedVariantHttpContent getCompressedVariant()
+        {
+            CompressedVariantHttpContent variant = _compressedVariant.get();
+            if (variant != null || _incompressible || _invalidated)
+                return variant;
+
+            // Precompressed files take precedence over compressed variants.
+            for (CompressedContentFormat format : _precompressed.keySet())
+            {
+                if (_variantFormat.getEncoding().equals(format.getEncoding()))
+                    return null;
+            }
+
+            if (!isCompressible(this))
+                return null;
+
+            if (_compressedVariantsSize.get() >= _maxCompressedVariantsSize)
+                return null;
+
+            if (!_compressing.compareAndSet(false, true))
+                return null;
+
+            Executor executor = getExecutor();
+            if (executor == null)
+            {
+                compress();
+                return _compressedVariant.get();
+            }
+            executor.execute(this::compress);
+            return null;
+        }
+
+        private void compress()
+        {
+            try
+            {
+                ByteBuffer buffer = getCompressedBuffer(_resource);
+                if (buffer == null || buffer.remaining() >= _contentLengthValue)
+                {
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("Incompressible {}", this);
+                    _incompressible = true;
+                    return;
+                }
+
+                int length = buffer.remaining();
+                if (_compressedVariantsSize.addAndGet(length) > _maxCompressedVariantsSize)
+                {
+                    // Do not mark as incompressible, there may be room later.
+                    _compressedVariantsSize.addAndGet(-length);
+                    return;
+                }
+                _compressedVariants.incrementAndGet();
+                _compressedVariant.set(new CompressedVariantHttpContent(this, buffer, _variantFormat));
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Compressed {} from {} to {} bytes", this, _contentLengthValue, length);
+
+                // Release the variant if the content was invalidated concurrently.
+                if (_invalidated)
+                    releaseCompressedVariant();
+            }
+            finally
+            {
+                _compressing.set(false);
+            }
+        }
+
+        private void releaseCompressedVariant()
+        {
+            CompressedVariantHttpContent variant = _compressedVariant.getAndSet(null);
+            if (variant != null)
+            {
+                _compressedVariants.decrementAndGet();
+                _compressedVariantsSize.addAndGet(-variant.getContentLengthValue());
+            }
+        }
+
+        private Map<CompressedContentFormat, CachedPrecompressedHttpContent> getValidPrecompressedContents()
         {
             if (_precompressed.size() == 0)
                 return null;
@@ -670,29 +1929,199 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         }
     }
 
+    /**
+     * <p>A compressed variant of cached content, kept in memory.</p>
+     */
+    public class CompressedVariantHttpContent implements HttpContent
+    {
+        private final CachedHttpContent _content;
+        private final ByteBuffer _buffer;
+        private final CompressedContentFormat _format;
+        private final HttpField _contentLength;
+        private final HttpField _etag;
+        private final Map<CompressedContentFormat, HttpContent> _variants;
+        private volatile HttpField _strongETag;
+
+        CompressedVariantHttpContent(CachedHttpContent content, ByteBuffer buffer, CompressedContentFormat format)
+        {
+            _content = content;
+            _buffer = buffer;
+            _format = format;
+            _contentLength = new PreEncodedHttpField(HttpHeader.CONTENT_LENGTH, Long.toString(buffer.remaining()));
+            _etag = (CachedContentFactory.this._etags) ? new PreEncodedHttpField(HttpHeader.ETAG, _content.getResource().getWeakETag(format.getEtagSuffix())) : null;
+            _variants = Collections.singletonMap(format, this);
+        }
+
+        @Override
+        public HttpField getContentType()
+        {
+            return _content.getContentType();
+        }
+
+        @Override
+        public String getContentTypeValue()
+        {
+            return _content.getContentTypeValue();
+        }
+
+        @Override
+        public String getCharacterEncoding()
+        {
+            return _content.getCharacterEncoding();
+        }
+
+        @Override
+        public Type getMimeType()
+        {
+            return _content.getMimeType();
+        }
+
+        @Override
+        public HttpField getContentEncoding()
+        {
+            return _format.getContentEncoding();
+        }
+
+        @Override
+        public String getContentEncodingValue()
+        {
+            return _format.getEncoding();
+        }
+
+        @Override
+        public HttpField getContentLength()
+        {
+            return _contentLength;
+        }
+
+        @Override
+        public long getContentLengthValue()
+        {
+            return _buffer.remaining();
+        }
+
+        @Override
+        public HttpField getLastModified()
+        {
+            return _content.getLastModified();
+        }
+
+        @Override
+        public String getLastModifiedValue()
+        {
+            return _content.getLastModifiedValue();
+        }
+
+        @Override
+        public HttpField getETag()
+        {
+            HttpField strong = _content.getStrongETag();
+            if (strong == null)
+                return _etag;
+            HttpField etag = _strongETag;
+            if (etag == null)
+                _strongETag = etag = new PreEncodedHttpField(HttpHeader.ETAG, _format.etag(strong.getValue()));
+            return etag;
+        }
+
+        @Override
+        public String getETagValue()
+        {
+            HttpField etag = getETag();
+            return etag == null ? null : etag.getValue();
+        }
+
+        @Override
+        public ByteBuffer getIndirectBuffer()
+        {
+            return _buffer.asReadOnlyBuffer();
+        }
+
+        @Override
+        public ByteBuffer getDirectBuffer()
+        {
+            return null;
+        }
+
+        @Override
+        public Resource getResource()
+        {
+            return _content.getResource();
+        }
+
+        @Override
+        public InputStream getInputStream()
+        {
+            return new ByteArrayInputStream(_buffer.array(), _buffer.arrayOffset() + _buffer.position(), _buffer.remaining());
+        }
+
+        @Override
+        public ReadableByteChannel getReadableByteChannel()
+        {
+            return Channels.newChannel(getInputStream());
+        }
+
+        @Override
+        public void release()
+        {
+        }
+
+        @Override
+        public Map<CompressedContentFormat, ? extends HttpContent> getPrecompressedContents()
+        {
+            return null;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("CompressedVariant@%x{e=%s,r=%s,l=%d}", hashCode(), _format, _content.getResource(), _buffer.remaining());
+        }
+    }
+
     public class CachedPrecompressedHttpContent extends PrecompressedHttpContent
     {
         private final CachedHttpContent _content;
         private final CachedHttpContent _precompressedContent;
+        private final CompressedContentFormat _format;
         private final HttpField _etag;
+        private volatile HttpField _strongETag;
 
         CachedPrecompressedHttpContent(CachedHttpContent content, CachedHttpContent precompressedContent, CompressedContentFormat format)
         {
             super(content, precompressedContent, format);
             _content = content;
             _precompressedContent = precompressedContent;
+            _format = format;
 
             _etag = (CachedContentFactory.this._etags) ? new PreEncodedHttpField(HttpHeader.ETAG, _content.getResource().getWeakETag(format.getEtagSuffix())) : null;
         }
 
         public boolean isValid()
         {
-            return _precompressedContent.isValid() && _content.isValid() && _content.getResource().lastModified() <= _precompressedContent.getResource().lastModified();
+            // Watched entries are invalidated together with their precompressed files.
+            boolean valid = _precompressedContent.isValid() && _content.isValid() &&
+                (_content.isWatched() && _precompressedContent.isWatched() ||
+                    _content.getResource().lastModified() <= _precompressedContent.getResource().lastModified());
+            if (valid)
+            {
+                _precompressedContent.touch();
+                return true;
+            }
+            return false;
         }
 
         @Override
         public HttpField getETag()
         {
+            HttpField strong = _content.getStrongETag();
+            if (strong != null)
+            {
+                HttpField etag = _strongETag;
+                if (etag == null)
+                    _strongETag = etag = new PreEncodedHttpField(HttpHeader.ETAG, _format.etag(strong.getValue()));
+                return etag;
+            }
             if (_etag != null)
                 return _etag;
             return super.getETag();
@@ -701,9 +2130,8 @@ public class CachedContentFactory implements HttpContent.ContentFactory
         @Override
         public String getETagValue()
         {
-            if (_etag != null)
-                return _etag.getValue();
-            return super.getETagValue();
+            HttpField etag = getETag();
+            return etag == null ? null : etag.getValue();
         }
 
         @Override
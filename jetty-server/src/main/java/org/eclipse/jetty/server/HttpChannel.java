@@ -16,6 +16,7 @@ package org.eclipse.jetty.server;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.EventListener;
 import java.util.List;
@@ -37,6 +38,7 @@ import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpGenerator;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpHeaderValue;
+import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.http.MetaData;
@@ -1056,6 +1058,63 @@ public abstract class HttpChannel implements Runnable, HttpOutput.Interceptor
         return getHttpConfiguration().isUseOutputDirectByteBuffers();
     }
 
+    /**
+     * @return true if file content can be sent with {@link #sendFile(FileChannel, long, long, boolean, Callback)}
+     * @see HttpConfiguration#isUseSendFile()
+     */
+    public boolean isSendFileSupported()
+    {
+        return _transport.isSendFileSupported();
+    }
+
+    /**
+     * <p>Sends a region of a file as response content, without copying the file bytes in user space.</p>
+     * <p>The response is committed first if necessary, and must have a known content length.
+     * The file bytes bypass the {@link HttpOutput.Interceptor}s and are not notified
+     * to {@link Listener#onResponseContent(Request, ByteBuffer)}.</p>
+     *
+     * @param file the file to send from
+     * @param position the position in the file of the first byte to send
+     * @param count the number of bytes to send
+     * @param complete whether the file bytes complete the response content
+     * @param callback Callback when complete or failed
+     */
+    public void sendFile(FileChannel file, long position, long count, boolean complete, Callback callback)
+    {
+        Callback sent = new Callback.Nested(callback)
+        {
+            @Override
+            public void succeeded()
+            {
+                _written += count;
+                if (complete)
+                    sendResponse(null, BufferUtil.EMPTY_BUFFER, true, callback);
+                else
+                    super.succeeded();
+            }
+
+            @Override
+            public void failed(Throwable x)
+            {
+                abort(x);
+                super.failed(x);
+            }
+        };
+
+        // Commit the response, if not already committed, before the file bytes.
+        sendResponse(null, BufferUtil.EMPTY_BUFFER, false, new Callback.Nested(callback)
+        {
+            @Override
+            public void succeeded()
+            {
+                if (count == 0 || HttpMethod.HEAD.is(_request.getMethod()))
+                    sent.succeeded();
+                else
+                    _transport.sendFile(file, position, count, sent);
+            }
+        });
+    }
+
     /**
      * If a write or similar operation to this channel fails,
      * then this method should be called.
@@ -67,6 +67,7 @@ public class HttpConfiguration implements Dumpable
     private int _maxErrorDispatches = 10;
     private boolean _useInputDirectByteBuffers = true;
     private boolean _useOutputDirectByteBuffers = true;
+    private boolean _useSendFile = false;
     private long _minRequestDataRate;
     private long _minResponseDataRate;
     private HttpCompliance _httpCompliance = HttpCompliance.RFC7230;
@@ -137,6 +138,7 @@ public class HttpConfiguration implements Dumpable
         _maxErrorDispatches = config._maxErrorDispatches;
         _useInputDirectByteBuffers = config._useInputDirectByteBuffers;
         _useOutputDirectByteBuffers = config._useOutputDirectByteBuffers;
+        _useSendFile = config._useSendFile;
         _minRequestDataRate = config._minRequestDataRate;
         _minResponseDataRate = config._minResponseDataRate;
         _httpCompliance = config._httpCompliance;
@@ -357,6 +359,26 @@ public class HttpConfiguration implements Dumpable
         return _useOutputDirectByteBuffers;
     }
 
+    /**
+     * <p>Sets whether file content is written with a zero-copy transfer
+     * ({@code sendfile} on Linux) when the transport supports it.</p>
+     * <p>Only cleartext HTTP/1.1 connections support zero-copy transfers,
+     * and only when the response content is not modified by an
+     * {@link HttpOutput.Interceptor}, for example to compress it.</p>
+     *
+     * @param useSendFile whether to use zero-copy transfers for file content
+     */
+    public void setUseSendFile(boolean useSendFile)
+    {
+        _useSendFile = useSendFile;
+    }
+
+    @ManagedAttribute("Whether to use zero-copy transfers for file content")
+    public boolean isUseSendFile()
+    {
+        return _useSendFile;
+    }
+
     /**
      * <p>Sets the {@link Customizer}s that are invoked for every
      * request received.</p>
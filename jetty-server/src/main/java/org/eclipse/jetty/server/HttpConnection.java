@@ -15,6 +15,7 @@ package org.eclipse.jetty.server;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.WritePendingException;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -35,7 +36,9 @@ import org.eclipse.jetty.io.ByteBufferPool;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
 import org.eclipse.jetty.io.EofException;
+import org.eclipse.jetty.io.SocketChannelEndPoint;
 import org.eclipse.jetty.io.WriteFlusher;
+import org.eclipse.jetty.io.ssl.SslConnection;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.IteratingCallback;
@@ -569,6 +572,43 @@ public class HttpConnection extends AbstractConnection implements Runnable, Http
         }
     }
 
+    @Override
+    public boolean isSendFileSupported()
+    {
+        return getHttpConfiguration().isUseSendFile() && getSendFileEndPoint() != null;
+    }
+
+    private SocketChannelEndPoint getSendFileEndPoint()
+    {
+        // Only cleartext bytes can be transferred directly from files to the socket,
+        // either over cleartext connections or when the kernel encrypts TLS records.
+        EndPoint endPoint = getEndPoint();
+        if (endPoint instanceof SslConnection.DecryptedEndPoint)
+        {
+            SslConnection sslConnection = ((SslConnection.DecryptedEndPoint)endPoint).getSslConnection();
+            endPoint = sslConnection.isKernelTlsOffloaded() ? sslConnection.getEndPoint() : null;
+        }
+        return endPoint instanceof SocketChannelEndPoint ? (SocketChannelEndPoint)endPoint : null;
+    }
+
+    @Override
+    public void sendFile(FileChannel file, long position, long count, Callback callback)
+    {
+        // The file bytes cannot be framed as chunks, so the response must have a known length.
+        if (!_generator.isCommitted() || _generator.isChunking())
+        {
+            callback.failed(new IllegalStateException("cannot sendFile() with unknown content length"));
+            return;
+        }
+        if (LOG.isDebugEnabled())
+            LOG.debug("sendFile {} position={} count={} {}", file, position, count, this);
+        SocketChannelEndPoint endPoint = getSendFileEndPoint();
+        if (endPoint == null)
+            callback.failed(new IllegalStateException("sendFile() not supported"));
+        else
+            endPoint.transferTo(callback, file, position, count);
+    }
+
     HttpInput.Content newContent(ByteBuffer c)
     {
         return new Content(c);
@@ -17,12 +17,15 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
 import java.nio.channels.WritePendingException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
 import java.nio.charset.CoderResult;
 import java.nio.charset.CodingErrorAction;
+import java.util.List;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.TimeUnit;
 import javax.servlet.RequestDispatcher;
@@ -1178,6 +1181,21 @@ public class HttpOutput extends ServletOutputStream implements Runnable
         }
     }
 
+    /**
+     * Blocking send of multipart byte ranges content.
+     *
+     * @param byteRanges The multipart byte ranges content to send
+     * @throws IOException if the send fails
+     */
+    public void sendContent(MultiPartByteRanges byteRanges) throws IOException
+    {
+        try (Blocker blocker = _writeBlocker.acquire())
+        {
+            sendContent(byteRanges, blocker);
+            blocker.block();
+        }
+    }
+
     /**
      * Asynchronous send of whole content.
      *
@@ -1283,6 +1301,24 @@ public class HttpOutput extends ServletOutputStream implements Runnable
         }
     }
 
+    /**
+     * <p>Asynchronous send of multipart byte ranges content.</p>
+     * <p>The part bodies are sliced from the content buffers if available, otherwise
+     * they are sent from the content file, without copying if the transport supports it,
+     * or read from the content channel or stream.</p>
+     *
+     * @param byteRanges The multipart byte ranges content to send
+     * @param callback The callback to use to notify success or failure
+     */
+    public void sendContent(MultiPartByteRanges byteRanges, Callback callback)
+    {
+        if (LOG.isDebugEnabled())
+            LOG.debug("sendContent(ranges={},{})", byteRanges, callback);
+
+        if (prepareSendContent(0, callback))
+            new MultiPartByteRangesWritingCB(byteRanges, callback).iterate();
+    }
+
     /**
      * Asynchronous send of HTTP content.
      *
@@ -1316,6 +1352,14 @@ public class HttpOutput extends ServletOutputStream implements Runnable
         }
         if (rbc != null)
         {
+            if (isSendFile(rbc))
+            {
+                // Close of the file is done by the callback
+                if (prepareSendContent(0, callback))
+                    new FileChannelWritingCB((FileChannel)rbc, callback).iterate();
+                return;
+            }
+
             // Close of the rbc is done by the async sendContent
             sendContent(rbc, callback);
             return;
@@ -1342,6 +1386,68 @@ public class HttpOutput extends ServletOutputStream implements Runnable
         callback.failed(cause);
     }
 
+    /**
+     * <p>Blocking send of a region of a file, without copying the file bytes in user space.</p>
+     * <p>The file bytes are sent only if the transport supports zero-copy transfers,
+     * the response has a known content length, no {@link Interceptor} is installed and
+     * this output is in blocking mode; otherwise this method returns false and the
+     * caller must write the file bytes itself.</p>
+     *
+     * @param file the file to send from
+     * @param position the position in the file of the first byte to send
+     * @param count the number of bytes to send
+     * @return true if the file bytes have been sent, false if they must be written by the caller
+     * @throws IOException if the file bytes could not be sent
+     * @see HttpConfiguration#setUseSendFile(boolean)
+     */
+    public boolean sendFile(FileChannel file, long position, long count) throws IOException
+    {
+        if (!isSendFile(file))
+            return false;
+
+        try (AutoLock l = _channelState.lock())
+        {
+            if (_apiState != ApiState.BLOCKING)
+                return false;
+        }
+
+        // Write any aggregated content before the file bytes.
+        flush();
+
+        try (AutoLock l = _channelState.lock())
+        {
+            checkWritable();
+            if (_apiState != ApiState.BLOCKING)
+                return false;
+            _apiState = ApiState.BLOCKED;
+            _written += count;
+        }
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("sendFile({},{},{}) {}", file, position, count, this);
+
+        try (Blocker blocker = _writeBlocker.acquire())
+        {
+            _channel.sendFile(file, position, count, false, blocker);
+            blocker.block();
+            onWriteComplete(false, null);
+        }
+        catch (Throwable t)
+        {
+            onWriteComplete(false, t);
+            throw t;
+        }
+        return true;
+    }
+
+    private boolean isSendFile(ReadableByteChannel channel)
+    {
+        return channel instanceof FileChannel &&
+            _interceptor == _channel &&
+            _channel.getResponse().getLongContentLength() >= 0 &&
+            _channel.isSendFileSupported();
+    }
+
     public int getBufferSize()
     {
         return _bufferSize;
@@ -1853,6 +1959,239 @@ public class HttpOutput extends ServletOutputStream implements Runnable
         }
     }
 
+    /**
+     * A {@link NestedChannelWriteCB} that sends the remaining bytes of a {@link FileChannel}
+     * with {@link HttpChannel#sendFile(FileChannel, long, long, boolean, Callback)}.
+     * The file is closed once sent.
+     */
+    private class FileChannelWritingCB extends NestedChannelWriteCB
+    {
+        private final FileChannel _file;
+        private boolean _sent;
+
+        FileChannelWritingCB(FileChannel file, Callback callback)
+        {
+            super(callback, true);
+            _file = file;
+        }
+
+        @Override
+        protected Action process() throws Exception
+        {
+            if (_sent)
+            {
+                IO.close(_file);
+                return Action.SUCCEEDED;
+            }
+
+            _sent = true;
+            long position = _file.position();
+            long count = _file.size() - position;
+            _written += count;
+            _channel.sendFile(_file, position, count, true, this);
+            return Action.SCHEDULED;
+        }
+
+        @Override
+        public void onCompleteFailure(Throwable x)
+        {
+            IO.close(_file);
+            super.onCompleteFailure(x);
+        }
+    }
+
+    /**
+     * A {@link NestedChannelWriteCB} that writes the parts of a {@link MultiPartByteRanges},
+     * each part being written as its precomputed headers followed by its body.
+     */
+    private class MultiPartByteRangesWritingCB extends NestedChannelWriteCB
+    {
+        private final MultiPartByteRanges _byteRanges;
+        private final ByteBuffer _content;
+        private SeekableByteChannel _file;
+        private InputStream _in;
+        private long _inPosition;
+        private ByteBuffer _buffer;
+        private int _part;
+        private long _position;
+        // The bytes of the body of the current part left to write, or -1 if its headers are next.
+        private long _remaining = -1;
+        private boolean _trailer;
+        private boolean _closed;
+
+        MultiPartByteRangesWritingCB(MultiPartByteRanges byteRanges, Callback callback)
+        {
+            super(callback, true);
+            _byteRanges = byteRanges;
+            HttpContent content = byteRanges.getContent();
+            ByteBuffer buffer = _channel.isUseOutputDirectByteBuffers() ? content.getDirectBuffer() : null;
+            _content = buffer == null ? content.getIndirectBuffer() : buffer;
+        }
+
+        @Override
+        protected Action process() throws Exception
+        {
+            if (_trailer)
+            {
+                release();
+                return Action.SUCCEEDED;
+            }
+
+            List<InclusiveByteRange> ranges = _byteRanges.getRanges();
+            if (_remaining < 0)
+            {
+                if (_part == ranges.size())
+                {
+                    _trailer = true;
+                    write(_byteRanges.getTrailer(), true);
+                    return Action.SCHEDULED;
+                }
+
+                InclusiveByteRange range = ranges.get(_part);
+                _position = range.getFirst();
+                _remaining = range.getSize();
+                write(_byteRanges.getPartHeader(_part), false);
+                return Action.SCHEDULED;
+            }
+
+            long position = _position;
+            long count = _remaining;
+
+            // Slice the part body from the content buffer.
+            if (_content != null)
+            {
+                ByteBuffer body = _content.duplicate();
+                int start = _content.position() + (int)position;
+                body.position(start);
+                body.limit(start + (int)count);
+                nextPart();
+                write(body, false);
+                return Action.SCHEDULED;
+            }
+
+            if (_file == null && _in == null)
+                open();
+
+            // Send the part body from the file without copying.
+            if (_file instanceof FileChannel && isSendFile(_file))
+            {
+                nextPart();
+                _written += count;
+                _channel.sendFile((FileChannel)_file, position, count, false, this);
+                return Action.SCHEDULED;
+            }
+
+            // Read the next chunk of the part body.
+            if (_buffer == null)
+                _buffer = _channel.getByteBufferPool().acquire(getBufferSize(), _file != null && _channel.isUseOutputDirectByteBuffers());
+            BufferUtil.clearToFill(_buffer);
+            _buffer.limit((int)Math.min(_buffer.limit(), count));
+            int read = _file == null ? readStream(position) : readFile(position);
+            BufferUtil.flipToFlush(_buffer, 0);
+            if (read < 0)
+                throw new EofException("Unexpected end of content at " + position);
+            _position += read;
+            _remaining -= read;
+            if (_remaining == 0)
+                nextPart();
+            write(_buffer, false);
+            return Action.SCHEDULED;
+        }
+
+        private void write(ByteBuffer buffer, boolean last)
+        {
+            _written += buffer.remaining();
+            channelWrite(buffer, last, this);
+        }
+
+        private void nextPart()
+        {
+            _part++;
+            _remaining = -1;
+        }
+
+        private void open() throws IOException
+        {
+            HttpContent content = _byteRanges.getContent();
+            ReadableByteChannel channel = null;
+            try
+            {
+                channel = content.getReadableByteChannel();
+            }
+            catch (Throwable x)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Unable to access ReadableByteChannel for content {}", content, x);
+            }
+            if (channel instanceof SeekableByteChannel)
+            {
+                _file = (SeekableByteChannel)channel;
+                return;
+            }
+            IO.close(channel);
+
+            _in = content.getInputStream();
+            _inPosition = 0;
+            if (_in == null)
+                throw new IllegalArgumentException("unknown content for " + content);
+        }
+
+        private int readFile(long position) throws IOException
+        {
+            if (_file instanceof FileChannel)
+                return ((FileChannel)_file).read(_buffer, position);
+            _file.position(position);
+            return _file.read(_buffer);
+        }
+
+        private int readStream(long position) throws IOException
+        {
+            // Ranges are usually ascending, otherwise reopen the stream.
+            if (position < _inPosition)
+            {
+                IO.close(_in);
+                _in = _byteRanges.getContent().getInputStream();
+                _inPosition = 0;
+            }
+            while (_inPosition < position)
+            {
+                long skipped = _in.skip(position - _inPosition);
+                if (skipped <= 0)
+                {
+                    if (_in.read() < 0)
+                        return -1;
+                    skipped = 1;
+                }
+                _inPosition += skipped;
+            }
+            int read = _in.read(_buffer.array(), _buffer.arrayOffset() + _buffer.position(), _buffer.remaining());
+            if (read > 0)
+            {
+                _buffer.position(_buffer.position() + read);
+                _inPosition += read;
+            }
+            return read;
+        }
+
+        private void release()
+        {
+            if (_closed)
+                return;
+            _closed = true;
+            if (_buffer != null)
+                _channel.getByteBufferPool().release(_buffer);
+            IO.close(_file);
+            IO.close(_in);
+        }
+
+        @Override
+        public void onCompleteFailure(Throwable x)
+        {
+            release();
+            super.onCompleteFailure(x);
+        }
+    }
+
     private static class WriteBlocker extends SharedBlockingCallback
     {
         private final HttpChannel _channel;
@@ -14,6 +14,7 @@
 package org.eclipse.jetty.server;
 
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import org.eclipse.jetty.http.MetaData;
 import org.eclipse.jetty.util.Callback;
@@ -37,6 +38,30 @@ public interface HttpTransport
      */
     void send(MetaData.Request request, MetaData.Response response, ByteBuffer content, boolean lastContent, Callback callback);
 
+    /**
+     * @return true if file content can be sent over this transport with {@link #sendFile(FileChannel, long, long, Callback)}
+     */
+    default boolean isSendFileSupported()
+    {
+        return false;
+    }
+
+    /**
+     * <p>Asynchronous call to send a region of a file as response content, without copying
+     * the file bytes in user space.</p>
+     * <p>The response must have already been committed with {@link #send(MetaData.Request, MetaData.Response, ByteBuffer, boolean, Callback)}
+     * and this method must only be called if {@link #isSendFileSupported()} returns true.</p>
+     *
+     * @param file the file to send from
+     * @param position the position in the file of the first byte to send
+     * @param count the number of bytes to send
+     * @param callback The Callback instance that success or failure of the send is notified on
+     */
+    default void sendFile(FileChannel file, long position, long count, Callback callback)
+    {
+        callback.failed(new UnsupportedOperationException());
+    }
+
     /**
      * @return true if responses can be pushed over this transport
      */
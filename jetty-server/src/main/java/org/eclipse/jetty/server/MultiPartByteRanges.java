@@ -0,0 +1,127 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.eclipse.jetty.http.HttpContent;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.util.BufferUtil;
+
+/**
+ * <p>The {@code multipart/byteranges} body of a response to a request for multiple ranges of a {@link HttpContent}.</p>
+ * <p>The headers of each part, the closing boundary and the total content length are computed
+ * upfront, so that the {@code Content-Length} header can be sent and the parts can be written
+ * asynchronously with {@link HttpOutput#sendContent(MultiPartByteRanges, org.eclipse.jetty.util.Callback)},
+ * directly from the content buffers or file, without blocking on the network.</p>
+ * <p>The parts are formatted as by {@link org.eclipse.jetty.util.MultiPartOutputStream}.</p>
+ */
+public class MultiPartByteRanges
+{
+    private final HttpContent _content;
+    private final List<InclusiveByteRange> _ranges;
+    private final String _boundary;
+    private final ByteBuffer[] _partHeaders;
+    private final ByteBuffer _trailer;
+    private final long _contentLength;
+
+    public MultiPartByteRanges(HttpContent content, List<InclusiveByteRange> ranges)
+    {
+        this(content, ranges, generateBoundary());
+    }
+
+    public MultiPartByteRanges(HttpContent content, List<InclusiveByteRange> ranges, String boundary)
+    {
+        _content = content;
+        _ranges = List.copyOf(ranges);
+        _boundary = boundary;
+
+        long resourceLength = content.getContentLengthValue();
+        String contentType = content.getContentTypeValue();
+        _partHeaders = new ByteBuffer[_ranges.size()];
+        long length = 0;
+        for (int i = 0; i < _partHeaders.length; i++)
+        {
+            InclusiveByteRange range = _ranges.get(i);
+            StringBuilder header = new StringBuilder();
+            if (i > 0)
+                header.append("\r\n");
+            header.append("--").append(boundary).append("\r\n");
+            if (contentType != null)
+                header.append(HttpHeader.CONTENT_TYPE.asString()).append(": ").append(contentType).append("\r\n");
+            header.append(HttpHeader.CONTENT_RANGE.asString()).append(": ").append(range.toHeaderRangeString(resourceLength)).append("\r\n");
+            header.append("\r\n");
+            _partHeaders[i] = BufferUtil.toBuffer(header.toString(), StandardCharsets.ISO_8859_1);
+            length += _partHeaders[i].remaining() + range.getSize();
+        }
+        _trailer = BufferUtil.toBuffer("\r\n--" + boundary + "--\r\n", StandardCharsets.ISO_8859_1);
+        _contentLength = length + _trailer.remaining();
+    }
+
+    /**
+     * @return a new boundary, unique enough to not appear in the parts
+     */
+    public static String generateBoundary()
+    {
+        return "jetty" + Long.toString(System.nanoTime(), 36) + Long.toString(System.currentTimeMillis(), 36);
+    }
+
+    public HttpContent getContent()
+    {
+        return _content;
+    }
+
+    public List<InclusiveByteRange> getRanges()
+    {
+        return _ranges;
+    }
+
+    public String getBoundary()
+    {
+        return _boundary;
+    }
+
+    /**
+     * @return the length of the whole multipart body, including part headers and boundaries
+     */
+    public long getContentLength()
+    {
+        return _contentLength;
+    }
+
+    /**
+     * @param part the index of the part
+     * @return a new buffer with the boundary and headers that precede the body of the part
+     */
+    public ByteBuffer getPartHeader(int part)
+    {
+        return _partHeaders[part].slice();
+    }
+
+    /**
+     * @return a new buffer with the closing boundary
+     */
+    public ByteBuffer getTrailer()
+    {
+        return _trailer.slice();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x{%s,%s,length=%d}", getClass().getSimpleName(), hashCode(), _content, _ranges, _contentLength);
+    }
+}
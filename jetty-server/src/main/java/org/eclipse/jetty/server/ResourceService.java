@@ -43,7 +43,6 @@ import org.eclipse.jetty.http.QuotedCSV;
 import org.eclipse.jetty.http.QuotedQualityCSV;
 import org.eclipse.jetty.io.WriterOutputStream;
 import org.eclipse.jetty.server.resource.HttpContentRangeWriter;
-import org.eclipse.jetty.server.resource.InputStreamRangeWriter;
 import org.eclipse.jetty.server.resource.RangeWriter;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.Callback;
@@ -229,7 +228,8 @@ public class ResourceService
         String pathInContext = URIUtil.addPaths(servletPath, pathInfo);
 
         boolean endsWithSlash = (pathInfo == null ? (_pathInfoOnly ? "" : servletPath) : pathInfo).endsWith(URIUtil.SLASH);
-        boolean checkPrecompressedVariants = _precompressedFormats.length > 0 && !endsWithSlash && !included && reqRanges == null;
+        // Compressed variants may be provided by the content factory even without precompressed formats.
+        boolean checkPrecompressedVariants = !endsWithSlash && !included && reqRanges == null;
 
         HttpContent content = null;
         boolean releaseContent = true;
@@ -780,41 +780,63 @@ public class ResourceService
                 ctp = "multipart/x-byteranges; boundary=";
             else
                 ctp = "multipart/byteranges; boundary=";
-            MultiPartOutputStream multi = new MultiPartOutputStream(out);
-            response.setContentType(ctp + multi.getBoundary());
-
-            // calculate the content-length
-            int length = 0;
-            String[] header = new String[ranges.size()];
-            int i = 0;
-            final int CRLF = "\r\n".length();
-            final int DASHDASH = "--".length();
-            final int BOUNDARY = multi.getBoundary().length();
-            final int FIELD_SEP = ": ".length();
-            for (InclusiveByteRange ibr : ranges)
+
+            // the part headers and the content-length are computed upfront
+            MultiPartByteRanges byteRanges = new MultiPartByteRanges(content, ranges);
+            response.setContentType(ctp + byteRanges.getBoundary());
+            response.setContentLengthLong(byteRanges.getContentLength());
+
+            // write the parts asynchronously if supported
+            if (!written && request.isAsyncSupported())
             {
-                header[i] = ibr.toHeaderRangeString(content_length);
-                if (i > 0) // in-part
-                    length += CRLF;
-                length += DASHDASH + BOUNDARY + CRLF;
-                if (mimetype != null)
-                    length += HttpHeader.CONTENT_TYPE.asString().length() + FIELD_SEP + mimetype.length() + CRLF;
-                length += HttpHeader.CONTENT_RANGE.asString().length() + FIELD_SEP + header[i].length() + CRLF;
-                length += CRLF;
-                length += ibr.getSize();
-                i++;
+                final AsyncContext context = request.startAsync();
+                context.setTimeout(0);
+
+                ((HttpOutput)out).sendContent(byteRanges, new Callback()
+                {
+                    @Override
+                    public void succeeded()
+                    {
+                        context.complete();
+                        content.release();
+                    }
+
+                    @Override
+                    public void failed(Throwable x)
+                    {
+                        String msg = "Failed to send ranges";
+                        if (x instanceof IOException)
+                            LOG.debug(msg, x);
+                        else
+                            LOG.warn(msg, x);
+                        context.complete();
+                        content.release();
+                    }
+
+                    @Override
+                    public String toString()
+                    {
+                        return String.format("ResourceService@%x$RangesCB", ResourceService.this.hashCode());
+                    }
+                });
+                return false;
+            }
+
+            // otherwise write the parts blocking
+            if (!written)
+            {
+                ((HttpOutput)out).sendContent(byteRanges);
+                return true;
             }
-            length += CRLF + DASHDASH + BOUNDARY + DASHDASH + CRLF;
-            response.setContentLength(length);
 
+            // or through the wrapped output stream
+            MultiPartOutputStream multi = new MultiPartOutputStream(out, byteRanges.getBoundary());
             try (RangeWriter rangeWriter = HttpContentRangeWriter.newRangeWriter(content))
             {
-                i = 0;
                 for (InclusiveByteRange ibr : ranges)
                 {
-                    multi.startPart(mimetype, new String[]{HttpHeader.CONTENT_RANGE + ": " + header[i]});
+                    multi.startPart(mimetype, new String[]{HttpHeader.CONTENT_RANGE + ": " + ibr.toHeaderRangeString(content_length)});
                     rangeWriter.writeTo(multi, ibr.getFirst(), ibr.getSize());
-                    i++;
                 }
             }
 
@@ -843,8 +865,8 @@ public class ResourceService
             }
         }
 
-        // Use a ranged writer
-        try (InputStreamRangeWriter rangeWriter = new InputStreamRangeWriter(() -> content.getInputStream()))
+        // Use a ranged writer, which can send file ranges without copying them if the output supports it
+        try (RangeWriter rangeWriter = HttpContentRangeWriter.newRangeWriter(content))
         {
             rangeWriter.writeTo(out, start, contentLength);
         }
@@ -21,6 +21,7 @@ import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.io.AbstractConnection;
 import org.eclipse.jetty.io.Connection;
 import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.io.ssl.KernelTlsProvider;
 import org.eclipse.jetty.io.ssl.SslConnection;
 import org.eclipse.jetty.io.ssl.SslHandshakeListener;
 import org.eclipse.jetty.util.annotation.Name;
@@ -38,6 +39,7 @@ public class SslConnectionFactory extends AbstractConnectionFactory implements C
     private boolean _directBuffersForEncryption = false;
     private boolean _directBuffersForDecryption = false;
     private boolean _ensureSecureRequestCustomizer = true;
+    private KernelTlsProvider _kernelTlsProvider;
 
     public SslConnectionFactory()
     {
@@ -102,6 +104,27 @@ public class SslConnectionFactory extends AbstractConnectionFactory implements C
         _ensureSecureRequestCustomizer = ensureSecureRequestCustomizer;
     }
 
+    public KernelTlsProvider getKernelTlsProvider()
+    {
+        return _kernelTlsProvider;
+    }
+
+    /**
+     * <p>Sets the provider of kernel TLS offload for the connections created by this factory.</p>
+     * <p>Kernel TLS offload is disabled by default. When enabled, connections whose encryption
+     * is offloaded to the kernel can send file content without copying it in user space,
+     * see {@link HttpConfiguration#setUseSendFile(boolean)}; other connections keep
+     * encrypting with the {@link SSLEngine}.</p>
+     *
+     * @param kernelTlsProvider the provider of kernel TLS offload, or null to disable it
+     * @see SslConnection#setKernelTlsProvider(KernelTlsProvider)
+     */
+    public void setKernelTlsProvider(KernelTlsProvider kernelTlsProvider)
+    {
+        updateBean(_kernelTlsProvider, kernelTlsProvider);
+        _kernelTlsProvider = kernelTlsProvider;
+    }
+
     @Override
     protected void doStart() throws Exception
     {
@@ -148,6 +171,7 @@ public class SslConnectionFactory extends AbstractConnectionFactory implements C
         SslConnection sslConnection = newSslConnection(connector, endPoint, engine);
         sslConnection.setRenegotiationAllowed(_sslContextFactory.isRenegotiationAllowed());
         sslConnection.setRenegotiationLimit(_sslContextFactory.getRenegotiationLimit());
+        sslConnection.setKernelTlsProvider(getKernelTlsProvider());
         configure(sslConnection, connector, endPoint);
 
         ConnectionFactory next = connector.getConnectionFactory(_nextProtocol);
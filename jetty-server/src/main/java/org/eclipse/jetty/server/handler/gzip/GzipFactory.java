@@ -13,7 +13,9 @@
 
 package org.eclipse.jetty.server.handler.gzip;
 
+import org.eclipse.jetty.http.CompressedContentFormat;
 import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.util.compression.CompressionCodec;
 import org.eclipse.jetty.util.compression.DeflaterPool;
 
 public interface GzipFactory
@@ -21,4 +23,31 @@ public interface GzipFactory
     DeflaterPool.Entry getDeflaterEntry(Request request, long contentLength);
 
     boolean isMimeTypeGzipable(String mimetype);
+
+    /**
+     * @param request the request
+     * @param contentLength the response content length, or -1 if unknown
+     * @return the codec to compress the response with, in preference to gzip, or null to use gzip
+     */
+    default CompressionCodec getCompressionCodec(Request request, long contentLength)
+    {
+        return null;
+    }
+
+    /**
+     * @param codec the codec
+     * @return the format describing the content encoding and ETag suffix of the codec
+     */
+    default CompressedContentFormat getCompressedContentFormat(CompressionCodec codec)
+    {
+        return new CompressedContentFormat(codec.getEncoding(), codec.getExtension());
+    }
+
+    /**
+     * @return the cache of compressed response bodies, or null if compressed bodies are not cached
+     */
+    default GzipResponseCache getResponseCache()
+    {
+        return null;
+    }
 }
@@ -16,6 +16,9 @@ package org.eclipse.jetty.server.handler.gzip;
 import java.io.IOException;
 import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -42,7 +45,9 @@ import org.eclipse.jetty.server.handler.HandlerWrapper;
 import org.eclipse.jetty.util.AsciiLowerCaseSet;
 import org.eclipse.jetty.util.IncludeExclude;
 import org.eclipse.jetty.util.StringUtil;
+import org.eclipse.jetty.util.compression.CompressionCodec;
 import org.eclipse.jetty.util.compression.CompressionPool;
+import org.eclipse.jetty.util.compression.DeflateCodec;
 import org.eclipse.jetty.util.compression.DeflaterPool;
 import org.eclipse.jetty.util.compression.InflaterPool;
 import org.slf4j.Logger;
@@ -170,6 +175,10 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
     private final IncludeExclude<String> _paths = new IncludeExclude<>(PathSpecSet.class);
     private final IncludeExclude<String> _mimeTypes = new IncludeExclude<>(AsciiLowerCaseSet.class);
     private HttpField _vary = GzipHttpOutputInterceptor.VARY_ACCEPT_ENCODING;
+    private GzipResponseCache _responseCache;
+    private final DeflateCodec _deflateCodec = new DeflateCodec();
+    private List<CompressionCodec> _compressionCodecs;
+    private Map<CompressionCodec, CompressedContentFormat> _codecFormats = Map.of();
 
     /**
      * Instantiates a new GzipHandler.
@@ -195,6 +204,8 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
         _mimeTypes.exclude("application/x-xz");
         _mimeTypes.exclude("application/x-rar-compressed");
 
+        addBean(_deflateCodec);
+
         if (LOG.isDebugEnabled())
             LOG.debug("{} mime types {}", this, _mimeTypes);
     }
@@ -213,6 +224,19 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
             _deflaterPool = DeflaterPool.ensurePool(server);
             addBean(_deflaterPool);
         }
+        _deflateCodec.setThreadPool(server.getThreadPool());
+
+        Map<CompressionCodec, CompressedContentFormat> codecFormats = new LinkedHashMap<>();
+        List<CompressionCodec> codecs = _compressionCodecs == null ? CompressionCodec.load() : _compressionCodecs;
+        for (CompressionCodec codec : codecs)
+        {
+            // The gzip encoding is always handled by the Deflater based implementation.
+            if (!GZIP.equalsIgnoreCase(codec.getEncoding()))
+                codecFormats.put(codec, new CompressedContentFormat(codec.getEncoding(), codec.getExtension()));
+        }
+        _codecFormats = codecFormats;
+        if (LOG.isDebugEnabled())
+            LOG.debug("{} compression codecs {}", this, codecFormats.keySet());
 
         super.doStart();
     }
@@ -227,6 +251,9 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
 
         removeBean(_deflaterPool);
         _deflaterPool = null;
+
+        _deflateCodec.setThreadPool(null);
+        _codecFormats = Map.of();
     }
 
     /**
@@ -389,6 +416,66 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
         _syncFlush = syncFlush;
     }
 
+    @Override
+    public GzipResponseCache getResponseCache()
+    {
+        return _responseCache;
+    }
+
+    /**
+     * <p>Sets the cache of compressed response bodies.</p>
+     * <p>When set, response bodies that are written in a single write
+     * are compressed once and served from the cache when the same body,
+     * or a body with the same strong {@code ETag} for the same URI, is
+     * written again. This is useful for dynamic responses, such as
+     * configuration payloads, that are frequently identical.</p>
+     *
+     * @param responseCache the cache of compressed response bodies, or null to not cache
+     */
+    public void setResponseCache(GzipResponseCache responseCache)
+    {
+        updateBean(_responseCache, responseCache);
+        _responseCache = responseCache;
+    }
+
+    /**
+     * <p>Gets the built-in codec that configures the compression level of the gzip encoding.</p>
+     * <p>By default the level is {@link DeflateCodec#isAutoTune() auto tuned} from the
+     * utilization of the server thread pool and from the response content length.
+     * When auto tuning is disabled, the level of the {@link #getDeflaterPool() DeflaterPool} is used.</p>
+     *
+     * @return the codec configuring the gzip compression level
+     */
+    public DeflateCodec getDeflateCodec()
+    {
+        return _deflateCodec;
+    }
+
+    /**
+     * @return the codecs for encodings other than gzip, or null if the codecs are discovered with
+     * {@link java.util.ServiceLoader} when starting
+     * @see #setCompressionCodecs(CompressionCodec...)
+     */
+    public List<CompressionCodec> getCompressionCodecs()
+    {
+        return _compressionCodecs;
+    }
+
+    /**
+     * <p>Sets the codecs for encodings other than gzip, such as {@code br} or {@code zstd}.</p>
+     * <p>When a request accepts one of these encodings, the first accepted codec in the given
+     * order is used in preference to gzip. If not set, the codecs declared as {@link java.util.ServiceLoader}
+     * service providers of {@link CompressionCodec} are used.</p>
+     *
+     * @param codecs the codecs to use, or an empty array to only use gzip
+     */
+    public void setCompressionCodecs(CompressionCodec... codecs)
+    {
+        if (isStarted())
+            throw new IllegalStateException(getState());
+        _compressionCodecs = List.of(codecs);
+    }
+
     /**
      * Add included MIME types for response filtering
      *
@@ -453,7 +540,32 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
             return null;
         }
 
-        return _deflaterPool.acquire();
+        DeflaterPool.Entry entry = _deflaterPool.acquire();
+        if (_deflateCodec.isAutoTune())
+            entry.get().setLevel(_deflateCodec.getLevel(contentLength));
+        return entry;
+    }
+
+    @Override
+    public CompressionCodec getCompressionCodec(Request request, long contentLength)
+    {
+        if (_codecFormats.isEmpty() || (contentLength >= 0 && contentLength < _minGzipSize))
+            return null;
+
+        HttpFields fields = request.getHttpFields();
+        for (CompressionCodec codec : _codecFormats.keySet())
+        {
+            if (fields.contains(HttpHeader.ACCEPT_ENCODING, codec.getEncoding()))
+                return codec;
+        }
+        return null;
+    }
+
+    @Override
+    public CompressedContentFormat getCompressedContentFormat(CompressionCodec codec)
+    {
+        CompressedContentFormat format = _codecFormats.get(codec);
+        return format == null ? GzipFactory.super.getCompressedContentFormat(codec) : format;
     }
 
     /**
@@ -623,6 +735,10 @@ public class GzipHandler extends HandlerWrapper implements GzipFactory
                     {
                         String etags = field.getValue();
                         String etagsNoSuffix = CompressedContentFormat.GZIP.stripSuffixes(etags);
+                        for (CompressedContentFormat format : _codecFormats.values())
+                        {
+                            etagsNoSuffix = format.stripSuffixes(etagsNoSuffix);
+                        }
                         if (etagsNoSuffix.equals(etags))
                             newFields.add(field);
                         else
@@ -19,6 +19,7 @@ import java.util.concurrent.atomic.AtomicReference;
 import java.util.zip.CRC32;
 import java.util.zip.Deflater;
 
+import org.eclipse.jetty.http.CompressedContentFormat;
 import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeader;
@@ -29,9 +30,11 @@ import org.eclipse.jetty.server.HttpChannel;
 import org.eclipse.jetty.server.HttpOutput;
 import org.eclipse.jetty.server.Response;
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.ByteArrayOutputStream2;
 import org.eclipse.jetty.util.Callback;
 import org.eclipse.jetty.util.IteratingNestedCallback;
 import org.eclipse.jetty.util.StringUtil;
+import org.eclipse.jetty.util.compression.CompressionCodec;
 import org.eclipse.jetty.util.compression.DeflaterPool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -61,6 +64,8 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
     private final boolean _syncFlush;
 
     private DeflaterPool.Entry _deflaterEntry;
+    private CompressionCodec.Encoder _encoder;
+    private boolean _encoding;
     private ByteBuffer _buffer;
 
     public GzipHttpOutputInterceptor(GzipFactory factory, HttpChannel channel, HttpOutput.Interceptor next, boolean syncFlush)
@@ -107,7 +112,10 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
                 break;
 
             case COMPRESSING:
-                gzip(content, complete, callback);
+                if (_encoding)
+                    encode(content, complete, callback);
+                else
+                    gzip(content, complete, callback);
                 break;
 
             default:
@@ -130,6 +138,14 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
             callback.succeeded();
     }
 
+    private void encode(ByteBuffer content, boolean complete, final Callback callback)
+    {
+        if (content.hasRemaining() || complete)
+            new EncoderCB(content, complete, callback).iterate();
+        else
+            callback.succeeded();
+    }
+
     protected void commit(ByteBuffer content, boolean complete, Callback callback)
     {
         // Are we excluding because of status?
@@ -192,6 +208,28 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
             if (contentLength < 0 && complete)
                 contentLength = content.remaining();
 
+            // Is there a preferred codec for an encoding other than gzip?
+            CompressionCodec codec = _factory.getCompressionCodec(_channel.getRequest(), contentLength);
+            if (codec != null)
+            {
+                CompressedContentFormat format = _factory.getCompressedContentFormat(codec);
+                _encoder = codec.newEncoder(contentLength);
+                _encoding = true;
+                fields.put(format.getContentEncoding());
+                response.setContentLength(-1);
+                String etag = fields.get(HttpHeader.ETAG);
+                if (etag != null)
+                    fields.put(HttpHeader.ETAG, format.etag(etag));
+
+                LOG.debug("{} encoding {} with {}", this, format, _encoder);
+                _state.set(GZState.COMPRESSING);
+                if (BufferUtil.isEmpty(content) && !complete)
+                    _interceptor.write(BufferUtil.EMPTY_BUFFER, false, callback);
+                else
+                    encode(content, complete, callback);
+                return;
+            }
+
             _deflaterEntry = _factory.getDeflaterEntry(_channel.getRequest(), contentLength);
             if (_deflaterEntry == null)
             {
@@ -210,6 +248,32 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
             if (etag != null)
                 fields.put(HttpHeader.ETAG, etagGzip(etag));
 
+            // Can the whole content be served from, or added to, the response cache?
+            GzipResponseCache cache = _factory.getResponseCache();
+            if (cache != null && complete && content.remaining() <= cache.getMaxEntrySize())
+            {
+                GzipResponseCache.Key key = etag != null && !etag.startsWith("W/")
+                    ? GzipResponseCache.Key.from(_channel.getRequest().getHttpURI().toString(), etag, GZIP.getEncoding())
+                    : GzipResponseCache.Key.from(content, GZIP.getEncoding());
+                ByteBuffer compressed = cache.get(key);
+                if (compressed == null)
+                {
+                    compressed = gzipAll(content);
+                    cache.put(key, compressed);
+                    compressed = compressed.asReadOnlyBuffer();
+                }
+                else if (LOG.isDebugEnabled())
+                {
+                    LOG.debug("{} cached {}", this, key);
+                }
+                _deflaterEntry.release();
+                _deflaterEntry = null;
+                content.position(content.limit());
+                _state.set(GZState.NOT_COMPRESSING);
+                _interceptor.write(compressed, true, callback);
+                return;
+            }
+
             LOG.debug("{} compressing {}", this, _deflaterEntry);
             _state.set(GZState.COMPRESSING);
 
@@ -227,6 +291,44 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
             callback.failed(new WritePendingException());
     }
 
+    private ByteBuffer gzipAll(ByteBuffer content)
+    {
+        Deflater deflater = _deflaterEntry.get();
+        byte[] array;
+        int offset;
+        int length = content.remaining();
+        if (content.hasArray())
+        {
+            array = content.array();
+            offset = content.arrayOffset() + content.position();
+        }
+        else
+        {
+            array = new byte[length];
+            content.slice().get(array);
+            offset = 0;
+        }
+
+        _crc.update(array, offset, length);
+        deflater.setInput(array, offset, length);
+        deflater.finish();
+
+        ByteArrayOutputStream2 out = new ByteArrayOutputStream2(Math.max(64, length / 2));
+        out.write(GZIP_HEADER, 0, GZIP_HEADER.length);
+        byte[] chunk = new byte[Math.min(Math.max(512, length), _bufferSize)];
+        while (!deflater.finished())
+        {
+            int produced = deflater.deflate(chunk);
+            out.write(chunk, 0, produced);
+        }
+        int crc = (int)_crc.getValue();
+        int total = deflater.getTotalIn();
+        byte[] trailer = {(byte)crc, (byte)(crc >>> 8), (byte)(crc >>> 16), (byte)(crc >>> 24),
+            (byte)total, (byte)(total >>> 8), (byte)(total >>> 16), (byte)(total >>> 24)};
+        out.write(trailer, 0, trailer.length);
+        return ByteBuffer.wrap(out.getBuf(), 0, out.getCount());
+    }
+
     private String etagGzip(String etag)
     {
         return GZIP.etag(etag);
@@ -257,6 +359,80 @@ public class GzipHttpOutputInterceptor implements HttpOutput.Interceptor
         return _state.get() == GZState.MIGHT_COMPRESS;
     }
 
+    private class EncoderCB extends IteratingNestedCallback
+    {
+        private final ByteBuffer _content;
+        private final boolean _last;
+
+        public EncoderCB(ByteBuffer content, boolean complete, Callback callback)
+        {
+            super(callback);
+            _content = content;
+            _last = complete;
+        }
+
+        @Override
+        protected void onCompleteFailure(Throwable x)
+        {
+            if (_encoder != null)
+            {
+                _encoder.close();
+                _encoder = null;
+            }
+            super.onCompleteFailure(x);
+        }
+
+        @Override
+        protected Action process() throws Exception
+        {
+            // If we have no encoder then the last write has completed, cleanup and succeed.
+            if (_encoder == null)
+            {
+                if (_buffer != null)
+                {
+                    _channel.getByteBufferPool().release(_buffer);
+                    _buffer = null;
+                }
+                return Action.SUCCEEDED;
+            }
+
+            if (_buffer == null)
+                _buffer = _channel.getByteBufferPool().acquire(_bufferSize, false);
+            else
+                BufferUtil.clear(_buffer);
+
+            boolean finished = false;
+            _encoder.encode(_content, _buffer);
+            if (BufferUtil.isEmpty(_content))
+            {
+                if (_last)
+                    finished = _encoder.finish(_buffer);
+                else if (BufferUtil.isEmpty(_buffer))
+                    return Action.SUCCEEDED;
+            }
+
+            if (finished)
+            {
+                _encoder.close();
+                _encoder = null;
+            }
+
+            _interceptor.write(_buffer, finished, this);
+            return Action.SCHEDULED;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s[content=%s last=%b buffer=%s encoder=%s]",
+                super.toString(),
+                BufferUtil.toDetailString(_content),
+                _last,
+                BufferUtil.toDetailString(_buffer),
+                _encoder);
+        }
+    }
+
     private class GzipBufferCB extends IteratingNestedCallback
     {
         private ByteBuffer _copy;
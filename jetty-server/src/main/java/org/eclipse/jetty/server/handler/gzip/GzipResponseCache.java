@@ -0,0 +1,257 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler.gzip;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.thread.AutoLock;
+
+/**
+ * <p>A bounded cache of compressed response bodies, used by {@link GzipHandler}
+ * to avoid compressing the same response body again and again.</p>
+ * <p>Only response bodies that are written in a single write are cached.
+ * A cached body is identified either by the request URI and the strong
+ * {@code ETag} of the response, or by the SHA-256 hash of the uncompressed
+ * body when the response has no strong {@code ETag}, and by the content encoding.</p>
+ * <p>The total size of the compressed bodies is bounded by {@link #getMaxSize()},
+ * and the least recently used entries are evicted to make room for new entries.</p>
+ */
+@ManagedObject("Cache of compressed response bodies")
+public class GzipResponseCache
+{
+    private final AutoLock _lock = new AutoLock();
+    private final Map<Key, ByteBuffer> _cache = new LinkedHashMap<>(16, 0.75F, true);
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _evictions = new LongAdder();
+    private final long _maxSize;
+    private final int _maxEntrySize;
+    private long _size;
+
+    public GzipResponseCache()
+    {
+        this(16 * 1024 * 1024, 64 * 1024);
+    }
+
+    /**
+     * @param maxSize the maximum total size in bytes of the compressed bodies
+     * @param maxEntrySize the maximum size in bytes of an uncompressed body to cache
+     */
+    public GzipResponseCache(long maxSize, int maxEntrySize)
+    {
+        _maxSize = maxSize;
+        _maxEntrySize = maxEntrySize;
+    }
+
+    @ManagedAttribute(value = "The maximum total size of the compressed bodies", readonly = true)
+    public long getMaxSize()
+    {
+        return _maxSize;
+    }
+
+    @ManagedAttribute(value = "The maximum size of an uncompressed body to cache", readonly = true)
+    public int getMaxEntrySize()
+    {
+        return _maxEntrySize;
+    }
+
+    @ManagedAttribute(value = "The total size of the compressed bodies", readonly = true)
+    public long getSize()
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            return _size;
+        }
+    }
+
+    @ManagedAttribute(value = "The number of cached bodies", readonly = true)
+    public int getEntries()
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            return _cache.size();
+        }
+    }
+
+    @ManagedAttribute(value = "The number of responses served from the cache", readonly = true)
+    public long getHits()
+    {
+        return _hits.sum();
+    }
+
+    @ManagedAttribute(value = "The number of responses compressed and added to the cache", readonly = true)
+    public long getMisses()
+    {
+        return _misses.sum();
+    }
+
+    @ManagedAttribute(value = "The number of bodies evicted from the cache", readonly = true)
+    public long getEvictions()
+    {
+        return _evictions.sum();
+    }
+
+    /**
+     * @param key the key of the compressed body
+     * @return a read-only view of the compressed body, or null if not cached
+     */
+    public ByteBuffer get(Key key)
+    {
+        ByteBuffer compressed;
+        try (AutoLock l = _lock.lock())
+        {
+            compressed = _cache.get(key);
+        }
+        if (compressed == null)
+        {
+            _misses.increment();
+            return null;
+        }
+        _hits.increment();
+        return compressed.asReadOnlyBuffer();
+    }
+
+    /**
+     * <p>Caches the given compressed body, evicting the least recently used
+     * entries if the maximum size is exceeded.</p>
+     *
+     * @param key the key of the compressed body
+     * @param compressed the compressed body, which must not be modified afterwards
+     */
+    public void put(Key key, ByteBuffer compressed)
+    {
+        int length = compressed.remaining();
+        if (length > _maxSize)
+            return;
+        try (AutoLock l = _lock.lock())
+        {
+            ByteBuffer previous = _cache.put(key, compressed);
+            if (previous != null)
+                _size -= previous.remaining();
+            _size += length;
+
+            Iterator<ByteBuffer> iterator = _cache.values().iterator();
+            while (_size > _maxSize && iterator.hasNext())
+            {
+                ByteBuffer evicted = iterator.next();
+                iterator.remove();
+                _size -= evicted.remaining();
+                _evictions.increment();
+            }
+        }
+    }
+
+    @ManagedOperation(value = "Clears the cache", impact = "ACTION")
+    public void clear()
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            _cache.clear();
+            _size = 0;
+        }
+    }
+
+    @ManagedOperation(value = "Resets the statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        _hits.reset();
+        _misses.reset();
+        _evictions.reset();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[entries=%d,size=%d/%d]", getClass().getSimpleName(), hashCode(), getEntries(), getSize(), getMaxSize());
+    }
+
+    /**
+     * <p>The key of a cached compressed body.</p>
+     */
+    public static class Key
+    {
+        private final String _tag;
+        private final String _encoding;
+
+        private Key(String tag, String encoding)
+        {
+            _tag = tag;
+            _encoding = encoding;
+        }
+
+        /**
+         * @param uri the request URI
+         * @param etag the strong ETag of the uncompressed response
+         * @param encoding the content encoding
+         * @return a key for the response identified by its ETag
+         */
+        public static Key from(String uri, String etag, String encoding)
+        {
+            return new Key(uri + ' ' + etag, encoding);
+        }
+
+        /**
+         * @param content the uncompressed response body
+         * @param encoding the content encoding
+         * @return a key for the response identified by the hash of its body
+         */
+        public static Key from(ByteBuffer content, String encoding)
+        {
+            try
+            {
+                MessageDigest digest = MessageDigest.getInstance("SHA-256");
+                digest.update(content.slice());
+                return new Key(Base64.getEncoder().encodeToString(digest.digest()), encoding);
+            }
+            catch (NoSuchAlgorithmException x)
+            {
+                throw new IllegalStateException(x);
+            }
+        }
+
+        @Override
+        public boolean equals(Object obj)
+        {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            Key that = (Key)obj;
+            return _tag.equals(that._tag) && _encoding.equals(that._encoding);
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return Objects.hash(_tag, _encoding);
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("%s[%s,%s]", getClass().getSimpleName(), _tag, _encoding);
+        }
+    }
+}
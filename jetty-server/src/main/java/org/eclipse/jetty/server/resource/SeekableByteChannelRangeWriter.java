@@ -16,8 +16,10 @@ package org.eclipse.jetty.server.resource;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 
+import org.eclipse.jetty.server.HttpOutput;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.IO;
 
@@ -64,6 +66,16 @@ public class SeekableByteChannelRangeWriter implements RangeWriter
     {
         skipTo(skipTo);
 
+        // try a zero-copy transfer of the range from a file
+        if (outputStream instanceof HttpOutput && channel instanceof FileChannel &&
+            ((HttpOutput)outputStream).sendFile((FileChannel)channel, skipTo, length))
+        {
+            // the transfer does not move the channel position
+            channel.position(skipTo + length);
+            pos = skipTo + length;
+            return;
+        }
+
         // copy from channel to output stream
         long readTotal = 0;
         while (readTotal < length)
@@ -15,7 +15,11 @@ package org.eclipse.jetty.server.session;
 
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import javax.servlet.http.HttpServletRequest;
@@ -101,6 +105,11 @@ public abstract class AbstractSessionCache extends ContainerLifeCycle implements
      */
     protected boolean _invalidateOnShutdown;
 
+    /**
+     * The asynchronous stores of sessions that have not completed yet
+     */
+    private final Map<String, CompletableFuture<Void>> _pendingStores = new ConcurrentHashMap<>();
+
     /**
      * Create a new Session object from pre-existing session data
      *
@@ -385,6 +394,83 @@ public abstract class AbstractSessionCache extends ContainerLifeCycle implements
         return session;
     }
 
+    /**
+     * Get a session object without blocking the calling thread.
+     *
+     * If the session object is in this cache, or if the SessionDataStore
+     * is not {@link SessionDataStore#isAsync() asynchronous}, this is the same
+     * as {@link #get(String)}. Otherwise the data for the session is loaded
+     * with {@link SessionDataStore#loadAsync(String)} and the session is
+     * added to this cache once loaded. The usage count of the session is incremented.
+     *
+     * @see org.eclipse.jetty.server.session.SessionCache#getAsync(java.lang.String)
+     */
+    @Override
+    public CompletableFuture<Session> getAsync(String id)
+    {
+        if (_sessionDataStore == null || !_sessionDataStore.isAsync() || doGet(id) != null)
+            return SessionCache.super.getAsync(id);
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("Session {} not found locally in {}, attempting to load asynchronously", id, this);
+
+        CompletableFuture<Session> future = new CompletableFuture<>();
+        _sessionDataStore.loadAsync(id).whenComplete((data, failure) ->
+        {
+            try
+            {
+                if (failure != null)
+                {
+                    Throwable cause = failure instanceof CompletionException && failure.getCause() != null ? failure.getCause() : failure;
+                    //can't load the session, delete it
+                    if (cause instanceof UnreadableSessionDataException && isRemoveUnloadableSessions())
+                        _sessionDataStore.delete(id);
+                    future.completeExceptionally(cause);
+                }
+                else
+                {
+                    future.complete(enterLoadedSession(id, data));
+                }
+            }
+            catch (Throwable x)
+            {
+                future.completeExceptionally(x);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Add a session, whose data was loaded asynchronously, to the cache
+     * unless another thread has added it meanwhile, then enter it.
+     *
+     * @param id the id of the session
+     * @param data the loaded data or null if the session doesn't exist
+     * @return the session or null if it doesn't exist
+     * @throws Exception if the session cannot be entered
+     */
+    private Session enterLoadedSession(String id, SessionData data) throws Exception
+    {
+        if (data == null)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Session {} not loaded by store", id);
+            return null;
+        }
+
+        data.setLastNode(_context.getWorkerName()); //we are going to manage the node
+        Session loaded = newSession(data);
+        doComputeIfAbsent(id, k ->
+        {
+            try (AutoLock lock = loaded.lock())
+            {
+                loaded.setResident(true); //ensure freshly loaded session is resident
+            }
+            return loaded;
+        });
+        return getAndEnter(id, true);
+    }
+
     /**
      * Load the info for the session from the session data store
      *
@@ -589,6 +675,172 @@ public abstract class AbstractSessionCache extends ContainerLifeCycle implements
         }
     }
 
+    /**
+     * Finish using the Session object without blocking the calling thread.
+     *
+     * If the SessionDataStore is not {@link SessionDataStore#isAsync() asynchronous},
+     * this is the same as {@link #release(String, Session)}. Otherwise, when the last
+     * simultaneous request exits the session, a snapshot of the session data is
+     * written with {@link SessionDataStore#storeAsync(String, SessionData)}, so that the
+     * lock of the session is not held while the data is written out. Requests may use
+     * the session while the snapshot is being written; changes they make are written
+     * out when they exit. If the write fails, the session is marked dirty again.
+     *
+     * If the evictionPolicy == SessionCache.EVICT_ON_SESSION_EXIT the session is evicted
+     * once the snapshot has been written, unless a request has entered it meanwhile.
+     *
+     * @see org.eclipse.jetty.server.session.SessionCache#releaseAsync(java.lang.String, org.eclipse.jetty.server.session.Session)
+     */
+    @Override
+    public CompletableFuture<Void> releaseAsync(String id, Session session)
+    {
+        if (_sessionDataStore == null || !_sessionDataStore.isAsync())
+            return SessionCache.super.releaseAsync(id, session);
+
+        if (id == null || session == null)
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Put key=" + id + " session=" + (session == null ? "null" : session.getId())));
+
+        SessionData snapshot;
+        CompletableFuture<Void> stored;
+        boolean evict = getEvictionPolicy() == EVICT_ON_SESSION_EXIT;
+        boolean passivating = _sessionDataStore.isPassivating();
+        try (AutoLock lock = session.lock())
+        {
+            if (session.getSessionHandler() == null)
+                return CompletableFuture.failedFuture(new IllegalStateException("Session " + id + " is not managed"));
+
+            if (session.isInvalid())
+                return CompletableFuture.completedFuture(null);
+
+            session.complete();
+
+            if (session.getRequests() > 0)
+            {
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Req count={} for id={}", session.getRequests(), id);
+                session.setResident(true);
+                doPutIfAbsent(id, session); //ensure it is the map, but don't save it to the backing store until the last request exists
+                return CompletableFuture.completedFuture(null);
+            }
+
+            if (passivating)
+            {
+                //backing store supports passivation, call the listeners
+                session.willPassivate();
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Session passivating id={}", id);
+            }
+            snapshot = snapshot(session.getSessionData());
+            //reactivate now unless the session is going to be evicted
+            if (passivating && !evict)
+                session.didActivate();
+            session.setResident(true);
+            doPutIfAbsent(id, session); //ensure it is in our map
+
+            //write the snapshots of a session in the order they were taken
+            stored = _pendingStores.compute(id, (k, pending) -> pending == null
+                ? storeSnapshot(k, session, snapshot)
+                : pending.handle((r, x) -> null).thenCompose(v -> storeSnapshot(k, session, snapshot)));
+        }
+        catch (Throwable x)
+        {
+            return CompletableFuture.failedFuture(x);
+        }
+
+        return stored.whenComplete((r, failure) ->
+        {
+            _pendingStores.remove(id, stored);
+            try (AutoLock lock = session.lock())
+            {
+                SessionData data = session.getSessionData();
+                if (snapshot.getLastSaved() > data.getLastSaved())
+                    data.setLastSaved(snapshot.getLastSaved());
+                //changes that were not written out must be written by a later store
+                copyDirtyState(snapshot, data);
+
+                if (evict)
+                {
+                    if (failure == null && session.getRequests() <= 0 && session.isResident() && session.isValid())
+                    {
+                        //throw out the session object from the map
+                        doDelete(id);
+                        session.setResident(false);
+                        if (LOG.isDebugEnabled())
+                            LOG.debug("Evicted on request exit id={}", id);
+                    }
+                    else if (passivating)
+                    {
+                        //the session is staying in the cache, reactivate it
+                        session.didActivate();
+                    }
+                }
+            }
+            catch (Throwable x)
+            {
+                LOG.warn("Unable to complete release of session {}", id, x);
+            }
+        });
+    }
+
+    /**
+     * Write out a snapshot of the data of a session, with the state that the store keeps
+     * in its own subclass of SessionData as left by the previous write, then copy that
+     * state back to the data of the session, for the next write.
+     *
+     * @param id the session id
+     * @param session the session
+     * @param snapshot the snapshot of the data of the session
+     * @return the future completed when the snapshot has been written out
+     */
+    private CompletableFuture<Void> storeSnapshot(String id, Session session, SessionData snapshot)
+    {
+        SessionData data = session.getSessionData();
+        try (AutoLock lock = session.lock())
+        {
+            snapshot.copyStoreState(data);
+        }
+        return _sessionDataStore.storeAsync(id, snapshot).whenComplete((r, x) ->
+        {
+            try (AutoLock lock = session.lock())
+            {
+                data.copyStoreState(snapshot);
+            }
+        });
+    }
+
+    /**
+     * Make a copy of the data of a session, including which parts of it
+     * need to be written out, then mark the original as clean.
+     * Called with the lock of the session held.
+     *
+     * @param data the data of the session
+     * @return the copy to write out
+     */
+    private SessionData snapshot(SessionData data)
+    {
+        SessionData copy = _sessionDataStore.newSessionData(data.getId(), data.getCreated(), data.getAccessed(), data.getLastAccessed(), data.getMaxInactiveMs());
+        copy.copy(data);
+        copy.setDirty(false);
+        copy.setMetaDataDirty(false);
+        copyDirtyState(data, copy);
+        data.clean();
+        return copy;
+    }
+
+    private static void copyDirtyState(SessionData from, SessionData to)
+    {
+        if (from.isDirty())
+        {
+            Set<String> names = from.getDirtyAttributes();
+            if (names == null || names.isEmpty())
+                to.setDirty(true);
+            else
+                names.forEach(to::setDirty);
+        }
+        if (from.isMetaDataDirty())
+            to.setMetaDataDirty(true);
+    }
+
     /**
      * Check to see if a session corresponding to the id exists.
      *
@@ -13,7 +13,10 @@
 
 package org.eclipse.jetty.server.session;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
@@ -39,6 +42,7 @@ public abstract class AbstractSessionDataStore extends ContainerLifeCycle implem
     protected long _lastExpiryCheckTime = 0; //last time in ms that getExpired was called
     protected long _lastOrphanSweepTime = 0; //last time in ms that we deleted orphaned sessions
     protected int _savePeriodSec = DEFAULT_SAVE_PERIOD_SEC; //time in sec between saves
+    protected SessionDataSerializer _serializer = new JavaSessionDataSerializer(); //converts attributes to and from bytes
     
     /**
      * Small utility class to allow us to
@@ -93,6 +97,42 @@ public abstract class AbstractSessionDataStore extends ContainerLifeCycle implem
      */
     public abstract void doStore(String id, SessionData data, long lastSaveTime) throws Exception;
 
+    /**
+     * Store only the changes of session data that was stored before.
+     * Called instead of {@link #doStore(String, SessionData, long)} if the store
+     * {@link #isDeltaWriteSupported() supports delta writes} and the changed attributes are known.
+     * The default implementation stores the whole session data.
+     *
+     * @param id identity of session to store
+     * @param data info of the session
+     * @param dirtyAttributes names of the attributes changed since the previous save,
+     * empty if only non-attribute data changed; removed attributes have no value in the data
+     * @param lastSaveTime time of previous save
+     * @throws Exception if unable to store data
+     */
+    public void doStoreDelta(String id, SessionData data, Set<String> dirtyAttributes, long lastSaveTime) throws Exception
+    {
+        doStore(id, data, lastSaveTime);
+    }
+
+    /**
+     * Store the data of several sessions together.
+     * Called by {@link #storeAll(Map)} if the store
+     * {@link #isBatchWriteSupported() supports batch writes}, with the sessions
+     * that need to be saved. The default implementation stores the sessions one by one.
+     *
+     * @param sessions the data of the sessions to store, keyed by session id
+     * @param lastSaveTimes the time of the previous save of each session, or 0 if never saved
+     * @throws Exception if unable to store the data of all the sessions
+     */
+    public void doStoreAll(Map<String, SessionData> sessions, Map<String, Long> lastSaveTimes) throws Exception
+    {
+        for (Map.Entry<String, SessionData> entry : sessions.entrySet())
+        {
+            doStore(entry.getKey(), entry.getValue(), lastSaveTimes.get(entry.getKey()));
+        }
+    }
+
     /**
      * Load the session from persistent store.
      *
@@ -207,10 +247,14 @@ public abstract class AbstractSessionDataStore extends ContainerLifeCycle implem
                 data.isDirty(), data.getLastSaved(), savePeriodMs, (System.currentTimeMillis() - lastSave));
         }
 
-        //save session if attribute changed, never been saved or metadata changed (eg expiry time) and save interval exceeded
-        if (data.isDirty() || (lastSave <= 0) ||
-            (data.isMetaDataDirty() && ((System.currentTimeMillis() - lastSave) >= savePeriodMs)))
+        if (isSaveNeeded(data, savePeriodMs))
         {
+            //only the changed attributes need be written if the session was saved before
+            Set<String> dirtyAttributes = (lastSave > 0 && isDeltaWriteSupported()) ? data.getDirtyAttributes() : null;
+
+            //changes made while the session is written out must be written out again
+            long modifications = data.getModifications();
+
             //set the last saved time to now
             data.setLastSaved(System.currentTimeMillis());
             
@@ -220,8 +264,11 @@ public abstract class AbstractSessionDataStore extends ContainerLifeCycle implem
                 try
                 {
                     //call the specific store method, passing in previous save time
-                    doStore(id, data, lastSave);
-                    data.clean(); //unset all dirty flags
+                    if (dirtyAttributes == null)
+                        doStore(id, data, lastSave);
+                    else
+                        doStoreDelta(id, data, dirtyAttributes, lastSave);
+                    data.clean(modifications); //unset all dirty flags
                 }
                 catch (Exception e)
                 {
@@ -235,6 +282,71 @@ public abstract class AbstractSessionDataStore extends ContainerLifeCycle implem
         }
     }
 
+    @Override
+    public void storeAll(Map<String, SessionData> sessions) throws Exception
+    {
+        if (!isBatchWriteSupported())
+        {
+            SessionDataStore.super.storeAll(sessions);
+            return;
+        }
+
+        if (!isStarted())
+            throw new IllegalStateException("Not started");
+
+        long savePeriodMs = (_savePeriodSec <= 0 ? 0 : TimeUnit.SECONDS.toMillis(_savePeriodSec));
+        long now = System.currentTimeMillis();
+        Map<String, SessionData> batch = new LinkedHashMap<>();
+        Map<String, Long> lastSaveTimes = new HashMap<>();
+        Map<String, Long> modifications = new HashMap<>();
+        for (Map.Entry<String, SessionData> entry : sessions.entrySet())
+        {
+            SessionData data = entry.getValue();
+            if (data != null && isSaveNeeded(data, savePeriodMs))
+            {
+                batch.put(entry.getKey(), data);
+                lastSaveTimes.put(entry.getKey(), data.getLastSaved());
+                modifications.put(entry.getKey(), data.getModifications());
+                data.setLastSaved(now);
+            }
+        }
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("StoreAll: {} of {} sessions need saving", batch.size(), sessions.size());
+
+        if (batch.isEmpty())
+            return;
+
+        final Result<Object> result = new Result<>();
+        Runnable r = () ->
+        {
+            try
+            {
+                doStoreAll(batch, lastSaveTimes);
+                batch.forEach((id, data) -> data.clean(modifications.get(id))); //unset all dirty flags
+            }
+            catch (Exception e)
+            {
+                //reset last save times if save failed
+                batch.forEach((id, data) -> data.setLastSaved(lastSaveTimes.get(id)));
+                result.setException(e);
+            }
+        };
+        _context.run(r);
+        result.throwIfException();
+    }
+
+    /**
+     * Save session if attribute changed, never been saved or
+     * metadata changed (eg expiry time) and save interval exceeded.
+     */
+    private boolean isSaveNeeded(SessionData data, long savePeriodMs)
+    {
+        long lastSave = data.getLastSaved();
+        return data.isDirty() || (lastSave <= 0) ||
+            (data.isMetaDataDirty() && ((System.currentTimeMillis() - lastSave) >= savePeriodMs));
+    }
+
     @Override
     public boolean exists(String id) throws Exception
     {
@@ -357,6 +469,24 @@ public abstract class AbstractSessionDataStore extends ContainerLifeCycle implem
         super.doStart();
     }
 
+    /**
+     * @return the SessionDataSerializer used to read and write session attributes
+     */
+    @ManagedAttribute(value = "serializer of session attributes", readonly = true)
+    public SessionDataSerializer getSerializer()
+    {
+        return _serializer;
+    }
+
+    /**
+     * @param serializer the SessionDataSerializer used to read and write session attributes
+     */
+    public void setSerializer(SessionDataSerializer serializer)
+    {
+        checkStarted();
+        _serializer = serializer;
+    }
+
     @ManagedAttribute(value = "interval in secs to prevent too eager session scavenging", readonly = true)
     public int getGracePeriodSec()
     {
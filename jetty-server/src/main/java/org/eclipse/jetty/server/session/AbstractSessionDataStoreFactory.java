@@ -21,6 +21,7 @@ public abstract class AbstractSessionDataStoreFactory implements SessionDataStor
 
     int _gracePeriodSec = AbstractSessionDataStore.DEFAULT_GRACE_PERIOD_SEC;
     int _savePeriodSec = AbstractSessionDataStore.DEFAULT_SAVE_PERIOD_SEC;
+    SessionDataSerializer _serializer;
 
     /**
      * @return the gracePeriodSec
@@ -53,4 +54,20 @@ public abstract class AbstractSessionDataStoreFactory implements SessionDataStor
     {
         _savePeriodSec = savePeriodSec;
     }
+
+    /**
+     * @return the SessionDataSerializer for session attributes, or null for the default of the store
+     */
+    public SessionDataSerializer getSerializer()
+    {
+        return _serializer;
+    }
+
+    /**
+     * @param serializer the SessionDataSerializer for session attributes, or null for the default of the store
+     */
+    public void setSerializer(SessionDataSerializer serializer)
+    {
+        _serializer = serializer;
+    }
 }
@@ -0,0 +1,380 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+
+/**
+ * BinarySessionDataSerializer
+ *
+ * Serializes the attributes of a session in a compact binary format.
+ * Values of common types (String, boxed primitives, byte[], and ArrayList,
+ * HashMap and LinkedHashMap of those) are written as a type tag followed by
+ * their value, without the class descriptors of Java serialization. Values
+ * of other types are written with Java serialization, recording which
+ * classloader should load them as {@link JavaSessionDataSerializer} does.
+ *
+ * The serialized attributes can optionally be compressed when larger than
+ * a {@link #getCompressionThreshold() threshold}.
+ *
+ * Attributes serialized by {@link JavaSessionDataSerializer} can also be
+ * deserialized, so that an existing persistent store can switch to this format.
+ * Nodes that do not use this SessionDataSerializer cannot read the attributes it writes.
+ */
+@ManagedObject
+public class BinarySessionDataSerializer implements SessionDataSerializer
+{
+    private static final byte MAGIC = (byte)0xB5;
+    private static final byte PLAIN = 0x01;
+    private static final byte DEFLATED = 0x02;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte BOOLEAN = 2;
+    private static final byte BYTE = 3;
+    private static final byte SHORT = 4;
+    private static final byte CHARACTER = 5;
+    private static final byte INTEGER = 6;
+    private static final byte LONG = 7;
+    private static final byte FLOAT = 8;
+    private static final byte DOUBLE = 9;
+    private static final byte BYTES = 10;
+    private static final byte LIST = 11;
+    private static final byte MAP = 12;
+    private static final byte LINKED_MAP = 13;
+    private static final byte SERIALIZED = 14;
+
+    private final JavaSessionDataSerializer _javaSerializer = new JavaSessionDataSerializer();
+    private int _compressionThreshold = -1;
+    private int _compressionLevel = Deflater.BEST_SPEED;
+
+    /**
+     * @return the size in bytes from which serialized attributes are compressed, or -1 if they are never compressed
+     */
+    @ManagedAttribute(value = "size in bytes from which serialized attributes are compressed", readonly = true)
+    public int getCompressionThreshold()
+    {
+        return _compressionThreshold;
+    }
+
+    /**
+     * @param compressionThreshold the size in bytes from which serialized attributes are compressed,
+     * or -1 to never compress them
+     */
+    public void setCompressionThreshold(int compressionThreshold)
+    {
+        _compressionThreshold = compressionThreshold;
+    }
+
+    @ManagedAttribute(value = "deflater compression level", readonly = true)
+    public int getCompressionLevel()
+    {
+        return _compressionLevel;
+    }
+
+    /**
+     * @param compressionLevel the {@link Deflater} compression level
+     */
+    public void setCompressionLevel(int compressionLevel)
+    {
+        _compressionLevel = compressionLevel;
+    }
+
+    @Override
+    public byte[] serializeAttributes(SessionData data) throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        baos.write(MAGIC);
+        baos.write(PLAIN);
+        DataOutputStream out = new DataOutputStream(baos);
+        Map<String, Object> attributes = data._attributes;
+        out.writeInt(attributes.size());
+        for (Map.Entry<String, Object> entry : attributes.entrySet())
+        {
+            writeString(out, entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+        out.flush();
+
+        if (_compressionThreshold < 0 || baos.size() < _compressionThreshold)
+            return baos.toByteArray();
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(baos.size() / 2);
+        compressed.write(MAGIC);
+        compressed.write(DEFLATED);
+        Deflater deflater = new Deflater(_compressionLevel);
+        try (DeflaterOutputStream dos = new DeflaterOutputStream(compressed, deflater))
+        {
+            byte[] plain = baos.toByteArray();
+            dos.write(plain, 2, plain.length - 2);
+        }
+        finally
+        {
+            deflater.end();
+        }
+
+        //only keep the compressed bytes if they are smaller
+        if (compressed.size() < baos.size())
+            return compressed.toByteArray();
+        return baos.toByteArray();
+    }
+
+    @Override
+    public void deserializeAttributes(SessionData data, byte[] bytes) throws IOException, ClassNotFoundException
+    {
+        if (bytes.length < 2 || bytes[0] != MAGIC)
+        {
+            //not written by this serializer, must be java serialization
+            _javaSerializer.deserializeAttributes(data, bytes);
+            return;
+        }
+
+        Inflater inflater = null;
+        try
+        {
+            InputStream in = new ByteArrayInputStream(bytes, 2, bytes.length - 2);
+            if (bytes[1] == DEFLATED)
+            {
+                inflater = new Inflater();
+                in = new InflaterInputStream(in, inflater);
+            }
+            else if (bytes[1] != PLAIN)
+            {
+                throw new IOException("Unknown session attributes format " + bytes[1]);
+            }
+
+            DataInputStream din = new DataInputStream(in);
+            int entries = din.readInt();
+            Map<String, Object> attributes = new ConcurrentHashMap<>();
+            for (int i = 0; i < entries; i++)
+            {
+                String name = readString(din);
+                attributes.put(name, readValue(din));
+            }
+            data._attributes = attributes;
+        }
+        finally
+        {
+            if (inflater != null)
+                inflater.end();
+        }
+    }
+
+    private void writeString(DataOutputStream out, String value) throws IOException
+    {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private String readString(DataInputStream in) throws IOException
+    {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void writeValue(DataOutputStream out, Object value) throws IOException
+    {
+        if (value == null)
+        {
+            out.writeByte(NULL);
+            return;
+        }
+
+        //only the exact classes are written as such, so that they are deserialized to the same class
+        Class<?> clazz = value.getClass();
+        if (clazz == String.class)
+        {
+            out.writeByte(STRING);
+            writeString(out, (String)value);
+        }
+        else if (clazz == Boolean.class)
+        {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean)value);
+        }
+        else if (clazz == Byte.class)
+        {
+            out.writeByte(BYTE);
+            out.writeByte((Byte)value);
+        }
+        else if (clazz == Short.class)
+        {
+            out.writeByte(SHORT);
+            out.writeShort((Short)value);
+        }
+        else if (clazz == Character.class)
+        {
+            out.writeByte(CHARACTER);
+            out.writeChar((Character)value);
+        }
+        else if (clazz == Integer.class)
+        {
+            out.writeByte(INTEGER);
+            out.writeInt((Integer)value);
+        }
+        else if (clazz == Long.class)
+        {
+            out.writeByte(LONG);
+            out.writeLong((Long)value);
+        }
+        else if (clazz == Float.class)
+        {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float)value);
+        }
+        else if (clazz == Double.class)
+        {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double)value);
+        }
+        else if (clazz == byte[].class)
+        {
+            byte[] bytes = (byte[])value;
+            out.writeByte(BYTES);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        else if (clazz == ArrayList.class)
+        {
+            List<?> list = (List<?>)value;
+            out.writeByte(LIST);
+            out.writeInt(list.size());
+            for (Object element : list)
+            {
+                writeValue(out, element);
+            }
+        }
+        else if (clazz == HashMap.class || clazz == LinkedHashMap.class)
+        {
+            Map<?, ?> map = (Map<?, ?>)value;
+            out.writeByte(clazz == HashMap.class ? MAP : LINKED_MAP);
+            out.writeInt(map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet())
+            {
+                writeValue(out, entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        }
+        else
+        {
+            out.writeByte(SERIALIZED);
+            out.writeBoolean(SessionData.isServerLoaded(clazz));
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (ObjectOutputStream oos = new ObjectOutputStream(baos))
+            {
+                oos.writeObject(value);
+            }
+            out.writeInt(baos.size());
+            baos.writeTo(out);
+        }
+    }
+
+    private Object readValue(DataInputStream in) throws IOException, ClassNotFoundException
+    {
+        byte type = in.readByte();
+        switch (type)
+        {
+            case NULL:
+                return null;
+            case STRING:
+                return readString(in);
+            case BOOLEAN:
+                return in.readBoolean();
+            case BYTE:
+                return in.readByte();
+            case SHORT:
+                return in.readShort();
+            case CHARACTER:
+                return in.readChar();
+            case INTEGER:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case FLOAT:
+                return in.readFloat();
+            case DOUBLE:
+                return in.readDouble();
+            case BYTES:
+            {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                return bytes;
+            }
+            case LIST:
+            {
+                int size = in.readInt();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++)
+                {
+                    list.add(readValue(in));
+                }
+                return list;
+            }
+            case MAP:
+            case LINKED_MAP:
+            {
+                int size = in.readInt();
+                Map<Object, Object> map = type == MAP ? new HashMap<>() : new LinkedHashMap<>();
+                for (int i = 0; i < size; i++)
+                {
+                    Object key = readValue(in);
+                    map.put(key, readValue(in));
+                }
+                return map;
+            }
+            case SERIALIZED:
+            {
+                boolean isServerLoader = in.readBoolean();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                ClassLoader loader = isServerLoader ? SessionData.class.getClassLoader() : Thread.currentThread().getContextClassLoader();
+                try (ClassLoadingObjectInputStream ois = new ClassLoadingObjectInputStream(new ByteArrayInputStream(bytes)))
+                {
+                    return ois.readObject(loader);
+                }
+            }
+            default:
+                throw new IOException("Unknown session attribute type " + type);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[compressionThreshold=%d]", getClass().getSimpleName(), hashCode(), _compressionThreshold);
+    }
+}
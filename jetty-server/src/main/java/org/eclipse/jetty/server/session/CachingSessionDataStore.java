@@ -13,8 +13,15 @@
 
 package org.eclipse.jetty.server.session;
 
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
 
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.component.ContainerLifeCycle;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,10 +43,26 @@ import org.slf4j.LoggerFactory;
  * deletes, the data is deleted first from the SessionDataStore, and then from the
  * cache. There is no transaction manager ensuring atomic operations, so it is
  * possible that failures can result in cache inconsistency.
+ *
+ * In near-cache mode, the cache holds copies of the sessions local to this node,
+ * that may be changed by other nodes. A cached session is then only returned if
+ * the time at which it was last saved is still the one in the SessionDataStore,
+ * as read by {@link SessionDataStore#getLastSaved(String)}, which is cheaper than
+ * loading the whole session. If the SessionDataStore sends notifications of the
+ * sessions written out or deleted by other nodes, see
+ * {@link SessionDataStore#addInvalidationListener(SessionDataStore.InvalidationListener)},
+ * the notified sessions are removed from the cache instead, and cached sessions are
+ * returned without checking the SessionDataStore. A session loaded from the
+ * SessionDataStore is not kept in the cache if a notification for it arrived
+ * during the load. The near-cache mode fails to start if the SessionDataStore
+ * neither sends notifications nor reads the last save time cheaply, see
+ * {@link SessionDataStore#isLastSavedSupported()}.
  */
+@ManagedObject
 public class CachingSessionDataStore extends ContainerLifeCycle implements SessionDataStore
 {
     private static final Logger LOG = LoggerFactory.getLogger(CachingSessionDataStore.class);
+    private static final int INVALIDATION_STRIPES = 256;
     /**
      * The actual store for the session data
      */
@@ -50,6 +73,14 @@ public class CachingSessionDataStore extends ContainerLifeCycle implements Sessi
      */
     protected SessionDataMap _cache;
 
+    private final SessionDataStore.InvalidationListener _invalidationListener = this::invalidate;
+    private final LongAdder _nearCacheHits = new LongAdder();
+    private final LongAdder _nearCacheStale = new LongAdder();
+    private final LongAdder _invalidations = new LongAdder();
+    private final AtomicLongArray _invalidationSequences = new AtomicLongArray(INVALIDATION_STRIPES);
+    private boolean _nearCache;
+    private volatile boolean _invalidationNotified;
+
     /**
      * @param cache the front cache to use
      * @param store the actual store for the the session data
@@ -78,6 +109,94 @@ public class CachingSessionDataStore extends ContainerLifeCycle implements Sessi
         return _cache;
     }
 
+    /**
+     * @return true if the cache holds copies of sessions that may be changed by other nodes
+     */
+    @ManagedAttribute(value = "whether cached sessions are checked against the store", readonly = true)
+    public boolean isNearCache()
+    {
+        return _nearCache;
+    }
+
+    /**
+     * @param nearCache true if the cache holds copies of sessions that may be changed by other nodes
+     */
+    public void setNearCache(boolean nearCache)
+    {
+        if (isStarted())
+            throw new IllegalStateException("Already started");
+        _nearCache = nearCache;
+    }
+
+    /**
+     * @return true if the store notifies this near-cache of the sessions changed by other nodes
+     */
+    @ManagedAttribute(value = "whether the store notifies sessions changed by other nodes", readonly = true)
+    public boolean isInvalidationNotified()
+    {
+        return _invalidationNotified;
+    }
+
+    @ManagedAttribute(value = "cached sessions found current in the store", readonly = true)
+    public long getNearCacheHits()
+    {
+        return _nearCacheHits.sum();
+    }
+
+    @ManagedAttribute(value = "cached sessions found stale in the store", readonly = true)
+    public long getNearCacheStale()
+    {
+        return _nearCacheStale.sum();
+    }
+
+    @ManagedAttribute(value = "sessions removed from the cache by notifications of the store", readonly = true)
+    public long getInvalidations()
+    {
+        return _invalidations.sum();
+    }
+
+    @ManagedOperation(value = "reset statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        _nearCacheHits.reset();
+        _nearCacheStale.reset();
+        _invalidations.reset();
+    }
+
+    /**
+     * Remove a session from the cache, because it was changed by another node.
+     *
+     * @param id the session id
+     */
+    public void invalidate(String id)
+    {
+        //count the invalidation first, so that a concurrent load does not cache the session
+        _invalidationSequences.incrementAndGet(getInvalidationStripe(id));
+        try
+        {
+            _cache.delete(id);
+            _invalidations.increment();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Invalidated session {}", id);
+        }
+        catch (Exception e)
+        {
+            LOG.warn("Unable to invalidate id {}", id, e);
+        }
+    }
+
+    /**
+     * Invalidations are counted per stripe of session ids, so a
+     * concurrent invalidation of another id may stop a session being cached.
+     *
+     * @param id the session id
+     * @return the index of the invalidation sequence of the id
+     */
+    private int getInvalidationStripe(String id)
+    {
+        return (id.hashCode() & Integer.MAX_VALUE) % INVALIDATION_STRIPES;
+    }
+
     @Override
     public SessionData load(String id) throws Exception
     {
@@ -94,11 +213,43 @@ public class CachingSessionDataStore extends ContainerLifeCycle implements Sessi
         }
 
         if (d != null)
-            return d; //cache hit
+        {
+            if (!_nearCache || _invalidationNotified)
+                return d; //cache hit
+
+            //check the cached copy is still the one in the store
+            long lastSaved = _store.getLastSaved(id);
+            if (lastSaved == d.getLastSaved())
+            {
+                _nearCacheHits.increment();
+                return d;
+            }
+
+            _nearCacheStale.increment();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Stale session {} in cache, lastSaved={} in store", id, lastSaved);
+            if (lastSaved < 0)
+            {
+                //deleted by another node
+                _cache.delete(id);
+                return null;
+            }
+        }
 
         //cache miss - go get it from the store
+        int stripe = getInvalidationStripe(id);
+        long sequence = _invalidationSequences.get(stripe);
         d = _store.load(id);
 
+        //keep a copy near, unless another node changed the session while it was loaded
+        if (_nearCache && d != null && _invalidationSequences.get(stripe) == sequence)
+        {
+            _cache.store(id, d);
+            //the invalidation may have been processed between the check and the store
+            if (_invalidationSequences.get(stripe) != sequence)
+                _cache.delete(id);
+        }
+
         return d;
     }
 
@@ -133,24 +284,94 @@ public class CachingSessionDataStore extends ContainerLifeCycle implements Sessi
             _cache.store(id, data);
     }
 
+    @Override
+    public void storeAll(Map<String, SessionData> sessions) throws Exception
+    {
+        Map<String, Long> lastSaveTimes = new HashMap<>();
+        sessions.forEach((id, data) -> lastSaveTimes.put(id, data.getLastSaved()));
+
+        try
+        {
+            //write to the SessionDataStore first
+            _store.storeAll(sessions);
+        }
+        finally
+        {
+            //update the cache with the sessions that the store saved
+            for (Map.Entry<String, SessionData> entry : sessions.entrySet())
+            {
+                if (entry.getValue().getLastSaved() != lastSaveTimes.get(entry.getKey()))
+                    _cache.store(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
     @Override
     protected void doStart() throws Exception
     {
         super.doStart();
+        if (_nearCache)
+        {
+            _invalidationNotified = _store.addInvalidationListener(_invalidationListener);
+            if (LOG.isDebugEnabled())
+                LOG.debug("Near cache, invalidation notified={}", _invalidationNotified);
+            //checking every cached session with a full load would be slower than not caching
+            if (!_invalidationNotified && !_store.isLastSavedSupported())
+                throw new IllegalStateException("Near cache needs invalidation notifications or a cheap last save time from " + _store);
+        }
     }
 
     @Override
     protected void doStop() throws Exception
     {
+        if (_invalidationNotified)
+            _store.removeInvalidationListener(_invalidationListener);
+        _invalidationNotified = false;
         super.doStop();
     }
 
+    @Override
+    public long getLastSaved(String id) throws Exception
+    {
+        return _store.getLastSaved(id);
+    }
+
+    @Override
+    public boolean isLastSavedSupported()
+    {
+        return _store.isLastSavedSupported();
+    }
+
+    @Override
+    public boolean addInvalidationListener(InvalidationListener listener)
+    {
+        return _store.addInvalidationListener(listener);
+    }
+
+    @Override
+    public void removeInvalidationListener(InvalidationListener listener)
+    {
+        _store.removeInvalidationListener(listener);
+    }
+
     @Override
     public boolean isPassivating()
     {
         return _store.isPassivating();
     }
 
+    @Override
+    public boolean isDeltaWriteSupported()
+    {
+        return _store.isDeltaWriteSupported();
+    }
+
+    @Override
+    public boolean isBatchWriteSupported()
+    {
+        return _store.isBatchWriteSupported();
+    }
+
     @Override
     public boolean exists(String id) throws Exception
     {
@@ -26,6 +26,8 @@ public class CachingSessionDataStoreFactory extends AbstractSessionDataStoreFact
 
     protected SessionDataMapFactory _mapFactory;
 
+    protected boolean _nearCache;
+
     /**
      * @return the SessionDataMapFactory
      */
@@ -51,9 +53,28 @@ public class CachingSessionDataStoreFactory extends AbstractSessionDataStoreFact
         _sessionStoreFactory = factory;
     }
 
+    /**
+     * @return true if the cache holds copies of sessions that may be changed by other nodes
+     */
+    public boolean isNearCache()
+    {
+        return _nearCache;
+    }
+
+    /**
+     * @param nearCache true if the cache holds copies of sessions that may be changed by other nodes
+     * @see CachingSessionDataStore#setNearCache(boolean)
+     */
+    public void setNearCache(boolean nearCache)
+    {
+        _nearCache = nearCache;
+    }
+
     @Override
     public SessionDataStore getSessionDataStore(SessionHandler handler) throws Exception
     {
-        return new CachingSessionDataStore(_mapFactory.getSessionDataMap(), _sessionStoreFactory.getSessionDataStore(handler));
+        CachingSessionDataStore store = new CachingSessionDataStore(_mapFactory.getSessionDataMap(), _sessionStoreFactory.getSessionDataStore(handler));
+        store.setNearCache(isNearCache());
+        return store;
     }
 }
@@ -0,0 +1,511 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+import org.eclipse.jetty.io.ArrayByteBufferPool;
+import org.eclipse.jetty.io.ByteBufferPool;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * CompactSessionCache
+ *
+ * A session cache that keeps the sessions that are not used by any request
+ * serialized in memory, rather than as {@link Session} objects.
+ *
+ * When the last request exits a session, the session is written to the
+ * SessionDataStore as usual, then its data and attributes are serialized
+ * into a buffer, either on heap or in direct (off-heap) memory, and the
+ * Session object is discarded. The session is inflated back into a new
+ * Session object when it is next used. Idle sessions thus cost a single
+ * buffer each instead of a graph of objects in the old generation.
+ * Direct buffers are taken from a {@link ByteBufferPool}, so that they
+ * are reused rather than allocated for every compaction.
+ *
+ * The attributes are serialized together by a {@link JavaSessionDataSerializer}
+ * by default, so that attributes sharing an object still share it once inflated.
+ *
+ * Sessions are inflated with {@link SessionDataStore#newSessionData(String, long, long, long, long)},
+ * and the state that a store keeps in its own subclass of SessionData, such as a version,
+ * is kept aside with {@link SessionData#copyStoreState(SessionData)}.
+ *
+ * The memory used by the buffers can be capped with {@link #setMaxCompactedBytes(long)}:
+ * sessions that do not fit are kept as Session objects.
+ *
+ * Compacted sessions do not have an inactivity timer: they are kept in the
+ * expiry index of {@link DefaultSessionCache}, so they are found when the
+ * expiration of sessions is checked, and they are not evicted on inactivity.
+ */
+@ManagedObject
+public class CompactSessionCache extends DefaultSessionCache
+{
+    private static final Logger LOG = LoggerFactory.getLogger(CompactSessionCache.class);
+
+    /**
+     * The serialized idle sessions
+     */
+    private final ConcurrentHashMap<String, ByteBuffer> _compacted = new ConcurrentHashMap<>();
+
+    /**
+     * The state that the SessionDataStore keeps in its own subclass
+     * of SessionData, for the serialized idle sessions that have any
+     */
+    private final ConcurrentHashMap<String, SessionData> _storeStates = new ConcurrentHashMap<>();
+    private final AtomicLong _compactedBytes = new AtomicLong();
+    private final LongAdder _compactions = new LongAdder();
+    private final LongAdder _inflations = new LongAdder();
+    private final LongAdder _rejections = new LongAdder();
+    private SessionDataSerializer _serializer = new JavaSessionDataSerializer();
+    private ByteBufferPool _byteBufferPool = new ArrayByteBufferPool(0, 256, 64 * 1024);
+    private boolean _offHeap;
+    private long _maxCompactedBytes = -1;
+
+    /**
+     * @param handler The SessionHandler related to this SessionCache
+     */
+    public CompactSessionCache(SessionHandler handler)
+    {
+        super(handler);
+    }
+
+    /**
+     * @return true if the idle sessions are kept in direct (off-heap) buffers
+     */
+    @ManagedAttribute(value = "true if idle sessions are kept off-heap", readonly = true)
+    public boolean isOffHeap()
+    {
+        return _offHeap;
+    }
+
+    /**
+     * @param offHeap true to keep the idle sessions in direct (off-heap) buffers
+     */
+    public void setOffHeap(boolean offHeap)
+    {
+        if (isStarted())
+            throw new IllegalStateException("Already started");
+        _offHeap = offHeap;
+    }
+
+    /**
+     * @return the maximum number of bytes of idle sessions, or -1 for no limit
+     */
+    @ManagedAttribute(value = "max bytes of compacted sessions, -1 for no limit")
+    public long getMaxCompactedBytes()
+    {
+        return _maxCompactedBytes;
+    }
+
+    /**
+     * @param maxCompactedBytes the maximum number of bytes of idle sessions, or -1 for no limit
+     */
+    public void setMaxCompactedBytes(long maxCompactedBytes)
+    {
+        _maxCompactedBytes = maxCompactedBytes;
+    }
+
+    /**
+     * @return the serializer of the attributes of idle sessions
+     */
+    public SessionDataSerializer getSerializer()
+    {
+        return _serializer;
+    }
+
+    /**
+     * @param serializer the serializer of the attributes of idle sessions
+     */
+    public void setSerializer(SessionDataSerializer serializer)
+    {
+        if (isStarted())
+            throw new IllegalStateException("Already started");
+        _serializer = serializer == null ? new JavaSessionDataSerializer() : serializer;
+    }
+
+    /**
+     * @return the pool of the direct buffers of idle sessions kept off-heap
+     */
+    public ByteBufferPool getByteBufferPool()
+    {
+        return _byteBufferPool;
+    }
+
+    /**
+     * @param byteBufferPool the pool of the direct buffers of idle sessions kept off-heap
+     */
+    public void setByteBufferPool(ByteBufferPool byteBufferPool)
+    {
+        if (isStarted())
+            throw new IllegalStateException("Already started");
+        _byteBufferPool = byteBufferPool == null ? new ArrayByteBufferPool(0, 256, 64 * 1024) : byteBufferPool;
+    }
+
+    @ManagedAttribute(value = "current compacted sessions", readonly = true)
+    public int getCompactedSessions()
+    {
+        return _compacted.size();
+    }
+
+    @ManagedAttribute(value = "bytes of compacted sessions", readonly = true)
+    public long getCompactedBytes()
+    {
+        return _compactedBytes.get();
+    }
+
+    @ManagedAttribute(value = "number of times a session was compacted", readonly = true)
+    public long getCompactions()
+    {
+        return _compactions.sum();
+    }
+
+    @ManagedAttribute(value = "number of times a compacted session was inflated", readonly = true)
+    public long getInflations()
+    {
+        return _inflations.sum();
+    }
+
+    @ManagedAttribute(value = "number of sessions not compacted because of the max bytes", readonly = true)
+    public long getRejections()
+    {
+        return _rejections.sum();
+    }
+
+    @Override
+    @ManagedOperation(value = "reset statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        super.resetStats();
+        _compactions.reset();
+        _inflations.reset();
+        _rejections.reset();
+    }
+
+    @Override
+    protected Session getAndEnter(String id, boolean enter) throws Exception
+    {
+        while (true)
+        {
+            Session session = super.getAndEnter(id, enter);
+            //the session may have been compacted after it was found, but before it was locked
+            if (session != null || !_compacted.containsKey(id))
+                return session;
+        }
+    }
+
+    @Override
+    public Session doGet(String id)
+    {
+        Session session = super.doGet(id);
+        if (session == null && id != null && _compacted.containsKey(id))
+            session = doComputeIfAbsent(id, k -> null);
+        return session;
+    }
+
+    @Override
+    protected Session doComputeIfAbsent(String id, Function<String, Session> mappingFunction)
+    {
+        return super.doComputeIfAbsent(id, k ->
+        {
+            Session session = inflate(k);
+            return session == null ? mappingFunction.apply(k) : session;
+        });
+    }
+
+    @Override
+    public Session doDelete(String id)
+    {
+        Session session = super.doDelete(id);
+        ByteBuffer buffer = _compacted.remove(id);
+        if (buffer != null)
+            release(buffer);
+        _storeStates.remove(id);
+        return session;
+    }
+
+    /**
+     * Release the session as {@link AbstractSessionCache#release(String, Session)} does,
+     * then compact it if no request is using it anymore.
+     */
+    @Override
+    public void release(String id, Session session) throws Exception
+    {
+        if (session == null)
+        {
+            super.release(id, session);
+            return;
+        }
+
+        try (AutoLock lock = session.lock())
+        {
+            super.release(id, session);
+            if (session.getRequests() <= 0 && session.isResident() && session.isValid())
+                compact(id, session);
+        }
+    }
+
+    /**
+     * Release the session as {@link AbstractSessionCache#releaseAsync(String, Session)} does,
+     * then compact it once its data has been written out, if no request is using it anymore.
+     */
+    @Override
+    public CompletableFuture<Void> releaseAsync(String id, Session session)
+    {
+        return super.releaseAsync(id, session).thenRun(() ->
+        {
+            try (AutoLock lock = session.lock())
+            {
+                if (session.getRequests() <= 0 && session.isResident() && session.isValid())
+                    compact(id, session);
+            }
+        });
+    }
+
+    @Override
+    public void shutdown()
+    {
+        //inflate the idle sessions, so that they are written out or invalidated
+        for (String id : new ArrayList<>(_compacted.keySet()))
+        {
+            doGet(id);
+        }
+        super.shutdown();
+    }
+
+    /**
+     * Replace a session that is not used by any request by its serialized form.
+     * Called with the lock of the session held.
+     *
+     * @param id the session id
+     * @param session the session
+     */
+    protected void compact(String id, Session session)
+    {
+        ByteBuffer buffer;
+        try
+        {
+            session.willPassivate();
+            buffer = serialize(session.getSessionData());
+        }
+        catch (Exception e)
+        {
+            LOG.warn("Unable to compact session {}", id, e);
+            session.didActivate();
+            return;
+        }
+
+        long total = _compactedBytes.addAndGet(buffer.capacity());
+        if (_maxCompactedBytes >= 0 && total > _maxCompactedBytes)
+        {
+            release(buffer);
+            _rejections.increment();
+            session.didActivate();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Session {} not compacted, {} bytes of compacted sessions", id, total);
+            return;
+        }
+
+        //keep the state of the session that is not serialized
+        SessionData data = session.getSessionData();
+        SessionData storeState = null;
+        if (data.getClass() != SessionData.class)
+        {
+            storeState = _sessionDataStore.newSessionData(id, data.getCreated(), data.getAccessed(), data.getLastAccessed(), data.getMaxInactiveMs());
+            storeState.copyStoreState(data);
+        }
+
+        //swap the session for its buffer atomically, so that a concurrent lookup finds either
+        AtomicBoolean compacted = new AtomicBoolean();
+        SessionData state = storeState;
+        _sessions.computeIfPresent(id, (k, s) ->
+        {
+            if (s != session)
+                return s;
+            if (state != null)
+                _storeStates.put(k, state);
+            _compacted.put(k, buffer);
+            compacted.set(true);
+            return null;
+        });
+
+        if (compacted.get())
+        {
+            _stats.decrement();
+            _compactions.increment();
+            session.setResident(false);
+            if (LOG.isDebugEnabled())
+                LOG.debug("Session {} compacted into {} bytes", id, buffer.capacity());
+        }
+        else
+        {
+            release(buffer);
+            session.didActivate();
+        }
+    }
+
+    /**
+     * Replace a serialized session by a new Session object.
+     *
+     * @param id the session id
+     * @return the inflated session, or null if the session is not compacted or cannot be inflated
+     */
+    protected Session inflate(String id)
+    {
+        ByteBuffer buffer = _compacted.remove(id);
+        if (buffer == null)
+            return null;
+        int bytes = buffer.capacity();
+        SessionData storeState = _storeStates.remove(id);
+
+        AtomicReference<SessionData> reference = new AtomicReference<>();
+        AtomicReference<Exception> exception = new AtomicReference<>();
+        //deserialize the attributes with the classloader of the context
+        _context.run(() ->
+        {
+            try
+            {
+                SessionData data = deserialize(id, buffer);
+                if (storeState != null)
+                    data.copyStoreState(storeState);
+                reference.set(data);
+            }
+            catch (Exception e)
+            {
+                exception.set(e);
+            }
+            finally
+            {
+                release(buffer);
+            }
+        });
+
+        if (exception.get() != null)
+        {
+            LOG.warn("Unable to inflate session {}", id, exception.get());
+            return null;
+        }
+
+        Session session = newSession(reference.get());
+        try (AutoLock lock = session.lock())
+        {
+            session.setResident(true);
+            session.didActivate();
+        }
+        _inflations.increment();
+        if (LOG.isDebugEnabled())
+            LOG.debug("Session {} inflated from {} bytes", id, bytes);
+        return session;
+    }
+
+    private ByteBuffer serialize(SessionData data) throws IOException
+    {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(baos))
+        {
+            out.writeLong(data.getExpiry());
+            out.writeUTF(data.getContextPath());
+            out.writeUTF(data.getVhost());
+            out.writeBoolean(data.getLastNode() != null);
+            if (data.getLastNode() != null)
+                out.writeUTF(data.getLastNode());
+            out.writeLong(data.getCreated());
+            out.writeLong(data.getAccessed());
+            out.writeLong(data.getLastAccessed());
+            out.writeLong(data.getCookieSet());
+            out.writeLong(data.getMaxInactiveMs());
+            out.writeLong(data.getLastSaved());
+            out.writeBoolean(data.isDirty());
+            out.writeBoolean(data.isMetaDataDirty());
+            byte[] attributes = _serializer.serializeAttributes(data);
+            out.writeInt(attributes.length);
+            out.write(attributes);
+        }
+
+        byte[] bytes = baos.toByteArray();
+        if (!_offHeap)
+            return ByteBuffer.wrap(bytes);
+        ByteBuffer buffer = _byteBufferPool.acquire(bytes.length, true);
+        BufferUtil.append(buffer, bytes, 0, bytes.length);
+        return buffer;
+    }
+
+    /**
+     * @param buffer a buffer that does not hold a compacted session anymore
+     */
+    private void release(ByteBuffer buffer)
+    {
+        _compactedBytes.addAndGet(-buffer.capacity());
+        if (buffer.isDirect())
+            _byteBufferPool.release(buffer);
+    }
+
+    private SessionData deserialize(String id, ByteBuffer buffer) throws IOException, ClassNotFoundException
+    {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(BufferUtil.toArray(buffer))))
+        {
+            long expiry = in.readLong();
+            String contextPath = in.readUTF();
+            String vhost = in.readUTF();
+            String lastNode = in.readBoolean() ? in.readUTF() : null;
+            long created = in.readLong();
+            long accessed = in.readLong();
+            long lastAccessed = in.readLong();
+            long cookieSet = in.readLong();
+            long maxInactiveMs = in.readLong();
+            SessionData data = _sessionDataStore.newSessionData(id, created, accessed, lastAccessed, maxInactiveMs);
+            data.setContextPath(contextPath);
+            data.setVhost(vhost);
+            data.setLastNode(lastNode);
+            data.setCookieSet(cookieSet);
+            data.setExpiry(expiry);
+            data.setLastSaved(in.readLong());
+            boolean dirty = in.readBoolean();
+            boolean metaDataDirty = in.readBoolean();
+            byte[] attributes = new byte[in.readInt()];
+            in.readFully(attributes);
+            _serializer.deserializeAttributes(data, attributes);
+            //changes that were not written out are not known by name anymore
+            data.setDirty(dirty);
+            data.setMetaDataDirty(metaDataDirty);
+            return data;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[evict=%d,removeUnloadable=%b,saveOnCreate=%b,saveOnInactiveEvict=%b,offHeap=%b,compacted=%d]",
+            this.getClass().getName(), this.hashCode(), _evictionPolicy,
+            _removeUnloadableSessions, _saveOnCreate, _saveOnInactiveEviction, _offHeap, _compacted.size());
+    }
+}
@@ -0,0 +1,67 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package org.eclipse.jetty.server.session;
+
+/**
+ * CompactSessionCacheFactory
+ *
+ * Factory for creating new CompactSessionCaches.
+ */
+public class CompactSessionCacheFactory extends AbstractSessionCacheFactory
+{
+    boolean _offHeap;
+    long _maxCompactedBytes = -1;
+    SessionDataSerializer _serializer;
+
+    public boolean isOffHeap()
+    {
+        return _offHeap;
+    }
+
+    public void setOffHeap(boolean offHeap)
+    {
+        _offHeap = offHeap;
+    }
+
+    public long getMaxCompactedBytes()
+    {
+        return _maxCompactedBytes;
+    }
+
+    public void setMaxCompactedBytes(long maxCompactedBytes)
+    {
+        _maxCompactedBytes = maxCompactedBytes;
+    }
+
+    public SessionDataSerializer getSerializer()
+    {
+        return _serializer;
+    }
+
+    public void setSerializer(SessionDataSerializer serializer)
+    {
+        _serializer = serializer;
+    }
+
+    @Override
+    public SessionCache newSessionCache(SessionHandler handler)
+    {
+        CompactSessionCache cache = new CompactSessionCache(handler);
+        cache.setOffHeap(isOffHeap());
+        cache.setMaxCompactedBytes(getMaxCompactedBytes());
+        cache.setSerializer(getSerializer());
+        return cache;
+    }
+}
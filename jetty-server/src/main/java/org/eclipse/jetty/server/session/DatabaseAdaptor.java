@@ -180,6 +180,20 @@ public class DatabaseAdaptor
         return (_dbName.startsWith("oracle"));
     }
 
+    /**
+     * Whether the db in use can insert a row, or update it if its primary key
+     * already exists, with a single statement.
+     *
+     * @return true if db in use is postgres, mysql or mariadb
+     */
+    public boolean isUpsertSupported()
+    {
+        if (_dbName == null)
+            throw new IllegalStateException("DbAdaptor missing metadata");
+
+        return (_dbName.startsWith("postgres") || _dbName.startsWith("mysql") || _dbName.startsWith("mariadb"));
+    }
+
     /**
      * rowId is a reserved word for Oracle, so change the name of this column
      *
@@ -13,7 +13,11 @@
 
 package org.eclipse.jetty.server.session;
 
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.function.Function;
 import javax.servlet.http.HttpServletRequest;
 
@@ -27,7 +31,12 @@ import org.slf4j.LoggerFactory;
 /**
  * DefaultSessionCache
  *
- * A session store that keeps its sessions in memory in a hashmap
+ * A session store that keeps its sessions in memory in a hashmap.
+ *
+ * The ids of the sessions are also indexed by expiry time, in buckets of
+ * {@link #getExpiryBucketMs() expiryBucketMs}, so that {@link #checkExpiration(Set)}
+ * only looks at the sessions that expired since the previous check,
+ * rather than at all the sessions.
  */
 @ManagedObject
 public class DefaultSessionCache extends AbstractSessionCache
@@ -39,7 +48,21 @@ public class DefaultSessionCache extends AbstractSessionCache
      */
     protected ConcurrentHashMap<String, Session> _sessions = new ConcurrentHashMap<>();
 
-    private final CounterStatistic _stats = new CounterStatistic();
+    public static final long DEFAULT_EXPIRY_BUCKET_MS = 10000;
+
+    protected final CounterStatistic _stats = new CounterStatistic();
+
+    /**
+     * The ids of the sessions, by bucket of expiry time
+     */
+    private final ConcurrentSkipListMap<Long, Set<String>> _expiryBuckets = new ConcurrentSkipListMap<>();
+
+    /**
+     * The expiry bucket of each session id
+     */
+    private final ConcurrentHashMap<String, Long> _expiryBucketIds = new ConcurrentHashMap<>();
+
+    private long _expiryBucketMs = DEFAULT_EXPIRY_BUCKET_MS;
 
     /**
      * @param manager The SessionHandler related to this SessionCache
@@ -76,6 +99,36 @@ public class DefaultSessionCache extends AbstractSessionCache
         return _stats.getTotal();
     }
 
+    /**
+     * @return the width in ms of the buckets of the expiry index
+     */
+    @ManagedAttribute(value = "width in ms of the buckets of the expiry index", readonly = true)
+    public long getExpiryBucketMs()
+    {
+        return _expiryBucketMs;
+    }
+
+    /**
+     * @param expiryBucketMs the width in ms of the buckets of the expiry index
+     */
+    public void setExpiryBucketMs(long expiryBucketMs)
+    {
+        if (isStarted())
+            throw new IllegalStateException("Already started");
+        if (expiryBucketMs <= 0)
+            throw new IllegalArgumentException("Invalid expiry bucket " + expiryBucketMs);
+        _expiryBucketMs = expiryBucketMs;
+    }
+
+    /**
+     * @return the number of buckets of the expiry index
+     */
+    @ManagedAttribute(value = "number of buckets of the expiry index", readonly = true)
+    public int getExpiryBuckets()
+    {
+        return _expiryBuckets.size();
+    }
+
     @ManagedOperation(value = "reset statistics", impact = "ACTION")
     public void resetStats()
     {
@@ -96,19 +149,23 @@ public class DefaultSessionCache extends AbstractSessionCache
         Session s = _sessions.putIfAbsent(id, session);
         if (s == null)
             _stats.increment();
+        //also called when a request releases the session, after its expiry was updated
+        indexExpiry(id, s == null ? session : s);
         return s;
     }
 
     @Override
     protected Session doComputeIfAbsent(String id, Function<String, Session> mappingFunction)
     {
-        return _sessions.computeIfAbsent(id, k ->
+        Session session = _sessions.computeIfAbsent(id, k ->
         {
             Session s = mappingFunction.apply(k);
             if (s != null)
                 _stats.increment();
             return s;
         });
+        indexExpiry(id, session);
+        return session;
     }
 
     @Override
@@ -117,9 +174,115 @@ public class DefaultSessionCache extends AbstractSessionCache
         Session s = _sessions.remove(id);
         if (s != null)
             _stats.decrement();
+        unindexExpiry(id);
         return s;
     }
 
+    /**
+     * Adds the ids of the sessions in the cache that expired since the previous
+     * check, found in the expiry index, to the candidates from the SessionHandler.
+     */
+    @Override
+    public Set<String> checkExpiration(Set<String> candidates)
+    {
+        if (!isStarted())
+            return super.checkExpiration(candidates);
+
+        long now = System.currentTimeMillis();
+        Set<String> expired = new HashSet<>(candidates);
+        for (String id : pollExpired(now))
+        {
+            Session session = doGet(id);
+            if (session == null)
+                continue;
+            if (session.isExpiredAt(now))
+            {
+                //the session may have been indexed again if it had to be loaded
+                unindexExpiry(id);
+                expired.add(id);
+            }
+            else
+                indexExpiry(id, session); //expiry was changed without being indexed
+        }
+
+        if (LOG.isDebugEnabled())
+            LOG.debug("{} expiry index added {} candidates", this, expired.size() - candidates.size());
+        return super.checkExpiration(expired);
+    }
+
+    /**
+     * Index a session by its expiry time, moving it
+     * out of the bucket of its previous expiry time.
+     *
+     * @param id the session id
+     * @param session the session
+     */
+    protected void indexExpiry(String id, Session session)
+    {
+        if (session == null)
+            return;
+
+        long expiry = session.getSessionData().getExpiry();
+        if (expiry <= 0)
+        {
+            //immortal session
+            unindexExpiry(id);
+            return;
+        }
+
+        Long bucket = expiry / _expiryBucketMs;
+        Long previous = _expiryBucketIds.put(id, bucket);
+        if (bucket.equals(previous))
+            return;
+        if (previous != null)
+        {
+            Set<String> ids = _expiryBuckets.get(previous);
+            if (ids != null)
+                ids.remove(id);
+        }
+        _expiryBuckets.computeIfAbsent(bucket, k -> ConcurrentHashMap.newKeySet()).add(id);
+    }
+
+    /**
+     * Remove a session from the expiry index.
+     * Empty buckets are removed when they expire.
+     *
+     * @param id the session id
+     */
+    protected void unindexExpiry(String id)
+    {
+        Long previous = _expiryBucketIds.remove(id);
+        if (previous != null)
+        {
+            Set<String> ids = _expiryBuckets.get(previous);
+            if (ids != null)
+                ids.remove(id);
+        }
+    }
+
+    /**
+     * Remove from the expiry index the buckets that entirely expired before the given time.
+     *
+     * @param now the time
+     * @return the ids of the sessions in the removed buckets
+     */
+    private Set<String> pollExpired(long now)
+    {
+        Set<String> expired = new HashSet<>();
+        long due = now / _expiryBucketMs;
+        Map.Entry<Long, Set<String>> entry;
+        while ((entry = _expiryBuckets.firstEntry()) != null && entry.getKey() < due)
+        {
+            _expiryBuckets.remove(entry.getKey(), entry.getValue());
+            for (String id : entry.getValue())
+            {
+                if (_expiryBucketIds.remove(id, entry.getKey()))
+                    expired.add(id);
+            }
+        }
+        return expired;
+    }
+
     @Override
     public void shutdown()
     {
@@ -13,19 +13,26 @@
 
 package org.eclipse.jetty.server.session;
 
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import javax.servlet.http.HttpServletRequest;
 
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.SessionIdManager;
+import org.eclipse.jetty.util.ProcessorUtils;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
 import org.eclipse.jetty.util.component.ContainerLifeCycle;
 import org.eclipse.jetty.util.thread.AutoLock;
 import org.slf4j.Logger;
@@ -41,6 +48,14 @@ import org.slf4j.LoggerFactory;
  *
  * Runs a HouseKeeper thread to periodically check for expired Sessions.
  *
+ * Unless a random number generator is provided, new session ids are generated by
+ * {@link #getRandomStripes() stripes} of SecureRandoms, each seeded from, and periodically
+ * reseeded from, a shared SecureRandom, so that threads creating sessions concurrently
+ * do not contend on a single generator.
+ *
+ * Ids found to be in use by a context can be remembered for {@link #getIdInUseCacheMs() idInUseCacheMs},
+ * so that repeated checks for the same id do not consult every SessionHandler.
+ *
  * @see HouseKeeper
  */
 @ManagedObject
@@ -61,6 +76,28 @@ public class DefaultSessionIdManager extends ContainerLifeCycle implements Sessi
     protected Server _server;
     protected HouseKeeper _houseKeeper;
     protected boolean _ownHouseKeeper;
+    private int _randomStripes = -1;
+    private Stripe[] _stripes;
+    private long _idInUseCacheMs;
+    private int _maxIdInUseCacheSize = 4096;
+    private final Map<String, Long> _idsInUse = new ConcurrentHashMap<>();
+    private final LongAdder _idInUseCacheHits = new LongAdder();
+    private final LongAdder _idInUseCacheMisses = new LongAdder();
+    private final LongAdder _reseeds = new LongAdder();
+
+    /**
+     * A random number generator used by the threads whose id maps to it.
+     */
+    private static class Stripe
+    {
+        private final AutoLock _lock = new AutoLock();
+        private final SecureRandom _random;
+
+        private Stripe(SecureRandom random)
+        {
+            _random = random;
+        }
+    }
 
     /**
      * @param server the server associated with the id manager
@@ -187,6 +224,102 @@ public class DefaultSessionIdManager extends ContainerLifeCycle implements Sessi
         _reseed = reseed;
     }
 
+    /**
+     * @return the number of random number generators that threads use to generate session ids,
+     * or 0 if all threads use the same generator
+     */
+    @ManagedAttribute(value = "number of random number generators for session ids", readonly = true)
+    public int getRandomStripes()
+    {
+        Stripe[] stripes = _stripes;
+        return stripes == null ? (_randomStripes < 0 ? 0 : _randomStripes) : stripes.length;
+    }
+
+    /**
+     * Set the number of random number generators that threads use to generate session ids.
+     * The number is rounded up to a power of 2. Stripes are only used if the random number
+     * generator is not provided with {@link #setRandom(Random)}.
+     *
+     * @param randomStripes the number of generators, 0 to use a single generator,
+     * or -1 (the default) to use a number derived from the number of processors
+     */
+    public void setRandomStripes(int randomStripes)
+    {
+        if (isRunning())
+            throw new IllegalStateException(getState());
+        _randomStripes = randomStripes;
+    }
+
+    /**
+     * @return the number of times the random number generator of a stripe was reseeded
+     */
+    @ManagedAttribute(value = "number of times a random number generator stripe was reseeded", readonly = true)
+    public long getReseeds()
+    {
+        return _reseeds.sum();
+    }
+
+    /**
+     * @return the time in ms an id found to be in use is remembered, or 0 if it is not remembered
+     */
+    @ManagedAttribute(value = "time in ms an id in use is remembered", readonly = true)
+    public long getIdInUseCacheMs()
+    {
+        return _idInUseCacheMs;
+    }
+
+    /**
+     * Set how long an id found to be in use by a context is remembered by {@link #isIdInUse(String)}.
+     * Remembered ids are forgotten when a context removes the session, or when the id is
+     * invalidated, expired or renewed through this manager. However, a session removed by
+     * another node of a cluster may be considered in use for up to this long.
+     *
+     * @param idInUseCacheMs the time in ms, or 0 (the default) to always check every context
+     */
+    public void setIdInUseCacheMs(long idInUseCacheMs)
+    {
+        _idInUseCacheMs = idInUseCacheMs;
+        if (idInUseCacheMs <= 0)
+            _idsInUse.clear();
+    }
+
+    /**
+     * @return the maximum number of ids in use that are remembered
+     */
+    @ManagedAttribute(value = "max number of ids in use remembered", readonly = true)
+    public int getMaxIdInUseCacheSize()
+    {
+        return _maxIdInUseCacheSize;
+    }
+
+    /**
+     * @param maxIdInUseCacheSize the maximum number of ids in use that are remembered
+     */
+    public void setMaxIdInUseCacheSize(int maxIdInUseCacheSize)
+    {
+        _maxIdInUseCacheSize = maxIdInUseCacheSize;
+    }
+
+    @ManagedAttribute(value = "number of id in use checks answered from the cache", readonly = true)
+    public long getIdInUseCacheHits()
+    {
+        return _idInUseCacheHits.sum();
+    }
+
+    @ManagedAttribute(value = "number of id in use checks that consulted the contexts", readonly = true)
+    public long getIdInUseCacheMisses()
+    {
+        return _idInUseCacheMisses.sum();
+    }
+
+    @ManagedOperation(value = "resets statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        _reseeds.reset();
+        _idInUseCacheHits.reset();
+        _idInUseCacheMisses.reset();
+    }
+
     /**
      * Create a new session id if necessary.
      */
@@ -223,6 +356,10 @@ public class DefaultSessionIdManager extends ContainerLifeCycle implements Sessi
      */
     public String newSessionId(long seedTerm)
     {
+        Stripe[] stripes = _stripes;
+        if (stripes != null)
+            return newSessionId(stripes[(int)(Thread.currentThread().getId() & (stripes.length - 1))]);
+
         // pick a new unique ID!
         String id = null;
 
@@ -258,17 +395,60 @@ public class DefaultSessionIdManager extends ContainerLifeCycle implements Sessi
                 if (r1 < 0)
                     r1 = -r1;
 
-                id = Long.toString(r0, 36) + Long.toString(r1, 36);
+                id = toId(r0, r1);
+            }
+        }
+        return id;
+    }
 
-                //add in the id of the node to ensure unique id across cluster
-                //NOTE this is different to the node suffix which denotes which node the request was received on
-                if (!StringUtil.isBlank(_workerName))
-                    id = _workerName + id;
+    /**
+     * @param stripe the random number generator stripe of the calling thread
+     * @return a new unique session id
+     */
+    private String newSessionId(Stripe stripe)
+    {
+        long r0;
+        long r1;
+        try (AutoLock l = stripe._lock.lock())
+        {
+            r0 = stripe._random.nextLong();
+            r1 = stripe._random.nextLong();
+        }
+        if (r0 < 0)
+            r0 = -r0;
+        if (r1 < 0)
+            r1 = -r1;
 
-                id = id + Long.toString(COUNTER.getAndIncrement());
+        // random chance to reseed
+        if (_reseed > 0 && (r0 % _reseed) == 1L)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Reseeding stripe of {}", this);
+            byte[] seed = new byte[32];
+            try (AutoLock l = _lock.lock())
+            {
+                _random.nextBytes(seed);
+            }
+            try (AutoLock l = stripe._lock.lock())
+            {
+                stripe._random.setSeed(seed);
             }
+            _reseeds.increment();
         }
-        return id;
+
+        return toId(r0, r1);
+    }
+
+    private String toId(long r0, long r1)
+    {
+        String id = Long.toString(r0, 36) + Long.toString(r1, 36);
+
+        //add in the id of the node to ensure unique id across cluster
+        //NOTE this is different to the node suffix which denotes which node the request was received on
+        if (!StringUtil.isBlank(_workerName))
+            id = _workerName + id;
+
+        return id + Long.toString(COUNTER.getAndIncrement());
     }
 
     @Override
@@ -277,6 +457,21 @@ public class DefaultSessionIdManager extends ContainerLifeCycle implements Sessi
         if (id == null)
             return false;
 
+        if (_idInUseCacheMs > 0)
+        {
+            Long expiry = _idsInUse.get(id);
+            if (expiry != null)
+            {
+                if (expiry - System.nanoTime() > 0)
+                {
+                    _idInUseCacheHits.increment();
+                    return true;
+                }
+                _idsInUse.remove(id, expiry);
+            }
+            _idInUseCacheMisses.increment();
+        }
+
         boolean inUse = false;
         if (LOG.isDebugEnabled())
             LOG.debug("Checking {} is in use by at least one context", id);
@@ -296,6 +491,13 @@ public class DefaultSessionIdManager extends ContainerLifeCycle implements Sessi
 
             if (LOG.isDebugEnabled())
                 LOG.debug("Checked {}, in use: {}", id, inUse);
+            if (inUse && _idInUseCacheMs > 0)
+            {
+                //the cache is bounded, drop it when full rather than tracking the least recently used id
+                if (_idsInUse.size() >= _maxIdInUseCacheSize)
+                    _idsInUse.clear();
+                _idsInUse.put(id, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(_idInUseCacheMs));
+            }
             return inUse;
         }
         catch (Exception e)
@@ -305,13 +507,28 @@ public class DefaultSessionIdManager extends ContainerLifeCycle implements Sessi
         }
     }
 
+    /**
+     * Forget that an id is in use, so that the next call to {@link #isIdInUse(String)}
+     * for it consults every context.
+     *
+     * @param id the session id
+     */
+    public void removeCachedIdInUse(String id)
+    {
+        if (id != null)
+            _idsInUse.remove(id);
+    }
+
     @Override
     protected void doStart() throws Exception
     {
         if (_server == null)
             throw new IllegalStateException("No Server for SessionIdManager");
 
+        boolean ownRandom = _random == null;
         initRandom();
+        if (ownRandom && !_weakRandom)
+            initStripes();
 
         if (_workerName == null)
         {
@@ -343,6 +560,8 @@ public class DefaultSessionIdManager extends ContainerLifeCycle implements Sessi
             _houseKeeper = null;
         }
         _random = null;
+        _stripes = null;
+        _idsInUse.clear();
     }
 
     /**
@@ -369,6 +588,38 @@ public class DefaultSessionIdManager extends ContainerLifeCycle implements Sessi
             _random.setSeed(_random.nextLong() ^ System.currentTimeMillis() ^ hashCode() ^ Runtime.getRuntime().freeMemory());
     }
 
+    /**
+     * Set up the random number generator stripes, each seeded from the shared generator.
+     */
+    private void initStripes()
+    {
+        int stripes = _randomStripes < 0 ? 2 * ProcessorUtils.availableProcessors() : _randomStripes;
+        if (stripes <= 0)
+            return;
+        //round up to a power of 2, so that a thread id can be masked to a stripe
+        stripes = Integer.highestOneBit(Math.min(stripes, 1 << 16) * 2 - 1);
+
+        Stripe[] array = new Stripe[stripes];
+        for (int i = 0; i < array.length; i++)
+        {
+            SecureRandom random;
+            try
+            {
+                //DRBG instances, unlike the native generator, do not share state
+                random = SecureRandom.getInstance("DRBG");
+            }
+            catch (NoSuchAlgorithmException e)
+            {
+                random = new SecureRandom();
+            }
+            byte[] seed = new byte[32];
+            _random.nextBytes(seed);
+            random.setSeed(seed);
+            array[i] = new Stripe(random);
+        }
+        _stripes = array;
+    }
+
     /**
      * Get the session ID with any worker ID.
      *
@@ -416,6 +667,8 @@ public class DefaultSessionIdManager extends ContainerLifeCycle implements Sessi
         if (LOG.isDebugEnabled())
             LOG.debug("Expiring {}", id);
 
+        removeCachedIdInUse(id);
+
         for (SessionHandler manager : getSessionHandlers())
         {
             manager.invalidate(id);
@@ -425,6 +678,8 @@ public class DefaultSessionIdManager extends ContainerLifeCycle implements Sessi
     @Override
     public void invalidateAll(String id)
     {
+        removeCachedIdInUse(id);
+
         //tell all contexts that may have a session object with this id to
         //get rid of them
         for (SessionHandler manager : getSessionHandlers())
@@ -442,6 +697,7 @@ public class DefaultSessionIdManager extends ContainerLifeCycle implements Sessi
     {
         //generate a new id
         String newClusterId = newSessionId(request.hashCode());
+        removeCachedIdInUse(oldClusterId);
 
         //TODO how to handle request for old id whilst id change is happening?
 
@@ -0,0 +1,308 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * ExecutorSessionDataStore
+ *
+ * A SessionDataStore that adapts a blocking SessionDataStore to the asynchronous
+ * methods of {@link SessionDataStore}, such as {@link #loadAsync(String)} and
+ * {@link #storeAsync(String, SessionData)}, by calling the blocking methods of the
+ * delegate store on an Executor, by default the thread pool of the Server.
+ * The blocking methods are passed through to the delegate store.
+ *
+ * If the Executor rejects a task, the operation is done on the calling thread.
+ */
+@ManagedObject
+public class ExecutorSessionDataStore extends ContainerLifeCycle implements SessionDataStore
+{
+    private static final Logger LOG = LoggerFactory.getLogger(ExecutorSessionDataStore.class);
+
+    /**
+     * The actual store for the session data
+     */
+    protected SessionDataStore _store;
+
+    private final AtomicInteger _pending = new AtomicInteger();
+    private final LongAdder _operations = new LongAdder();
+    private final LongAdder _rejections = new LongAdder();
+    private final LongAdder _failures = new LongAdder();
+    private Executor _executor;
+
+    /**
+     * @param store the actual store for the the session data
+     */
+    public ExecutorSessionDataStore(SessionDataStore store)
+    {
+        _store = store;
+        addBean(_store, true);
+    }
+
+    /**
+     * @return the delegate session store
+     */
+    public SessionDataStore getSessionStore()
+    {
+        return _store;
+    }
+
+    public Executor getExecutor()
+    {
+        return _executor;
+    }
+
+    /**
+     * @param executor the executor that calls the delegate store,
+     * by default the thread pool of the Server
+     */
+    public void setExecutor(Executor executor)
+    {
+        _executor = executor;
+    }
+
+    @ManagedAttribute(value = "number of asynchronous operations not completed yet", readonly = true)
+    public int getPending()
+    {
+        return _pending.get();
+    }
+
+    @ManagedAttribute(value = "number of asynchronous operations", readonly = true)
+    public long getOperations()
+    {
+        return _operations.sum();
+    }
+
+    @ManagedAttribute(value = "number of asynchronous operations done on the calling thread", readonly = true)
+    public long getRejections()
+    {
+        return _rejections.sum();
+    }
+
+    @ManagedAttribute(value = "number of asynchronous operations that failed", readonly = true)
+    public long getFailures()
+    {
+        return _failures.sum();
+    }
+
+    @ManagedOperation(value = "resets statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        _operations.reset();
+        _rejections.reset();
+        _failures.reset();
+    }
+
+    @Override
+    public void initialize(SessionContext context) throws Exception
+    {
+        //pass through
+        _store.initialize(context);
+
+        SessionHandler handler = context.getSessionHandler();
+        if (_executor == null && handler != null && handler.getServer() != null)
+            _executor = handler.getServer().getThreadPool();
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        if (_executor == null)
+            throw new IllegalStateException("No Executor");
+        super.doStart();
+    }
+
+    @Override
+    public boolean isAsync()
+    {
+        return true;
+    }
+
+    @Override
+    public CompletableFuture<SessionData> loadAsync(String id)
+    {
+        return submit(() -> _store.load(id));
+    }
+
+    @Override
+    public CompletableFuture<Void> storeAsync(String id, SessionData data)
+    {
+        return submit(() ->
+        {
+            _store.store(id, data);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> existsAsync(String id)
+    {
+        return submit(() -> _store.exists(id));
+    }
+
+    @Override
+    public CompletableFuture<Set<String>> getExpiredAsync(Set<String> candidates)
+    {
+        return submit(() -> _store.getExpired(candidates));
+    }
+
+    /**
+     * Call the delegate store on the executor.
+     *
+     * @param operation the call to the delegate store
+     * @param <T> the type of the result
+     * @return a future completed with the result of the call
+     */
+    private <T> CompletableFuture<T> submit(Callable<T> operation)
+    {
+        _operations.increment();
+        _pending.incrementAndGet();
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Runnable task = () ->
+        {
+            T result;
+            try
+            {
+                result = operation.call();
+            }
+            catch (Throwable x)
+            {
+                _failures.increment();
+                _pending.decrementAndGet();
+                future.completeExceptionally(x);
+                return;
+            }
+            _pending.decrementAndGet();
+            future.complete(result);
+        };
+
+        try
+        {
+            _executor.execute(task);
+        }
+        catch (RejectedExecutionException x)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Executor rejected session operation, running it on calling thread", x);
+            _rejections.increment();
+            task.run();
+        }
+        return future;
+    }
+
+    @Override
+    public SessionData load(String id) throws Exception
+    {
+        return _store.load(id);
+    }
+
+    @Override
+    public void store(String id, SessionData data) throws Exception
+    {
+        _store.store(id, data);
+    }
+
+    @Override
+    public void storeAll(Map<String, SessionData> sessions) throws Exception
+    {
+        _store.storeAll(sessions);
+    }
+
+    @Override
+    public boolean delete(String id) throws Exception
+    {
+        return _store.delete(id);
+    }
+
+    @Override
+    public Set<String> getExpired(Set<String> candidates)
+    {
+        return _store.getExpired(candidates);
+    }
+
+    @Override
+    public boolean exists(String id) throws Exception
+    {
+        return _store.exists(id);
+    }
+
+    @Override
+    public long getLastSaved(String id) throws Exception
+    {
+        return _store.getLastSaved(id);
+    }
+
+    @Override
+    public boolean isLastSavedSupported()
+    {
+        return _store.isLastSavedSupported();
+    }
+
+    @Override
+    public boolean addInvalidationListener(InvalidationListener listener)
+    {
+        return _store.addInvalidationListener(listener);
+    }
+
+    @Override
+    public void removeInvalidationListener(InvalidationListener listener)
+    {
+        _store.removeInvalidationListener(listener);
+    }
+
+    @Override
+    public boolean isPassivating()
+    {
+        return _store.isPassivating();
+    }
+
+    @Override
+    public boolean isDeltaWriteSupported()
+    {
+        return _store.isDeltaWriteSupported();
+    }
+
+    @Override
+    public boolean isBatchWriteSupported()
+    {
+        return _store.isBatchWriteSupported();
+    }
+
+    @Override
+    public SessionData newSessionData(String id, long created, long accessed, long lastAccessed, long maxInactiveMs)
+    {
+        return _store.newSessionData(id, created, accessed, lastAccessed, maxInactiveMs);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[pending=%d]", getClass().getSimpleName(), hashCode(), getPending());
+    }
+}
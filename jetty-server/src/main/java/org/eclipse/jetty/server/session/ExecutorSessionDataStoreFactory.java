@@ -0,0 +1,40 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+/**
+ * ExecutorSessionDataStoreFactory
+ */
+public class ExecutorSessionDataStoreFactory extends AbstractSessionDataStoreFactory
+{
+    /**
+     * The SessionDataStore that will store session data.
+     */
+    protected SessionDataStoreFactory _sessionStoreFactory;
+
+    /**
+     * @param factory The factory for the actual SessionDataStore that the
+     * ExecutorSessionDataStore will delegate to
+     */
+    public void setSessionStoreFactory(SessionDataStoreFactory factory)
+    {
+        _sessionStoreFactory = factory;
+    }
+
+    @Override
+    public SessionDataStore getSessionDataStore(SessionHandler handler) throws Exception
+    {
+        return new ExecutorSessionDataStore(_sessionStoreFactory.getSessionDataStore(handler));
+    }
+}
@@ -14,22 +14,31 @@
 package org.eclipse.jetty.server.session;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
-import java.io.ObjectOutputStream;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
-import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
+import org.eclipse.jetty.util.IO;
 import org.eclipse.jetty.util.StringUtil;
 import org.eclipse.jetty.util.annotation.ManagedAttribute;
 import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.statistic.SampleStatistic;
+import org.eclipse.jetty.util.thread.AutoLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -52,9 +61,27 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
     protected DatabaseAdaptor _dbAdaptor;
     protected SessionTableSchema _sessionTableSchema;
     protected boolean _schemaProvided;
+    protected long _lastExpiredUpperBound; //expiry time up to which sessions managed by this node were checked
 
     private static final ByteArrayInputStream EMPTY = new ByteArrayInputStream(new byte[0]);
 
+    /**
+     * Number of session ids checked by each query for the existence of potentially expired sessions
+     */
+    private static final int CHECK_EXISTS_BATCH_SIZE = 32;
+
+    private final AutoLock _poolLock = new AutoLock();
+    private final Deque<StatementCache> _pool = new ArrayDeque<>();
+    private final LongAdder _statementsPrepared = new LongAdder();
+    private final LongAdder _statementsReused = new LongAdder();
+    private final SampleStatistic _loadStats = new SampleStatistic();
+    private final SampleStatistic _storeStats = new SampleStatistic();
+    private final SampleStatistic _deleteStats = new SampleStatistic();
+    private final SampleStatistic _existsStats = new SampleStatistic();
+    private final SampleStatistic _expiryStats = new SampleStatistic();
+    private int _maxPooledConnections = 0;
+    private boolean _upsert = false;
+
     /**
      * SessionTableSchema
      */
@@ -312,26 +339,106 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
                 " values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
         }
 
-        public PreparedStatement getUpdateSessionStatement(Connection connection, String id, SessionContext context)
-            throws SQLException
+        /**
+         * The upsert statement takes the same parameters as the insert statement and
+         * relies on the primary key over the id, context path and virtual host columns.
+         *
+         * @return a statement inserting a session or updating it if it exists,
+         * or null if the database cannot do so with a single statement
+         */
+        public String getUpsertSessionStatementAsString()
         {
-            String s = "update " + getSchemaTableName() +
+            if (_dbAdaptor == null)
+                throw new IllegalStateException("No DB adaptor");
+
+            if (!_dbAdaptor.isUpsertSupported())
+                return null;
+
+            String[] columns = {getLastNodeColumn(), getAccessTimeColumn(), getLastAccessTimeColumn(), getLastSavedTimeColumn(),
+                getExpiryTimeColumn(), getMaxIntervalColumn(), getMapColumn()};
+
+            StringBuilder s = new StringBuilder(getInsertSessionStatementAsString());
+            boolean postgres = _dbAdaptor.getDBName().startsWith("postgres");
+            if (postgres)
+                s.append(" on conflict (").append(getIdColumn()).append(", ").append(getContextPathColumn()).append(", ")
+                    .append(getVirtualHostColumn()).append(") do update set ");
+            else
+                s.append(" on duplicate key update ");
+
+            for (int i = 0; i < columns.length; i++)
+            {
+                if (i > 0)
+                    s.append(", ");
+                s.append(columns[i]).append(" = ");
+                if (postgres)
+                    s.append("excluded.").append(columns[i]);
+                else
+                    s.append("values(").append(columns[i]).append(")");
+            }
+            return s.toString();
+        }
+
+        public String getUpdateSessionStatementAsString()
+        {
+            return "update " + getSchemaTableName() +
                 " set " + getLastNodeColumn() + " = ?, " + getAccessTimeColumn() + " = ?, " +
                 getLastAccessTimeColumn() + " = ?, " + getLastSavedTimeColumn() + " = ?, " + getExpiryTimeColumn() + " = ?, " +
                 getMaxIntervalColumn() + " = ?, " + getMapColumn() + " = ? where " + getIdColumn() + " = ? and " + getContextPathColumn() +
                 " = ? and " + getVirtualHostColumn() + " = ?";
+        }
 
+        public PreparedStatement getUpdateSessionStatement(Connection connection, String id, SessionContext context)
+            throws SQLException
+        {
             String cp = context.getCanonicalContextPath();
             if (_dbAdaptor.isEmptyStringNull() && StringUtil.isBlank(cp))
                 cp = NULL_CONTEXT_PATH;
 
-            PreparedStatement statement = connection.prepareStatement(s);
+            PreparedStatement statement = connection.prepareStatement(getUpdateSessionStatementAsString());
             statement.setString(8, id);
             statement.setString(9, cp);
             statement.setString(10, context.getVhost());
             return statement;
         }
 
+        public String getUpdateSessionMetaDataStatementAsString()
+        {
+            return "update " + getSchemaTableName() +
+                " set " + getLastNodeColumn() + " = ?, " + getAccessTimeColumn() + " = ?, " +
+                getLastAccessTimeColumn() + " = ?, " + getLastSavedTimeColumn() + " = ?, " + getExpiryTimeColumn() + " = ?, " +
+                getMaxIntervalColumn() + " = ? where " + getIdColumn() + " = ? and " + getContextPathColumn() +
+                " = ? and " + getVirtualHostColumn() + " = ?";
+        }
+
+        /**
+         * @param connection the connection to the database
+         * @param id the session id
+         * @param context the session context
+         * @return a statement updating all the columns of a session except the attribute map
+         * @throws SQLException if the statement cannot be prepared
+         */
+        public PreparedStatement getUpdateSessionMetaDataStatement(Connection connection, String id, SessionContext context)
+            throws SQLException
+        {
+            String cp = context.getCanonicalContextPath();
+            if (_dbAdaptor.isEmptyStringNull() && StringUtil.isBlank(cp))
+                cp = NULL_CONTEXT_PATH;
+
+            PreparedStatement statement = connection.prepareStatement(getUpdateSessionMetaDataStatementAsString());
+            statement.setString(7, id);
+            statement.setString(8, cp);
+            statement.setString(9, context.getVhost());
+            return statement;
+        }
+
+        public String getExpiredSessionsStatementAsString()
+        {
+            return "select " + getIdColumn() + ", " + getExpiryTimeColumn() +
+                " from " + getSchemaTableName() + " where " + getContextPathColumn() + " = ? and " +
+                getVirtualHostColumn() + " = ? and " +
+                getExpiryTimeColumn() + " >0 and " + getExpiryTimeColumn() + " <= ?";
+        }
+
         public PreparedStatement getExpiredSessionsStatement(Connection connection, String canonicalContextPath, String vhost, long expiry)
             throws SQLException
         {
@@ -344,10 +451,7 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
             if (_dbAdaptor.isEmptyStringNull() && StringUtil.isBlank(cp))
                 cp = NULL_CONTEXT_PATH;
 
-            PreparedStatement statement = connection.prepareStatement("select " + getIdColumn() + ", " + getExpiryTimeColumn() +
-                " from " + getSchemaTableName() + " where " + getContextPathColumn() + " = ? and " +
-                getVirtualHostColumn() + " = ? and " +
-                getExpiryTimeColumn() + " >0 and " + getExpiryTimeColumn() + " <= ?");
+            PreparedStatement statement = connection.prepareStatement(getExpiredSessionsStatementAsString());
 
             statement.setString(1, cp);
             statement.setString(2, vhost);
@@ -355,6 +459,47 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
             return statement;
         }
 
+        /**
+         * @return a statement selecting the sessions managed by a node for a context that expired between two bounds
+         */
+        public String getMyExpiredSessionsStatementAsString()
+        {
+            return "select " + getIdColumn() + ", " + getExpiryTimeColumn() +
+                " from " + getSchemaTableName() + " where " +
+                getLastNodeColumn() + " = ? and " +
+                getContextPathColumn() + " = ? and " +
+                getVirtualHostColumn() + " = ? and " +
+                getExpiryTimeColumn() + " >= ? and " + getExpiryTimeColumn() + " <= ?";
+        }
+
+        /**
+         * @param connection the connection to the database
+         * @param sessionContext the session context
+         * @param lowerBound the lowest expiry time of the sessions to select
+         * @param upperBound the highest expiry time of the sessions to select
+         * @return a statement selecting the sessions managed by this node that expired between the bounds
+         * @throws SQLException if the statement cannot be prepared
+         */
+        public PreparedStatement getMyExpiredSessionsStatement(Connection connection, SessionContext sessionContext, long lowerBound, long upperBound)
+            throws SQLException
+        {
+            if (_dbAdaptor == null)
+                throw new IllegalStateException("No DB adaptor");
+
+            String cp = sessionContext.getCanonicalContextPath();
+            if (_dbAdaptor.isEmptyStringNull() && StringUtil.isBlank(cp))
+                cp = NULL_CONTEXT_PATH;
+
+            PreparedStatement statement = connection.prepareStatement(getMyExpiredSessionsStatementAsString());
+
+            statement.setString(1, sessionContext.getWorkerName());
+            statement.setString(2, cp);
+            statement.setString(3, sessionContext.getVhost());
+            statement.setLong(4, Math.max(1, lowerBound));
+            statement.setLong(5, upperBound);
+            return statement;
+        }
+
         public PreparedStatement getMyExpiredSessionsStatement(Connection connection, SessionContext sessionContext, long expiry)
             throws SQLException
         {
@@ -381,6 +526,34 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
             return statement;
         }
     
+        public String getCheckSessionExistsStatementAsString()
+        {
+            return "select " + getIdColumn() + ", " + getExpiryTimeColumn() + ", " + getLastNodeColumn() +
+                " from " + getSchemaTableName() +
+                " where " + getIdColumn() + " = ? and " +
+                getContextPathColumn() + " = ? and " +
+                getVirtualHostColumn() + " = ?";
+        }
+
+        /**
+         * @param count the number of session ids to check
+         * @return a statement selecting the sessions with any of the given ids, with the context path
+         * and virtual host as the first two parameters, followed by the ids
+         */
+        public String getCheckSessionsExistStatementAsString(int count)
+        {
+            StringBuilder s = new StringBuilder("select " + getIdColumn() + ", " + getExpiryTimeColumn() + ", " + getLastNodeColumn() +
+                " from " + getSchemaTableName() +
+                " where " + getContextPathColumn() + " = ? and " +
+                getVirtualHostColumn() + " = ? and " +
+                getIdColumn() + " in (");
+            for (int i = 0; i < count; i++)
+            {
+                s.append(i == 0 ? "?" : ", ?");
+            }
+            return s.append(")").toString();
+        }
+
         public PreparedStatement getCheckSessionExistsStatement(Connection connection, SessionContext context)
             throws SQLException
         {
@@ -391,17 +564,21 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
             if (_dbAdaptor.isEmptyStringNull() && StringUtil.isBlank(cp))
                 cp = NULL_CONTEXT_PATH;
 
-            PreparedStatement statement = connection.prepareStatement("select " + getIdColumn() + ", " + getExpiryTimeColumn() +
-                " from " + getSchemaTableName() +
-                " where " + getIdColumn() + " = ? and " +
-                getContextPathColumn() + " = ? and " +
-                getVirtualHostColumn() + " = ?");
+            PreparedStatement statement = connection.prepareStatement(getCheckSessionExistsStatementAsString());
             statement.setString(2, cp);
             statement.setString(3, context.getVhost());
             return statement;
         }
 
-        public PreparedStatement getLoadStatement(Connection connection, String id, SessionContext contextId)
+        public String getLastSavedStatementAsString()
+        {
+            return "select " + getLastSavedTimeColumn() +
+                " from " + getSchemaTableName() +
+                " where " + getIdColumn() + " = ? and " + getContextPathColumn() +
+                " = ? and " + getVirtualHostColumn() + " = ?";
+        }
+
+        public PreparedStatement getLastSavedStatement(Connection connection, String id, SessionContext contextId)
             throws SQLException
         {
             if (_dbAdaptor == null)
@@ -411,9 +588,32 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
             if (_dbAdaptor.isEmptyStringNull() && StringUtil.isBlank(cp))
                 cp = NULL_CONTEXT_PATH;
 
-            PreparedStatement statement = connection.prepareStatement("select * from " + getSchemaTableName() +
+            PreparedStatement statement = connection.prepareStatement(getLastSavedStatementAsString());
+            statement.setString(1, id);
+            statement.setString(2, cp);
+            statement.setString(3, contextId.getVhost());
+
+            return statement;
+        }
+
+        public String getLoadStatementAsString()
+        {
+            return "select * from " + getSchemaTableName() +
                 " where " + getIdColumn() + " = ? and " + getContextPathColumn() +
-                " = ? and " + getVirtualHostColumn() + " = ?");
+                " = ? and " + getVirtualHostColumn() + " = ?";
+        }
+
+        public PreparedStatement getLoadStatement(Connection connection, String id, SessionContext contextId)
+            throws SQLException
+        {
+            if (_dbAdaptor == null)
+                throw new IllegalStateException("No DB adaptor");
+
+            String cp = contextId.getCanonicalContextPath();
+            if (_dbAdaptor.isEmptyStringNull() && StringUtil.isBlank(cp))
+                cp = NULL_CONTEXT_PATH;
+
+            PreparedStatement statement = connection.prepareStatement(getLoadStatementAsString());
             statement.setString(1, id);
             statement.setString(2, cp);
             statement.setString(3, contextId.getVhost());
@@ -445,6 +645,13 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
             return statement;
         }
 
+        public String getDeleteStatementAsString()
+        {
+            return "delete from " + getSchemaTableName() +
+                " where " + getIdColumn() + " = ? and " + getContextPathColumn() +
+                " = ? and " + getVirtualHostColumn() + " = ?";
+        }
+
         public PreparedStatement getDeleteStatement(Connection connection, String id, SessionContext contextId)
             throws Exception
         {
@@ -456,9 +663,7 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
             if (_dbAdaptor.isEmptyStringNull() && StringUtil.isBlank(cp))
                 cp = NULL_CONTEXT_PATH;
 
-            PreparedStatement statement = connection.prepareStatement("delete from " + getSchemaTableName() +
-                " where " + getIdColumn() + " = ? and " + getContextPathColumn() +
-                " = ? and " + getVirtualHostColumn() + " = ?");
+            PreparedStatement statement = connection.prepareStatement(getDeleteStatementAsString());
             statement.setString(1, id);
             statement.setString(2, cp);
             statement.setString(3, contextId.getVhost());
@@ -466,15 +671,20 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
             return statement;
         }
 
+        public String getCleanOrphansStatementAsString()
+        {
+            return "delete from " + getSchemaTableName() +
+                " where " +
+                getExpiryTimeColumn() + " > 0 and " + getExpiryTimeColumn() + " <= ?";
+        }
+
         public PreparedStatement getCleanOrphansStatement(Connection connection, long timeLimit)
             throws Exception
         { 
             if (_dbAdaptor == null)
                 throw new IllegalStateException("No DB adaptor");
 
-            PreparedStatement statement = connection.prepareStatement("delete from " + getSchemaTableName() +
-                " where " +
-                getExpiryTimeColumn() + " > 0 and " + getExpiryTimeColumn() + " <= ?");
+            PreparedStatement statement = connection.prepareStatement(getCleanOrphansStatementAsString());
             statement.setLong(1, timeLimit);
             return statement;
 
@@ -597,6 +807,72 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
         }
     }
 
+    /**
+     * A connection to the database with the statements prepared on it, so that
+     * they can be reused while the connection is kept open by this store.
+     */
+    private class StatementCache implements AutoCloseable
+    {
+        private final Connection _connection;
+        private final Map<String, PreparedStatement> _statements = new HashMap<>();
+
+        private StatementCache(Connection connection)
+        {
+            _connection = connection;
+        }
+
+        private PreparedStatement prepare(String sql) throws SQLException
+        {
+            PreparedStatement statement = _statements.get(sql);
+            if (statement == null)
+            {
+                statement = _connection.prepareStatement(sql);
+                _statements.put(sql, statement);
+                _statementsPrepared.increment();
+            }
+            else
+            {
+                statement.clearParameters();
+                _statementsReused.increment();
+            }
+            return statement;
+        }
+
+        @Override
+        public void close()
+        {
+            for (PreparedStatement statement : _statements.values())
+            {
+                close(statement);
+            }
+            _statements.clear();
+            close(_connection);
+        }
+
+        private void close(AutoCloseable closeable)
+        {
+            try
+            {
+                closeable.close();
+            }
+            catch (Exception e)
+            {
+                LOG.trace("IGNORED", e);
+            }
+        }
+    }
+
+    /**
+     * An operation on the database.
+     *
+     * @param <T> the type of the result of the operation
+     */
+    @FunctionalInterface
+    private interface Operation<T>
+    {
+        T execute(StatementCache statements) throws Exception;
+    }
+
     public JDBCSessionDataStore()
     {
         super();
@@ -616,7 +892,9 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
     protected void doStop() throws Exception
     {
         super.doStop();
+        closePooledConnections();
         _initialized = false;
+        _lastExpiredUpperBound = 0;
         if (!_schemaProvided)
             _sessionTableSchema = null;
     }
@@ -640,61 +918,316 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
         }
     }
 
-    @Override
-    public SessionData doLoad(String id) throws Exception
+    /**
+     * @return the maximum number of connections kept open between operations, with their prepared statements
+     */
+    @ManagedAttribute(value = "max number of connections kept open with their prepared statements", readonly = true)
+    public int getMaxPooledConnections()
+    {
+        return _maxPooledConnections;
+    }
+
+    /**
+     * Set the maximum number of connections that this store keeps open between operations.
+     * The statements prepared on a kept connection are reused by later operations, instead
+     * of being prepared again. Connections that fail are closed rather than kept.
+     * When the connections come from a pooling DataSource, this holds connections of its
+     * pool, so prefer the statement cache of the DataSource if it has one.
+     *
+     * @param maxPooledConnections the maximum number of connections, or 0 (the default) to
+     * get a connection from the {@link DatabaseAdaptor} for every operation
+     */
+    public void setMaxPooledConnections(int maxPooledConnections)
+    {
+        _maxPooledConnections = maxPooledConnections;
+        if (maxPooledConnections <= 0)
+            closePooledConnections();
+    }
+
+    /**
+     * @return true if new sessions are written with a single insert-or-update statement when the database supports it
+     */
+    @ManagedAttribute(value = "are new sessions written with a single upsert statement", readonly = true)
+    public boolean isUpsert()
+    {
+        return _upsert && _initialized && _sessionTableSchema.getUpsertSessionStatementAsString() != null;
+    }
+
+    /**
+     * @param upsert true to write new sessions with a single insert-or-update statement
+     * when the database supports it, which overwrites a row with the same id instead of
+     * failing like an insert. Sessions already saved are always updated, so that a row
+     * deleted by another node is not written again. Defaults to false.
+     */
+    public void setUpsert(boolean upsert)
+    {
+        _upsert = upsert;
+    }
+
+    @ManagedAttribute(value = "number of statements prepared", readonly = true)
+    public long getStatementsPrepared()
+    {
+        return _statementsPrepared.sum();
+    }
+
+    @ManagedAttribute(value = "number of prepared statements reused", readonly = true)
+    public long getStatementsReused()
+    {
+        return _statementsReused.sum();
+    }
+
+    @ManagedAttribute(value = "number of session loads", readonly = true)
+    public long getLoadCount()
+    {
+        return _loadStats.getCount();
+    }
+
+    @ManagedAttribute(value = "mean time to load a session (in us)", readonly = true)
+    public double getLoadTimeMean()
+    {
+        return _loadStats.getMean();
+    }
+
+    @ManagedAttribute(value = "maximum time to load a session (in us)", readonly = true)
+    public long getLoadTimeMax()
+    {
+        return _loadStats.getMax();
+    }
+
+    @ManagedAttribute(value = "number of session writes", readonly = true)
+    public long getStoreCount()
+    {
+        return _storeStats.getCount();
+    }
+
+    @ManagedAttribute(value = "mean time to write a session or a batch of sessions (in us)", readonly = true)
+    public double getStoreTimeMean()
+    {
+        return _storeStats.getMean();
+    }
+
+    @ManagedAttribute(value = "maximum time to write a session or a batch of sessions (in us)", readonly = true)
+    public long getStoreTimeMax()
     {
-        try (Connection connection = _dbAdaptor.getConnection();
-             PreparedStatement statement = _sessionTableSchema.getLoadStatement(connection, id, _context);
-             ResultSet result = statement.executeQuery())
+        return _storeStats.getMax();
+    }
+
+    @ManagedAttribute(value = "number of session deletes", readonly = true)
+    public long getDeleteCount()
+    {
+        return _deleteStats.getCount();
+    }
+
+    @ManagedAttribute(value = "mean time to delete a session (in us)", readonly = true)
+    public double getDeleteTimeMean()
+    {
+        return _deleteStats.getMean();
+    }
+
+    @ManagedAttribute(value = "maximum time to delete a session (in us)", readonly = true)
+    public long getDeleteTimeMax()
+    {
+        return _deleteStats.getMax();
+    }
+
+    @ManagedAttribute(value = "number of session existence checks", readonly = true)
+    public long getExistsCount()
+    {
+        return _existsStats.getCount();
+    }
+
+    @ManagedAttribute(value = "mean time to check that a session exists (in us)", readonly = true)
+    public double getExistsTimeMean()
+    {
+        return _existsStats.getMean();
+    }
+
+    @ManagedAttribute(value = "maximum time to check that a session exists (in us)", readonly = true)
+    public long getExistsTimeMax()
+    {
+        return _existsStats.getMax();
+    }
+
+    @ManagedAttribute(value = "number of expiry queries", readonly = true)
+    public long getExpiryQueryCount()
+    {
+        return _expiryStats.getCount();
+    }
+
+    @ManagedAttribute(value = "mean time of an expiry query (in us)", readonly = true)
+    public double getExpiryQueryTimeMean()
+    {
+        return _expiryStats.getMean();
+    }
+
+    @ManagedAttribute(value = "maximum time of an expiry query (in us)", readonly = true)
+    public long getExpiryQueryTimeMax()
+    {
+        return _expiryStats.getMax();
+    }
+
+    @ManagedOperation(value = "resets statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        _statementsPrepared.reset();
+        _statementsReused.reset();
+        _loadStats.reset();
+        _storeStats.reset();
+        _deleteStats.reset();
+        _existsStats.reset();
+        _expiryStats.reset();
+    }
+
+    /**
+     * Run an operation on a connection kept open by this store, or on a new connection,
+     * and record how long it took.
+     *
+     * @param stats the statistic recording the time taken by the operation
+     * @param operation the operation
+     * @param <T> the type of the result of the operation
+     * @return the result of the operation
+     * @throws Exception if the operation failed
+     */
+    private <T> T execute(SampleStatistic stats, Operation<T> operation) throws Exception
+    {
+        long start = System.nanoTime();
+        StatementCache statements = null;
+        try (AutoLock l = _poolLock.lock())
+        {
+            statements = _pool.pollFirst();
+        }
+        if (statements == null)
+            statements = new StatementCache(_dbAdaptor.getConnection());
+
+        boolean failed = true;
+        try
         {
-            SessionData data = null;
-            if (result.next())
+            T result = operation.execute(statements);
+            failed = false;
+            return result;
+        }
+        finally
+        {
+            boolean pooled = false;
+            if (!failed && isRunning())
             {
-                data = newSessionData(id,
-                    result.getLong(_sessionTableSchema.getCreateTimeColumn()),
-                    result.getLong(_sessionTableSchema.getAccessTimeColumn()),
-                    result.getLong(_sessionTableSchema.getLastAccessTimeColumn()),
-                    result.getLong(_sessionTableSchema.getMaxIntervalColumn()));
-                data.setCookieSet(result.getLong(_sessionTableSchema.getCookieTimeColumn()));
-                data.setLastNode(result.getString(_sessionTableSchema.getLastNodeColumn()));
-                data.setLastSaved(result.getLong(_sessionTableSchema.getLastSavedTimeColumn()));
-                data.setExpiry(result.getLong(_sessionTableSchema.getExpiryTimeColumn()));
-                data.setContextPath(_context.getCanonicalContextPath());
-                data.setVhost(_context.getVhost());
-
-                try (InputStream is = _dbAdaptor.getBlobInputStream(result, _sessionTableSchema.getMapColumn());
-                     ClassLoadingObjectInputStream ois = new ClassLoadingObjectInputStream(is))
+                try (AutoLock l = _poolLock.lock())
                 {
-                    SessionData.deserializeAttributes(data, ois);
+                    if (_pool.size() < _maxPooledConnections)
+                    {
+                        _pool.offerFirst(statements);
+                        pooled = true;
+                    }
                 }
-                catch (Exception e)
+            }
+            if (!pooled)
+                statements.close();
+            stats.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        }
+    }
+
+    private void closePooledConnections()
+    {
+        List<StatementCache> pooled;
+        try (AutoLock l = _poolLock.lock())
+        {
+            pooled = new ArrayList<>(_pool);
+            _pool.clear();
+        }
+        pooled.forEach(StatementCache::close);
+    }
+
+    private String getContextPathValue()
+    {
+        String cp = _context.getCanonicalContextPath();
+        if (_dbAdaptor.isEmptyStringNull() && StringUtil.isBlank(cp))
+            cp = NULL_CONTEXT_PATH;
+        return cp;
+    }
+
+    @Override
+    public SessionData doLoad(String id) throws Exception
+    {
+        return execute(_loadStats, statements ->
+        {
+            PreparedStatement statement = statements.prepare(_sessionTableSchema.getLoadStatementAsString());
+            statement.setString(1, id);
+            statement.setString(2, getContextPathValue());
+            statement.setString(3, _context.getVhost());
+            try (ResultSet result = statement.executeQuery())
+            {
+                SessionData data = null;
+                if (result.next())
                 {
-                    throw new UnreadableSessionDataException(id, _context, e);
+                    data = newSessionData(id,
+                        result.getLong(_sessionTableSchema.getCreateTimeColumn()),
+                        result.getLong(_sessionTableSchema.getAccessTimeColumn()),
+                        result.getLong(_sessionTableSchema.getLastAccessTimeColumn()),
+                        result.getLong(_sessionTableSchema.getMaxIntervalColumn()));
+                    data.setCookieSet(result.getLong(_sessionTableSchema.getCookieTimeColumn()));
+                    data.setLastNode(result.getString(_sessionTableSchema.getLastNodeColumn()));
+                    data.setLastSaved(result.getLong(_sessionTableSchema.getLastSavedTimeColumn()));
+                    data.setExpiry(result.getLong(_sessionTableSchema.getExpiryTimeColumn()));
+                    data.setContextPath(_context.getCanonicalContextPath());
+                    data.setVhost(_context.getVhost());
+
+                    try (InputStream is = _dbAdaptor.getBlobInputStream(result, _sessionTableSchema.getMapColumn()))
+                    {
+                        _serializer.deserializeAttributes(data, IO.readBytes(is));
+                    }
+                    catch (Exception e)
+                    {
+                        throw new UnreadableSessionDataException(id, _context, e);
+                    }
+
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("LOADED session {}", data);
                 }
+                else if (LOG.isDebugEnabled())
+                    LOG.debug("No session {}", id);
 
-                if (LOG.isDebugEnabled())
-                    LOG.debug("LOADED session {}", data);
+                return data;
             }
-            else if (LOG.isDebugEnabled())
-                LOG.debug("No session {}", id);
+        });
+    }
 
-            return data;
-        }
+    /**
+     * Read only the last save time column of the session row.
+     */
+    @Override
+    public long getLastSaved(String id) throws Exception
+    {
+        return execute(_loadStats, statements ->
+        {
+            PreparedStatement statement = statements.prepare(_sessionTableSchema.getLastSavedStatementAsString());
+            statement.setString(1, id);
+            statement.setString(2, getContextPathValue());
+            statement.setString(3, _context.getVhost());
+            try (ResultSet result = statement.executeQuery())
+            {
+                if (!result.next())
+                    return -1L;
+                return result.getLong(_sessionTableSchema.getLastSavedTimeColumn());
+            }
+        });
     }
 
     @Override
     public boolean delete(String id) throws Exception
     {
-        try (Connection connection = _dbAdaptor.getConnection();
-             PreparedStatement statement = _sessionTableSchema.getDeleteStatement(connection, id, _context))
+        return execute(_deleteStats, statements ->
         {
-            connection.setAutoCommit(true);
+            statements._connection.setAutoCommit(true);
+            PreparedStatement statement = statements.prepare(_sessionTableSchema.getDeleteStatementAsString());
+            statement.setString(1, id);
+            statement.setString(2, getContextPathValue());
+            statement.setString(3, _context.getVhost());
             int rows = statement.executeUpdate();
             if (LOG.isDebugEnabled())
                 LOG.debug("Deleted Session {}:{}", id, (rows > 0));
 
             return rows > 0;
-        }
+        });
     }
 
     @Override
@@ -705,7 +1238,10 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
 
         if (lastSaveTime <= 0)
         {
-            doInsert(id, data);
+            if (isUpsert())
+                doUpsert(id, data);
+            else
+                doInsert(id, data);
         }
         else
         {
@@ -713,82 +1249,234 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
         }
     }
 
+    /**
+     * Updates only the columns of the session that are not attributes
+     * if no attribute changed, otherwise updates the whole session,
+     * as the attributes are stored together in a single column.
+     */
+    @Override
+    public void doStoreDelta(String id, SessionData data, Set<String> dirtyAttributes, long lastSaveTime) throws Exception
+    {
+        if (data == null || id == null)
+            return;
+
+        if (!dirtyAttributes.isEmpty())
+        {
+            doUpdate(id, data);
+            return;
+        }
+
+        execute(_storeStats, statements ->
+        {
+            statements._connection.setAutoCommit(true);
+            PreparedStatement statement = statements.prepare(_sessionTableSchema.getUpdateSessionMetaDataStatementAsString());
+            setUpdateMetaDataParameters(statement, data);
+            statement.executeUpdate();
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("Updated session metadata {}", data);
+            return null;
+        });
+    }
+
     protected void doInsert(String id, SessionData data)
         throws Exception
     {
-        String s = _sessionTableSchema.getInsertSessionStatementAsString();
+        execute(_storeStats, statements ->
+        {
+            statements._connection.setAutoCommit(true);
+            PreparedStatement statement = statements.prepare(_sessionTableSchema.getInsertSessionStatementAsString());
+            setInsertParameters(statement, id, data);
+            statement.executeUpdate();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Inserted session {}", data);
+            return null;
+        });
+    }
 
-        try (Connection connection = _dbAdaptor.getConnection())
+    protected void doUpdate(String id, SessionData data)
+        throws Exception
+    {
+        execute(_storeStats, statements ->
         {
-            connection.setAutoCommit(true);
-            try (PreparedStatement statement = connection.prepareStatement(s))
-            {
-                statement.setString(1, id); //session id
-
-                String cp = _context.getCanonicalContextPath();
-                if (_dbAdaptor.isEmptyStringNull() && StringUtil.isBlank(cp))
-                    cp = NULL_CONTEXT_PATH;
-
-                statement.setString(2, cp); //context path
-
-                statement.setString(3, _context.getVhost()); //first vhost
-                statement.setString(4, data.getLastNode()); //my node id
-                statement.setLong(5, data.getAccessed()); //accessTime
-                statement.setLong(6, data.getLastAccessed()); //lastAccessTime
-                statement.setLong(7, data.getCreated()); //time created
-                statement.setLong(8, data.getCookieSet()); //time cookie was set
-                statement.setLong(9, data.getLastSaved()); //last saved time
-                statement.setLong(10, data.getExpiry());
-                statement.setLong(11, data.getMaxInactiveMs());
-
-                try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                     ObjectOutputStream oos = new ObjectOutputStream(baos))
-                {
-                    SessionData.serializeAttributes(data, oos);
-                    byte[] bytes = baos.toByteArray();
-                    ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-                    statement.setBinaryStream(12, bais, bytes.length); //attribute map as blob
-                }
+            statements._connection.setAutoCommit(true);
+            PreparedStatement statement = statements.prepare(_sessionTableSchema.getUpdateSessionStatementAsString());
+            setUpdateParameters(statement, data);
+            statement.setString(8, data.getId());
+            statement.setString(9, getContextPathValue());
+            statement.setString(10, _context.getVhost());
+            statement.executeUpdate();
 
-                statement.executeUpdate();
-                if (LOG.isDebugEnabled())
-                    LOG.debug("Inserted session {}", data);
-            }
-        }
+            if (LOG.isDebugEnabled())
+                LOG.debug("Updated session {}", data);
+            return null;
+        });
     }
 
-    protected void doUpdate(String id, SessionData data)
+    /**
+     * Inserts the session, or updates it if it exists, with a single statement.
+     *
+     * @param id the session id
+     * @param data the session data
+     * @throws Exception if the session cannot be written
+     */
+    protected void doUpsert(String id, SessionData data)
         throws Exception
     {
-        try (Connection connection = _dbAdaptor.getConnection())
+        execute(_storeStats, statements ->
+        {
+            statements._connection.setAutoCommit(true);
+            PreparedStatement statement = statements.prepare(_sessionTableSchema.getUpsertSessionStatementAsString());
+            setInsertParameters(statement, id, data);
+            statement.executeUpdate();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Upserted session {}", data);
+            return null;
+        });
+    }
+
+    /**
+     * Inserts the new sessions and updates the others with one batch
+     * statement each, in a single transaction. The new sessions are upserted
+     * rather than inserted if {@link #isUpsert()}. Only the columns that are
+     * not attributes are updated for the sessions none of whose attributes changed.
+     */
+    @Override
+    public void doStoreAll(Map<String, SessionData> sessions, Map<String, Long> lastSaveTimes) throws Exception
+    {
+        boolean upsert = isUpsert();
+        execute(_storeStats, statements ->
         {
-            connection.setAutoCommit(true);
-            try (PreparedStatement statement = _sessionTableSchema.getUpdateSessionStatement(connection, data.getId(), _context))
+            Connection connection = statements._connection;
+            connection.setAutoCommit(false);
+            try
             {
-                statement.setString(1, data.getLastNode()); //should be my node id
-                statement.setLong(2, data.getAccessed()); //accessTime
-                statement.setLong(3, data.getLastAccessed()); //lastAccessTime
-                statement.setLong(4, data.getLastSaved()); //last saved time
-                statement.setLong(5, data.getExpiry());
-                statement.setLong(6, data.getMaxInactiveMs());
-
-                try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                     ObjectOutputStream oos = new ObjectOutputStream(baos))
+                PreparedStatement insert = null;
+                PreparedStatement update = null;
+                PreparedStatement updateMetaData = null;
+                int inserts = 0;
+                int updates = 0;
+                int metaDataUpdates = 0;
+                for (Map.Entry<String, SessionData> entry : sessions.entrySet())
                 {
-                    SessionData.serializeAttributes(data, oos);
-                    byte[] bytes = baos.toByteArray();
-                    try (ByteArrayInputStream bais = new ByteArrayInputStream(bytes))
+                    String id = entry.getKey();
+                    SessionData data = entry.getValue();
+                    long lastSaveTime = lastSaveTimes.get(id);
+                    Set<String> dirtyAttributes = (lastSaveTime > 0 ? data.getDirtyAttributes() : null);
+                    if (dirtyAttributes != null && dirtyAttributes.isEmpty())
                     {
-                        statement.setBinaryStream(7, bais, bytes.length); //attribute map as blob
+                        if (updateMetaData == null)
+                            updateMetaData = statements.prepare(_sessionTableSchema.getUpdateSessionMetaDataStatementAsString());
+                        setUpdateMetaDataParameters(updateMetaData, data);
+                        updateMetaData.addBatch();
+                        metaDataUpdates++;
+                    }
+                    else if (lastSaveTime <= 0)
+                    {
+                        if (insert == null)
+                            insert = statements.prepare(upsert
+                                ? _sessionTableSchema.getUpsertSessionStatementAsString()
+                                : _sessionTableSchema.getInsertSessionStatementAsString());
+                        setInsertParameters(insert, id, data);
+                        insert.addBatch();
+                        inserts++;
+                    }
+                    else
+                    {
+                        if (update == null)
+                            update = statements.prepare(_sessionTableSchema.getUpdateSessionStatementAsString());
+                        setUpdateParameters(update, data);
+                        update.setString(8, id);
+                        update.setString(9, getContextPathValue());
+                        update.setString(10, _context.getVhost());
+                        update.addBatch();
+                        updates++;
                     }
                 }
 
-                statement.executeUpdate();
+                if (inserts > 0)
+                    insert.executeBatch();
+                if (updates > 0)
+                    update.executeBatch();
+                if (metaDataUpdates > 0)
+                    updateMetaData.executeBatch();
+                connection.commit();
 
                 if (LOG.isDebugEnabled())
-                    LOG.debug("Updated session {}", data);
+                    LOG.debug("{} {}, updated {} and updated the metadata of {} sessions", upsert ? "Upserted" : "Inserted", inserts, updates, metaDataUpdates);
             }
-        }
+            catch (Exception e)
+            {
+                connection.rollback();
+                throw e;
+            }
+            finally
+            {
+                connection.setAutoCommit(true);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    @ManagedAttribute(value = "does this store write sessions in batches", readonly = true)
+    public boolean isBatchWriteSupported()
+    {
+        return true;
+    }
+
+    @Override
+    @ManagedAttribute(value = "does this store read the last save time without loading the session", readonly = true)
+    public boolean isLastSavedSupported()
+    {
+        return true;
+    }
+
+    private void setUpdateMetaDataParameters(PreparedStatement statement, SessionData data)
+        throws Exception
+    {
+        statement.setString(1, data.getLastNode()); //should be my node id
+        statement.setLong(2, data.getAccessed()); //accessTime
+        statement.setLong(3, data.getLastAccessed()); //lastAccessTime
+        statement.setLong(4, data.getLastSaved()); //last saved time
+        statement.setLong(5, data.getExpiry());
+        statement.setLong(6, data.getMaxInactiveMs());
+        statement.setString(7, data.getId());
+        statement.setString(8, getContextPathValue());
+        statement.setString(9, _context.getVhost());
+    }
+
+    private void setInsertParameters(PreparedStatement statement, String id, SessionData data)
+        throws Exception
+    {
+        statement.setString(1, id); //session id
+        statement.setString(2, getContextPathValue()); //context path
+        statement.setString(3, _context.getVhost()); //first vhost
+        statement.setString(4, data.getLastNode()); //my node id
+        statement.setLong(5, data.getAccessed()); //accessTime
+        statement.setLong(6, data.getLastAccessed()); //lastAccessTime
+        statement.setLong(7, data.getCreated()); //time created
+        statement.setLong(8, data.getCookieSet()); //time cookie was set
+        statement.setLong(9, data.getLastSaved()); //last saved time
+        statement.setLong(10, data.getExpiry());
+        statement.setLong(11, data.getMaxInactiveMs());
+
+        byte[] bytes = _serializer.serializeAttributes(data);
+        statement.setBinaryStream(12, new ByteArrayInputStream(bytes), bytes.length); //attribute map as blob
+    }
+
+    private void setUpdateParameters(PreparedStatement statement, SessionData data)
+        throws Exception
+    {
+        statement.setString(1, data.getLastNode()); //should be my node id
+        statement.setLong(2, data.getAccessed()); //accessTime
+        statement.setLong(3, data.getLastAccessed()); //lastAccessTime
+        statement.setLong(4, data.getLastSaved()); //last saved time
+        statement.setLong(5, data.getExpiry());
+        statement.setLong(6, data.getMaxInactiveMs());
+
+        byte[] bytes = _serializer.serializeAttributes(data);
+        statement.setBinaryStream(7, new ByteArrayInputStream(bytes), bytes.length); //attribute map as blob
     }
 
     @Override
@@ -798,18 +1486,27 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
             LOG.debug("Getting expired sessions at time {}", time);
         
         Set<String> expiredSessionKeys = new HashSet<>();
-        try (Connection connection = _dbAdaptor.getConnection())
+        try
         {
-            connection.setAutoCommit(true);
-
-            //Select sessions managed by this node for our context that have expired
-            long upperBound = time;
-            if (LOG.isDebugEnabled())
-                LOG.debug("{} - Searching for sessions for context {} managed by me and expired before {}",  
-                    _context.getWorkerName(), _context.getCanonicalContextPath(), upperBound);
-
-            try (PreparedStatement statement = _sessionTableSchema.getMyExpiredSessionsStatement(connection, _context, upperBound))
+            return execute(_expiryStats, statements ->
             {
+                statements._connection.setAutoCommit(true);
+
+                //Select sessions managed by this node for our context that have expired since the last
+                //check: sessions that expired earlier but were not deleted are found by doGetExpired
+                long lowerBound = _lastExpiredUpperBound;
+                long upperBound = time;
+                if (LOG.isDebugEnabled())
+                    LOG.debug("{} - Searching for sessions for context {} managed by me and expired between {} and {}",  
+                        _context.getWorkerName(), _context.getCanonicalContextPath(), lowerBound, upperBound);
+
+                PreparedStatement statement = statements.prepare(_sessionTableSchema.getMyExpiredSessionsStatementAsString());
+                statement.setString(1, _context.getWorkerName());
+                statement.setString(2, getContextPathValue());
+                statement.setString(3, _context.getVhost());
+                //never match the sessions that never expire
+                statement.setLong(4, Math.max(1, lowerBound));
+                statement.setLong(5, upperBound);
                 try (ResultSet result = statement.executeQuery())
                 {
                     while (result.next())
@@ -822,50 +1519,36 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
                                 _context.getWorkerName(), sessionId, _context.getCanonicalContextPath(), exp);
                     }
                 }
-            }
 
-            Set<String> notExpiredInDB = new HashSet<>();
-            for (String k : candidates)
-            {
-                //there are some keys that the sessioncache thought had expired, but were not
-                //found in our query either because it is no longer in the db, or its
-                //expiry time was updated
-                if (!expiredSessionKeys.contains(k))
-                    notExpiredInDB.add(k);
-            }
+                List<String> notExpiredInDB = new ArrayList<>();
+                for (String k : candidates)
+                {
+                    //there are some keys that the sessioncache thought had expired, but were not
+                    //found in our query either because it is no longer in the db, or its
+                    //expiry time was updated
+                    if (!expiredSessionKeys.contains(k))
+                        notExpiredInDB.add(k);
+                }
 
-            //Check the candidates that were not reported as expired in the db: they
-            //either do not exist, or they weren't expired (which means some other node
-            //must be managing it)
-            if (!notExpiredInDB.isEmpty())
-            {
-                try (PreparedStatement checkSessionExists = _sessionTableSchema.getCheckSessionExistsStatement(connection, _context))
+                //Check the candidates that were not reported as expired in the db: they
+                //either do not exist, or they weren't expired (which means some other node
+                //must be managing it). They are checked in batches with a single query each.
+                for (int i = 0; i < notExpiredInDB.size(); i += CHECK_EXISTS_BATCH_SIZE)
                 {
-                    for (String k : notExpiredInDB)
+                    List<String> batch = notExpiredInDB.subList(i, Math.min(i + CHECK_EXISTS_BATCH_SIZE, notExpiredInDB.size()));
+                    try
                     {
-                        checkSessionExists.setString(1, k);
-                        try (ResultSet result = checkSessionExists.executeQuery())
-                        {
-                            if (!result.next())
-                            {
-                                //session doesn't exist any more, can be expired
-                                expiredSessionKeys.add(k);
-                            }
-                            else
-                            {
-                                if (LOG.isDebugEnabled())
-                                    LOG.debug("{} Session {} expiry fresher in db than cache, another node must be managing it", _context.getWorkerName(), k);
-                            }
-                        }
-                        catch (Exception e)
-                        {
-                            LOG.warn("{} Problem checking if potentially expired session {} exists in db", _context.getWorkerName(), k, e);
-                        }
+                        checkExpired(statements, batch, lowerBound, expiredSessionKeys);
+                    }
+                    catch (Exception e)
+                    {
+                        LOG.warn("{} Problem checking if potentially expired sessions {} exist in db", _context.getWorkerName(), batch, e);
                     }
                 }
-            }
 
-            return expiredSessionKeys;
+                _lastExpiredUpperBound = upperBound;
+                return expiredSessionKeys;
+            });
         }
         catch (Exception e)
         {
@@ -874,18 +1557,69 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
         }
     }
 
+    /**
+     * Check with a single query whether the given sessions still exist in the db.
+     * The query always has {@link #CHECK_EXISTS_BATCH_SIZE} ids, repeating the last one
+     * if there are fewer, so that the same prepared statement is used for every batch.
+     */
+    private void checkExpired(StatementCache statements, List<String> ids, long lowerBound, Set<String> expiredSessionKeys)
+        throws Exception
+    {
+        PreparedStatement statement = statements.prepare(_sessionTableSchema.getCheckSessionsExistStatementAsString(CHECK_EXISTS_BATCH_SIZE));
+        statement.setString(1, getContextPathValue());
+        statement.setString(2, _context.getVhost());
+        for (int i = 0; i < CHECK_EXISTS_BATCH_SIZE; i++)
+        {
+            statement.setString(3 + i, ids.get(Math.min(i, ids.size() - 1)));
+        }
+
+        Set<String> notFound = new HashSet<>(ids);
+        try (ResultSet result = statement.executeQuery())
+        {
+            while (result.next())
+            {
+                String k = result.getString(_sessionTableSchema.getIdColumn());
+                notFound.remove(k);
+                if (isExpiredBefore(result, lowerBound))
+                {
+                    //session expired before the sessions we searched for, and was not
+                    //found by a previous search because its expiry was not saved yet
+                    expiredSessionKeys.add(k);
+                }
+                else
+                {
+                    if (LOG.isDebugEnabled())
+                        LOG.debug("{} Session {} expiry fresher in db than cache, another node must be managing it", _context.getWorkerName(), k);
+                }
+            }
+        }
+
+        //sessions that don't exist any more can be expired
+        expiredSessionKeys.addAll(notFound);
+    }
+
+    private boolean isExpiredBefore(ResultSet result, long time) throws SQLException
+    {
+        long expiry = result.getLong(_sessionTableSchema.getExpiryTimeColumn());
+        return expiry > 0 && expiry < time &&
+            _context.getWorkerName().equals(result.getString(_sessionTableSchema.getLastNodeColumn()));
+    }
+
     @Override
     public Set<String> doGetExpired(long timeLimit)
     {
         Set<String> expired = new HashSet<>();
         
         //Get sessions for my context but managed by any node that expired at or before the timeLimit   
-        try (Connection connection = _dbAdaptor.getConnection())
+        try
         {
-            connection.setAutoCommit(true);
-            try (PreparedStatement selectExpiredSessions = _sessionTableSchema.getExpiredSessionsStatement(connection, _context.getCanonicalContextPath(),
-                                                                                                           _context.getVhost(), timeLimit))
+            return execute(_expiryStats, statements ->
             {
+                statements._connection.setAutoCommit(true);
+                PreparedStatement selectExpiredSessions = statements.prepare(_sessionTableSchema.getExpiredSessionsStatementAsString());
+                selectExpiredSessions.setString(1, getContextPathValue());
+                selectExpiredSessions.setString(2, _context.getVhost());
+                selectExpiredSessions.setLong(3, timeLimit);
                 if (LOG.isDebugEnabled()) 
                     LOG.debug("{}- Searching for sessions for context {} expired before {}", _context.getWorkerName(), _context.getCanonicalContextPath(), timeLimit);
 
@@ -901,8 +1635,8 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
                                 _context.getWorkerName(), sessionId, _context.getCanonicalContextPath(), exp);
                     }
                 }
-            }
-            return expired;
+                return expired;
+            });
         }
         catch (Exception e)
         {
@@ -915,13 +1649,18 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
     public void doCleanOrphans(long time)
     {
         //Harshly delete sessions for any node and context that expired at or before the timeLimit
-        try (Connection connection = _dbAdaptor.getConnection();
-             PreparedStatement statement = _sessionTableSchema.getCleanOrphansStatement(connection, time))
+        try
         {
-            connection.setAutoCommit(true);
-            int rows = statement.executeUpdate();
-            if (LOG.isDebugEnabled())
-                LOG.debug("Deleted {} orphaned sessions", rows);
+            execute(_deleteStats, statements ->
+            {
+                statements._connection.setAutoCommit(true);
+                PreparedStatement statement = statements.prepare(_sessionTableSchema.getCleanOrphansStatementAsString());
+                statement.setLong(1, time);
+                int rows = statement.executeUpdate();
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Deleted {} orphaned sessions", rows);
+                return null;
+            });
         }
         catch (Exception e)
         {
@@ -951,34 +1690,41 @@ public class JDBCSessionDataStore extends AbstractSessionDataStore
         return true;
     }
 
+    @Override
+    @ManagedAttribute(value = "does this store write only changed session data", readonly = true)
+    public boolean isDeltaWriteSupported()
+    {
+        return true;
+    }
+
     @Override
     public boolean doExists(String id)
         throws Exception
     {
-        try (Connection connection = _dbAdaptor.getConnection())
+        return execute(_existsStats, statements ->
         {
-            connection.setAutoCommit(true);
+            statements._connection.setAutoCommit(true);
 
             //non-expired session exists?
-            try (PreparedStatement checkSessionExists = _sessionTableSchema.getCheckSessionExistsStatement(connection, _context))
+            PreparedStatement checkSessionExists = statements.prepare(_sessionTableSchema.getCheckSessionExistsStatementAsString());
+            checkSessionExists.setString(1, id);
+            checkSessionExists.setString(2, getContextPathValue());
+            checkSessionExists.setString(3, _context.getVhost());
+            try (ResultSet result = checkSessionExists.executeQuery())
             {
-                checkSessionExists.setString(1, id);
-                try (ResultSet result = checkSessionExists.executeQuery())
+                if (!result.next())
                 {
-                    if (!result.next())
-                    {
-                        return false; //no such session
-                    }
+                    return false; //no such session
+                }
+                else
+                {
+                    long expiry = result.getLong(_sessionTableSchema.getExpiryTimeColumn());
+                    if (expiry <= 0) //never expires
+                        return true;
                     else
-                    {
-                        long expiry = result.getLong(_sessionTableSchema.getExpiryTimeColumn());
-                        if (expiry <= 0) //never expires
-                            return true;
-                        else
-                            return (expiry > System.currentTimeMillis()); //hasn't already expired
-                    }
+                        return (expiry > System.currentTimeMillis()); //hasn't already expired
                 }
             }
-        }
+        });
     }
 }
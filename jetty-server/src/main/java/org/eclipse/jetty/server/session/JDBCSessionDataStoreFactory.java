@@ -29,6 +29,9 @@ public class JDBCSessionDataStoreFactory extends AbstractSessionDataStoreFactory
      */
     JDBCSessionDataStore.SessionTableSchema _schema;
 
+    int _maxPooledConnections = 0;
+    boolean _upsert = false;
+
     @Override
     public SessionDataStore getSessionDataStore(SessionHandler handler)
     {
@@ -37,6 +40,10 @@ public class JDBCSessionDataStoreFactory extends AbstractSessionDataStoreFactory
         ds.setSessionTableSchema(_schema);
         ds.setGracePeriodSec(getGracePeriodSec());
         ds.setSavePeriodSec(getSavePeriodSec());
+        ds.setMaxPooledConnections(getMaxPooledConnections());
+        ds.setUpsert(isUpsert());
+        if (getSerializer() != null)
+            ds.setSerializer(getSerializer());
         return ds;
     }
 
@@ -55,4 +62,39 @@ public class JDBCSessionDataStoreFactory extends AbstractSessionDataStoreFactory
     {
         _schema = schema;
     }
+
+    /**
+     * @return the maximum number of connections each store keeps open with their prepared statements
+     */
+    public int getMaxPooledConnections()
+    {
+        return _maxPooledConnections;
+    }
+
+    /**
+     * @param maxPooledConnections the maximum number of connections each store keeps open with
+     * their prepared statements, or 0 to get a connection for every operation
+     * @see JDBCSessionDataStore#setMaxPooledConnections(int)
+     */
+    public void setMaxPooledConnections(int maxPooledConnections)
+    {
+        _maxPooledConnections = maxPooledConnections;
+    }
+
+    /**
+     * @return true if new sessions are written with a single insert-or-update statement when the database supports it
+     */
+    public boolean isUpsert()
+    {
+        return _upsert;
+    }
+
+    /**
+     * @param upsert true to write new sessions with a single insert-or-update statement when the database supports it
+     * @see JDBCSessionDataStore#setUpsert(boolean)
+     */
+    public void setUpsert(boolean upsert)
+    {
+        _upsert = upsert;
+    }
 }
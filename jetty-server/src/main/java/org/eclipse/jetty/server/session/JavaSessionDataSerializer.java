@@ -0,0 +1,60 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+
+import org.eclipse.jetty.util.ClassLoadingObjectInputStream;
+
+/**
+ * JavaSessionDataSerializer
+ *
+ * Serializes the attributes of a session with Java serialization, as done
+ * by {@link SessionData#serializeAttributes(SessionData, ObjectOutputStream)}.
+ * This is the default SessionDataSerializer, as all the versions of jetty
+ * can read the attributes it writes.
+ */
+public class JavaSessionDataSerializer implements SessionDataSerializer
+{
+    @Override
+    public byte[] serializeAttributes(SessionData data) throws IOException
+    {
+        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
+             ObjectOutputStream oos = new ObjectOutputStream(baos))
+        {
+            SessionData.serializeAttributes(data, oos);
+            oos.flush();
+            return baos.toByteArray();
+        }
+    }
+
+    @Override
+    public void deserializeAttributes(SessionData data, byte[] bytes) throws IOException, ClassNotFoundException
+    {
+        try (ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
+             ClassLoadingObjectInputStream ois = new ClassLoadingObjectInputStream(bais))
+        {
+            SessionData.deserializeAttributes(data, ois);
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x", getClass().getSimpleName(), hashCode());
+    }
+}
@@ -85,12 +85,12 @@ public class Session implements SessionHandler.SessionIf
 
     protected boolean _newSession;
 
-    protected State _state = State.VALID; // state of the session:valid,invalid
+    protected volatile State _state = State.VALID; // state of the session:valid,invalid
     // or being invalidated
 
     protected AutoLock _lock = new AutoLock();
     protected Condition _stateChangeCompleted = _lock.newCondition();
-    protected boolean _resident = false;
+    protected volatile boolean _resident = false;
     protected final SessionInactivityTimer _sessionInactivityTimer;
 
     /**
@@ -203,7 +203,7 @@ public class Session implements SessionHandler.SessionIf
      */
     public long getRequests()
     {
-        try (AutoLock l = _lock.lock())
+        try (AutoLock l = acquireLock())
         {
             return _requests;
         }
@@ -216,7 +216,7 @@ public class Session implements SessionHandler.SessionIf
 
     protected void cookieSet()
     {
-        try (AutoLock l = _lock.lock())
+        try (AutoLock l = acquireLock())
         {
             _sessionData.setCookieSet(_sessionData.getAccessed());
         }
@@ -224,7 +224,7 @@ public class Session implements SessionHandler.SessionIf
 
     protected void use()
     {
-        try (AutoLock l = _lock.lock())
+        try (AutoLock l = acquireLock())
         {
             _requests++;
 
@@ -237,7 +237,7 @@ public class Session implements SessionHandler.SessionIf
 
     protected boolean access(long time)
     {
-        try (AutoLock l = _lock.lock())
+        try (AutoLock l = acquireLock())
         {
             if (!isValid() || !isResident())
                 return false;
@@ -257,7 +257,7 @@ public class Session implements SessionHandler.SessionIf
 
     protected void complete()
     {
-        try (AutoLock l = _lock.lock())
+        try (AutoLock l = acquireLock())
         {
             _requests--;
 
@@ -284,7 +284,7 @@ public class Session implements SessionHandler.SessionIf
      */
     protected boolean isExpiredAt(long time)
     {
-        try (AutoLock l = _lock.lock())
+        try (AutoLock l = acquireLock())
         {
             return _sessionData.isExpiredAt(time);
         }
@@ -299,7 +299,7 @@ public class Session implements SessionHandler.SessionIf
     protected boolean isIdleLongerThan(int sec)
     {
         long now = System.currentTimeMillis();
-        try (AutoLock l = _lock.lock())
+        try (AutoLock l = acquireLock())
         {
             return ((_sessionData.getAccessed() + (sec * 1000)) <= now);
         }
@@ -408,7 +408,7 @@ public class Session implements SessionHandler.SessionIf
 
     public boolean isValid()
     {
-        try (AutoLock l = _lock.lock())
+        try (AutoLock l = acquireReadLock())
         {
             return _state == State.VALID;
         }
@@ -416,7 +416,7 @@ public class Session implements SessionHandler.SessionIf
 
     public boolean isInvalid()
     {
-        try (AutoLock l = _lock.lock())
+        try (AutoLock l = acquireReadLock())
         {
             return _state == State.INVALID || _state == State.INVALIDATING;
         }
@@ -424,7 +424,7 @@ public class Session implements SessionHandler.SessionIf
 
     public long getCookieSetTime()
     {
-        try (AutoLock l = _lock.lock())
+        try (AutoLock l = acquireLock())
         {
             return _sessionData.getCookieSet();
         }
@@ -433,7 +433,7 @@ public class Session implements SessionHandler.SessionIf
     @Override
     public long getCreationTime() throws IllegalStateException
     {
-        try (AutoLock l = _lock.lock())
+        try (AutoLock l = acquireLock())
         {
             checkValidForRead();
             return _sessionData.getCreated();
@@ -443,7 +443,7 @@ public class Session implements SessionHandler.SessionIf
     @Override
     public String getId()
     {
-        try (AutoLock l = _lock.lock())
+        try (AutoLock l = acquireLock())
         {
             return _sessionData.getId();
         }
@@ -467,7 +467,7 @@ public class Session implements SessionHandler.SessionIf
     @Override
     public long getLastAccessedTime()
     {
-        try (AutoLock l = _lock.lock())
+        try (AutoLock l = acquireLock())
         {
             checkValidForRead();
             return _sessionData.getLastAccessed();
@@ -485,7 +485,7 @@ public class Session implements SessionHandler.SessionIf
     @Override
     public void setMaxInactiveInterval(int secs)
     {
-        try (AutoLock l = _lock.lock())
+        try (AutoLock l = acquireLock())
         {
             _sessionData.setMaxInactiveMs((long)secs * 1000L);
             _sessionData.calcAndSetExpiry();
@@ -518,7 +518,7 @@ public class Session implements SessionHandler.SessionIf
     {
         long time = 0;
 
-        try (AutoLock l = _lock.lock())
+        try (AutoLock l = acquireLock())
         {
             long remaining = _sessionData.getExpiry() - now;
             long maxInactive = _sessionData.getMaxInactiveMs();
@@ -579,7 +579,7 @@ public class Session implements SessionHandler.SessionIf
     @Override
     public int getMaxInactiveInterval()
     {
-        try (AutoLock l = _lock.lock())
+        try (AutoLock l = acquireLock())
         {
             long maxInactiveMs = _sessionData.getMaxInactiveMs();
             return (int)(maxInactiveMs < 0 ? -1 : maxInactiveMs / 1000);
@@ -647,7 +647,7 @@ public class Session implements SessionHandler.SessionIf
     @Override
     public Object getAttribute(String name)
     {
-        try (AutoLock l = _lock.lock())
+        try (AutoLock l = acquireReadLock())
         {
             checkValidForRead();
             return _sessionData.getAttribute(name);
@@ -658,7 +658,7 @@ public class Session implements SessionHandler.SessionIf
     @Deprecated(since = "Servlet API 2.2")
     public Object getValue(String name)
     {
-        try (AutoLock l = _lock.lock())
+        try (AutoLock l = acquireReadLock())
         {
             checkValidForRead();
             return _sessionData.getAttribute(name);
@@ -668,7 +668,7 @@ public class Session implements SessionHandler.SessionIf
     @Override
     public Enumeration<String> getAttributeNames()
     {
-        try (AutoLock l = _lock.lock())
+        try (AutoLock l = acquireReadLock())
         {
             checkValidForRead();
             final Iterator<String> itor = _sessionData.getKeys().iterator();
@@ -708,7 +708,7 @@ public class Session implements SessionHandler.SessionIf
     @Deprecated(since = "Servlet API 2.2")
     public String[] getValueNames() throws IllegalStateException
     {
-        try (AutoLock l = _lock.lock())
+        try (AutoLock l = acquireReadLock())
         {
             checkValidForRead();
             Iterator<String> itor = _sessionData.getKeys().iterator();
@@ -727,7 +727,7 @@ public class Session implements SessionHandler.SessionIf
     public void setAttribute(String name, Object value)
     {
         Object old = null;
-        try (AutoLock l = _lock.lock())
+        try (AutoLock l = acquireLock())
         {
             // if session is not valid, don't accept the set
             checkValidForWrite();
@@ -771,7 +771,7 @@ public class Session implements SessionHandler.SessionIf
 
         String id = null;
         String extendedId = null;
-        try (AutoLock l = _lock.lock())
+        try (AutoLock l = acquireLock())
         {
             while (true)
             {
@@ -807,7 +807,7 @@ public class Session implements SessionHandler.SessionIf
 
         String newId = _handler._sessionIdManager.renewSessionId(id, extendedId, request);
 
-        try (AutoLock l = _lock.lock())
+        try (AutoLock l = acquireLock())
         {
             switch (_state)
             {
@@ -891,7 +891,44 @@ public class Session implements SessionHandler.SessionIf
      */
     public AutoLock lock()
     {
-        return _lock.lock();
+        return acquireLock();
+    }
+
+    /**
+     * <p>Grabs the lock on the session, recording whether it was contended
+     * with the {@link SessionHandler}.</p>
+     *
+     * @return the lock
+     */
+    protected AutoLock acquireLock()
+    {
+        AutoLock lock = _lock.tryLock();
+        if (lock != null)
+        {
+            if (_handler != null)
+                _handler.recordSessionLock(0);
+            return lock;
+        }
+
+        long start = System.nanoTime();
+        lock = _lock.lock();
+        if (_handler != null)
+            _handler.recordSessionLock(Math.max(1, System.nanoTime() - start));
+        return lock;
+    }
+
+    /**
+     * <p>Grabs the lock on the session to read its attributes,
+     * unless the {@link SessionHandler} reads attributes without locking.</p>
+     *
+     * @return the lock, or null if the session is not locked
+     * @see SessionHandler#setLockFreeReads(boolean)
+     */
+    protected AutoLock acquireReadLock()
+    {
+        if (_handler != null && _handler.isLockFreeReads())
+            return null;
+        return acquireLock();
     }
 
     /**
@@ -901,7 +938,7 @@ public class Session implements SessionHandler.SessionIf
     {
         boolean result = false;
 
-        try (AutoLock l = _lock.lock())
+        try (AutoLock l = acquireLock())
         {
             while (true)
             {
@@ -959,7 +996,7 @@ public class Session implements SessionHandler.SessionIf
      */
     protected void finishInvalidate() throws IllegalStateException
     {
-        try (AutoLock l = _lock.lock())
+        try (AutoLock l = acquireLock())
         {
             try
             {
@@ -997,7 +1034,7 @@ public class Session implements SessionHandler.SessionIf
     @Override
     public boolean isNew() throws IllegalStateException
     {
-        try (AutoLock l = _lock.lock())
+        try (AutoLock l = acquireLock())
         {
             checkValidForRead();
             return _newSession;
@@ -1006,7 +1043,7 @@ public class Session implements SessionHandler.SessionIf
 
     public void setIdChanged(boolean changed)
     {
-        try (AutoLock l = _lock.lock())
+        try (AutoLock l = acquireLock())
         {
             _idChanged = changed;
         }
@@ -1014,7 +1051,7 @@ public class Session implements SessionHandler.SessionIf
 
     public boolean isIdChanged()
     {
-        try (AutoLock l = _lock.lock())
+        try (AutoLock l = acquireLock())
         {
             return _idChanged;
         }
@@ -1048,7 +1085,7 @@ public class Session implements SessionHandler.SessionIf
     @Override
     public String toString()
     {
-        try (AutoLock l = _lock.lock())
+        try (AutoLock l = acquireLock())
         {
             return String.format("%s@%x{id=%s,x=%s,req=%d,res=%b}",
                 getClass().getSimpleName(),
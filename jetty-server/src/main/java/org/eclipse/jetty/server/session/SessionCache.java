@@ -14,6 +14,7 @@
 package org.eclipse.jetty.server.session;
 
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import javax.servlet.http.HttpServletRequest;
 
 import org.eclipse.jetty.util.component.LifeCycle;
@@ -138,6 +139,46 @@ public interface SessionCache extends LifeCycle
      */
     void release(String id, Session session) throws Exception;
 
+    /**
+     * Asynchronous variant of {@link #get(String)}. The default
+     * implementation calls {@link #get(String)} on the calling thread.
+     *
+     * @param id the session id
+     * @return a future completed with the Session if one exists, null otherwise
+     */
+    default CompletableFuture<Session> getAsync(String id)
+    {
+        try
+        {
+            return CompletableFuture.completedFuture(get(id));
+        }
+        catch (Throwable x)
+        {
+            return CompletableFuture.failedFuture(x);
+        }
+    }
+
+    /**
+     * Asynchronous variant of {@link #release(String, Session)}. The default
+     * implementation calls {@link #release(String, Session)} on the calling thread.
+     *
+     * @param id the session id
+     * @param session the current session object
+     * @return a future completed once the Session has been released
+     */
+    default CompletableFuture<Void> releaseAsync(String id, Session session)
+    {
+        try
+        {
+            release(id, session);
+            return CompletableFuture.completedFuture(null);
+        }
+        catch (Throwable x)
+        {
+            return CompletableFuture.failedFuture(x);
+        }
+    }
+
     /**
      * Called when a response is about to be committed. The
      * cache can write the session to ensure that the 
@@ -54,6 +54,9 @@ public class SessionData implements Serializable
     protected boolean _dirty;
     protected long _lastSaved; //time in msec since last save
     protected boolean _metaDataDirty; //non-attribute data has changed
+    protected Set<String> _dirtyAttributes = ConcurrentHashMap.newKeySet(); //names of attributes changed since last save
+    protected boolean _allAttributesDirty; //attribute changes are not known by name
+    protected volatile long _modifications; //number of changes, made with the session lock held
 
     /**
      * Serialize the attribute map of the session.
@@ -75,41 +78,53 @@ public class SessionData implements Serializable
             out.writeUTF(entry.getKey());
 
             Class<?> clazz = entry.getValue().getClass();
-            ClassLoader loader = clazz.getClassLoader();
-            ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
-            boolean isContextLoader;
+            boolean isServerLoader = isServerLoaded(clazz);
 
-            if (loader == contextLoader) //is it the context classloader?
-                isContextLoader = true;
-            else if (contextLoader == null) //not context classloader
-                isContextLoader = false;
-            else if (contextLoader instanceof ClassVisibilityChecker)
+            if (LOG.isDebugEnabled())
+                LOG.debug("Attribute {} class={} isServerLoader={}", entry.getKey(), clazz.getName(), isServerLoader);
+            out.writeBoolean(isServerLoader);
+            out.writeObject(entry.getValue());
+        }
+    }
+
+    /**
+     * @param clazz the class of an attribute value
+     * @return true if the class should be loaded by the container classloader when
+     * deserializing the attribute, false if it should be loaded by the context classloader
+     */
+    static boolean isServerLoaded(Class<?> clazz)
+    {
+        ClassLoader loader = clazz.getClassLoader();
+        ClassLoader contextLoader = Thread.currentThread().getContextClassLoader();
+        boolean isContextLoader;
+
+        if (loader == contextLoader) //is it the context classloader?
+            isContextLoader = true;
+        else if (contextLoader == null) //not context classloader
+            isContextLoader = false;
+        else if (contextLoader instanceof ClassVisibilityChecker)
+        {
+            //Clazz not loaded by context classloader, but ask if loadable by context classloader,
+            //because preferable to use context classloader if possible (eg for deep structures).
+            ClassVisibilityChecker checker = (ClassVisibilityChecker)(contextLoader);
+            isContextLoader = (checker.isSystemClass(clazz) && !(checker.isServerClass(clazz)));
+        }
+        else
+        {
+            //Class wasn't loaded by context classloader, but try loading from context loader,
+            //because preferable to use context classloader if possible (eg for deep structures).
+            try
             {
-                //Clazz not loaded by context classloader, but ask if loadable by context classloader,
-                //because preferable to use context classloader if possible (eg for deep structures).
-                ClassVisibilityChecker checker = (ClassVisibilityChecker)(contextLoader);
-                isContextLoader = (checker.isSystemClass(clazz) && !(checker.isServerClass(clazz)));
+                Class<?> result = contextLoader.loadClass(clazz.getName());
+                isContextLoader = (result == clazz); //only if TTCL loaded this instance of the class
             }
-            else
+            catch (Throwable e)
             {
-                //Class wasn't loaded by context classloader, but try loading from context loader,
-                //because preferable to use context classloader if possible (eg for deep structures).
-                try
-                {
-                    Class<?> result = contextLoader.loadClass(clazz.getName());
-                    isContextLoader = (result == clazz); //only if TTCL loaded this instance of the class
-                }
-                catch (Throwable e)
-                {
-                    isContextLoader = false; //TCCL can't see the class
-                }
+                isContextLoader = false; //TCCL can't see the class
             }
-
-            if (LOG.isDebugEnabled())
-                LOG.debug("Attribute {} class={} isServerLoader={}", entry.getKey(), clazz.getName(), (!isContextLoader));
-            out.writeBoolean(!isContextLoader);
-            out.writeObject(entry.getValue());
         }
+
+        return !isContextLoader;
     }
 
     /**
@@ -206,6 +221,18 @@ public class SessionData implements Serializable
         putAllAttributes(data.getAllAttributes());
     }
 
+    /**
+     * Copy the state that a SessionDataStore keeps in its own subclass of
+     * SessionData, such as a version, from the given sessiondata.
+     * Subclasses that keep such state must override this method, so that
+     * it is kept when a copy of the session data is made.
+     *
+     * @param data the sessiondata to copy the state from
+     */
+    public void copyStoreState(SessionData data)
+    {
+    }
+
     /**
      * @return time at which session was last written out
      */
@@ -227,14 +254,45 @@ public class SessionData implements Serializable
         return _dirty;
     }
 
+    /**
+     * <p>Sets whether the session needs to be written out.</p>
+     * <p>Setting the session dirty without naming an attribute
+     * means that all its attributes must be written out.</p>
+     *
+     * @param dirty true if the session needs to be written out
+     */
     public void setDirty(boolean dirty)
     {
+        if (dirty)
+            _modifications++;
         _dirty = dirty;
+        _allAttributesDirty = dirty;
+        if (!dirty)
+            _dirtyAttributes.clear();
     }
 
+    /**
+     * @param name the name of an attribute that changed
+     */
     public void setDirty(String name)
     {
-        setDirty(true);
+        _modifications++;
+        _dirtyAttributes.add(name);
+        _dirty = true;
+    }
+
+    /**
+     * <p>Returns the names of the attributes that changed since the session was last written out,
+     * including the names of removed attributes, for stores that can write out only those.</p>
+     *
+     * @return the names of the changed attributes, possibly empty if only non-attribute data changed,
+     * or null if the changed attributes are not known and all of them must be written out
+     */
+    public Set<String> getDirtyAttributes()
+    {
+        if (_allAttributesDirty)
+            return null;
+        return Set.copyOf(_dirtyAttributes);
     }
 
     /**
@@ -250,9 +308,21 @@ public class SessionData implements Serializable
      */
     public void setMetaDataDirty(boolean metaDataDirty)
     {
+        if (metaDataDirty)
+            _modifications++;
         _metaDataDirty = metaDataDirty;
     }
 
+    /**
+     * @return the number of times the session was marked dirty, which a store
+     * writing out the session can use to tell if it changed during the write
+     * @see #clean(long)
+     */
+    public long getModifications()
+    {
+        return _modifications;
+    }
+
     /**
      * @param name the name of the attribute
      * @return the value of the attribute named
@@ -289,6 +359,32 @@ public class SessionData implements Serializable
         setMetaDataDirty(false);
     }
 
+    /**
+     * Clear all dirty flags, unless the session changed after the given number
+     * of modifications, in which case the changes must be written out again.
+     *
+     * @param modifications the number of modifications when the session was written out
+     * @see #getModifications()
+     */
+    public void clean(long modifications)
+    {
+        if (_modifications != modifications)
+            return;
+
+        Set<String> dirtyAttributes = Set.copyOf(_dirtyAttributes);
+        boolean allAttributesDirty = _allAttributesDirty;
+        boolean metaDataDirty = _metaDataDirty;
+        clean();
+        if (_modifications != modifications)
+        {
+            //changed while being cleaned, so the names of the changed attributes may have been lost
+            _dirtyAttributes.addAll(dirtyAttributes);
+            _allAttributesDirty = true;
+            _metaDataDirty = true;
+            _dirty = true;
+        }
+    }
+
     public void putAllAttributes(Map<String, Object> attributes)
     {
         _attributes.putAll(attributes);
@@ -483,6 +579,7 @@ public class SessionData implements Serializable
         _lastNode = in.readUTF(); //last managing node
         _expiry = in.readLong();
         _maxInactiveMs = in.readLong();
+        _dirtyAttributes = ConcurrentHashMap.newKeySet();
         deserializeAttributes(this, in);
     }
 
@@ -0,0 +1,47 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.io.IOException;
+
+/**
+ * SessionDataSerializer
+ *
+ * Converts the attributes of a session to and from the bytes that a
+ * SessionDataStore writes to its persistent store.
+ *
+ * @see JavaSessionDataSerializer
+ * @see BinarySessionDataSerializer
+ */
+public interface SessionDataSerializer
+{
+    /**
+     * Serialize the attributes of a session.
+     *
+     * @param data the SessionData for which to serialize the attributes
+     * @return the serialized attributes
+     * @throws IOException if an attribute cannot be serialized
+     */
+    public byte[] serializeAttributes(SessionData data) throws IOException;
+
+    /**
+     * De-serialize the attributes of a session, replacing its attributes.
+     *
+     * @param data the SessionData for which to deserialize the attributes
+     * @param bytes the serialized attributes
+     * @throws IOException if the attributes cannot be deserialized
+     * @throws ClassNotFoundException if the class of an attribute cannot be loaded
+     */
+    public void deserializeAttributes(SessionData data, byte[] bytes) throws IOException, ClassNotFoundException;
+}
@@ -13,7 +13,10 @@
 
 package org.eclipse.jetty.server.session;
 
+import java.util.EventListener;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * SessionDataStore
@@ -55,6 +58,103 @@ public interface SessionDataStore extends SessionDataMap
      */
     public boolean isPassivating();
 
+    /**
+     * True if this store can write out only the attributes of a session that
+     * changed since it was last written out, as reported by {@link SessionData#getDirtyAttributes()}.
+     *
+     * @return true if this store supports delta writes, false if it always writes out whole sessions
+     */
+    public default boolean isDeltaWriteSupported()
+    {
+        return false;
+    }
+
+    /**
+     * True if this store writes out several sessions passed to {@link #storeAll(Map)}
+     * together, for example in a single round trip to a database.
+     *
+     * @return true if this store supports batch writes, false if it stores sessions one by one
+     */
+    public default boolean isBatchWriteSupported()
+    {
+        return false;
+    }
+
+    /**
+     * Store the data of several sessions, as if by {@link #store(String, SessionData)}
+     * for each of them. The default implementation stores the sessions one by one.
+     *
+     * @param sessions the data of the sessions to store, keyed by session id
+     * @throws Exception if unable to write the data of some sessions, the data of
+     * the other sessions may have been written
+     */
+    public default void storeAll(Map<String, SessionData> sessions) throws Exception
+    {
+        Exception failure = null;
+        for (Map.Entry<String, SessionData> entry : sessions.entrySet())
+        {
+            try
+            {
+                store(entry.getKey(), entry.getValue());
+            }
+            catch (Exception e)
+            {
+                if (failure == null)
+                    failure = e;
+                else
+                    failure.addSuppressed(e);
+            }
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    /**
+     * Read the time at which a session was last written out, without loading
+     * its attributes if the store can avoid it. Used by a {@link CachingSessionDataStore}
+     * in near-cache mode to check that its copy of a session is still current.
+     * The default implementation loads the whole session.
+     *
+     * @param id the session id
+     * @return the time at which the session was last written out, or -1 if the session does not exist
+     * @throws Exception if unable to read the session
+     */
+    public default long getLastSaved(String id) throws Exception
+    {
+        SessionData data = load(id);
+        return data == null ? -1 : data.getLastSaved();
+    }
+
+    /**
+     * @return true if {@link #getLastSaved(String)} reads the last save time
+     * without loading the whole session
+     */
+    public default boolean isLastSavedSupported()
+    {
+        return false;
+    }
+
+    /**
+     * Add a listener to be notified when sessions are written out or deleted by other
+     * nodes, so that copies of those sessions cached by this node can be discarded.
+     * The default implementation does not support invalidation notifications.
+     *
+     * @param listener the listener
+     * @return true if the listener was added, false if this store does not send notifications
+     */
+    public default boolean addInvalidationListener(InvalidationListener listener)
+    {
+        return false;
+    }
+
+    /**
+     * @param listener the listener to remove
+     * @see #addInvalidationListener(InvalidationListener)
+     */
+    public default void removeInvalidationListener(InvalidationListener listener)
+    {
+    }
+
     /**
      * Test if data exists for a given session id.
      *
@@ -63,4 +163,105 @@ public interface SessionDataStore extends SessionDataMap
      * @throws Exception if problem checking existence with persistence layer
      */
     public boolean exists(String id) throws Exception;
+
+    /**
+     * True if the asynchronous methods of this store, such as {@link #loadAsync(String)},
+     * do not block the calling thread.
+     *
+     * @return true if this store is asynchronous, false if its asynchronous methods
+     * complete on the calling thread
+     */
+    public default boolean isAsync()
+    {
+        return false;
+    }
+
+    /**
+     * Asynchronous variant of {@link #load(String)}.
+     * The default implementation calls {@link #load(String)} on the calling thread.
+     *
+     * @param id identity of session to load
+     * @return a future completed with the SessionData matching the id, or null
+     */
+    public default CompletableFuture<SessionData> loadAsync(String id)
+    {
+        try
+        {
+            return CompletableFuture.completedFuture(load(id));
+        }
+        catch (Throwable x)
+        {
+            return CompletableFuture.failedFuture(x);
+        }
+    }
+
+    /**
+     * Asynchronous variant of {@link #store(String, SessionData)}.
+     * The default implementation calls {@link #store(String, SessionData)} on the calling thread.
+     *
+     * @param id identity of session to store
+     * @param data info of session to store
+     * @return a future completed when the session data is written out
+     */
+    public default CompletableFuture<Void> storeAsync(String id, SessionData data)
+    {
+        try
+        {
+            store(id, data);
+            return CompletableFuture.completedFuture(null);
+        }
+        catch (Throwable x)
+        {
+            return CompletableFuture.failedFuture(x);
+        }
+    }
+
+    /**
+     * Asynchronous variant of {@link #exists(String)}.
+     * The default implementation calls {@link #exists(String)} on the calling thread.
+     *
+     * @param id identity of session whose existence should be checked
+     * @return a future completed with true if a valid, non-expired session exists
+     */
+    public default CompletableFuture<Boolean> existsAsync(String id)
+    {
+        try
+        {
+            return CompletableFuture.completedFuture(exists(id));
+        }
+        catch (Throwable x)
+        {
+            return CompletableFuture.failedFuture(x);
+        }
+    }
+
+    /**
+     * Asynchronous variant of {@link #getExpired(Set)}.
+     * The default implementation calls {@link #getExpired(Set)} on the calling thread.
+     *
+     * @param candidates keys of sessions that may have expired
+     * @return a future completed with the ids of the expired sessions
+     */
+    public default CompletableFuture<Set<String>> getExpiredAsync(Set<String> candidates)
+    {
+        try
+        {
+            return CompletableFuture.completedFuture(getExpired(candidates));
+        }
+        catch (Throwable x)
+        {
+            return CompletableFuture.failedFuture(x);
+        }
+    }
+
+    /**
+     * A listener of sessions written out or deleted by other nodes.
+     */
+    public interface InvalidationListener extends EventListener
+    {
+        /**
+         * @param id the id of a session that was written out or deleted by another node
+         */
+        void onInvalidation(String id);
+    }
 }
@@ -25,6 +25,8 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Collectors;
 import javax.servlet.DispatcherType;
 import javax.servlet.ServletException;
@@ -180,6 +182,9 @@ public class SessionHandler extends ScopedHandler
     protected SessionCache _sessionCache;
     protected final SampleStatistic _sessionTimeStats = new SampleStatistic();
     protected final CounterStatistic _sessionsCreatedStats = new CounterStatistic();
+    protected final LongAdder _sessionLocks = new LongAdder();
+    protected final SampleStatistic _sessionLockWaitStats = new SampleStatistic();
+    protected boolean _lockFreeReads;
     public Set<SessionTrackingMode> _sessionTrackingModes;
 
     protected boolean _usingURLs;
@@ -353,14 +358,12 @@ public class SessionHandler extends ScopedHandler
             return;
 
         Session s = ((SessionIf)session).getSession();
-        try
+        //an asynchronous SessionDataStore writes the session out without blocking this thread
+        _sessionCache.releaseAsync(s.getId(), s).whenComplete((r, x) ->
         {
-            _sessionCache.release(s.getId(), s);
-        }
-        catch (Exception e)
-        {
-            LOG.warn("Unable to release Session {}", s, e);
-        }
+            if (x != null)
+                LOG.warn("Unable to release Session {}", s, x);
+        });
     }
 
     /**
@@ -670,6 +673,54 @@ public class SessionHandler extends ScopedHandler
         return (int)_sessionsCreatedStats.getCurrent();
     }
 
+    /**
+     * @return true if session attributes are read without taking the lock of the session
+     * @see #setLockFreeReads(boolean)
+     */
+    @ManagedAttribute("true if session attributes are read without locking the session")
+    public boolean isLockFreeReads()
+    {
+        return _lockFreeReads;
+    }
+
+    /**
+     * <p>Sets whether session attributes are read without taking the lock of the session.</p>
+     * <p>The attributes of a session are held in a concurrent map, so concurrent requests
+     * for the same session can read them without serializing on the session lock.
+     * Changes to attributes and lifecycle transitions such as access, completion,
+     * id renewal and invalidation still take the lock.</p>
+     *
+     * @param lockFreeReads true to read session attributes without locking the session
+     */
+    public void setLockFreeReads(boolean lockFreeReads)
+    {
+        _lockFreeReads = lockFreeReads;
+    }
+
+    @ManagedAttribute("number of times a session lock has been acquired")
+    public long getSessionLockAcquisitions()
+    {
+        return _sessionLocks.sum();
+    }
+
+    @ManagedAttribute("number of times a session lock was held by another thread when acquired")
+    public long getSessionLockContentions()
+    {
+        return _sessionLockWaitStats.getCount();
+    }
+
+    @ManagedAttribute("maximum time waited for a contended session lock (in us)")
+    public long getSessionLockWaitTimeMax()
+    {
+        return _sessionLockWaitStats.getMax();
+    }
+
+    @ManagedAttribute("mean time waited for a contended session lock (in us)")
+    public double getSessionLockWaitTimeMean()
+    {
+        return _sessionLockWaitStats.getMean();
+    }
+
     /**
      * @return the URL path parameter name for session id URL rewriting, by default "jsessionid".
      * @see #setSessionIdPathParameterName(String)
@@ -790,6 +841,8 @@ public class SessionHandler extends ScopedHandler
     {
         _sessionsCreatedStats.reset();
         _sessionTimeStats.reset();
+        _sessionLocks.reset();
+        _sessionLockWaitStats.reset();
     }
 
     /**
@@ -971,6 +1024,8 @@ public class SessionHandler extends ScopedHandler
         {
             //Remove the Session object from the session store and any backing data store
             Session session = _sessionCache.delete(id);
+            if (_sessionIdManager instanceof DefaultSessionIdManager)
+                ((DefaultSessionIdManager)_sessionIdManager).removeCachedIdInUse(id);
             if (session != null)
             {
                 if (invalidate)
@@ -1146,6 +1201,18 @@ public class SessionHandler extends ScopedHandler
         _sessionTimeStats.record(round((System.currentTimeMillis() - session.getSessionData().getCreated()) / 1000.0));
     }
 
+    /**
+     * Record the acquisition of the lock of a session.
+     *
+     * @param waitNanos the time waited for the lock, or 0 if the lock was not contended
+     */
+    protected void recordSessionLock(long waitNanos)
+    {
+        _sessionLocks.increment();
+        if (waitNanos > 0)
+            _sessionLockWaitStats.record(TimeUnit.NANOSECONDS.toMicros(waitNanos));
+    }
+
     /**
      * Called by SessionIdManager to remove a session that has been invalidated,
      * either by this context or another context. Also called by
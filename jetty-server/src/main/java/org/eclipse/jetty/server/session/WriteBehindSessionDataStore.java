@@ -0,0 +1,484 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.annotation.ManagedOperation;
+import org.eclipse.jetty.util.component.ContainerLifeCycle;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.eclipse.jetty.util.thread.Scheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * WriteBehindSessionDataStore
+ *
+ * A SessionDataStore that delegates to a pluggable SessionDataStore for actually
+ * storing the session data, but does not write to it on the thread that calls
+ * {@link #store(String, SessionData)}. Instead, the session is queued and written
+ * out by a background thread at most {@link #getDurabilityWindowMs() durabilityWindowMs}
+ * later, together with the other queued sessions, with {@link SessionDataStore#storeAll(Map)}.
+ * Saving a session again while it is still queued does not queue it twice, so that
+ * a session used by many requests in quick succession is only written once.
+ *
+ * The queue is bounded: when {@link #getMaxPending() maxPending} sessions are queued,
+ * sessions are written on the calling thread as if there was no write-behind.
+ * Loads and existence checks see the queued data, and deletes remove it from the queue.
+ *
+ * Sessions that are queued when the server crashes are lost, so the durability
+ * window is the maximum amount of time during which changes to sessions can be lost.
+ * Sessions that fail to be written are logged and queued again, unless queued meanwhile.
+ * Changes made to a session while it is being written out are written out with the
+ * next batch, as the delegate store only marks the session clean if it did not change.
+ */
+@ManagedObject
+public class WriteBehindSessionDataStore extends ContainerLifeCycle implements SessionDataStore
+{
+    private static final Logger LOG = LoggerFactory.getLogger(WriteBehindSessionDataStore.class);
+
+    public static final long DEFAULT_DURABILITY_WINDOW_MS = 1000;
+    public static final int DEFAULT_MAX_PENDING = 1024;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 128;
+
+    /**
+     * The actual store for the session data
+     */
+    protected SessionDataStore _store;
+
+    private final AutoLock _lock = new AutoLock();
+    private final AutoLock _writeLock = new AutoLock();
+    private final Map<String, SessionData> _pending = new LinkedHashMap<>(); //guarded by _lock, oldest first
+    private final LongAdder _stores = new LongAdder();
+    private final LongAdder _coalesced = new LongAdder();
+    private final LongAdder _writeThroughs = new LongAdder();
+    private final LongAdder _batches = new LongAdder();
+    private final LongAdder _failures = new LongAdder();
+    private final Runnable _flusher = this::onFlush;
+    private Scheduler.Task _task; //guarded by _lock
+    private boolean _flushing; //guarded by _lock
+    private long _durabilityWindowMs = DEFAULT_DURABILITY_WINDOW_MS;
+    private int _maxPending = DEFAULT_MAX_PENDING;
+    private int _maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+    private Scheduler _scheduler;
+    private Executor _executor;
+
+    /**
+     * @param store the actual store for the the session data
+     */
+    public WriteBehindSessionDataStore(SessionDataStore store)
+    {
+        _store = store;
+        addBean(_store, true);
+    }
+
+    /**
+     * @return the delegate session store
+     */
+    public SessionDataStore getSessionStore()
+    {
+        return _store;
+    }
+
+    /**
+     * @return the maximum time in ms that a session is queued before being written out
+     */
+    @ManagedAttribute(value = "max time in ms that a session is queued before being written", readonly = true)
+    public long getDurabilityWindowMs()
+    {
+        return _durabilityWindowMs;
+    }
+
+    /**
+     * @param durabilityWindowMs the maximum time in ms that a session is queued before being written out
+     */
+    public void setDurabilityWindowMs(long durabilityWindowMs)
+    {
+        _durabilityWindowMs = durabilityWindowMs;
+    }
+
+    /**
+     * @return the maximum number of queued sessions, after which sessions are written on the calling thread
+     */
+    @ManagedAttribute(value = "max number of queued sessions", readonly = true)
+    public int getMaxPending()
+    {
+        return _maxPending;
+    }
+
+    /**
+     * @param maxPending the maximum number of queued sessions, after which sessions are written on the calling thread
+     */
+    public void setMaxPending(int maxPending)
+    {
+        _maxPending = maxPending;
+    }
+
+    /**
+     * @return the maximum number of sessions written out together
+     */
+    @ManagedAttribute(value = "max number of sessions written together", readonly = true)
+    public int getMaxBatchSize()
+    {
+        return _maxBatchSize;
+    }
+
+    /**
+     * @param maxBatchSize the maximum number of sessions written out together;
+     * a batch is written as soon as that many sessions are queued
+     */
+    public void setMaxBatchSize(int maxBatchSize)
+    {
+        _maxBatchSize = maxBatchSize;
+    }
+
+    public Scheduler getScheduler()
+    {
+        return _scheduler;
+    }
+
+    /**
+     * @param scheduler the scheduler for writing out queued sessions,
+     * by default the scheduler of the SessionHandler
+     */
+    public void setScheduler(Scheduler scheduler)
+    {
+        _scheduler = scheduler;
+    }
+
+    public Executor getExecutor()
+    {
+        return _executor;
+    }
+
+    /**
+     * @param executor the executor that writes out queued sessions,
+     * by default the thread pool of the Server
+     */
+    public void setExecutor(Executor executor)
+    {
+        _executor = executor;
+    }
+
+    @ManagedAttribute(value = "number of sessions queued", readonly = true)
+    public int getPending()
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            return _pending.size();
+        }
+    }
+
+    @ManagedAttribute(value = "number of session saves", readonly = true)
+    public long getStores()
+    {
+        return _stores.sum();
+    }
+
+    @ManagedAttribute(value = "number of session saves coalesced with a queued save", readonly = true)
+    public long getCoalesced()
+    {
+        return _coalesced.sum();
+    }
+
+    @ManagedAttribute(value = "number of session saves written on the calling thread", readonly = true)
+    public long getWriteThroughs()
+    {
+        return _writeThroughs.sum();
+    }
+
+    @ManagedAttribute(value = "number of batches written", readonly = true)
+    public long getBatches()
+    {
+        return _batches.sum();
+    }
+
+    @ManagedAttribute(value = "number of batches that failed to be written", readonly = true)
+    public long getFailures()
+    {
+        return _failures.sum();
+    }
+
+    @ManagedOperation(value = "resets statistics", impact = "ACTION")
+    public void resetStats()
+    {
+        _stores.reset();
+        _coalesced.reset();
+        _writeThroughs.reset();
+        _batches.reset();
+        _failures.reset();
+    }
+
+    @Override
+    public void initialize(SessionContext context) throws Exception
+    {
+        //pass through
+        _store.initialize(context);
+
+        SessionHandler handler = context.getSessionHandler();
+        if (_scheduler == null && handler != null)
+            _scheduler = handler.getScheduler();
+        if (_executor == null && handler != null && handler.getServer() != null)
+            _executor = handler.getServer().getThreadPool();
+    }
+
+    @Override
+    protected void doStart() throws Exception
+    {
+        if (_scheduler == null || _executor == null)
+            throw new IllegalStateException("No Scheduler or Executor");
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception
+    {
+        //write out everything that is queued before stopping the delegate
+        try (AutoLock l = _lock.lock())
+        {
+            if (_task != null)
+                _task.cancel();
+            _task = null;
+        }
+        flush();
+        super.doStop();
+    }
+
+    @Override
+    public SessionData load(String id) throws Exception
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            SessionData pending = _pending.get(id);
+            if (pending != null)
+                return pending;
+        }
+
+        return _store.load(id);
+    }
+
+    @Override
+    public void store(String id, SessionData data) throws Exception
+    {
+        if (data == null)
+            return;
+
+        _stores.increment();
+        boolean writeThrough = false;
+        boolean flushNow = false;
+        try (AutoLock l = _lock.lock())
+        {
+            if (_pending.containsKey(id))
+            {
+                _pending.put(id, data);
+                _coalesced.increment();
+                return;
+            }
+
+            if (!isRunning() || _pending.size() >= _maxPending)
+            {
+                writeThrough = true;
+            }
+            else
+            {
+                _pending.put(id, data);
+                if (_pending.size() >= _maxBatchSize && !_flushing)
+                {
+                    if (_task != null)
+                        _task.cancel();
+                    _task = null;
+                    _flushing = true;
+                    flushNow = true;
+                }
+                else if (_task == null && !_flushing)
+                {
+                    _task = _scheduler.schedule(this::onDurabilityWindow, _durabilityWindowMs, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+
+        if (writeThrough)
+        {
+            if (LOG.isDebugEnabled())
+                LOG.debug("Queue full, writing session {} on calling thread", id);
+            _writeThroughs.increment();
+            _store.store(id, data);
+        }
+        else if (flushNow)
+        {
+            _executor.execute(_flusher);
+        }
+    }
+
+    private void onDurabilityWindow()
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            _task = null;
+            if (_flushing || _pending.isEmpty())
+                return;
+            _flushing = true;
+        }
+        _executor.execute(_flusher);
+    }
+
+    private void onFlush()
+    {
+        try
+        {
+            flush();
+        }
+        finally
+        {
+            try (AutoLock l = _lock.lock())
+            {
+                _flushing = false;
+                if (_task == null && !_pending.isEmpty() && isRunning())
+                    _task = _scheduler.schedule(this::onDurabilityWindow, _durabilityWindowMs, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Writes out all the queued sessions, in batches of at most {@link #getMaxBatchSize() maxBatchSize},
+     * until a batch fails to be written.
+     */
+    @ManagedOperation(value = "write out all the queued sessions", impact = "ACTION")
+    public void flush()
+    {
+        while (flushBatch())
+        {
+            // keep flushing
+        }
+    }
+
+    /**
+     * @return whether sessions were written out without failure
+     */
+    private boolean flushBatch()
+    {
+        try (AutoLock w = _writeLock.lock())
+        {
+            Map<String, SessionData> batch = new LinkedHashMap<>();
+            try (AutoLock l = _lock.lock())
+            {
+                Iterator<Map.Entry<String, SessionData>> iterator = _pending.entrySet().iterator();
+                while (iterator.hasNext() && batch.size() < _maxBatchSize)
+                {
+                    Map.Entry<String, SessionData> entry = iterator.next();
+                    batch.put(entry.getKey(), entry.getValue());
+                    iterator.remove();
+                }
+            }
+
+            if (batch.isEmpty())
+                return false;
+
+            if (LOG.isDebugEnabled())
+                LOG.debug("Writing {} sessions", batch.size());
+
+            _batches.increment();
+            try
+            {
+                _store.storeAll(batch);
+                return true;
+            }
+            catch (Exception e)
+            {
+                _failures.increment();
+                LOG.warn("Unable to write {} sessions", batch.size(), e);
+
+                //the sessions are still dirty, so queue them again to be written with the next batch
+                try (AutoLock l = _lock.lock())
+                {
+                    batch.forEach(_pending::putIfAbsent);
+                }
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public boolean delete(String id) throws Exception
+    {
+        boolean pending;
+        try (AutoLock l = _lock.lock())
+        {
+            pending = _pending.remove(id) != null;
+        }
+
+        //wait for a write in progress, so that it does not store the session again after it is deleted
+        try (AutoLock w = _writeLock.lock())
+        {
+            //the session is queued again if the write failed
+            try (AutoLock l = _lock.lock())
+            {
+                pending |= _pending.remove(id) != null;
+            }
+            return _store.delete(id) || pending;
+        }
+    }
+
+    @Override
+    public Set<String> getExpired(Set<String> candidates)
+    {
+        //write out the queued sessions so that the delegate store sees their latest expiry
+        flush();
+        return _store.getExpired(candidates);
+    }
+
+    @Override
+    public boolean exists(String id) throws Exception
+    {
+        try (AutoLock l = _lock.lock())
+        {
+            if (_pending.containsKey(id))
+                return true;
+        }
+
+        return _store.exists(id);
+    }
+
+    @Override
+    public boolean isPassivating()
+    {
+        return _store.isPassivating();
+    }
+
+    @Override
+    public boolean isDeltaWriteSupported()
+    {
+        return _store.isDeltaWriteSupported();
+    }
+
+    @Override
+    public SessionData newSessionData(String id, long created, long accessed, long lastAccessed, long maxInactiveMs)
+    {
+        return _store.newSessionData(id, created, accessed, lastAccessed, maxInactiveMs);
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[window=%d,pending=%d]", getClass().getSimpleName(), hashCode(), _durabilityWindowMs, getPending());
+    }
+}
@@ -0,0 +1,89 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+/**
+ * WriteBehindSessionDataStoreFactory
+ */
+public class WriteBehindSessionDataStoreFactory extends AbstractSessionDataStoreFactory
+{
+    /**
+     * The SessionDataStore that will store session data.
+     */
+    protected SessionDataStoreFactory _sessionStoreFactory;
+
+    protected long _durabilityWindowMs = WriteBehindSessionDataStore.DEFAULT_DURABILITY_WINDOW_MS;
+
+    protected int _maxPending = WriteBehindSessionDataStore.DEFAULT_MAX_PENDING;
+
+    protected int _maxBatchSize = WriteBehindSessionDataStore.DEFAULT_MAX_BATCH_SIZE;
+
+    /**
+     * @param factory The factory for the actual SessionDataStore that the
+     * WriteBehindSessionDataStore will delegate to
+     */
+    public void setSessionStoreFactory(SessionDataStoreFactory factory)
+    {
+        _sessionStoreFactory = factory;
+    }
+
+    public long getDurabilityWindowMs()
+    {
+        return _durabilityWindowMs;
+    }
+
+    /**
+     * @param durabilityWindowMs the maximum time in ms that a session is queued before being written out
+     */
+    public void setDurabilityWindowMs(long durabilityWindowMs)
+    {
+        _durabilityWindowMs = durabilityWindowMs;
+    }
+
+    public int getMaxPending()
+    {
+        return _maxPending;
+    }
+
+    /**
+     * @param maxPending the maximum number of queued sessions
+     */
+    public void setMaxPending(int maxPending)
+    {
+        _maxPending = maxPending;
+    }
+
+    public int getMaxBatchSize()
+    {
+        return _maxBatchSize;
+    }
+
+    /**
+     * @param maxBatchSize the maximum number of sessions written out together
+     */
+    public void setMaxBatchSize(int maxBatchSize)
+    {
+        _maxBatchSize = maxBatchSize;
+    }
+
+    @Override
+    public SessionDataStore getSessionDataStore(SessionHandler handler) throws Exception
+    {
+        WriteBehindSessionDataStore store = new WriteBehindSessionDataStore(_sessionStoreFactory.getSessionDataStore(handler));
+        store.setDurabilityWindowMs(getDurabilityWindowMs());
+        store.setMaxPending(getMaxPending());
+        store.setMaxBatchSize(getMaxBatchSize());
+        return store;
+    }
+}
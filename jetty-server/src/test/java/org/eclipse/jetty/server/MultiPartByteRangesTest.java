@@ -0,0 +1,79 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.ResourceHttpContent;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDir;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDirExtension;
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.MultiPartOutputStream;
+import org.eclipse.jetty.util.resource.PathResource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@ExtendWith(WorkDirExtension.class)
+public class MultiPartByteRangesTest
+{
+    public WorkDir workDir;
+
+    @Test
+    public void testSameBytesAsMultiPartOutputStream() throws Exception
+    {
+        String text = "0123456789abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+        Path file = workDir.getEmptyPathDir().resolve("content.txt");
+        Files.write(file, text.getBytes(StandardCharsets.ISO_8859_1));
+        ResourceHttpContent content = new ResourceHttpContent(new PathResource(file), "text/plain");
+        List<InclusiveByteRange> ranges = List.of(
+            new InclusiveByteRange(20, 29),
+            new InclusiveByteRange(0, 4),
+            new InclusiveByteRange(60, 61));
+
+        MultiPartByteRanges byteRanges = new MultiPartByteRanges(content, ranges, "BOUNDARY");
+
+        // The bytes written by MultiPartOutputStream, as previously done by ResourceService.
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        MultiPartOutputStream multi = new MultiPartOutputStream(expected, "BOUNDARY");
+        for (InclusiveByteRange range : ranges)
+        {
+            multi.startPart("text/plain", new String[]{HttpHeader.CONTENT_RANGE + ": " + range.toHeaderRangeString(text.length())});
+            multi.write(text.substring((int)range.getFirst(), (int)range.getLast() + 1).getBytes(StandardCharsets.ISO_8859_1));
+        }
+        multi.close();
+
+        ByteArrayOutputStream actual = new ByteArrayOutputStream();
+        for (int i = 0; i < ranges.size(); i++)
+        {
+            InclusiveByteRange range = ranges.get(i);
+            actual.write(BufferUtil.toArray(byteRanges.getPartHeader(i)));
+            actual.write(text.substring((int)range.getFirst(), (int)range.getLast() + 1).getBytes(StandardCharsets.ISO_8859_1));
+        }
+        actual.write(BufferUtil.toArray(byteRanges.getTrailer()));
+
+        assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+        assertEquals(expected.size(), byteRanges.getContentLength());
+
+        // The precomputed buffers can be read multiple times.
+        assertEquals(byteRanges.getPartHeader(0), byteRanges.getPartHeader(0));
+    }
+}
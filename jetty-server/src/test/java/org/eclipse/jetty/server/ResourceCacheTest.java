@@ -17,11 +17,19 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
 
 import org.eclipse.jetty.http.CompressedContentFormat;
 import org.eclipse.jetty.http.HttpContent;
@@ -31,6 +39,8 @@ import org.eclipse.jetty.toolchain.test.FS;
 import org.eclipse.jetty.toolchain.test.jupiter.WorkDir;
 import org.eclipse.jetty.toolchain.test.jupiter.WorkDirExtension;
 import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.PathWatcher;
 import org.eclipse.jetty.util.resource.PathResource;
 import org.eclipse.jetty.util.resource.Resource;
 import org.eclipse.jetty.util.resource.ResourceCollection;
@@ -41,6 +51,11 @@ import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.not;
 import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -342,6 +357,409 @@ public class ResourceCacheTest
         cache.flushCache();
     }
 
+    @Test
+    public void testFrequencyAdmission() throws Exception
+    {
+        Path basePath = workDir.getEmptyPathDir();
+        for (int i = 0; i < 5; i++)
+        {
+            makeFile(basePath.resolve("hot-" + i + ".txt"), "hot " + i);
+        }
+        for (int i = 0; i < 100; i++)
+        {
+            makeFile(basePath.resolve("scan-" + i + ".txt"), "scan " + i);
+        }
+
+        Resource directory = new PathResource(basePath);
+        CachedContentFactory cache = new CachedContentFactory(null, directory, new MimeTypes(), false, false, CompressedContentFormat.NONE);
+        cache.setMaxCachedFiles(10);
+        cache.setFrequencyAdmission(true);
+        assertTrue(cache.isFrequencyAdmission());
+
+        // Make the hot files popular.
+        for (int round = 0; round < 5; round++)
+        {
+            for (int i = 0; i < 5; i++)
+            {
+                assertEquals("hot " + i, getContent(cache, "hot-" + i + ".txt"));
+            }
+        }
+        assertEquals(20, cache.getHits());
+        assertEquals(5, cache.getMisses());
+
+        // A scan of files accessed only once must not flush the hot files.
+        for (int i = 0; i < 100; i++)
+        {
+            assertEquals("scan " + i, getContent(cache, "scan-" + i + ".txt"));
+        }
+        assertThat(cache.getCachedFiles(), is(10));
+        assertThat(cache.getAdmissionRejects(), greaterThan(0L));
+
+        cache.resetStats();
+        for (int i = 0; i < 5; i++)
+        {
+            assertEquals("hot " + i, getContent(cache, "hot-" + i + ".txt"));
+        }
+        assertEquals(5, cache.getHits());
+        assertEquals(0, cache.getMisses());
+
+        cache.flushCache();
+        assertEquals(0, cache.getCachedSize());
+        assertEquals(0, cache.getCachedFiles());
+    }
+
+    @Test
+    public void testConcurrentHits() throws Exception
+    {
+        Path basePath = workDir.getEmptyPathDir();
+        for (int i = 0; i < 5; i++)
+        {
+            makeFile(basePath.resolve("hot-" + i + ".txt"), "hot " + i);
+        }
+        for (int i = 0; i < 50; i++)
+        {
+            makeFile(basePath.resolve("scan-" + i + ".txt"), "scan " + i);
+        }
+
+        Resource directory = new PathResource(basePath);
+        CachedContentFactory cache = new CachedContentFactory(null, directory, new MimeTypes(), false, false, CompressedContentFormat.NONE);
+        cache.setMaxCachedFiles(10);
+        cache.setFrequencyAdmission(true);
+
+        // Hit the hot files from many threads, without contending on the cache lock.
+        int threads = 8;
+        int iterations = 2000;
+        AtomicInteger failures = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++)
+        {
+            Thread worker = new Thread(() ->
+            {
+                try
+                {
+                    for (int i = 0; i < iterations; i++)
+                    {
+                        int n = i % 5;
+                        if (!("hot " + n).equals(getContent(cache, "hot-" + n + ".txt")))
+                            failures.incrementAndGet();
+                    }
+                }
+                catch (Throwable x)
+                {
+                    failures.incrementAndGet();
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers)
+        {
+            worker.join();
+        }
+        assertEquals(0, failures.get());
+        assertEquals(threads * iterations, cache.getHits() + cache.getMisses());
+        assertThat(cache.getCachedFiles(), is(5));
+
+        // The buffered hits make the hot files popular enough to survive a scan.
+        for (int i = 0; i < 50; i++)
+        {
+            assertEquals("scan " + i, getContent(cache, "scan-" + i + ".txt"));
+        }
+        assertThat(cache.getCachedFiles(), is(10));
+        cache.resetStats();
+        for (int i = 0; i < 5; i++)
+        {
+            assertEquals("hot " + i, getContent(cache, "hot-" + i + ".txt"));
+        }
+        assertEquals(0, cache.getMisses());
+
+        cache.flushCache();
+        assertEquals(0, cache.getCachedFiles());
+    }
+
+    @Test
+    public void testCompressedVariants() throws Exception
+    {
+        Path basePath = workDir.getEmptyPathDir();
+        String text = "The quick brown fox jumps over the lazy dog.\n".repeat(100);
+        makeFile(basePath.resolve("text.txt"), text);
+        makeFile(basePath.resolve("image.png"), text);
+        makeFile(basePath.resolve("small.txt"), "small");
+
+        Resource directory = new PathResource(basePath);
+        CachedContentFactory cache = new CachedContentFactory(null, directory, new MimeTypes(), false, true, CompressedContentFormat.NONE);
+        cache.setCompressVariants(true);
+
+        HttpContent content = cache.getContent("text.txt", 4096);
+        Map<CompressedContentFormat, ? extends HttpContent> variants = content.getPrecompressedContents();
+        assertThat(variants, is(not(nullValue())));
+        HttpContent variant = variants.get(CompressedContentFormat.GZIP);
+        assertThat(variant, is(not(nullValue())));
+        assertThat(variant.getContentEncodingValue(), is("gzip"));
+        assertThat(variant.getContentLengthValue(), lessThan(content.getContentLengthValue()));
+        assertThat(variant.getETagValue(), is(CompressedContentFormat.GZIP.etag(content.getETagValue())));
+        assertEquals(1, cache.getCompressedVariants());
+        assertEquals(variant.getContentLengthValue(), cache.getCompressedVariantsSize());
+        // The compressed bytes are not accounted in the cache size.
+        assertEquals(0, cache.getCachedSize());
+
+        try (InputStream in = new GZIPInputStream(variant.getInputStream()))
+        {
+            assertEquals(text, IO.toString(in, UTF_8));
+        }
+
+        // The variant is compressed only once.
+        assertThat(cache.getContent("text.txt", 4096).getPrecompressedContents().get(CompressedContentFormat.GZIP), sameInstance(variant));
+
+        // Not a compressible mime type.
+        assertThat(cache.getContent("image.png", 4096).getPrecompressedContents(), nullValue());
+        // Too small to be worth compressing.
+        assertThat(cache.getContent("small.txt", 4096).getPrecompressedContents(), nullValue());
+
+        cache.flushCache();
+        assertEquals(0, cache.getCompressedVariants());
+        assertEquals(0, cache.getCompressedVariantsSize());
+    }
+
+    @Test
+    public void testCompressedVariantsWithoutETags() throws Exception
+    {
+        Path basePath = workDir.getEmptyPathDir();
+        makeFile(basePath.resolve("text.txt"), "The quick brown fox jumps over the lazy dog.\n".repeat(100));
+
+        Resource directory = new PathResource(basePath);
+        CachedContentFactory cache = new CachedContentFactory(null, directory, new MimeTypes(), false, false, CompressedContentFormat.NONE);
+        cache.setCompressVariants(true);
+
+        HttpContent content = cache.getContent("text.txt", 4096);
+        assertThat(content.getETag(), nullValue());
+        HttpContent variant = content.getPrecompressedContents().get(CompressedContentFormat.GZIP);
+        assertThat(variant, is(not(nullValue())));
+        assertThat(variant.getETag(), nullValue());
+        assertThat(variant.getETagValue(), nullValue());
+
+        cache.flushCache();
+    }
+
+    @Test
+    public void testMappedFiles() throws Exception
+    {
+        Path basePath = workDir.getEmptyPathDir();
+        makeFile(basePath.resolve("small.txt"), "small");
+        for (int i = 0; i < 3; i++)
+        {
+            makeFile(basePath.resolve("large-" + i + ".txt"), String.valueOf(i).repeat(100));
+        }
+
+        Resource directory = new PathResource(basePath);
+        CachedContentFactory cache = new CachedContentFactory(null, directory, new MimeTypes(), true, false, CompressedContentFormat.NONE);
+        cache.setMinMappedFileSize(50);
+        cache.setMaxMappedSize(250);
+
+        // Small files are cached in direct buffers.
+        assertEquals("small", BufferUtil.toString(cache.getContent("small.txt", 4096).getDirectBuffer()));
+        assertEquals(5, cache.getCachedSize());
+        assertEquals(0, cache.getMappedFiles());
+
+        // Large files are mapped, within the mapped size budget.
+        for (int i = 0; i < 3; i++)
+        {
+            HttpContent content = cache.getContent("large-" + i + ".txt", 4096);
+            assertEquals(String.valueOf(i).repeat(100), BufferUtil.toString(content.getDirectBuffer()));
+        }
+        assertEquals(5, cache.getCachedSize());
+        assertEquals(2, cache.getMappedFiles());
+        assertEquals(200, cache.getMappedSize());
+        assertEquals(1, cache.getUnmaps());
+        // Unmapped files remain cached.
+        assertEquals(4, cache.getCachedFiles());
+
+        // A changed file is reloaded in place and mapped again on its next use.
+        Files.writeString(basePath.resolve("large-2.txt"), "x".repeat(150));
+        Files.setLastModifiedTime(basePath.resolve("large-2.txt"), FileTime.fromMillis(System.currentTimeMillis() + 2000));
+        HttpContent content = cache.getContent("large-2.txt", 4096);
+        assertEquals(150, content.getContentLengthValue());
+        assertEquals(4, cache.getCachedFiles());
+        assertEquals("x".repeat(150), BufferUtil.toString(content.getDirectBuffer()));
+        assertThat(cache.getMappedSize(), lessThanOrEqualTo(250L));
+        assertThat(cache.getMappedFiles(), lessThanOrEqualTo(2));
+
+        cache.flushCache();
+        assertEquals(0, cache.getCachedSize());
+        assertEquals(0, cache.getCachedFiles());
+        assertEquals(0, cache.getMappedSize());
+        assertEquals(0, cache.getMappedFiles());
+    }
+
+    @Test
+    public void testConcurrentMapAndUnmap() throws Exception
+    {
+        Path basePath = workDir.getEmptyPathDir();
+        for (int i = 0; i < 8; i++)
+        {
+            makeFile(basePath.resolve("large-" + i + ".txt"), String.valueOf(i).repeat(100));
+        }
+
+        Resource directory = new PathResource(basePath);
+        CachedContentFactory cache = new CachedContentFactory(null, directory, new MimeTypes(), true, false, CompressedContentFormat.NONE);
+        cache.setMinMappedFileSize(50);
+        cache.setMaxMappedSize(250);
+
+        // Map files from many threads while they are unmapped to stay within
+        // the mapped size budget, and invalidated by flushes of the cache.
+        AtomicInteger failures = new AtomicInteger();
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < 8; t++)
+        {
+            int id = t;
+            Thread worker = new Thread(() ->
+            {
+                try
+                {
+                    for (int i = 0; i < 2000; i++)
+                    {
+                        int n = (id + i) % 8;
+                        HttpContent content = cache.getContent("large-" + n + ".txt", 4096);
+                        if (!String.valueOf(n).repeat(100).equals(BufferUtil.toString(content.getDirectBuffer())))
+                            failures.incrementAndGet();
+                        if (id == 0 && i % 100 == 0)
+                            cache.flushCache();
+                    }
+                }
+                catch (Throwable x)
+                {
+                    failures.incrementAndGet();
+                }
+            });
+            workers.add(worker);
+            worker.start();
+        }
+        for (Thread worker : workers)
+        {
+            worker.join(TimeUnit.SECONDS.toMillis(30));
+            assertThat(worker.isAlive(), is(false));
+        }
+        assertEquals(0, failures.get());
+        assertThat(cache.getMappedSize(), lessThanOrEqualTo(250L));
+        assertEquals(cache.getMappedFiles() * 100L, cache.getMappedSize());
+
+        cache.flushCache();
+        assertEquals(0, cache.getCachedFiles());
+        assertEquals(0, cache.getMappedSize());
+        assertEquals(0, cache.getMappedFiles());
+    }
+
+    @Test
+    public void testPathWatcherInvalidation() throws Exception
+    {
+        Path basePath = workDir.getEmptyPathDir();
+        Path file = basePath.resolve("file.txt");
+        makeFile(file, "file");
+        makeFile(basePath.resolve("text.txt"), "text");
+        makeFile(basePath.resolve("text.txt.gz"), "gz");
+
+        Resource directory = new PathResource(basePath);
+        CachedContentFactory cache = new CachedContentFactory(null, directory, new MimeTypes(), false, false, new CompressedContentFormat[]{CompressedContentFormat.GZIP});
+        PathWatcher pathWatcher = new PathWatcher();
+        pathWatcher.setNotifyExistingOnStart(false);
+        pathWatcher.setUpdateQuietTime(100, TimeUnit.MILLISECONDS);
+        PathWatcher.Config config = new PathWatcher.Config(basePath);
+        config.setRecurseDepth(PathWatcher.Config.UNLIMITED_DEPTH);
+        pathWatcher.watch(config);
+        cache.setPathWatcher(pathWatcher);
+
+        HttpContent content = cache.getContent("file.txt", 4096);
+        HttpContent text = cache.getContent("text.txt", 4096);
+        assertThat(text.getPrecompressedContents().get(CompressedContentFormat.GZIP), is(not(nullValue())));
+        assertEquals(3, cache.getWatchedFiles());
+
+        // Cache hits do not check the file, so changes are only seen through the watcher.
+        Files.writeString(file, "changed");
+        assertThat(cache.getContent("file.txt", 4096), sameInstance(content));
+
+        pathWatcher.start();
+        try
+        {
+            Files.writeString(file, "changed again");
+            await(() -> cache.getContent("file.txt", 4096) != content);
+            assertEquals("changed again", BufferUtil.toString(cache.getContent("file.txt", 4096).getIndirectBuffer()));
+
+            // A change of the precompressed file invalidates the content too.
+            Files.writeString(basePath.resolve("text.txt.gz"), "new gz");
+            await(() -> cache.getContent("text.txt", 4096) != text);
+
+            Files.delete(file);
+            await(() -> cache.getContent("file.txt", 4096) == null);
+        }
+        finally
+        {
+            pathWatcher.stop();
+        }
+
+        cache.flushCache();
+        assertEquals(0, cache.getCachedFiles());
+        assertEquals(0, cache.getWatchedFiles());
+    }
+
+    private static void await(Callable<Boolean> condition) throws Exception
+    {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.call())
+        {
+            assertThat("timed out", System.nanoTime() < end);
+            Thread.sleep(50);
+        }
+    }
+
+    @Test
+    public void testStrongETags() throws Exception
+    {
+        // Two servers with the same content, but different file times.
+        Path basePath = workDir.getEmptyPathDir();
+        Path basePath1 = basePath.resolve("node1");
+        Path basePath2 = basePath.resolve("node2");
+        Files.createDirectories(basePath1);
+        Files.createDirectories(basePath2);
+        String text = "The quick brown fox jumps over the lazy dog.\n".repeat(100);
+        makeFile(basePath1.resolve("text.txt"), text);
+        makeFile(basePath2.resolve("text.txt"), text);
+        Files.setLastModifiedTime(basePath2.resolve("text.txt"), FileTime.fromMillis(System.currentTimeMillis() - 60_000));
+
+        CachedContentFactory cache1 = new CachedContentFactory(null, new PathResource(basePath1), new MimeTypes(), false, true, CompressedContentFormat.NONE);
+        cache1.setETagDigestAlgorithm("SHA-256");
+        cache1.setCompressVariants(true);
+        List<Runnable> tasks = new ArrayList<>();
+        cache1.setExecutor(tasks::add);
+        CachedContentFactory cache2 = new CachedContentFactory(null, new PathResource(basePath2), new MimeTypes(), false, true, CompressedContentFormat.NONE);
+        cache2.setETagDigestAlgorithm("SHA-256");
+
+        // The weak ETag is used until the digest is computed in the background.
+        HttpContent content1 = cache1.getContent("text.txt", 4096);
+        assertThat(content1.getETagValue(), startsWith("W/"));
+        tasks.forEach(Runnable::run);
+        tasks.clear();
+        String etag = content1.getETagValue();
+        assertThat(etag, startsWith("\""));
+
+        // Without executor, the digest is computed by the first request.
+        HttpContent content2 = cache2.getContent("text.txt", 4096);
+        assertThat(content2.getETagValue(), is(etag));
+        assertThat(cache2.getContent("text.txt", 4096).getETagValue(), is(etag));
+
+        // Compressed variants have a strong ETag derived from the content ETag.
+        content1.getPrecompressedContents();
+        tasks.forEach(Runnable::run);
+        HttpContent variant = content1.getPrecompressedContents().get(CompressedContentFormat.GZIP);
+        assertThat(variant.getETagValue(), is(CompressedContentFormat.GZIP.etag(etag)));
+
+        // A new version of the file has a new ETag.
+        Files.writeString(basePath2.resolve("text.txt"), text + "more");
+        assertThat(cache2.getContent("text.txt", 4096).getETagValue(), not(is(etag)));
+
+        cache1.flushCache();
+        cache2.flushCache();
+    }
+
     @Test
     public void testNoextension() throws Exception
     {
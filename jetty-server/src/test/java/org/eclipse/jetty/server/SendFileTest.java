@@ -0,0 +1,166 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.http.HttpStatus;
+import org.eclipse.jetty.http.HttpTester;
+import org.eclipse.jetty.http.ResourceHttpContent;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDir;
+import org.eclipse.jetty.toolchain.test.jupiter.WorkDirExtension;
+import org.eclipse.jetty.util.Callback;
+import org.eclipse.jetty.util.resource.PathResource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@ExtendWith(WorkDirExtension.class)
+public class SendFileTest
+{
+    public WorkDir workDir;
+
+    private Server server;
+    private ServerConnector connector;
+    private Path file;
+    private byte[] content;
+    private final AtomicBoolean sentFile = new AtomicBoolean();
+
+    @BeforeEach
+    public void setUp() throws Exception
+    {
+        // Large enough to congest the socket, so that the transfer resumes on writable events.
+        content = new byte[4 * 1024 * 1024];
+        for (int i = 0; i < content.length; i++)
+        {
+            content[i] = (byte)('A' + i % 26);
+        }
+        file = workDir.getEmptyPathDir().resolve("content.bin");
+        Files.write(file, content);
+
+        server = new Server();
+        HttpConnectionFactory http = new HttpConnectionFactory();
+        http.getHttpConfiguration().setUseSendFile(true);
+        connector = new ServerConnector(server, http);
+        server.addConnector(connector);
+        server.setHandler(new AbstractHandler()
+        {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException
+            {
+                baseRequest.setHandled(true);
+                HttpOutput output = baseRequest.getResponse().getHttpOutput();
+                switch (target)
+                {
+                    case "/blocking":
+                    {
+                        response.setContentLengthLong(content.length);
+                        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+                        {
+                            sentFile.set(output.sendFile(channel, 0, content.length));
+                        }
+                        break;
+                    }
+                    case "/range":
+                    {
+                        response.setContentLength(1000);
+                        output.write("0123456789".getBytes(StandardCharsets.US_ASCII));
+                        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ))
+                        {
+                            sentFile.set(output.sendFile(channel, 100, 990));
+                        }
+                        break;
+                    }
+                    case "/async":
+                    {
+                        response.setContentLengthLong(content.length);
+                        AsyncContext asyncContext = request.startAsync();
+                        output.sendContent(new ResourceHttpContent(new PathResource(file), "application/octet-stream", 1), Callback.from(asyncContext::complete));
+                        break;
+                    }
+                    default:
+                        response.setStatus(HttpStatus.NOT_FOUND_404);
+                        break;
+                }
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception
+    {
+        server.stop();
+    }
+
+    private HttpTester.Response get(String target) throws IOException
+    {
+        try (Socket socket = new Socket("localhost", connector.getLocalPort()))
+        {
+            OutputStream output = socket.getOutputStream();
+            output.write(("GET " + target + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+            output.flush();
+            return HttpTester.parseResponse(socket.getInputStream());
+        }
+    }
+
+    @Test
+    public void testBlockingSendFile() throws Exception
+    {
+        HttpTester.Response response = get("/blocking");
+        assertThat(response.getStatus(), is(HttpStatus.OK_200));
+        assertTrue(sentFile.get());
+        assertArrayEquals(content, response.getContentBytes());
+    }
+
+    @Test
+    public void testSendFileRangeAfterWrite() throws Exception
+    {
+        HttpTester.Response response = get("/range");
+        assertThat(response.getStatus(), is(HttpStatus.OK_200));
+        assertTrue(sentFile.get());
+        byte[] bytes = response.getContentBytes();
+        assertThat(bytes.length, is(1000));
+        assertThat(new String(bytes, 0, 10, StandardCharsets.US_ASCII), is("0123456789"));
+        assertArrayEquals(Arrays.copyOfRange(content, 100, 1090), Arrays.copyOfRange(bytes, 10, 1000));
+    }
+
+    @Test
+    public void testAsyncSendContent() throws Exception
+    {
+        HttpTester.Response response = get("/async");
+        assertThat(response.getStatus(), is(HttpStatus.OK_200));
+        assertArrayEquals(content, response.getContentBytes());
+    }
+}
@@ -0,0 +1,77 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.handler.gzip;
+
+import java.nio.ByteBuffer;
+
+import org.eclipse.jetty.util.BufferUtil;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class GzipResponseCacheTest
+{
+    @Test
+    public void testKeys()
+    {
+        ByteBuffer body = BufferUtil.toBuffer("{\"feature\":true}");
+        assertEquals(GzipResponseCache.Key.from(body, "gzip"), GzipResponseCache.Key.from(body.duplicate(), "gzip"));
+        assertNotEquals(GzipResponseCache.Key.from(body, "gzip"), GzipResponseCache.Key.from(body, "br"));
+        assertNotEquals(GzipResponseCache.Key.from(body, "gzip"), GzipResponseCache.Key.from(BufferUtil.toBuffer("{\"feature\":false}"), "gzip"));
+        // Computing the key does not consume the body.
+        assertEquals(16, body.remaining());
+
+        assertEquals(GzipResponseCache.Key.from("/config", "\"v1\"", "gzip"), GzipResponseCache.Key.from("/config", "\"v1\"", "gzip"));
+        assertNotEquals(GzipResponseCache.Key.from("/config", "\"v1\"", "gzip"), GzipResponseCache.Key.from("/other", "\"v1\"", "gzip"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction()
+    {
+        GzipResponseCache cache = new GzipResponseCache(30, 1024);
+        GzipResponseCache.Key key1 = GzipResponseCache.Key.from("/1", "\"1\"", "gzip");
+        GzipResponseCache.Key key2 = GzipResponseCache.Key.from("/2", "\"2\"", "gzip");
+        GzipResponseCache.Key key3 = GzipResponseCache.Key.from("/3", "\"3\"", "gzip");
+
+        cache.put(key1, ByteBuffer.allocate(10));
+        cache.put(key2, ByteBuffer.allocate(10));
+        assertEquals(20, cache.getSize());
+
+        // Access key1, so that key2 is the least recently used.
+        assertEquals(10, cache.get(key1).remaining());
+
+        cache.put(key3, ByteBuffer.allocate(15));
+        assertEquals(25, cache.getSize());
+        assertEquals(2, cache.getEntries());
+        assertEquals(1, cache.getEvictions());
+        assertThat(cache.get(key2), nullValue());
+        assertThat(cache.get(key1).remaining(), is(10));
+        assertThat(cache.get(key3).remaining(), is(15));
+
+        assertEquals(3, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        // Too large to be cached.
+        cache.put(GzipResponseCache.Key.from("/4", "\"4\"", "gzip"), ByteBuffer.allocate(31));
+        assertEquals(2, cache.getEntries());
+
+        cache.clear();
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getEntries());
+    }
+}
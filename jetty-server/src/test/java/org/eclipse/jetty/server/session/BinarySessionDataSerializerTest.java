@@ -0,0 +1,131 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class BinarySessionDataSerializerTest
+{
+    private SessionData newSessionData()
+    {
+        long now = System.currentTimeMillis();
+        SessionData data = new SessionData("1234", "/", "0.0.0.0", now, now, now, 0);
+        data.setAttribute("string", "hello \u20ac");
+        data.setAttribute("boolean", true);
+        data.setAttribute("byte", (byte)1);
+        data.setAttribute("short", (short)2);
+        data.setAttribute("char", 'c');
+        data.setAttribute("int", 3);
+        data.setAttribute("long", 4L);
+        data.setAttribute("float", 5.0F);
+        data.setAttribute("double", 6.0D);
+        data.setAttribute("bytes", new byte[]{7, 8, 9});
+        List<Object> list = new ArrayList<>();
+        list.add("a");
+        list.add(null);
+        list.add(10);
+        data.setAttribute("list", list);
+        Map<String, Object> map = new HashMap<>();
+        map.put("x", 11L);
+        map.put("y", new ArrayList<>(List.of("b")));
+        data.setAttribute("map", map);
+        Map<Integer, String> linkedMap = new LinkedHashMap<>();
+        linkedMap.put(2, "two");
+        linkedMap.put(1, "one");
+        data.setAttribute("linkedMap", linkedMap);
+        data.setAttribute("date", new Date(12));
+        data.setAttribute("set", new TreeSet<>(List.of("c", "d")));
+        return data;
+    }
+
+    private void assertSameAttributes(SessionData expected, SessionData actual)
+    {
+        assertEquals(expected.getKeys(), actual.getKeys());
+        for (String name : expected.getKeys())
+        {
+            Object value = expected.getAttribute(name);
+            if (value instanceof byte[])
+                assertArrayEquals((byte[])value, (byte[])actual.getAttribute(name));
+            else
+                assertEquals(value, actual.getAttribute(name));
+            assertEquals(value.getClass(), actual.getAttribute(name).getClass());
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception
+    {
+        BinarySessionDataSerializer serializer = new BinarySessionDataSerializer();
+        SessionData data = newSessionData();
+        byte[] bytes = serializer.serializeAttributes(data);
+
+        SessionData restored = new SessionData("1234", "/", "0.0.0.0", 0, 0, 0, 0);
+        serializer.deserializeAttributes(restored, bytes);
+        assertSameAttributes(data, restored);
+        assertThat(restored.getAttribute("linkedMap"), instanceOf(LinkedHashMap.class));
+        assertEquals(List.of(2, 1), new ArrayList<>(((Map<?, ?>)restored.getAttribute("linkedMap")).keySet()));
+
+        // The compact format is smaller than java serialization.
+        byte[] javaBytes = new JavaSessionDataSerializer().serializeAttributes(data);
+        assertThat(bytes.length, lessThan(javaBytes.length));
+    }
+
+    @Test
+    public void testCompression() throws Exception
+    {
+        long now = System.currentTimeMillis();
+        SessionData data = new SessionData("1234", "/", "0.0.0.0", now, now, now, 0);
+        data.setAttribute("large", "x".repeat(10000));
+
+        BinarySessionDataSerializer serializer = new BinarySessionDataSerializer();
+        byte[] plain = serializer.serializeAttributes(data);
+        serializer.setCompressionThreshold(1024);
+        byte[] compressed = serializer.serializeAttributes(data);
+        assertThat(compressed.length, lessThan(plain.length / 10));
+
+        SessionData restored = new SessionData("1234", "/", "0.0.0.0", 0, 0, 0, 0);
+        serializer.deserializeAttributes(restored, compressed);
+        assertSameAttributes(data, restored);
+
+        // Small attributes are not compressed.
+        data.setAttribute("large", "small");
+        assertThat(serializer.serializeAttributes(data).length, is(new BinarySessionDataSerializer().serializeAttributes(data).length));
+    }
+
+    @Test
+    public void testReadJavaSerialization() throws Exception
+    {
+        SessionData data = newSessionData();
+        byte[] javaBytes = new JavaSessionDataSerializer().serializeAttributes(data);
+
+        SessionData restored = new SessionData("1234", "/", "0.0.0.0", 0, 0, 0, 0);
+        new BinarySessionDataSerializer().deserializeAttributes(restored, javaBytes);
+        assertSameAttributes(data, restored);
+    }
+}
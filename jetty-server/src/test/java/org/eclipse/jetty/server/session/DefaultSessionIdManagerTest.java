@@ -0,0 +1,134 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.server.Server;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * DefaultSessionIdManagerTest
+ */
+public class DefaultSessionIdManagerTest
+{
+    public static class CountingSessionHandler extends SessionHandler
+    {
+        public AtomicInteger _numChecks = new AtomicInteger();
+
+        @Override
+        public boolean isIdInUse(String id)
+        {
+            _numChecks.incrementAndGet();
+            return "inuse".equals(id);
+        }
+    }
+
+    @Test
+    public void testStripedIds() throws Exception
+    {
+        DefaultSessionIdManager idManager = new DefaultSessionIdManager(new Server());
+        idManager.setWorkerName("w0");
+        idManager.setRandomStripes(3);
+        idManager.setReseed(2);
+        idManager.start();
+
+        try
+        {
+            assertEquals(4, idManager.getRandomStripes());
+
+            Set<String> ids = ConcurrentHashMap.newKeySet();
+            List<Throwable> failures = new CopyOnWriteArrayList<>();
+            Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++)
+            {
+                threads[t] = new Thread(() ->
+                {
+                    try
+                    {
+                        for (int i = 0; i < 1000; i++)
+                        {
+                            String id = idManager.newSessionId(i);
+                            assertTrue(id.startsWith("w0"));
+                            assertTrue(ids.add(id));
+                        }
+                    }
+                    catch (Throwable x)
+                    {
+                        failures.add(x);
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread thread : threads)
+            {
+                thread.join(TimeUnit.SECONDS.toMillis(30));
+            }
+
+            assertTrue(failures.isEmpty(), failures.toString());
+            assertEquals(4000, ids.size());
+            assertTrue(idManager.getReseeds() > 0);
+        }
+        finally
+        {
+            idManager.stop();
+        }
+    }
+
+    @Test
+    public void testIdInUseCache() throws Exception
+    {
+        CountingSessionHandler handler = new CountingSessionHandler();
+        DefaultSessionIdManager idManager = new DefaultSessionIdManager(new Server())
+        {
+            @Override
+            public Set<SessionHandler> getSessionHandlers()
+            {
+                return Collections.singleton(handler);
+            }
+        };
+        idManager.setIdInUseCacheMs(TimeUnit.MINUTES.toMillis(1));
+
+        // An id in use is remembered.
+        assertTrue(idManager.isIdInUse("inuse"));
+        assertTrue(idManager.isIdInUse("inuse"));
+        assertEquals(1, handler._numChecks.get());
+        assertEquals(1, idManager.getIdInUseCacheHits());
+
+        // An id not in use is not remembered.
+        assertFalse(idManager.isIdInUse("other"));
+        assertFalse(idManager.isIdInUse("other"));
+        assertEquals(3, handler._numChecks.get());
+
+        // A removed id is checked again.
+        idManager.removeCachedIdInUse("inuse");
+        assertTrue(idManager.isIdInUse("inuse"));
+        assertEquals(4, handler._numChecks.get());
+
+        // Without the cache every check consults the contexts.
+        idManager.setIdInUseCacheMs(0);
+        assertTrue(idManager.isIdInUse("inuse"));
+        assertEquals(5, handler._numChecks.get());
+    }
+}
@@ -13,6 +13,7 @@
 
 package org.eclipse.jetty.servlet;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URL;
 import java.util.ArrayList;
@@ -36,8 +37,11 @@ import org.eclipse.jetty.server.ResourceService;
 import org.eclipse.jetty.server.ResourceService.WelcomeFactory;
 import org.eclipse.jetty.server.handler.ContextHandler;
 import org.eclipse.jetty.server.handler.ResourceHandler;
+import org.eclipse.jetty.util.PathWatcher;
 import org.eclipse.jetty.util.URIUtil;
+import org.eclipse.jetty.util.compression.CompressionCodec;
 import org.eclipse.jetty.util.resource.Resource;
+import org.eclipse.jetty.util.resource.ResourceCollection;
 import org.eclipse.jetty.util.resource.ResourceFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -99,9 +103,21 @@ import org.slf4j.LoggerFactory;
  *
  *  etags             If True, weak etags will be generated and handled.
  *
+ *  etagDigestAlgorithm
+ *                    The digest algorithm, for example "SHA-256", of strong etags computed
+ *                    from the bytes of cached content, so that they are the same on all the
+ *                    servers of a cluster. Requires etags and a cache.
+ *
  *  maxCacheSize      The maximum total size of the cache or 0 for no cache.
  *  maxCachedFileSize The maximum size of a file to cache
  *  maxCachedFiles    The maximum number of files to cache
+ *  frequencyAdmission
+ *                    If True, files are admitted in the cache based on their access
+ *                    frequency, so that files accessed only once do not evict popular files.
+ *  compressVariants  If True, cached text content is gzip compressed once in the background
+ *                    and the compressed bytes are cached and served to clients that accept gzip.
+ *  compressionCodec  The encoding of a CompressionCodec service provider, for example "br",
+ *                    to compress cached variants with instead of gzip.
  *
  *  useFileMappedBuffer
  *                    If set to true, it will use mapped file buffer to serve static content
@@ -109,6 +125,13 @@ import org.slf4j.LoggerFactory;
  *                    a direct buffer will be used instead of a mapped file buffer.
  *                    This is set to false by default by this class, but may be overridden
  *                    by eg webdefault.xml
+ *  maxMappedSize     The maximum total size of the mapped files, after which the least
+ *                    recently used files are unmapped.
+ *  minMappedFileSize The minimum size of a file for it to be mapped rather than cached
+ *                    in a direct buffer.
+ *  watchChanges      If True, the resource base directories are watched for changes, so that
+ *                    cached files are invalidated when they change instead of being checked
+ *                    on each request. Changes are seen after the quiet time of the watcher.
  *
  *  cacheControl      If set, all static content will have this value set as the cache-control
  *                    header.
@@ -137,6 +160,7 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory, Welc
 
     private Resource _resourceBase;
     private CachedContentFactory _cache;
+    private PathWatcher _pathWatcher;
 
     private MimeTypes _mimeTypes;
     private String[] _welcomes;
@@ -260,6 +284,27 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory, Welc
                     _cache.setMaxCachedFileSize(maxCachedFileSize);
                 if (maxCachedFiles >= -1)
                     _cache.setMaxCachedFiles(maxCachedFiles);
+                String maxMappedSize = getInitParameter("maxMappedSize");
+                if (maxMappedSize != null)
+                    _cache.setMaxMappedSize(Long.parseLong(maxMappedSize));
+                _cache.setMinMappedFileSize(getInitInt("minMappedFileSize", _cache.getMinMappedFileSize()));
+                _cache.setFrequencyAdmission(getInitBoolean("frequencyAdmission", _cache.isFrequencyAdmission()));
+                _cache.setCompressVariants(getInitBoolean("compressVariants", _cache.isCompressVariants()));
+                String compressionCodec = getInitParameter("compressionCodec");
+                if (compressionCodec != null)
+                {
+                    _cache.setCompressionCodec(CompressionCodec.load().stream()
+                        .filter(codec -> codec.getEncoding().equalsIgnoreCase(compressionCodec))
+                        .findFirst()
+                        .orElseThrow(() -> new IllegalArgumentException("Unknown compression codec: " + compressionCodec)));
+                }
+                String etagDigestAlgorithm = getInitParameter("etagDigestAlgorithm");
+                if (etagDigestAlgorithm != null)
+                    _cache.setETagDigestAlgorithm(etagDigestAlgorithm);
+                if ((_cache.isCompressVariants() || _cache.getETagDigestAlgorithm() != null) && _contextHandler.getServer() != null)
+                    _cache.setExecutor(_contextHandler.getServer().getThreadPool());
+                if (getInitBoolean("watchChanges", false))
+                    watchChanges();
                 _servletContext.setAttribute(resourceCache == null ? "resourceCache" : resourceCache, _cache);
             }
         }
@@ -474,9 +519,51 @@ public class DefaultServlet extends HttpServlet implements ResourceFactory, Welc
         response.setHeader("Allow", "GET,HEAD,POST,OPTIONS");
     }
 
+    private void watchChanges() throws Exception
+    {
+        Resource base = _resourceBase != null ? _resourceBase : _contextHandler.getBaseResource();
+        List<Resource> bases = base instanceof ResourceCollection ? ((ResourceCollection)base).getResources() : base == null ? List.of() : List.of(base);
+
+        PathWatcher pathWatcher = new PathWatcher();
+        pathWatcher.setNotifyExistingOnStart(false);
+        for (Resource resource : bases)
+        {
+            File dir = resource.getFile();
+            if (dir != null && dir.isDirectory())
+            {
+                PathWatcher.Config config = new PathWatcher.Config(dir.toPath().toAbsolutePath());
+                config.setRecurseDepth(PathWatcher.Config.UNLIMITED_DEPTH);
+                pathWatcher.watch(config);
+            }
+        }
+
+        if (pathWatcher.getConfigs().isEmpty())
+        {
+            LOG.warn("Unable to watch changes of {}, not a directory", base);
+            return;
+        }
+
+        _cache.setPathWatcher(pathWatcher);
+        pathWatcher.start();
+        _pathWatcher = pathWatcher;
+    }
+
     @Override
     public void destroy()
     {
+        if (_pathWatcher != null)
+        {
+            _cache.setPathWatcher(null);
+            try
+            {
+                _pathWatcher.stop();
+            }
+            catch (Exception e)
+            {
+                LOG.warn("Unable to stop {}", _pathWatcher, e);
+            }
+            _pathWatcher = null;
+        }
         if (_cache != null)
             _cache.flushCache();
         super.destroy();
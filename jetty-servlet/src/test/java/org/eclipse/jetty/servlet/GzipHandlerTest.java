@@ -45,8 +45,10 @@ import org.eclipse.jetty.server.HttpOutput;
 import org.eclipse.jetty.server.LocalConnector;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.handler.gzip.GzipHandler;
+import org.eclipse.jetty.server.handler.gzip.GzipResponseCache;
 import org.eclipse.jetty.util.BufferUtil;
 import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.compression.DeflateCodec;
 import org.hamcrest.Matchers;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -343,6 +345,82 @@ public class GzipHandlerTest
         assertEquals(__content, testOut.toString("UTF8"));
     }
 
+    @Test
+    public void testResponseCache() throws Exception
+    {
+        GzipResponseCache cache = new GzipResponseCache();
+        ((GzipHandler)_server.getHandler()).setResponseCache(cache);
+
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setURI("/ctx/content");
+        request.setVersion("HTTP/1.0");
+        request.setHeader("Host", "tester");
+        request.setHeader("accept-encoding", "gzip");
+
+        for (int i = 0; i < 3; ++i)
+        {
+            HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+
+            assertThat(response.getStatus(), is(200));
+            assertThat(response.get("Content-Encoding"), Matchers.equalToIgnoringCase("gzip"));
+            assertThat(response.get("ETag"), is(__contentETagGzip));
+            assertThat(response.getCSV("Vary", false), Matchers.contains("Accept-Encoding"));
+
+            InputStream testIn = new GZIPInputStream(new ByteArrayInputStream(response.getContentBytes()));
+            ByteArrayOutputStream testOut = new ByteArrayOutputStream();
+            IO.copy(testIn, testOut);
+            assertEquals(__content, testOut.toString("UTF8"));
+        }
+
+        // The body was compressed only once.
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getEntries());
+    }
+
+    @Test
+    public void testCompressionCodec() throws Exception
+    {
+        GzipHandler gzipHandler = (GzipHandler)_server.getHandler();
+        _server.stop();
+        // A codec for another encoding, producing gzip framed content for the test to decode.
+        gzipHandler.setCompressionCodecs(new DeflateCodec()
+        {
+            @Override
+            public String getEncoding()
+            {
+                return "x-test";
+            }
+        });
+        _server.start();
+
+        HttpTester.Request request = HttpTester.newRequest();
+        request.setMethod("GET");
+        request.setURI("/ctx/content");
+        request.setVersion("HTTP/1.0");
+        request.setHeader("Host", "tester");
+        request.setHeader("accept-encoding", "gzip, x-test");
+
+        HttpTester.Response response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+
+        assertThat(response.getStatus(), is(200));
+        assertThat(response.get("Content-Encoding"), is("x-test"));
+        assertThat(response.get("ETag"), is(new CompressedContentFormat("x-test", ".x-test").etag(__contentETag)));
+        assertThat(response.getCSV("Vary", false), Matchers.contains("Accept-Encoding"));
+
+        InputStream testIn = new GZIPInputStream(new ByteArrayInputStream(response.getContentBytes()));
+        ByteArrayOutputStream testOut = new ByteArrayOutputStream();
+        IO.copy(testIn, testOut);
+        assertEquals(__content, testOut.toString("UTF8"));
+
+        // Clients that do not accept the codec encoding still get gzip.
+        request.setHeader("accept-encoding", "gzip");
+        response = HttpTester.parseResponse(_connector.getResponse(request.generate()));
+        assertThat(response.get("Content-Encoding"), Matchers.equalToIgnoringCase("gzip"));
+        assertThat(response.get("ETag"), is(__contentETagGzip));
+    }
+
     @Test
     public void testAsyncResponse() throws Exception
     {
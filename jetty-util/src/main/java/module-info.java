@@ -11,6 +11,7 @@
 // ========================================================================
 //
 
+import org.eclipse.jetty.util.compression.CompressionCodec;
 import org.eclipse.jetty.util.security.CredentialProvider;
 
 module org.eclipse.jetty.util
@@ -40,5 +41,6 @@ module org.eclipse.jetty.util
     // Only required if using JavaUtilLog.
     requires static java.logging;
 
+    uses CompressionCodec;
     uses CredentialProvider;
 }
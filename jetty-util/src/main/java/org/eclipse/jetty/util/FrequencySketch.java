@@ -0,0 +1,151 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+/**
+ * <p>A count-min sketch that estimates the popularity of items
+ * within a time window, for use by cache admission policies such as
+ * <a href="https://arxiv.org/abs/1512.00727">TinyLFU</a>.</p>
+ * <p>The sketch uses 4 rows of 4-bit counters, packed 16 to a {@code long},
+ * so the estimated frequency of an item is capped at 15.
+ * After a number of increments proportional to the maximum number of
+ * items, all the counters are halved so that the sketch ages the
+ * popularity of items that are no longer accessed.</p>
+ * <p>This class is not thread-safe and callers must provide
+ * their own synchronization.</p>
+ * <p>This class is adapted from the {@code FrequencySketch} of the
+ * <a href="https://github.com/ben-manes/caffeine">Caffeine</a> caching library,
+ * Copyright Ben Manes, licensed under the Apache License, Version 2.0.</p>
+ */
+public class FrequencySketch
+{
+    private static final long[] SEEDS =
+        {
+            0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L
+        };
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final long[] table;
+    private final int sampleSize;
+    private int size;
+
+    /**
+     * @param maxItems the maximum number of items expected to be tracked
+     */
+    public FrequencySketch(int maxItems)
+    {
+        int items = Math.max(16, maxItems);
+        table = new long[Integer.highestOneBit(items - 1) << 1];
+        sampleSize = 10 * items;
+    }
+
+    /**
+     * @param item the item to estimate
+     * @return the estimated number of occurrences of the item, between 0 and 15
+     */
+    public int frequency(Object item)
+    {
+        int hash = spread(item.hashCode());
+        int start = (hash & 3) << 2;
+        int frequency = 15;
+        for (int i = 0; i < 4; ++i)
+        {
+            int index = indexOf(hash, i);
+            int count = (int)((table[index] >>> ((start + i) << 2)) & 0xF);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * <p>Records an occurrence of the given item, aging all the
+     * counters when the sample size has been reached.</p>
+     *
+     * @param item the item to record
+     */
+    public void increment(Object item)
+    {
+        int hash = spread(item.hashCode());
+        int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; ++i)
+        {
+            int index = indexOf(hash, i);
+            added |= incrementAt(index, start + i);
+        }
+        if (added && ++size >= sampleSize)
+            reset();
+    }
+
+    /**
+     * @return the number of increments recorded since the counters were last halved
+     */
+    public int getSize()
+    {
+        return size;
+    }
+
+    /**
+     * <p>Resets all the counters to zero.</p>
+     */
+    public void clear()
+    {
+        for (int i = 0; i < table.length; ++i)
+        {
+            table[i] = 0;
+        }
+        size = 0;
+    }
+
+    private boolean incrementAt(int index, int counter)
+    {
+        int offset = counter << 2;
+        long mask = 0xFL << offset;
+        if ((table[index] & mask) == mask)
+            return false;
+        table[index] += 1L << offset;
+        return true;
+    }
+
+    private void reset()
+    {
+        int odd = 0;
+        for (int i = 0; i < table.length; ++i)
+        {
+            odd += Long.bitCount(table[i] & 0x1111111111111111L);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size - (odd >>> 2)) >>> 1;
+    }
+
+    private int indexOf(int hash, int row)
+    {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        h += h >>> 32;
+        return (int)h & (table.length - 1);
+    }
+
+    private static int spread(int hash)
+    {
+        hash = ((hash >>> 16) ^ hash) * 0x45D9F3B;
+        hash = ((hash >>> 16) ^ hash) * 0x45D9F3B;
+        return (hash >>> 16) ^ hash;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[counters=%d,size=%d/%d]", getClass().getSimpleName(), hashCode(), table.length * 16, size, sampleSize);
+    }
+}
@@ -100,6 +100,14 @@ public class Pool<T> implements AutoCloseable, Dumpable
          * No entries are favoured and contention is reduced.
          */
         ROUND_ROBIN,
+
+        /**
+         * A strategy that looks for the entry with the lowest multiplexing count,
+         * so that the load is spread evenly across multiplexed entries.
+         * Every search iterates over all the entries, so this strategy is only
+         * suitable for small pools of highly multiplexed entries.
+         */
+        LEAST_MULTIPLEXED,
     }
 
     /**
@@ -286,6 +294,9 @@ public class Pool<T> implements AutoCloseable, Dumpable
                 return entry;
         }
 
+        if (strategyType == StrategyType.LEAST_MULTIPLEXED)
+            return acquireLeastMultiplexed(size);
+
         int index = startIndex(size);
 
         for (int tries = size; tries-- > 0;)
@@ -311,6 +322,38 @@ public class Pool<T> implements AutoCloseable, Dumpable
         return null;
     }
 
+    private Entry acquireLeastMultiplexed(int size)
+    {
+        // Another thread may acquire the least multiplexed
+        // entry concurrently, so try again a bounded number of times.
+        for (int tries = size; tries-- > 0;)
+        {
+            Entry leastMultiplexed = null;
+            int minMultiplexCount = Integer.MAX_VALUE;
+            for (Entry entry : entries)
+            {
+                long encoded = entry.state.get();
+                int usageCount = AtomicBiInteger.getHi(encoded);
+                int multiplexCount = AtomicBiInteger.getLo(encoded);
+                // Skip closed, reserved, fully multiplexed and overused entries.
+                if (usageCount < 0 || multiplexCount >= maxMultiplex || (maxUsageCount > 0 && usageCount >= maxUsageCount))
+                    continue;
+                if (multiplexCount < minMultiplexCount)
+                {
+                    leastMultiplexed = entry;
+                    minMultiplexCount = multiplexCount;
+                    if (multiplexCount == 0)
+                        break;
+                }
+            }
+            if (leastMultiplexed == null)
+                return null;
+            if (leastMultiplexed.tryAcquire())
+                return leastMultiplexed;
+        }
+        return null;
+    }
+
     private int startIndex(int size)
     {
         switch (strategyType)
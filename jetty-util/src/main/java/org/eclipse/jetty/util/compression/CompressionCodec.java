@@ -0,0 +1,135 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util.compression;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.stream.Collectors;
+
+import org.eclipse.jetty.util.TypeUtil;
+
+/**
+ * <p>A compression codec for an HTTP content coding such as {@code gzip}, {@code br} or {@code zstd}.</p>
+ * <p>Codecs create {@link Encoder}s, used to compress response content, and {@link Decoder}s,
+ * used to decompress content received from a peer.</p>
+ * <p>Third party codecs are discovered with {@link ServiceLoader}, see {@link #load()},
+ * by declaring an implementation of this interface as a service provider.</p>
+ * <p>Both encoders and decoders append their output to buffers that are in flush mode,
+ * in the same way {@link org.eclipse.jetty.util.BufferUtil#append(ByteBuffer, ByteBuffer)} does,
+ * and return when either the input is consumed or the output buffer is full.</p>
+ *
+ * @see DeflateCodec
+ */
+public interface CompressionCodec
+{
+    /**
+     * @return the content coding, as used in the {@code Accept-Encoding} and {@code Content-Encoding} headers
+     */
+    String getEncoding();
+
+    /**
+     * @return the file extension of precompressed resources, including the dot
+     */
+    default String getExtension()
+    {
+        return "." + getEncoding();
+    }
+
+    /**
+     * <p>Creates a new encoder.</p>
+     * <p>Codecs may choose the compression level depending on the content length,
+     * for example to spend less CPU on large contents.</p>
+     *
+     * @param contentLength the length of the content to compress, or -1 if unknown
+     * @return a new encoder
+     */
+    Encoder newEncoder(long contentLength);
+
+    /**
+     * @return a new decoder
+     */
+    Decoder newDecoder();
+
+    /**
+     * <p>Loads the codecs declared as {@link ServiceLoader} service providers.</p>
+     * <p>Providers that fail to load are logged and skipped.</p>
+     *
+     * @return the codecs declared as service providers
+     */
+    static List<CompressionCodec> load()
+    {
+        return TypeUtil.serviceStream(ServiceLoader.load(CompressionCodec.class)).collect(Collectors.toList());
+    }
+
+    /**
+     * <p>Compresses content.</p>
+     * <p>An encoder is not thread safe and must be {@link #close() closed} after use.</p>
+     */
+    interface Encoder extends Closeable
+    {
+        /**
+         * <p>Compresses bytes from the input, appending the compressed bytes to the output.</p>
+         * <p>The encoder may buffer input, so compressed bytes may be produced later,
+         * possibly only when {@link #finish(ByteBuffer)} is called.</p>
+         *
+         * @param input the bytes to compress
+         * @param output the buffer, in flush mode, to append compressed bytes to
+         */
+        void encode(ByteBuffer input, ByteBuffer output);
+
+        /**
+         * <p>Appends the remaining compressed bytes and any trailer to the output.</p>
+         * <p>This method must be called repeatedly, with an output buffer that has space,
+         * until it returns true.</p>
+         *
+         * @param output the buffer, in flush mode, to append compressed bytes to
+         * @return true if all the compressed bytes have been produced
+         */
+        boolean finish(ByteBuffer output);
+
+        /**
+         * <p>Releases the resources of this encoder.</p>
+         */
+        @Override
+        void close();
+    }
+
+    /**
+     * <p>Decompresses content.</p>
+     * <p>A decoder is not thread safe and must be {@link #close() closed} after use.</p>
+     */
+    interface Decoder extends Closeable
+    {
+        /**
+         * <p>Decompresses bytes from the input, appending the decompressed bytes to the output.</p>
+         *
+         * @param input the bytes to decompress
+         * @param output the buffer, in flush mode, to append decompressed bytes to
+         */
+        void decode(ByteBuffer input, ByteBuffer output);
+
+        /**
+         * @return true if the end of the compressed content has been reached
+         */
+        boolean isFinished();
+
+        /**
+         * <p>Releases the resources of this decoder.</p>
+         */
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,484 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util.compression;
+
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.annotation.ManagedAttribute;
+import org.eclipse.jetty.util.annotation.ManagedObject;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+/**
+ * <p>The built-in {@link CompressionCodec} for the {@code gzip} content coding,
+ * based on {@link Deflater} and {@link Inflater}.</p>
+ * <p>When {@link #isAutoTune() auto tuning} is enabled and a {@link QueuedThreadPool}
+ * is {@link #setThreadPool(ThreadPool) configured}, the compression level is chosen
+ * for each content between {@link #getMinLevel()} and {@link #getLevel()}:
+ * the more the thread pool is utilized, the lower the level, so that compression
+ * gives back CPU when the server is busy. Contents larger than {@link #getLargeContentSize()}
+ * are compressed at most at the midpoint level, as their compression cost grows
+ * with their size while higher levels only marginally improve the ratio.</p>
+ */
+@ManagedObject("Deflate compression codec")
+public class DeflateCodec implements CompressionCodec
+{
+    private static final byte[] GZIP_HEADER = new byte[]{(byte)0x1f, (byte)0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0};
+    private static final int DEFAULT_LEVEL = 6;
+
+    private DeflaterPool _deflaterPool;
+    private ThreadPool _threadPool;
+    private int _level = Deflater.DEFAULT_COMPRESSION;
+    private int _minLevel = Deflater.BEST_SPEED;
+    private long _largeContentSize = 1024 * 1024;
+    private boolean _autoTune = true;
+
+    @Override
+    public String getEncoding()
+    {
+        return "gzip";
+    }
+
+    @Override
+    public String getExtension()
+    {
+        return ".gz";
+    }
+
+    /**
+     * @return the pool of deflaters used by encoders, or null if encoders create their own deflater
+     */
+    public DeflaterPool getDeflaterPool()
+    {
+        return _deflaterPool;
+    }
+
+    /**
+     * @param deflaterPool the pool of deflaters to use, which must create deflaters with {@code nowrap=true}
+     */
+    public void setDeflaterPool(DeflaterPool deflaterPool)
+    {
+        _deflaterPool = deflaterPool;
+    }
+
+    /**
+     * @return the thread pool whose utilization drives the auto tuning of the compression level
+     */
+    public ThreadPool getThreadPool()
+    {
+        return _threadPool;
+    }
+
+    /**
+     * @param threadPool the thread pool whose utilization drives the auto tuning of the compression level
+     */
+    public void setThreadPool(ThreadPool threadPool)
+    {
+        _threadPool = threadPool;
+    }
+
+    @ManagedAttribute("The compression level, or the maximum compression level when auto tuning")
+    public int getLevel()
+    {
+        return _level;
+    }
+
+    public void setLevel(int level)
+    {
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION))
+            throw new IllegalArgumentException("Invalid compression level: " + level);
+        _level = level;
+    }
+
+    @ManagedAttribute("The minimum compression level when auto tuning")
+    public int getMinLevel()
+    {
+        return _minLevel;
+    }
+
+    public void setMinLevel(int minLevel)
+    {
+        if (minLevel < Deflater.NO_COMPRESSION || minLevel > Deflater.BEST_COMPRESSION)
+            throw new IllegalArgumentException("Invalid compression level: " + minLevel);
+        _minLevel = minLevel;
+    }
+
+    @ManagedAttribute("The content size above which the compression level is reduced when auto tuning")
+    public long getLargeContentSize()
+    {
+        return _largeContentSize;
+    }
+
+    public void setLargeContentSize(long largeContentSize)
+    {
+        _largeContentSize = largeContentSize;
+    }
+
+    @ManagedAttribute("Whether the compression level is tuned from the thread pool utilization and the content size")
+    public boolean isAutoTune()
+    {
+        return _autoTune;
+    }
+
+    public void setAutoTune(boolean autoTune)
+    {
+        _autoTune = autoTune;
+    }
+
+    /**
+     * @return the current utilization of the thread pool, between 0.0 and 1.0
+     */
+    protected double getUtilization()
+    {
+        ThreadPool threadPool = _threadPool;
+        if (threadPool instanceof QueuedThreadPool)
+            return Math.max(0.0, Math.min(1.0, ((QueuedThreadPool)threadPool).getUtilizationRate()));
+        return 0.0;
+    }
+
+    /**
+     * @param contentLength the length of the content to compress, or -1 if unknown
+     * @return the compression level to use for the content
+     */
+    public int getLevel(long contentLength)
+    {
+        int maxLevel = _level == Deflater.DEFAULT_COMPRESSION ? DEFAULT_LEVEL : _level;
+        if (!_autoTune || maxLevel <= _minLevel)
+            return maxLevel;
+
+        double headroom = 1.0 - getUtilization();
+        int level = _minLevel + (int)Math.round((maxLevel - _minLevel) * headroom);
+        if (contentLength > _largeContentSize)
+            level = Math.min(level, (_minLevel + maxLevel) / 2);
+        return level;
+    }
+
+    @Override
+    public Encoder newEncoder(long contentLength)
+    {
+        return new GzipEncoder(getLevel(contentLength));
+    }
+
+    @Override
+    public Decoder newDecoder()
+    {
+        return new GzipDecoder();
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("%s@%x[level=%d,minLevel=%d,autoTune=%b]", getClass().getSimpleName(), hashCode(), _level, _minLevel, _autoTune);
+    }
+
+    private static void putIntLittleEndian(ByteBuffer buffer, int value)
+    {
+        buffer.put((byte)value);
+        buffer.put((byte)(value >>> 8));
+        buffer.put((byte)(value >>> 16));
+        buffer.put((byte)(value >>> 24));
+    }
+
+    private class GzipEncoder implements Encoder
+    {
+        private final CRC32 _crc = new CRC32();
+        private final DeflaterPool.Entry _entry;
+        private final Deflater _deflater;
+        private boolean _header;
+        private boolean _trailer;
+
+        private GzipEncoder(int level)
+        {
+            DeflaterPool pool = _deflaterPool;
+            _entry = pool == null ? null : pool.acquire();
+            _deflater = _entry == null ? new Deflater(level, true) : _entry.get();
+            if (_entry != null)
+                _deflater.setLevel(level);
+        }
+
+        @Override
+        public void encode(ByteBuffer input, ByteBuffer output)
+        {
+            int pos = BufferUtil.flipToFill(output);
+            try
+            {
+                if (!writeHeader(output))
+                    return;
+
+                int start = input.position();
+                _deflater.setInput(input);
+                while (output.hasRemaining() && !_deflater.needsInput())
+                {
+                    _deflater.deflate(output, Deflater.NO_FLUSH);
+                }
+                updateCrc(input, start);
+            }
+            finally
+            {
+                BufferUtil.flipToFlush(output, pos);
+            }
+        }
+
+        @Override
+        public boolean finish(ByteBuffer output)
+        {
+            int pos = BufferUtil.flipToFill(output);
+            try
+            {
+                if (!writeHeader(output))
+                    return false;
+
+                _deflater.finish();
+                while (output.hasRemaining() && !_deflater.finished())
+                {
+                    _deflater.deflate(output, Deflater.NO_FLUSH);
+                }
+
+                if (_deflater.finished() && !_trailer && output.remaining() >= 8)
+                {
+                    putIntLittleEndian(output, (int)_crc.getValue());
+                    putIntLittleEndian(output, (int)_deflater.getBytesRead());
+                    _trailer = true;
+                }
+                return _trailer;
+            }
+            finally
+            {
+                BufferUtil.flipToFlush(output, pos);
+            }
+        }
+
+        private boolean writeHeader(ByteBuffer output)
+        {
+            if (_header)
+                return true;
+            if (output.remaining() < GZIP_HEADER.length)
+                return false;
+            output.put(GZIP_HEADER);
+            _header = true;
+            return true;
+        }
+
+        private void updateCrc(ByteBuffer input, int start)
+        {
+            int end = input.position();
+            if (end > start)
+            {
+                ByteBuffer consumed = input.duplicate();
+                consumed.position(start).limit(end);
+                _crc.update(consumed);
+            }
+        }
+
+        @Override
+        public void close()
+        {
+            if (_entry != null)
+                _entry.release();
+            else
+                _deflater.end();
+        }
+    }
+
+    private static class GzipDecoder implements Decoder
+    {
+        private static final int FHCRC = 0x02;
+        private static final int FEXTRA = 0x04;
+        private static final int FNAME = 0x08;
+        private static final int FCOMMENT = 0x10;
+
+        private enum State
+        {
+            HEADER, EXTRA_LENGTH, EXTRA, NAME, COMMENT, HCRC, DATA, TRAILER, FINISHED
+        }
+
+        private final Inflater _inflater = new Inflater(true);
+        private final CRC32 _crc = new CRC32();
+        private State _state = State.HEADER;
+        private int _flags;
+        private int _size;
+        private long _value;
+
+        @Override
+        public void decode(ByteBuffer input, ByteBuffer output)
+        {
+            while (true)
+            {
+                switch (_state)
+                {
+                    case HEADER:
+                    {
+                        if (!input.hasRemaining())
+                            return;
+                        int b = input.get() & 0xFF;
+                        if ((_size == 0 && b != 0x1F) || (_size == 1 && b != 0x8B) || (_size == 2 && b != Deflater.DEFLATED))
+                            throw new UncheckedIOException(new ZipException("Invalid gzip header"));
+                        if (_size == 3)
+                            _flags = b;
+                        if (++_size == GZIP_HEADER.length)
+                            nextHeaderState(State.HEADER);
+                        break;
+                    }
+                    case EXTRA_LENGTH:
+                    {
+                        if (!input.hasRemaining())
+                            return;
+                        _value += (input.get() & 0xFF) << (8 * _size);
+                        if (++_size == 2)
+                        {
+                            _size = (int)_value;
+                            if (_size == 0)
+                                nextHeaderState(State.EXTRA);
+                            else
+                                _state = State.EXTRA;
+                        }
+                        break;
+                    }
+                    case EXTRA:
+                    {
+                        int skip = Math.min(_size, input.remaining());
+                        if (skip == 0)
+                            return;
+                        input.position(input.position() + skip);
+                        _size -= skip;
+                        if (_size == 0)
+                            nextHeaderState(State.EXTRA);
+                        break;
+                    }
+                    case NAME:
+                    case COMMENT:
+                    {
+                        if (!input.hasRemaining())
+                            return;
+                        if (input.get() == 0)
+                            nextHeaderState(_state);
+                        break;
+                    }
+                    case HCRC:
+                    {
+                        if (!input.hasRemaining())
+                            return;
+                        input.get();
+                        if (++_size == 2)
+                            nextHeaderState(State.HCRC);
+                        break;
+                    }
+                    case DATA:
+                    {
+                        if (!inflate(input, output))
+                            return;
+                        _state = State.TRAILER;
+                        _size = 0;
+                        _value = 0;
+                        break;
+                    }
+                    case TRAILER:
+                    {
+                        if (!input.hasRemaining())
+                            return;
+                        _value += (input.get() & 0xFFL) << (8 * _size);
+                        if (++_size == 8)
+                        {
+                            if ((_value & 0xFFFFFFFFL) != _crc.getValue())
+                                throw new UncheckedIOException(new ZipException("Invalid gzip CRC"));
+                            if ((_value >>> 32) != (_inflater.getBytesWritten() & 0xFFFFFFFFL))
+                                throw new UncheckedIOException(new ZipException("Invalid gzip size"));
+                            _state = State.FINISHED;
+                        }
+                        break;
+                    }
+                    case FINISHED:
+                    {
+                        // Discard anything after the end of the compressed content.
+                        input.position(input.limit());
+                        return;
+                    }
+                    default:
+                        throw new IllegalStateException(_state.toString());
+                }
+            }
+        }
+
+        private void nextHeaderState(State current)
+        {
+            _size = 0;
+            _value = 0;
+            if (current.ordinal() < State.EXTRA_LENGTH.ordinal() && (_flags & FEXTRA) != 0)
+                _state = State.EXTRA_LENGTH;
+            else if (current.ordinal() < State.NAME.ordinal() && (_flags & FNAME) != 0)
+                _state = State.NAME;
+            else if (current.ordinal() < State.COMMENT.ordinal() && (_flags & FCOMMENT) != 0)
+                _state = State.COMMENT;
+            else if (current.ordinal() < State.HCRC.ordinal() && (_flags & FHCRC) != 0)
+                _state = State.HCRC;
+            else
+                _state = State.DATA;
+        }
+
+        /**
+         * @return true if the end of the compressed data has been reached
+         */
+        private boolean inflate(ByteBuffer input, ByteBuffer output)
+        {
+            int pos = BufferUtil.flipToFill(output);
+            try
+            {
+                _inflater.setInput(input);
+                while (output.hasRemaining() && !_inflater.finished())
+                {
+                    int start = output.position();
+                    int produced = _inflater.inflate(output);
+                    if (produced > 0)
+                    {
+                        ByteBuffer decoded = output.duplicate();
+                        decoded.position(start).limit(start + produced);
+                        _crc.update(decoded);
+                    }
+                    else if (_inflater.needsInput() || _inflater.needsDictionary())
+                    {
+                        break;
+                    }
+                }
+                return _inflater.finished();
+            }
+            catch (DataFormatException x)
+            {
+                throw new UncheckedIOException(new ZipException(x.getMessage()));
+            }
+            finally
+            {
+                BufferUtil.flipToFlush(output, pos);
+            }
+        }
+
+        @Override
+        public boolean isFinished()
+        {
+            return _state == State.FINISHED;
+        }
+
+        @Override
+        public void close()
+        {
+            _inflater.end();
+        }
+    }
+}
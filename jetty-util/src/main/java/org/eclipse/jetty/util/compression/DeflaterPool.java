@@ -57,6 +57,8 @@ public class DeflaterPool extends CompressionPool<Deflater>
     protected void reset(Deflater deflater)
     {
         deflater.reset();
+        // Users may have changed the level, restore the default for the next user.
+        deflater.setLevel(compressionLevel);
     }
 
     public static DeflaterPool ensurePool(Container container)
@@ -0,0 +1,82 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FrequencySketchTest
+{
+    @Test
+    public void testFrequency()
+    {
+        FrequencySketch sketch = new FrequencySketch(64);
+        assertEquals(0, sketch.frequency("a"));
+
+        for (int i = 0; i < 5; i++)
+        {
+            sketch.increment("a");
+        }
+        sketch.increment("b");
+
+        assertThat(sketch.frequency("a"), greaterThanOrEqualTo(5));
+        assertThat(sketch.frequency("b"), greaterThanOrEqualTo(1));
+        assertThat(sketch.frequency("b"), lessThan(sketch.frequency("a")));
+    }
+
+    @Test
+    public void testFrequencyIsCapped()
+    {
+        FrequencySketch sketch = new FrequencySketch(64);
+        for (int i = 0; i < 100; i++)
+        {
+            sketch.increment("a");
+        }
+        assertEquals(15, sketch.frequency("a"));
+    }
+
+    @Test
+    public void testAging()
+    {
+        FrequencySketch sketch = new FrequencySketch(16);
+        for (int i = 0; i < 10; i++)
+        {
+            sketch.increment("hot");
+        }
+        int before = sketch.frequency("hot");
+
+        // Enough distinct increments to reach the sample size and halve the counters.
+        for (int i = 0; i < 160; i++)
+        {
+            sketch.increment("item" + i);
+        }
+
+        assertThat(sketch.frequency("hot"), lessThan(before));
+        assertThat(sketch.getSize(), lessThan(160));
+    }
+
+    @Test
+    public void testClear()
+    {
+        FrequencySketch sketch = new FrequencySketch(16);
+        sketch.increment("a");
+        sketch.clear();
+        assertEquals(0, sketch.frequency("a"));
+        assertEquals(0, sketch.getSize());
+    }
+}
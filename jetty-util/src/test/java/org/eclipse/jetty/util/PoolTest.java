@@ -28,6 +28,7 @@ import org.junit.jupiter.params.provider.MethodSource;
 
 import static java.util.stream.Collectors.toList;
 import static org.eclipse.jetty.util.Pool.StrategyType.FIRST;
+import static org.eclipse.jetty.util.Pool.StrategyType.LEAST_MULTIPLEXED;
 import static org.eclipse.jetty.util.Pool.StrategyType.RANDOM;
 import static org.eclipse.jetty.util.Pool.StrategyType.ROUND_ROBIN;
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -73,6 +74,7 @@ public class PoolTest
         data.add(new Object[]{(Factory)s -> new Pool<>(RANDOM, s)});
         data.add(new Object[]{(Factory)s -> new Pool<>(FIRST, s, true)});
         data.add(new Object[]{(Factory)s -> new Pool<>(ROUND_ROBIN, s)});
+        data.add(new Object[]{(Factory)s -> new Pool<>(LEAST_MULTIPLEXED, s)});
         return data.stream();
     }
 
@@ -751,4 +753,37 @@ public class PoolTest
         assertThat(e3.getPooled().get(), greaterThan(10));
         assertThat(e4.getPooled().get(), greaterThan(10));
     }
+
+    @Test
+    public void testLeastMultiplexedStrategy()
+    {
+        Pool<AtomicInteger> pool = new Pool<>(LEAST_MULTIPLEXED, 3);
+        pool.setMaxMultiplex(4);
+
+        Pool<AtomicInteger>.Entry e1 = pool.acquire(e -> new AtomicInteger());
+        Pool<AtomicInteger>.Entry e2 = pool.acquire(e -> new AtomicInteger());
+        Pool<AtomicInteger>.Entry e3 = pool.acquire(e -> new AtomicInteger());
+        pool.release(e1);
+        pool.release(e2);
+        pool.release(e3);
+
+        // Acquiring without releasing must spread the load evenly.
+        for (int i = 0; i < 12; i++)
+        {
+            Pool<AtomicInteger>.Entry e = pool.acquire();
+            assertThat(e, notNullValue());
+            e.getPooled().incrementAndGet();
+        }
+        assertNull(pool.acquire());
+
+        assertThat(e1.getPooled().get(), is(4));
+        assertThat(e2.getPooled().get(), is(4));
+        assertThat(e3.getPooled().get(), is(4));
+
+        // The entry with the most releases becomes the least multiplexed.
+        pool.release(e2);
+        pool.release(e2);
+        pool.release(e1);
+        assertThat(pool.acquire(), sameInstance(e2));
+    }
 }
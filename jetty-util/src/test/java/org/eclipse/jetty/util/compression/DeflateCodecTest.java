@@ -0,0 +1,173 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.util.compression;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.eclipse.jetty.util.BufferUtil;
+import org.eclipse.jetty.util.IO;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DeflateCodecTest
+{
+    private static byte[] content()
+    {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 2000; i++)
+        {
+            builder.append("Line ").append(i).append(" of the content to compress\n");
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testEncode() throws Exception
+    {
+        byte[] content = content();
+        DeflateCodec codec = new DeflateCodec();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        ByteBuffer output = BufferUtil.allocate(64);
+        try (CompressionCodec.Encoder encoder = codec.newEncoder(content.length))
+        {
+            // Encode in small chunks into a small output buffer.
+            for (int offset = 0; offset < content.length; offset += 100)
+            {
+                ByteBuffer input = ByteBuffer.wrap(content, offset, Math.min(100, content.length - offset));
+                while (input.hasRemaining())
+                {
+                    encoder.encode(input, output);
+                    drain(output, compressed);
+                }
+            }
+            while (true)
+            {
+                boolean finished = encoder.finish(output);
+                drain(output, compressed);
+                if (finished)
+                    break;
+            }
+        }
+
+        GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressed.toByteArray()));
+        assertArrayEquals(content, IO.readBytes(gzip));
+    }
+
+    @Test
+    public void testDecode() throws Exception
+    {
+        byte[] content = content();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed))
+        {
+            gzip.write(content);
+        }
+        byte[] bytes = compressed.toByteArray();
+
+        DeflateCodec codec = new DeflateCodec();
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+        ByteBuffer output = BufferUtil.allocate(64);
+        try (CompressionCodec.Decoder decoder = codec.newDecoder())
+        {
+            // Decode byte by byte to exercise the header and trailer parsing.
+            for (byte b : bytes)
+            {
+                ByteBuffer input = ByteBuffer.wrap(new byte[]{b});
+                while (input.hasRemaining())
+                {
+                    decoder.decode(input, output);
+                    drain(output, decompressed);
+                }
+            }
+            assertTrue(decoder.isFinished());
+        }
+
+        assertArrayEquals(content, decompressed.toByteArray());
+    }
+
+    @Test
+    public void testRoundTripWithPool() throws Exception
+    {
+        byte[] content = content();
+        DeflaterPool pool = new DeflaterPool(4, Deflater.DEFAULT_COMPRESSION, true);
+        pool.start();
+        DeflateCodec codec = new DeflateCodec();
+        codec.setDeflaterPool(pool);
+
+        for (int i = 0; i < 2; i++)
+        {
+            ByteBuffer output = BufferUtil.allocate(content.length);
+            try (CompressionCodec.Encoder encoder = codec.newEncoder(content.length))
+            {
+                encoder.encode(ByteBuffer.wrap(content), output);
+                assertTrue(encoder.finish(output));
+            }
+
+            ByteBuffer decoded = BufferUtil.allocate(content.length);
+            try (CompressionCodec.Decoder decoder = codec.newDecoder())
+            {
+                decoder.decode(output, decoded);
+                assertTrue(decoder.isFinished());
+            }
+            assertArrayEquals(content, BufferUtil.toArray(decoded));
+        }
+        pool.stop();
+    }
+
+    @Test
+    public void testLevelAutoTune() throws Exception
+    {
+        DeflateCodec codec = new DeflateCodec();
+        // Without a thread pool there is full headroom.
+        assertEquals(6, codec.getLevel(1024));
+        // Large contents are compressed at a lower level.
+        assertEquals(3, codec.getLevel(10 * 1024 * 1024));
+
+        QueuedThreadPool threadPool = new QueuedThreadPool();
+        codec.setThreadPool(threadPool);
+        threadPool.start();
+        assertEquals(6, codec.getLevel(1024));
+        threadPool.stop();
+
+        codec.setAutoTune(false);
+        codec.setLevel(Deflater.BEST_COMPRESSION);
+        assertEquals(Deflater.BEST_COMPRESSION, codec.getLevel(10 * 1024 * 1024));
+
+        DeflateCodec busy = new DeflateCodec()
+        {
+            @Override
+            protected double getUtilization()
+            {
+                return 1.0;
+            }
+        };
+        assertEquals(Deflater.BEST_SPEED, busy.getLevel(1024));
+    }
+
+    private static void drain(ByteBuffer buffer, ByteArrayOutputStream out)
+    {
+        out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        BufferUtil.clear(buffer);
+    }
+}
@@ -0,0 +1,141 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.session.jmh;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.server.session.BinarySessionDataSerializer;
+import org.eclipse.jetty.server.session.JavaSessionDataSerializer;
+import org.eclipse.jetty.server.session.SessionData;
+import org.eclipse.jetty.server.session.SessionDataSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+@State(Scope.Benchmark)
+@Threads(4)
+@Warmup(iterations = 7, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 7, time = 500, timeUnit = TimeUnit.MILLISECONDS)
+public class SessionDataSerializerBenchmark
+{
+    @Param({"JAVA", "BINARY", "BINARY_DEFLATED"})
+    public static String serializerType;
+
+    @Param({"4", "32"})
+    public static int attributes;
+
+    SessionDataSerializer _serializer;
+    SessionData _data;
+    byte[] _bytes;
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws Exception
+    {
+        switch (serializerType)
+        {
+            case "JAVA":
+                _serializer = new JavaSessionDataSerializer();
+                break;
+
+            case "BINARY":
+                _serializer = new BinarySessionDataSerializer();
+                break;
+
+            case "BINARY_DEFLATED":
+                BinarySessionDataSerializer binary = new BinarySessionDataSerializer();
+                binary.setCompressionThreshold(0);
+                _serializer = binary;
+                break;
+
+            default:
+                throw new IllegalStateException("Unknown serializerType Parameter");
+        }
+
+        long now = System.currentTimeMillis();
+        _data = new SessionData("benchmark", "/", "0.0.0.0", now, now, now, TimeUnit.MINUTES.toMillis(30));
+        for (int i = 0; i < attributes; i++)
+        {
+            switch (i % 4)
+            {
+                case 0:
+                    _data.setAttribute("string" + i, "value of attribute " + i);
+                    break;
+                case 1:
+                    _data.setAttribute("long" + i, now + i);
+                    break;
+                case 2:
+                    List<String> list = new ArrayList<>();
+                    for (int j = 0; j < 8; j++)
+                    {
+                        list.add("element " + j);
+                    }
+                    _data.setAttribute("list" + i, list);
+                    break;
+                default:
+                    Map<String, Integer> map = new HashMap<>();
+                    for (int j = 0; j < 8; j++)
+                    {
+                        map.put("key " + j, j);
+                    }
+                    _data.setAttribute("map" + i, map);
+                    break;
+            }
+        }
+        _bytes = _serializer.serializeAttributes(_data);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public byte[] testSerialize() throws Exception
+    {
+        return _serializer.serializeAttributes(_data);
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.Throughput})
+    public SessionData testDeserialize() throws Exception
+    {
+        SessionData data = new SessionData("benchmark", "/", "0.0.0.0", 0, 0, 0, 0);
+        _serializer.deserializeAttributes(data, _bytes);
+        return data;
+    }
+
+    public static void main(String[] args) throws RunnerException
+    {
+        Options opt = new OptionsBuilder()
+            .include(SessionDataSerializerBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .forks(1)
+            .build();
+
+        new Runner(opt).run();
+    }
+}
@@ -13,11 +13,23 @@
 
 package org.eclipse.jetty.server.session;
 
+import java.util.HashSet;
+import java.util.Set;
+
+import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.testcontainers.junit.jupiter.Testcontainers;
 
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 /**
  * JDBCSessionDataStoreTest
  */
@@ -84,4 +96,125 @@ public class JDBCSessionDataStoreTest extends AbstractSessionDataStoreTest
             Thread.currentThread().setContextClassLoader(old);
         }
     }
+
+    /**
+     * Test that a store keeping connections open reuses the statements prepared on them.
+     */
+    @Test
+    public void testPooledConnectionReusesStatements() throws Exception
+    {
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/test");
+        JDBCSessionDataStoreFactory factory = (JDBCSessionDataStoreFactory)createSessionDataStoreFactory();
+        factory.setGracePeriodSec(GRACE_PERIOD_SEC);
+        factory.setMaxPooledConnections(2);
+        JDBCSessionDataStore store = (JDBCSessionDataStore)factory.getSessionDataStore(context.getSessionHandler());
+        SessionContext sessionContext = new SessionContext("foo", context.getServletContext());
+        store.initialize(sessionContext);
+        store.start();
+
+        try
+        {
+            //store a new session, then store it again once changed
+            long now = System.currentTimeMillis();
+            SessionData data = store.newSessionData("pool1", 100, now, now - 1, -1); //never expires
+            data.setLastNode(sessionContext.getWorkerName());
+            data.setAttribute("a", "b");
+            store.store("pool1", data);
+            data.setAttribute("a", "c");
+            store.store("pool1", data);
+            assertTrue(checkSessionPersisted(data));
+
+            for (int i = 0; i < 2; i++)
+            {
+                SessionData loaded = store.load("pool1");
+                assertNotNull(loaded);
+                assertEquals("c", loaded.getAttribute("a"));
+            }
+
+            assertEquals(2, store.getStoreCount());
+            assertEquals(2, store.getLoadCount());
+            assertThat(store.getStatementsReused(), greaterThan(0L));
+        }
+        finally
+        {
+            store.stop();
+        }
+    }
+
+    /**
+     * Test that more candidate sessions than are checked by a single query
+     * are all checked for expiry.
+     */
+    @Test
+    public void testGetExpiredManyCandidates() throws Exception
+    {
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/test");
+        SessionDataStoreFactory factory = createSessionDataStoreFactory();
+        ((AbstractSessionDataStoreFactory)factory).setGracePeriodSec(GRACE_PERIOD_SEC);
+        SessionDataStore store = factory.getSessionDataStore(context.getSessionHandler());
+        SessionContext sessionContext = new SessionContext("foo", context.getServletContext());
+        store.initialize(sessionContext);
+        store.start();
+
+        try
+        {
+            //a session that has not expired
+            long now = System.currentTimeMillis();
+            SessionData data = store.newSessionData("live", 100, now, now - 1, -1); //never expires
+            data.setLastNode(sessionContext.getWorkerName());
+            persistSession(data);
+
+            //candidates that no longer exist in the db
+            Set<String> candidates = new HashSet<>();
+            for (int i = 0; i < 70; i++)
+            {
+                candidates.add("gone" + i);
+            }
+            Set<String> expected = new HashSet<>(candidates);
+            candidates.add("live");
+
+            Set<String> expired = store.getExpired(candidates);
+            assertTrue(expired.containsAll(expected));
+            assertThat(expired, not(hasItem("live")));
+        }
+        finally
+        {
+            store.stop();
+        }
+    }
+
+    /**
+     * Test that the first check for expired sessions after the store started
+     * does not find the sessions managed by this node that never expire.
+     */
+    @Test
+    public void testFirstCheckExpiredSkipsImmortalSessions() throws Exception
+    {
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/test");
+        SessionDataStoreFactory factory = createSessionDataStoreFactory();
+        ((AbstractSessionDataStoreFactory)factory).setGracePeriodSec(GRACE_PERIOD_SEC);
+        SessionDataStore store = factory.getSessionDataStore(context.getSessionHandler());
+        SessionContext sessionContext = new SessionContext("foo", context.getServletContext());
+        store.initialize(sessionContext);
+        store.start();
+
+        try
+        {
+            long now = System.currentTimeMillis();
+            SessionData data = store.newSessionData("immortal", 100, now, now - 1, -1); //never expires
+            data.setLastNode(sessionContext.getWorkerName());
+            persistSession(data);
+
+            Set<String> expired = store.getExpired(new HashSet<>());
+            assertThat(expired, not(hasItem("immortal")));
+            assertTrue(checkSessionExists(data));
+        }
+        finally
+        {
+            store.stop();
+        }
+    }
 }
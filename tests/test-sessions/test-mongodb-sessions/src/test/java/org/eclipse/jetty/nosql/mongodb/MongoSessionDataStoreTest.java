@@ -18,6 +18,9 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+
 import org.eclipse.jetty.server.session.AbstractSessionDataStoreFactory;
 import org.eclipse.jetty.server.session.AbstractSessionDataStoreTest;
 import org.eclipse.jetty.server.session.SessionContext;
@@ -32,6 +35,7 @@ import org.testcontainers.junit.jupiter.Testcontainers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 
 /**
  * MongoSessionDataStoreTest
@@ -138,4 +142,66 @@ public class MongoSessionDataStoreTest extends AbstractSessionDataStoreTest
         //and that it has now been written out with the new format
         MongoTestHelper.checkSessionPersisted(loaded);
     }
+
+    /**
+     * Test that attributes serialized together are rewritten as fields,
+     * and that then only the changed attributes are written.
+     */
+    @Test
+    public void testAttributeFields() throws Exception
+    {
+        //create the SessionDataStore
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/fields");
+        MongoSessionDataStoreFactory factory = MongoTestHelper.newSessionDataStoreFactory();
+        factory.setGracePeriodSec(GRACE_PERIOD_SEC);
+        factory.setAttributeFields(true);
+        SessionDataStore store = factory.getSessionDataStore(context.getSessionHandler());
+        SessionContext sessionContext = new SessionContext("foo", context.getServletContext());
+        store.initialize(sessionContext);
+
+        //persist a session with serialized attributes
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("attribute1", "attribute1value");
+        attributes.put("attribute2", new ArrayList<String>(Arrays.asList("1", "2", "3")));
+        MongoTestHelper.createSession("1234",
+            sessionContext.getCanonicalContextPath(), sessionContext.getVhost(),
+            "foo",
+            1000L, System.currentTimeMillis() - 1000L, System.currentTimeMillis() - 2000L,
+            -1, -1,
+            attributes);
+
+        store.start();
+
+        //change one attribute: all of them are written as fields
+        SessionData loaded = store.load("1234");
+        assertNotNull(loaded);
+        loaded.setAttribute("attribute1", "attribute1changed");
+        store.store("1234", loaded);
+
+        String contextField = MongoSessionDataStore.__CONTEXT + "." + sessionContext.getVhost().replace('.', '_') + ":" + sessionContext.getCanonicalContextPath();
+        DBObject document = MongoTestHelper.getCollection().findOne(new BasicDBObject(MongoSessionDataStore.__ID, "1234"));
+        assertNull(MongoUtils.getNestedValue(document, contextField + "." + MongoSessionDataStore.__ATTRIBUTES));
+        assertEquals("attribute1changed", MongoUtils.getNestedValue(document, contextField + ".attribute1"));
+        assertNotNull(MongoUtils.getNestedValue(document, contextField + ".attribute2"));
+        assertEquals(2L, ((Number)MongoUtils.getNestedValue(document, contextField + "." + MongoSessionDataStore.__VERSION)).longValue());
+
+        //change and remove attributes: only those are written
+        loaded = store.load("1234");
+        loaded.setAttribute("attribute1", "attribute1changedagain");
+        loaded.setAttribute("attribute2", null);
+        loaded.setAttribute("attribute3", "attribute3value");
+        store.store("1234", loaded);
+
+        document = MongoTestHelper.getCollection().findOne(new BasicDBObject(MongoSessionDataStore.__ID, "1234"));
+        assertEquals("attribute1changedagain", MongoUtils.getNestedValue(document, contextField + ".attribute1"));
+        assertNull(MongoUtils.getNestedValue(document, contextField + ".attribute2"));
+        assertEquals("attribute3value", MongoUtils.getNestedValue(document, contextField + ".attribute3"));
+        assertEquals(3L, ((Number)MongoUtils.getNestedValue(document, contextField + "." + MongoSessionDataStore.__VERSION)).longValue());
+
+        loaded = store.load("1234");
+        assertEquals(2, loaded.getKeys().size());
+        assertEquals("attribute1changedagain", loaded.getAttribute("attribute1"));
+        assertEquals("attribute3value", loaded.getAttribute("attribute3"));
+    }
 }
@@ -22,7 +22,9 @@ import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
@@ -208,6 +210,65 @@ public abstract class AbstractSessionDataStoreTest
         assertTrue(checkSessionPersisted(data));
     }
 
+    /**
+     * Test that the store can write new sessions, sessions with
+     * changed attributes and sessions with only changed metadata
+     * together.
+     */
+    @Test
+    public void testStoreAll() throws Exception
+    {
+        //create the SessionDataStore
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/test");
+        SessionDataStoreFactory factory = createSessionDataStoreFactory();
+        ((AbstractSessionDataStoreFactory)factory).setGracePeriodSec(GRACE_PERIOD_SEC);
+        SessionDataStore store = factory.getSessionDataStore(context.getSessionHandler());
+        SessionContext sessionContext = new SessionContext("foo", context.getServletContext());
+        store.initialize(sessionContext);
+
+        store.start();
+
+        //create sessions that look like they were previously saved by the store
+        final long now = System.currentTimeMillis();
+        SessionData changed = store.newSessionData("aaa3", 100, 200, 199, -1); //never expires
+        changed.setAttribute("a", "b");
+        changed.setLastNode(sessionContext.getWorkerName());
+        changed.setLastSaved(400);
+        persistSession(changed);
+        changed.clean();
+
+        SessionData accessed = store.newSessionData("aaa4", 100, 200, 199, -1); //never expires
+        accessed.setAttribute("a", "b");
+        accessed.setLastNode(sessionContext.getWorkerName());
+        accessed.setLastSaved(400);
+        persistSession(accessed);
+        accessed.clean();
+
+        //and a session that was never saved
+        SessionData created = store.newSessionData("aaa5", 100, now, now - 1, -1); //never expires
+        created.setAttribute("a", "b");
+        created.setLastNode(sessionContext.getWorkerName());
+
+        //change an attribute of one session, and only the access time of the other
+        changed.setLastAccessed(now - 1);
+        changed.setAccessed(now);
+        changed.setAttribute("a", "c");
+        accessed.setLastAccessed(now - 1);
+        accessed.setAccessed(now);
+        accessed.calcAndSetExpiry(now);
+
+        Map<String, SessionData> sessions = new HashMap<>();
+        sessions.put("aaa3", changed);
+        sessions.put("aaa4", accessed);
+        sessions.put("aaa5", created);
+        store.storeAll(sessions);
+
+        assertTrue(checkSessionPersisted(changed));
+        assertTrue(checkSessionPersisted(accessed));
+        assertTrue(checkSessionPersisted(created));
+    }
+
     /**
      * Test that the store can persist a session that contains
      * serializable Proxy objects in the attributes.
@@ -0,0 +1,191 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * AsyncSessionDataStoreTest
+ *
+ * Test that sessions are loaded and written out asynchronously through
+ * an ExecutorSessionDataStore, without blocking the calling thread.
+ */
+public class AsyncSessionDataStoreTest
+{
+    public static class FailingSessionDataStore extends TestSessionDataStore
+    {
+        public volatile boolean _fail;
+
+        @Override
+        public void doStore(String id, SessionData data, long lastSaveTime) throws Exception
+        {
+            if (_fail)
+                throw new IllegalStateException("Test store failure");
+            super.doStore(id, data, lastSaveTime);
+        }
+    }
+
+    @Test
+    public void testAsyncLoadAndRelease() throws Exception
+    {
+        Server server = new Server();
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/test");
+        context.setServer(server);
+
+        DefaultSessionCache cache = new DefaultSessionCache(context.getSessionHandler());
+        FailingSessionDataStore store = new FailingSessionDataStore();
+        ExecutorSessionDataStore async = new ExecutorSessionDataStore(store);
+        // Only run the store operations when the test asks to.
+        Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        async.setExecutor(tasks::add);
+        cache.setSessionDataStore(async);
+        context.getSessionHandler().setSessionCache(cache);
+        context.start();
+
+        try
+        {
+            long now = System.currentTimeMillis();
+            SessionData data = async.newSessionData("1234", now, now, now, TimeUnit.MINUTES.toMillis(10));
+            Session session = cache.newSession(data);
+            cache.add("1234", session);
+            session.setAttribute("a", "1");
+            store._numSaves.set(0);
+
+            // The last request exiting the session does not write it out on the calling thread.
+            CompletableFuture<Void> released = cache.releaseAsync("1234", session);
+            assertFalse(released.isDone());
+            assertEquals(0, store._numSaves.get());
+            assertFalse(session.getSessionData().isDirty());
+            assertEquals(1, async.getPending());
+
+            // A request can enter the session while it is being written out.
+            assertSame(session, cache.get("1234"));
+            session.setAttribute("a", "2");
+
+            runAll(tasks);
+            released.get(5, TimeUnit.SECONDS);
+            assertEquals(1, store._numSaves.get());
+            assertEquals("1", store._map.get("1234").getAttribute("a"));
+            assertTrue(session.getSessionData().getLastSaved() > 0);
+            assertTrue(session.getSessionData().isDirty());
+
+            // The change made meanwhile is written out when the request exits.
+            released = cache.releaseAsync("1234", session);
+            runAll(tasks);
+            released.get(5, TimeUnit.SECONDS);
+            assertEquals(2, store._numSaves.get());
+            assertEquals("2", store._map.get("1234").getAttribute("a"));
+
+            // A failed write leaves the session dirty, so that it is written out again.
+            assertSame(session, cache.get("1234"));
+            session.setAttribute("a", "3");
+            store._fail = true;
+            CompletableFuture<Void> failed = cache.releaseAsync("1234", session);
+            runAll(tasks);
+            assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+            assertTrue(session.getSessionData().isDirty());
+            assertEquals(1, async.getFailures());
+            store._fail = false;
+
+            // A session that is not cached is loaded without blocking the calling thread.
+            SessionData other = store.newSessionData("5678", now, now, now, TimeUnit.MINUTES.toMillis(10));
+            other.setAttribute("b", "1");
+            store._map.put("5678", other);
+            CompletableFuture<Session> loaded = cache.getAsync("5678");
+            assertFalse(loaded.isDone());
+            runAll(tasks);
+            Session session2 = loaded.get(5, TimeUnit.SECONDS);
+            assertNotNull(session2);
+            assertEquals("1", session2.getAttribute("b"));
+            assertEquals(1, session2.getRequests());
+            assertTrue(cache.contains("5678"));
+            assertSame(session2, cache.getAsync("5678").get(5, TimeUnit.SECONDS));
+        }
+        finally
+        {
+            context.stop();
+        }
+    }
+
+    @Test
+    public void testStoreStateOfSnapshots() throws Exception
+    {
+        Server server = new Server();
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/test");
+        context.setServer(server);
+
+        DefaultSessionCache cache = new DefaultSessionCache(context.getSessionHandler());
+        CompactSessionCacheTest.VersionedSessionDataStore store = new CompactSessionCacheTest.VersionedSessionDataStore();
+        ExecutorSessionDataStore async = new ExecutorSessionDataStore(store);
+        Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        async.setExecutor(tasks::add);
+        cache.setSessionDataStore(async);
+        context.getSessionHandler().setSessionCache(cache);
+        context.start();
+
+        try
+        {
+            long now = System.currentTimeMillis();
+            SessionData data = async.newSessionData("1234", now, now, now, TimeUnit.MINUTES.toMillis(10));
+            Session session = cache.newSession(data);
+            cache.add("1234", session);
+            session.setAttribute("a", "1");
+
+            // Two snapshots are taken before the first one is written out.
+            CompletableFuture<Void> released1 = cache.releaseAsync("1234", session);
+            assertSame(session, cache.get("1234"));
+            session.setAttribute("a", "2");
+            CompletableFuture<Void> released2 = cache.releaseAsync("1234", session);
+
+            // Each is written with the version left by the previous write.
+            runAll(tasks);
+            released1.get(5, TimeUnit.SECONDS);
+            released2.get(5, TimeUnit.SECONDS);
+            assertEquals(2, store._numSaves.get());
+            assertEquals("2", store._map.get("1234").getAttribute("a"));
+            assertEquals(2, ((CompactSessionCacheTest.VersionedSessionData)store._map.get("1234"))._version);
+            assertEquals(2, ((CompactSessionCacheTest.VersionedSessionData)session.getSessionData())._version);
+        }
+        finally
+        {
+            context.stop();
+        }
+    }
+
+    private static void runAll(Queue<Runnable> tasks)
+    {
+        Runnable task;
+        while ((task = tasks.poll()) != null)
+        {
+            task.run();
+        }
+    }
+}
@@ -0,0 +1,332 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package org.eclipse.jetty.server.session;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * CompactSessionCacheTest
+ *
+ * Test that idle sessions are compacted and inflated again when used.
+ */
+public class CompactSessionCacheTest
+{
+    /**
+     * SessionData with a version, as kept by some stores.
+     */
+    public static class VersionedSessionData extends SessionData
+    {
+        public long _version;
+
+        public VersionedSessionData(String id, String cpath, String vhost, long created, long accessed, long lastAccessed, long maxInactiveMs)
+        {
+            super(id, cpath, vhost, created, accessed, lastAccessed, maxInactiveMs);
+        }
+
+        @Override
+        public void copyStoreState(SessionData data)
+        {
+            if (data instanceof VersionedSessionData)
+                _version = ((VersionedSessionData)data)._version;
+        }
+    }
+
+    /**
+     * A store that keeps a version in its own subclass of SessionData, and
+     * fails to write a session whose version is not the one it wrote last.
+     */
+    public static class VersionedSessionDataStore extends TestSessionDataStore
+    {
+        @Override
+        public SessionData newSessionData(String id, long created, long accessed, long lastAccessed, long maxInactiveMs)
+        {
+            return new VersionedSessionData(id, _context.getCanonicalContextPath(), _context.getVhost(), created, accessed, lastAccessed, maxInactiveMs);
+        }
+
+        @Override
+        public void doStore(String id, SessionData data, long lastSaveTime) throws Exception
+        {
+            VersionedSessionData versioned = (VersionedSessionData)data;
+            VersionedSessionData stored = (VersionedSessionData)_map.get(id);
+            long version = (stored == null ? 0 : stored._version);
+            if (versioned._version != version)
+                throw new IllegalStateException("Version " + versioned._version + " != " + version);
+            versioned._version++;
+            VersionedSessionData copy = (VersionedSessionData)newSessionData(id, data.getCreated(), data.getAccessed(), data.getLastAccessed(), data.getMaxInactiveMs());
+            copy.copy(data);
+            copy.copyStoreState(data);
+            super.doStore(id, copy, lastSaveTime);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void testCompactAndInflate(boolean offHeap) throws Exception
+    {
+        Server server = new Server();
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/test");
+        context.setServer(server);
+
+        CompactSessionCacheFactory cacheFactory = new CompactSessionCacheFactory();
+        cacheFactory.setOffHeap(offHeap);
+        CompactSessionCache cache = (CompactSessionCache)cacheFactory.getSessionCache(context.getSessionHandler());
+        TestSessionDataStore store = new TestSessionDataStore();
+        cache.setSessionDataStore(store);
+        context.getSessionHandler().setSessionCache(cache);
+        context.start();
+
+        try
+        {
+            long now = System.currentTimeMillis();
+            SessionData data = store.newSessionData("1234", now - 20, now - 10, now - 20, TimeUnit.MINUTES.toMillis(10));
+            Session session = cache.newSession(data);
+            cache.add("1234", session);
+            session.setAttribute("a", "1");
+            session.setAttribute("b", 2);
+
+            // The last request exits, the session is compacted.
+            cache.release("1234", session);
+            assertFalse(session.isResident());
+            assertEquals(1, cache.getCompactedSessions());
+            assertThat(cache.getCompactedBytes(), greaterThan(0L));
+            assertEquals(0, cache.getSessionsCurrent());
+            assertTrue(cache.contains("1234"));
+
+            // The session is inflated when it is next used.
+            Session inflated = cache.get("1234");
+            assertNotSame(session, inflated);
+            assertTrue(inflated.isResident());
+            assertEquals(0, cache.getCompactedSessions());
+            assertEquals(0, cache.getCompactedBytes());
+            assertEquals(1, cache.getInflations());
+            assertEquals("1", inflated.getAttribute("a"));
+            assertEquals(2, inflated.getAttribute("b"));
+            assertEquals(data.getExpiry(), inflated.getSessionData().getExpiry());
+            assertEquals(data.getCreated(), inflated.getSessionData().getCreated());
+            assertFalse(inflated.getSessionData().isDirty());
+
+            // The session is not compacted while a request is using it.
+            Session again = cache.get("1234");
+            cache.release("1234", inflated);
+            assertEquals(0, cache.getCompactedSessions());
+            cache.release("1234", again);
+            assertEquals(1, cache.getCompactedSessions());
+            assertEquals(2, cache.getCompactions());
+
+            // Deleting the session removes its compacted form.
+            cache.delete("1234");
+            assertEquals(0, cache.getCompactedSessions());
+            assertFalse(cache.contains("1234"));
+        }
+        finally
+        {
+            context.stop();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void testSharedAttributeValue(boolean offHeap) throws Exception
+    {
+        Server server = new Server();
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/test");
+        context.setServer(server);
+
+        CompactSessionCacheFactory cacheFactory = new CompactSessionCacheFactory();
+        cacheFactory.setOffHeap(offHeap);
+        CompactSessionCache cache = (CompactSessionCache)cacheFactory.getSessionCache(context.getSessionHandler());
+        TestSessionDataStore store = new TestSessionDataStore();
+        cache.setSessionDataStore(store);
+        context.getSessionHandler().setSessionCache(cache);
+        context.start();
+
+        try
+        {
+            long now = System.currentTimeMillis();
+            SessionData data = store.newSessionData("1234", now - 20, now - 10, now - 20, TimeUnit.MINUTES.toMillis(10));
+            Session session = cache.newSession(data);
+            cache.add("1234", session);
+            ArrayList<String> list = new ArrayList<>(Collections.singletonList("x"));
+            session.setAttribute("a", list);
+            session.setAttribute("b", list);
+
+            cache.release("1234", session);
+            assertEquals(1, cache.getCompactedSessions());
+
+            // Attributes that shared an object still share it once inflated.
+            Session inflated = cache.get("1234");
+            assertEquals(list, inflated.getAttribute("a"));
+            assertSame(inflated.getAttribute("a"), inflated.getAttribute("b"));
+
+            // The buffer is given back when the session is compacted again and deleted.
+            cache.release("1234", inflated);
+            assertEquals(1, cache.getCompactedSessions());
+            cache.delete("1234");
+            assertEquals(0, cache.getCompactedBytes());
+        }
+        finally
+        {
+            context.stop();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void testMaxCompactedBytes(boolean offHeap) throws Exception
+    {
+        Server server = new Server();
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/test");
+        context.setServer(server);
+
+        CompactSessionCache cache = new CompactSessionCache(context.getSessionHandler());
+        cache.setOffHeap(offHeap);
+        cache.setMaxCompactedBytes(1);
+        TestSessionDataStore store = new TestSessionDataStore();
+        cache.setSessionDataStore(store);
+        context.getSessionHandler().setSessionCache(cache);
+        context.start();
+
+        try
+        {
+            long now = System.currentTimeMillis();
+            SessionData data = store.newSessionData("1234", now - 20, now - 10, now - 20, TimeUnit.MINUTES.toMillis(10));
+            Session session = cache.newSession(data);
+            cache.add("1234", session);
+            cache.release("1234", session);
+
+            // The session does not fit, it stays as a Session object.
+            assertTrue(session.isResident());
+            assertEquals(0, cache.getCompactedSessions());
+            assertEquals(1, cache.getRejections());
+            assertEquals(1, cache.getSessionsCurrent());
+        }
+        finally
+        {
+            context.stop();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void testCompactedSessionExpires(boolean offHeap) throws Exception
+    {
+        Server server = new Server();
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/test");
+        context.setServer(server);
+
+        CompactSessionCache cache = new CompactSessionCache(context.getSessionHandler());
+        cache.setOffHeap(offHeap);
+        cache.setExpiryBucketMs(100);
+        TestSessionDataStore store = new TestSessionDataStore();
+        cache.setSessionDataStore(store);
+        context.getSessionHandler().setSessionCache(cache);
+        context.start();
+
+        try
+        {
+            long now = System.currentTimeMillis();
+            SessionData data = store.newSessionData("1234", now - 20, now - 10, now - 20, 1);
+            Session session = cache.newSession(data);
+            cache.add("1234", session);
+            cache.release("1234", session);
+            SessionData data2 = store.newSessionData("5678", now - 20, now - 10, now - 20, TimeUnit.MINUTES.toMillis(10));
+            Session session2 = cache.newSession(data2);
+            cache.add("5678", session2);
+            cache.release("5678", session2);
+            assertEquals(2, cache.getCompactedSessions());
+            assertEquals(2, cache.getExpiryBuckets());
+
+            // The compacted session is still in the expiry index, and inflated when it expires.
+            Thread.sleep(250);
+            assertThat(cache.checkExpiration(Collections.emptySet()), contains("1234"));
+            assertEquals(1, cache.getInflations());
+
+            // The session that is not due is left compacted.
+            assertEquals(1, cache.getCompactedSessions());
+            assertEquals(1, cache.getExpiryBuckets());
+        }
+        finally
+        {
+            context.stop();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    public void testStoreSubclassOfSessionData(boolean offHeap) throws Exception
+    {
+        Server server = new Server();
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/test");
+        context.setServer(server);
+
+        CompactSessionCache cache = new CompactSessionCache(context.getSessionHandler());
+        cache.setOffHeap(offHeap);
+        VersionedSessionDataStore store = new VersionedSessionDataStore();
+        cache.setSessionDataStore(store);
+        context.getSessionHandler().setSessionCache(cache);
+        context.start();
+
+        try
+        {
+            long now = System.currentTimeMillis();
+            SessionData data = store.newSessionData("1234", now - 20, now - 10, now - 20, TimeUnit.MINUTES.toMillis(10));
+            Session session = cache.newSession(data);
+            cache.add("1234", session);
+            session.setAttribute("a", "1");
+            cache.release("1234", session);
+            assertEquals(1, cache.getCompactedSessions());
+            assertEquals(1, store._numSaves.get());
+
+            // The session is inflated with the class and the state of the store.
+            Session inflated = cache.get("1234");
+            assertThat(inflated.getSessionData(), instanceOf(VersionedSessionData.class));
+            assertEquals(1, ((VersionedSessionData)inflated.getSessionData())._version);
+            assertEquals("1", inflated.getAttribute("a"));
+
+            // So that it can be written out again.
+            inflated.setAttribute("a", "2");
+            cache.release("1234", inflated);
+            assertEquals(2, store._numSaves.get());
+            assertEquals(2, ((VersionedSessionData)store._map.get("1234"))._version);
+            assertEquals(1, cache.getCompactedSessions());
+        }
+        finally
+        {
+            context.stop();
+        }
+    }
+}
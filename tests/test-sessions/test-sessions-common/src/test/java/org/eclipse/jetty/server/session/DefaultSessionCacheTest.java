@@ -13,7 +13,12 @@
 
 package org.eclipse.jetty.server.session;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import javax.servlet.http.HttpSession;
 
@@ -495,4 +500,73 @@ public class DefaultSessionCacheTest extends AbstractSessionCacheTest
         SessionData retrieved = store.load("1234");
         assertEquals(accessed, retrieved.getAccessed()); //check that we persisted the session before we evicted
     }
+
+    @Test
+    public void testExpiryIndex()
+        throws Exception
+    {
+        Server server = new Server();
+
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/test");
+        context.setServer(server);
+
+        DefaultSessionCacheFactory cacheFactory = new DefaultSessionCacheFactory();
+        DefaultSessionCache cache = (DefaultSessionCache)cacheFactory.getSessionCache(context.getSessionHandler());
+        cache.setExpiryBucketMs(100);
+
+        //remember the candidates that the cache asks the store to check
+        List<Set<String>> checked = new ArrayList<>();
+        TestSessionDataStore store = new TestSessionDataStore()
+        {
+            @Override
+            public Set<String> doCheckExpired(Set<String> candidates, long time)
+            {
+                checked.add(new HashSet<>(candidates));
+                return super.doCheckExpired(candidates, time);
+            }
+        };
+        cache.setSessionDataStore(store);
+        context.getSessionHandler().setSessionCache(cache);
+        context.start();
+
+        long now = System.currentTimeMillis();
+
+        //an expired session
+        SessionData data = store.newSessionData("1234", now - 20, now - 10, now - 20, TimeUnit.MINUTES.toMillis(10));
+        data.setExpiry(now - TimeUnit.SECONDS.toMillis(1));
+        Session session = cache.newSession(data);
+        cache.add("1234", session);
+        cache.release("1234", session);
+
+        //a session that has not expired
+        SessionData data2 = store.newSessionData("5678", now - 20, now - 10, now - 20, TimeUnit.MINUTES.toMillis(10));
+        data2.setExpiry(now + TimeUnit.DAYS.toMillis(1));
+        Session session2 = cache.newSession(data2);
+        cache.add("5678", session2);
+        cache.release("5678", session2);
+
+        //an immortal session
+        SessionData data3 = store.newSessionData("9999", now - 20, now - 10, now - 20, -1);
+        Session session3 = cache.newSession(data3);
+        cache.add("9999", session3);
+        cache.release("9999", session3);
+
+        assertEquals(2, cache.getExpiryBuckets());
+
+        //only the expired session is a candidate
+        assertEquals(Collections.singleton("1234"), cache.checkExpiration(Collections.emptySet()));
+        assertEquals(Collections.singleton("1234"), checked.get(0));
+        assertEquals(1, cache.getExpiryBuckets());
+
+        //the expired session is not a candidate again
+        cache.checkExpiration(Collections.emptySet());
+        assertTrue(checked.get(1).isEmpty());
+
+        //deleting a session removes it from the index
+        cache.delete("5678");
+        data2.setExpiry(now - TimeUnit.SECONDS.toMillis(1));
+        cache.checkExpiration(Collections.emptySet());
+        assertTrue(checked.get(2).isEmpty());
+    }
 }
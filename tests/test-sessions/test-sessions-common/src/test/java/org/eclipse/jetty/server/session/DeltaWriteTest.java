@@ -0,0 +1,112 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * DeltaWriteTest
+ *
+ * Test that stores supporting delta writes are given the names of the changed attributes.
+ */
+public class DeltaWriteTest
+{
+    public static class DeltaSessionDataStore extends TestSessionDataStore
+    {
+        public List<Set<String>> _deltas = new ArrayList<>();
+
+        @Override
+        public boolean isDeltaWriteSupported()
+        {
+            return true;
+        }
+
+        @Override
+        public void doStoreDelta(String id, SessionData data, Set<String> dirtyAttributes, long lastSaveTime) throws Exception
+        {
+            _deltas.add(dirtyAttributes);
+            super.doStoreDelta(id, data, dirtyAttributes, lastSaveTime);
+        }
+    }
+
+    @Test
+    public void testDeltaWrites() throws Exception
+    {
+        Server server = new Server();
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/test");
+        context.setServer(server);
+
+        DefaultSessionCache cache = new DefaultSessionCache(context.getSessionHandler());
+        DeltaSessionDataStore store = new DeltaSessionDataStore();
+        cache.setSessionDataStore(store);
+        context.getSessionHandler().setSessionCache(cache);
+        context.start();
+
+        try
+        {
+            long now = System.currentTimeMillis();
+            SessionData data = store.newSessionData("1234", now, now, now, TimeUnit.MINUTES.toMillis(10));
+            data.setAttribute("a", "1");
+            data.setAttribute("b", "2");
+
+            // The first save writes the whole session.
+            store.store("1234", data);
+            assertEquals(1, store._numSaves.get());
+            assertThat(store._deltas, is(empty()));
+            assertThat(data.getDirtyAttributes(), is(empty()));
+
+            // Only the changed attribute is reported.
+            data.setAttribute("a", "3");
+            store.store("1234", data);
+            assertEquals(2, store._numSaves.get());
+            assertThat(store._deltas.get(0), contains("a"));
+
+            // Removed attributes are reported too.
+            data.setAttribute("b", null);
+            store.store("1234", data);
+            assertThat(store._deltas.get(1), contains("b"));
+
+            // Only non-attribute data changed.
+            data.setMetaDataDirty(true);
+            store.store("1234", data);
+            assertThat(store._deltas.get(2), is(empty()));
+
+            // The changed attributes are unknown, the whole session is written.
+            data.setDirty(true);
+            assertThat(data.getDirtyAttributes(), nullValue());
+            store.store("1234", data);
+            assertEquals(5, store._numSaves.get());
+            assertEquals(3, store._deltas.size());
+        }
+        finally
+        {
+            context.stop();
+        }
+    }
+}
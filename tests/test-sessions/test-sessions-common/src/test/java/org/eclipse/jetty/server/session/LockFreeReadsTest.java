@@ -0,0 +1,105 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.util.thread.AutoLock;
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * LockFreeReadsTest
+ *
+ * Test that session attributes can be read while the session is locked,
+ * and that contention on the session lock is reported by the SessionHandler.
+ */
+public class LockFreeReadsTest
+{
+    @Test
+    public void testLockFreeReads() throws Exception
+    {
+        Server server = new Server();
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/test");
+        context.setServer(server);
+
+        SessionHandler handler = context.getSessionHandler();
+        handler.setLockFreeReads(true);
+        DefaultSessionCache cache = new DefaultSessionCache(handler);
+        cache.setSessionDataStore(new TestSessionDataStore());
+        handler.setSessionCache(cache);
+        context.start();
+
+        try
+        {
+            long now = System.currentTimeMillis();
+            SessionData data = cache.getSessionDataStore().newSessionData("1234", now, now, now, TimeUnit.MINUTES.toMillis(10));
+            Session session = cache.newSession(data);
+            cache.add("1234", session);
+            session.setAttribute("a", "1");
+
+            CountDownLatch locked = new CountDownLatch(1);
+            CountDownLatch unlock = new CountDownLatch(1);
+            CompletableFuture<Void> holder = CompletableFuture.runAsync(() ->
+            {
+                try (AutoLock l = session.lock())
+                {
+                    locked.countDown();
+                    unlock.await(5, TimeUnit.SECONDS);
+                }
+                catch (InterruptedException e)
+                {
+                    throw new RuntimeException(e);
+                }
+            });
+            assertTrue(locked.await(5, TimeUnit.SECONDS));
+
+            // Attributes are read while another thread holds the lock.
+            CompletableFuture<Object> read = CompletableFuture.supplyAsync(() -> session.getAttribute("a"));
+            assertEquals("1", read.get(5, TimeUnit.SECONDS));
+            assertTrue(session.isValid());
+
+            // Writes wait for the lock, and the contention is reported.
+            long contentions = handler.getSessionLockContentions();
+            CompletableFuture<Void> write = CompletableFuture.runAsync(() -> session.setAttribute("a", "2"));
+            Thread.sleep(100);
+            assertFalse(write.isDone());
+            unlock.countDown();
+            write.get(5, TimeUnit.SECONDS);
+            holder.get(5, TimeUnit.SECONDS);
+
+            assertEquals("2", session.getAttribute("a"));
+            assertThat(handler.getSessionLockContentions(), greaterThan(contentions));
+            assertThat(handler.getSessionLockAcquisitions(), greaterThan(0L));
+
+            handler.statsReset();
+            assertEquals(0, handler.getSessionLockContentions());
+            cache.release("1234", session);
+        }
+        finally
+        {
+            context.stop();
+        }
+    }
+}
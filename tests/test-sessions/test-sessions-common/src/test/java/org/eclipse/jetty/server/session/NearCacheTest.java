@@ -0,0 +1,250 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+
+package org.eclipse.jetty.server.session;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * NearCacheTest
+ *
+ * Test that a CachingSessionDataStore in near-cache mode checks its
+ * cached sessions against the store, or relies on invalidation notifications.
+ */
+public class NearCacheTest
+{
+    public static class MapSessionDataMap extends AbstractLifeCycle implements SessionDataMap
+    {
+        public Map<String, SessionData> _map = new ConcurrentHashMap<>();
+
+        @Override
+        public void initialize(SessionContext context)
+        {
+        }
+
+        @Override
+        public SessionData load(String id)
+        {
+            return _map.get(id);
+        }
+
+        @Override
+        public void store(String id, SessionData data)
+        {
+            _map.put(id, data);
+        }
+
+        @Override
+        public boolean delete(String id)
+        {
+            return _map.remove(id) != null;
+        }
+    }
+
+    public static class CountingSessionDataStore extends TestSessionDataStore
+    {
+        public AtomicInteger _numLoads = new AtomicInteger();
+        public AtomicInteger _numLastSaved = new AtomicInteger();
+        public InvalidationListener _listener;
+        public boolean _invalidationEnabled;
+        public boolean _lastSavedSupported = true;
+        public Runnable _onLoad;
+
+        @Override
+        public SessionData doLoad(String id) throws Exception
+        {
+            _numLoads.incrementAndGet();
+            SessionData data = super.doLoad(id);
+            if (_onLoad != null)
+                _onLoad.run();
+            return data;
+        }
+
+        @Override
+        public long getLastSaved(String id)
+        {
+            _numLastSaved.incrementAndGet();
+            SessionData data = _map.get(id);
+            return data == null ? -1 : data.getLastSaved();
+        }
+
+        @Override
+        public boolean isLastSavedSupported()
+        {
+            return _lastSavedSupported;
+        }
+
+        @Override
+        public boolean addInvalidationListener(InvalidationListener listener)
+        {
+            if (!_invalidationEnabled)
+                return false;
+            _listener = listener;
+            return true;
+        }
+    }
+
+    @Test
+    public void testConditionalRead() throws Exception
+    {
+        MapSessionDataMap cache = new MapSessionDataMap();
+        CountingSessionDataStore store = new CountingSessionDataStore();
+        CachingSessionDataStore nearCache = new CachingSessionDataStore(cache, store);
+        nearCache.setNearCache(true);
+        nearCache.initialize(new SessionContext("w0", null));
+        nearCache.start();
+
+        try
+        {
+            assertFalse(nearCache.isInvalidationNotified());
+
+            long now = System.currentTimeMillis();
+            SessionData data = nearCache.newSessionData("1234", now, now, now, TimeUnit.MINUTES.toMillis(10));
+            data.setAttribute("a", "1");
+            nearCache.store("1234", data);
+
+            // The cached session is current, it is not loaded from the store.
+            assertSame(data, nearCache.load("1234"));
+            assertEquals(0, store._numLoads.get());
+            assertEquals(1, store._numLastSaved.get());
+            assertEquals(1, nearCache.getNearCacheHits());
+
+            // Another node saved the session, it is loaded from the store.
+            SessionData other = store.newSessionData("1234", now, now, now, TimeUnit.MINUTES.toMillis(10));
+            other.setAttribute("a", "2");
+            other.setLastSaved(data.getLastSaved() + 1);
+            store._map.put("1234", other);
+            SessionData loaded = nearCache.load("1234");
+            assertEquals("2", loaded.getAttribute("a"));
+            assertEquals(1, store._numLoads.get());
+            assertEquals(1, nearCache.getNearCacheStale());
+            assertSame(loaded, cache.load("1234"));
+
+            // Another node deleted the session.
+            store._map.remove("1234");
+            assertNull(nearCache.load("1234"));
+            assertNull(cache.load("1234"));
+        }
+        finally
+        {
+            nearCache.stop();
+        }
+    }
+
+    @Test
+    public void testInvalidation() throws Exception
+    {
+        MapSessionDataMap cache = new MapSessionDataMap();
+        CountingSessionDataStore store = new CountingSessionDataStore();
+        store._invalidationEnabled = true;
+        CachingSessionDataStore nearCache = new CachingSessionDataStore(cache, store);
+        nearCache.setNearCache(true);
+        nearCache.initialize(new SessionContext("w0", null));
+        nearCache.start();
+
+        try
+        {
+            assertTrue(nearCache.isInvalidationNotified());
+            assertNotNull(store._listener);
+
+            long now = System.currentTimeMillis();
+            SessionData data = nearCache.newSessionData("1234", now, now, now, TimeUnit.MINUTES.toMillis(10));
+            nearCache.store("1234", data);
+
+            // Cached sessions are not checked against the store.
+            assertSame(data, nearCache.load("1234"));
+            assertEquals(0, store._numLastSaved.get());
+
+            // Another node changed the session.
+            store._listener.onInvalidation("1234");
+            assertNull(cache.load("1234"));
+            assertEquals(1, nearCache.getInvalidations());
+            assertNotNull(nearCache.load("1234"));
+            assertEquals(1, store._numLoads.get());
+        }
+        finally
+        {
+            nearCache.stop();
+        }
+    }
+
+    @Test
+    public void testInvalidationDuringLoad() throws Exception
+    {
+        MapSessionDataMap cache = new MapSessionDataMap();
+        CountingSessionDataStore store = new CountingSessionDataStore();
+        store._invalidationEnabled = true;
+        CachingSessionDataStore nearCache = new CachingSessionDataStore(cache, store);
+        nearCache.setNearCache(true);
+        nearCache.initialize(new SessionContext("w0", null));
+        nearCache.start();
+
+        try
+        {
+            long now = System.currentTimeMillis();
+            SessionData data = store.newSessionData("1234", now, now, now, TimeUnit.MINUTES.toMillis(10));
+            store._map.put("1234", data);
+
+            // Another node changes the session while it is loaded, the loaded copy is not cached.
+            store._onLoad = () -> store._listener.onInvalidation("1234");
+            assertNotNull(nearCache.load("1234"));
+            assertNull(cache.load("1234"));
+
+            // Without concurrent changes the loaded copy is cached.
+            store._onLoad = null;
+            assertNotNull(nearCache.load("1234"));
+            assertNotNull(cache.load("1234"));
+            assertEquals(2, store._numLoads.get());
+        }
+        finally
+        {
+            nearCache.stop();
+        }
+    }
+
+    @Test
+    public void testNoInvalidationNorLastSaved() throws Exception
+    {
+        MapSessionDataMap cache = new MapSessionDataMap();
+        CountingSessionDataStore store = new CountingSessionDataStore();
+        store._lastSavedSupported = false;
+        CachingSessionDataStore nearCache = new CachingSessionDataStore(cache, store);
+        nearCache.setNearCache(true);
+        nearCache.initialize(new SessionContext("w0", null));
+
+        try
+        {
+            // Checking the cached sessions would load them all from the store.
+            assertThrows(IllegalStateException.class, nearCache::start);
+        }
+        finally
+        {
+            nearCache.stop();
+        }
+    }
+}
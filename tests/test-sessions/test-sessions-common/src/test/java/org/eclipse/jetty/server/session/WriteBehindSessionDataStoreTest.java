@@ -0,0 +1,245 @@
+//
+// ========================================================================
+// Copyright (c) 1995-2021 Mort Bay Consulting Pty Ltd and others.
+//
+// This program and the accompanying materials are made available under the
+// terms of the Eclipse Public License v. 2.0 which is available at
+// https://www.eclipse.org/legal/epl-2.0, or the Apache License, Version 2.0
+// which is available at https://www.apache.org/licenses/LICENSE-2.0.
+//
+// SPDX-License-Identifier: EPL-2.0 OR Apache-2.0
+// ========================================================================
+//
+
+package org.eclipse.jetty.server.session;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * WriteBehindSessionDataStoreTest
+ *
+ * Test that session saves are queued, coalesced and written out in batches.
+ */
+public class WriteBehindSessionDataStoreTest
+{
+    public static class BatchSessionDataStore extends TestSessionDataStore
+    {
+        public AtomicInteger _numBatches = new AtomicInteger();
+        public volatile Runnable _onStoreAll;
+        public volatile boolean _fail;
+
+        @Override
+        public boolean isBatchWriteSupported()
+        {
+            return true;
+        }
+
+        @Override
+        public void doStoreAll(Map<String, SessionData> sessions, Map<String, Long> lastSaveTimes) throws Exception
+        {
+            _numBatches.incrementAndGet();
+            if (_fail)
+                throw new IOException("Failed to write");
+            super.doStoreAll(sessions, lastSaveTimes);
+            Runnable onStoreAll = _onStoreAll;
+            if (onStoreAll != null)
+                onStoreAll.run();
+        }
+    }
+
+    @Test
+    public void testWriteBehind() throws Exception
+    {
+        Server server = new Server();
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/test");
+        context.setServer(server);
+
+        DefaultSessionCache cache = new DefaultSessionCache(context.getSessionHandler());
+        BatchSessionDataStore store = new BatchSessionDataStore();
+        WriteBehindSessionDataStore writeBehind = new WriteBehindSessionDataStore(store);
+        // Only write out sessions when asked to, or when a batch is full.
+        writeBehind.setDurabilityWindowMs(TimeUnit.HOURS.toMillis(1));
+        writeBehind.setExecutor(Runnable::run);
+        cache.setSessionDataStore(writeBehind);
+        context.getSessionHandler().setSessionCache(cache);
+        context.start();
+
+        try
+        {
+            long now = System.currentTimeMillis();
+            SessionData data1 = writeBehind.newSessionData("1", now, now, now, TimeUnit.MINUTES.toMillis(10));
+            data1.setAttribute("a", "1");
+            SessionData data2 = writeBehind.newSessionData("2", now, now, now, TimeUnit.MINUTES.toMillis(10));
+            data2.setAttribute("a", "1");
+
+            // Saves are queued and coalesced.
+            writeBehind.store("1", data1);
+            writeBehind.store("1", data1);
+            writeBehind.store("2", data2);
+            assertEquals(0, store._numSaves.get());
+            assertEquals(2, writeBehind.getPending());
+            assertEquals(1, writeBehind.getCoalesced());
+
+            // The queued data is visible.
+            assertSame(data1, writeBehind.load("1"));
+            assertTrue(writeBehind.exists("2"));
+            assertFalse(store.exists("2"));
+
+            // The queued sessions are written in one batch.
+            writeBehind.flush();
+            assertEquals(0, writeBehind.getPending());
+            assertEquals(2, store._numSaves.get());
+            assertEquals(1, store._numBatches.get());
+            assertFalse(data1.isDirty());
+            assertTrue(data1.getLastSaved() > 0);
+
+            // A full batch is written out straight away.
+            writeBehind.setMaxBatchSize(2);
+            data1.setAttribute("a", "2");
+            writeBehind.store("1", data1);
+            assertEquals(2, store._numSaves.get());
+            data2.setAttribute("a", "2");
+            writeBehind.store("2", data2);
+            assertEquals(0, writeBehind.getPending());
+            assertEquals(4, store._numSaves.get());
+            assertEquals(2, store._numBatches.get());
+
+            // Saves are written on the calling thread when the queue is full.
+            writeBehind.setMaxBatchSize(10);
+            writeBehind.setMaxPending(1);
+            data1.setAttribute("a", "3");
+            writeBehind.store("1", data1);
+            data2.setAttribute("a", "3");
+            writeBehind.store("2", data2);
+            assertEquals(5, store._numSaves.get());
+            assertEquals(1, writeBehind.getWriteThroughs());
+
+            // Deletes remove queued sessions.
+            assertTrue(writeBehind.delete("1"));
+            assertEquals(0, writeBehind.getPending());
+            writeBehind.flush();
+            assertEquals(5, store._numSaves.get());
+            assertFalse(writeBehind.exists("1"));
+        }
+        finally
+        {
+            context.stop();
+        }
+    }
+
+    @Test
+    public void testChangesDuringWrite() throws Exception
+    {
+        Server server = new Server();
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/test");
+        context.setServer(server);
+
+        DefaultSessionCache cache = new DefaultSessionCache(context.getSessionHandler());
+        BatchSessionDataStore store = new BatchSessionDataStore();
+        WriteBehindSessionDataStore writeBehind = new WriteBehindSessionDataStore(store);
+        writeBehind.setDurabilityWindowMs(TimeUnit.HOURS.toMillis(1));
+        writeBehind.setExecutor(Runnable::run);
+        cache.setSessionDataStore(writeBehind);
+        context.getSessionHandler().setSessionCache(cache);
+        context.start();
+
+        try
+        {
+            long now = System.currentTimeMillis();
+            SessionData data = writeBehind.newSessionData("1", now, now, now, TimeUnit.MINUTES.toMillis(10));
+            data.setAttribute("a", "1");
+            writeBehind.store("1", data);
+            writeBehind.flush();
+            assertFalse(data.isDirty());
+
+            // A change made in the same millisecond as the queued one, while the session
+            // is being written out, stays dirty with the name of the changed attribute.
+            data.setAttribute("a", "2");
+            writeBehind.store("1", data);
+            store._onStoreAll = () -> data.setAttribute("b", "1");
+            writeBehind.flush();
+            store._onStoreAll = null;
+            assertTrue(data.isDirty());
+            assertNotNull(data.getDirtyAttributes());
+            assertTrue(data.getDirtyAttributes().contains("b"));
+
+            // And is written out when the session is next saved.
+            writeBehind.store("1", data);
+            writeBehind.flush();
+            assertFalse(data.isDirty());
+            assertEquals(3, store._numSaves.get());
+        }
+        finally
+        {
+            context.stop();
+        }
+    }
+
+    @Test
+    public void testFailedBatchQueuedAgain() throws Exception
+    {
+        Server server = new Server();
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        context.setContextPath("/test");
+        context.setServer(server);
+
+        DefaultSessionCache cache = new DefaultSessionCache(context.getSessionHandler());
+        BatchSessionDataStore store = new BatchSessionDataStore();
+        WriteBehindSessionDataStore writeBehind = new WriteBehindSessionDataStore(store);
+        writeBehind.setDurabilityWindowMs(TimeUnit.HOURS.toMillis(1));
+        writeBehind.setExecutor(Runnable::run);
+        cache.setSessionDataStore(writeBehind);
+        context.getSessionHandler().setSessionCache(cache);
+        context.start();
+
+        try
+        {
+            long now = System.currentTimeMillis();
+            SessionData data = writeBehind.newSessionData("1", now, now, now, TimeUnit.MINUTES.toMillis(10));
+            data.setAttribute("a", "1");
+            writeBehind.store("1", data);
+
+            // The failed batch is queued again.
+            store._fail = true;
+            writeBehind.flush();
+            assertEquals(1, writeBehind.getFailures());
+            assertEquals(1, writeBehind.getPending());
+            assertTrue(data.isDirty());
+            assertFalse(store.exists("1"));
+
+            // And written out with the next batch.
+            store._fail = false;
+            writeBehind.flush();
+            assertEquals(0, writeBehind.getPending());
+            assertFalse(data.isDirty());
+            assertTrue(store.exists("1"));
+
+            // A deleted session is not queued again.
+            data.setAttribute("a", "2");
+            writeBehind.store("1", data);
+            store._fail = true;
+            writeBehind.flush();
+            assertTrue(writeBehind.delete("1"));
+            assertEquals(0, writeBehind.getPending());
+        }
+        finally
+        {
+            context.stop();
+        }
+    }
+}